@@ -0,0 +1,91 @@
+/*
+ * #%L
+ * FlatPack Benchmarks
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.getperka.flatpack.Configuration;
+import com.getperka.flatpack.FlatPack;
+import com.getperka.flatpack.TypeSource;
+import com.getperka.flatpack.benchmarks.domain.Bucket;
+import com.getperka.flatpack.benchmarks.domain.Link;
+import com.getperka.flatpack.benchmarks.domain.Member;
+import com.getperka.flatpack.benchmarks.domain.MemberPrincipalMapper;
+import com.getperka.flatpack.benchmarks.domain.TrackedWidget;
+import com.getperka.flatpack.benchmarks.domain.Widget;
+import com.getperka.flatpack.policy.StaticPolicy;
+
+/**
+ * Creates the {@link Configuration} shared by the benchmarks.
+ */
+public class BenchmarkFlatPacks {
+  static class BenchmarkTypes implements TypeSource {
+    private final Set<Class<?>> types = new LinkedHashSet<Class<?>>(Arrays.<Class<?>> asList(
+        Bucket.class, Link.class, Member.class, TrackedWidget.class, Widget.class));
+
+    @Override
+    public Set<Class<?>> getTypes() {
+      return types;
+    }
+  }
+
+  /**
+   * Returns a Configuration that knows about the benchmark domain types and installs the benchmark
+   * security policy.
+   */
+  public static Configuration configuration() {
+    return new Configuration()
+        .addTypeSource(new BenchmarkTypes())
+        .withPrincipalMapper(new MemberPrincipalMapper())
+        .withSecurityPolicy(new StaticPolicy(loadPolicy()));
+  }
+
+  public static FlatPack create() {
+    return FlatPack.create(configuration());
+  }
+
+  private static String loadPolicy() {
+    InputStream in = BenchmarkFlatPacks.class.getResourceAsStream("benchmark.policy");
+    if (in == null) {
+      throw new IllegalStateException("Could not find benchmark.policy");
+    }
+    try {
+      Reader reader = new InputStreamReader(in, "UTF-8");
+      StringWriter out = new StringWriter();
+      char[] buffer = new char[4096];
+      for (int count = reader.read(buffer); count != -1; count = reader.read(buffer)) {
+        out.write(buffer, 0, count);
+      }
+      reader.close();
+      return out.toString();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private BenchmarkFlatPacks() {}
+}
@@ -0,0 +1,78 @@
+/*
+ * #%L
+ * FlatPack Benchmarks
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.ISODateTimeFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.getperka.flatpack.util.Iso8601;
+
+/**
+ * Compares the {@link Iso8601} date-time formatter and parser used by {@code DateCodex} with the
+ * Joda {@code ISODateTimeFormat} lookups that it replaces.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 2)
+public class DateCodexBenchmark {
+  private long instant;
+  private String text;
+
+  @Benchmark
+  public String formatIso8601() {
+    return Iso8601.format(instant, DateTimeZone.getDefault().getOffset(instant));
+  }
+
+  @Benchmark
+  public String formatJoda() {
+    return ISODateTimeFormat.dateTime().print(instant);
+  }
+
+  @Benchmark
+  public long parseIso8601() {
+    return Iso8601.parse(text);
+  }
+
+  @Benchmark
+  public long parseJoda() {
+    return ISODateTimeFormat.dateTimeParser().parseMillis(text);
+  }
+
+  @Setup
+  public void setup() {
+    instant = System.currentTimeMillis();
+    text = ISODateTimeFormat.dateTime().print(instant);
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * #%L
+ * FlatPack Benchmarks
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.benchmarks;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import com.getperka.flatpack.FlatPackEntity;
+import com.getperka.flatpack.benchmarks.domain.Bucket;
+import com.getperka.flatpack.benchmarks.domain.Link;
+import com.getperka.flatpack.benchmarks.domain.Member;
+import com.getperka.flatpack.benchmarks.domain.MemberPrincipal;
+import com.getperka.flatpack.benchmarks.domain.TrackedWidget;
+import com.getperka.flatpack.benchmarks.domain.Widget;
+import com.getperka.flatpack.util.FlatPackTypes;
+
+/**
+ * The synthetic object graphs used by the benchmarks.
+ */
+public enum Graph {
+  /**
+   * A collection of entities with many scalar properties.
+   */
+  WIDE {
+    @Override
+    public FlatPackEntity<?> create(int size) {
+      List<Widget> widgets = new ArrayList<Widget>(size);
+      for (int i = 0; i < size; i++) {
+        widgets.add(populate(new Widget(), i));
+      }
+      return FlatPackEntity.create(FlatPackTypes.createType(List.class, Widget.class), widgets,
+          null);
+    }
+  },
+  /**
+   * A linked list of entities, which produces a deep traversal.
+   */
+  DEEP {
+    @Override
+    public FlatPackEntity<?> create(int size) {
+      Link head = null;
+      for (int i = size - 1; i >= 0; i--) {
+        Link link = new Link();
+        link.setIndex(i);
+        link.setNext(head);
+        head = link;
+      }
+      return FlatPackEntity.entity(head);
+    }
+  },
+  /**
+   * A single entity that holds a large collection of other entities.
+   */
+  COLLECTION {
+    @Override
+    public FlatPackEntity<?> create(int size) {
+      Bucket bucket = new Bucket();
+      for (int i = 0; i < size; i++) {
+        bucket.getWidgets().add(populate(new Widget(), i));
+      }
+      return FlatPackEntity.entity(bucket);
+    }
+  },
+  /**
+   * Persistent, dirty-tracking entities where only every other entity has been modified.
+   */
+  DIRTY {
+    @Override
+    public FlatPackEntity<?> create(int size) {
+      List<Widget> widgets = new ArrayList<Widget>(size);
+      for (int i = 0; i < size; i++) {
+        TrackedWidget widget = populate(new TrackedWidget(), i);
+        widget.markPersistent();
+        if (i % 2 == 0) {
+          widget.setLabel("Modified " + i);
+        }
+        widgets.add(widget);
+      }
+      return FlatPackEntity.create(FlatPackTypes.createType(List.class, Widget.class), widgets,
+          null);
+    }
+  },
+  /**
+   * Entities whose access is controlled by a static policy, packed on behalf of one of the
+   * entities.
+   */
+  SECURED {
+    @Override
+    public FlatPackEntity<?> create(int size) {
+      Member boss = new Member();
+      boss.setName("Boss");
+      List<Member> members = new ArrayList<Member>(size);
+      for (int i = 0; i < size; i++) {
+        Member member = new Member();
+        member.setBoss(boss);
+        member.setName("Member " + i);
+        members.add(member);
+      }
+      // Make everyone a peer of their neighbor
+      for (int i = 1; i < size; i++) {
+        members.get(i).setPeers(Collections.singletonList(members.get(i - 1)));
+      }
+      Principal principal = new MemberPrincipal(boss);
+      return FlatPackEntity.create(FlatPackTypes.createType(List.class, Member.class), members,
+          principal);
+    }
+  };
+
+  static <W extends Widget> W populate(W widget, int index) {
+    widget.setActive(index % 2 == 0);
+    widget.setAlpha("Alpha " + index);
+    widget.setBeta("Beta " + index);
+    widget.setCount(index);
+    widget.setDelta("Delta " + index);
+    widget.setGamma("Gamma " + index);
+    widget.setIdentifier(index * 31L);
+    widget.setLabel("Widget " + index);
+    widget.setPrice(index * 1.25);
+    widget.setReference(UUID.randomUUID());
+    widget.setSize(index % 17);
+    widget.setWeight(index / 3.0);
+    return widget;
+  }
+
+  /**
+   * Create a payload containing approximately {@code size} entities.
+   */
+  public abstract FlatPackEntity<?> create(int size);
+}
@@ -0,0 +1,73 @@
+/*
+ * #%L
+ * FlatPack Benchmarks
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.benchmarks;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.getperka.flatpack.FlatPack;
+import com.getperka.flatpack.FlatPackEntity;
+
+/**
+ * Measures {@code Packer.pack()}, comparing the two-pass and single-pass pack modes.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 2)
+public class PackBenchmark {
+  @Param
+  Graph graph;
+  @Param({ "10", "100", "1000" })
+  int size;
+  @Param({ "false", "true" })
+  boolean singlePass;
+
+  private FlatPack flatpack;
+  private FlatPackEntity<?> entity;
+
+  @Benchmark
+  public String pack() throws IOException {
+    StringWriter out = new StringWriter();
+    flatpack.getPacker().pack(entity, out);
+    return out.toString();
+  }
+
+  @Setup
+  public void setup() {
+    flatpack = FlatPack.create(BenchmarkFlatPacks.configuration().withSinglePassPack(singlePass));
+    entity = graph.create(size);
+  }
+}
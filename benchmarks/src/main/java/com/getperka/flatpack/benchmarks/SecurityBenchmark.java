@@ -0,0 +1,141 @@
+/*
+ * #%L
+ * FlatPack Benchmarks
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.benchmarks;
+
+import static com.getperka.flatpack.security.CrudOperation.READ_ACTION;
+import static com.getperka.flatpack.security.CrudOperation.UPDATE_ACTION;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.getperka.flatpack.Configuration;
+import com.getperka.flatpack.FlatPack;
+import com.getperka.flatpack.FlatPackEntity;
+import com.getperka.flatpack.benchmarks.domain.Member;
+import com.getperka.flatpack.ext.Property;
+import com.getperka.flatpack.ext.TypeContext;
+import com.getperka.flatpack.inject.HasInjector;
+import com.getperka.flatpack.inject.PackScope;
+import com.getperka.flatpack.security.MemoizingSecurity;
+import com.getperka.flatpack.security.Security;
+import com.getperka.flatpack.security.SecurityDecisionCache;
+import com.getperka.flatpack.security.SecurityTarget;
+import com.google.inject.Injector;
+
+/**
+ * Measures security decisions made against a {@code StaticPolicy}, with and without the per-pack
+ * memoization provided by {@link MemoizingSecurity}. The {@code sharedCache} parameter installs a
+ * {@link SecurityDecisionCache}, which affects the {@code mayUncached} case.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 2)
+public class SecurityBenchmark {
+  private Member member;
+  private MemoizingSecurity memoizing;
+  private PackScope packScope;
+  private Principal principal;
+  private List<Property> properties;
+  private Security security;
+  @Param({ "false", "true" })
+  private boolean sharedCache;
+  private SecurityTarget entityTarget;
+  private SecurityTarget propertyTarget;
+
+  @Benchmark
+  public boolean mayMemoized() {
+    return memoizing.may(principal, entityTarget, READ_ACTION)
+      & memoizing.may(principal, propertyTarget, UPDATE_ACTION);
+  }
+
+  /**
+   * The per-property check made for every property of every entity in a payload, which should not
+   * allocate when the principal is granted access by an inclusive or global group.
+   */
+  @Benchmark
+  public int mayProperty() {
+    int granted = 0;
+    for (int i = 0, j = properties.size(); i < j; i++) {
+      if (memoizing.may(principal, member, properties.get(i), READ_ACTION)) {
+        granted++;
+      }
+    }
+    return granted;
+  }
+
+  @Benchmark
+  public boolean mayUncached() {
+    return security.may(principal, entityTarget, READ_ACTION)
+      & security.may(principal, propertyTarget, UPDATE_ACTION);
+  }
+
+  @Setup
+  public void setup() {
+    Configuration configuration = BenchmarkFlatPacks.configuration();
+    if (sharedCache) {
+      configuration.withSecurityDecisionCache(
+          new SecurityDecisionCache(10000, 10, TimeUnit.MINUTES));
+    }
+    FlatPack flatpack = FlatPack.create(configuration);
+    Injector injector = ((HasInjector) flatpack).getInjector();
+
+    @SuppressWarnings("unchecked")
+    FlatPackEntity<List<Member>> entity = (FlatPackEntity<List<Member>>) Graph.SECURED.create(10);
+    member = entity.getValue().get(5);
+    principal = entity.getPrincipal();
+
+    properties = injector.getInstance(TypeContext.class).describe(Member.class).getProperties();
+    Property boss = null;
+    for (Property prop : properties) {
+      if ("boss".equals(prop.getName())) {
+        boss = prop;
+      }
+    }
+    entityTarget = SecurityTarget.of(member);
+    propertyTarget = SecurityTarget.of(member, boss);
+
+    packScope = injector.getInstance(PackScope.class);
+    packScope.enter().withPrincipal(principal);
+    memoizing = injector.getInstance(MemoizingSecurity.class);
+    security = injector.getInstance(Security.class);
+  }
+
+  @TearDown
+  public void tearDown() {
+    packScope.exit();
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * #%L
+ * FlatPack Benchmarks
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.benchmarks;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.getperka.flatpack.FlatPack;
+import com.getperka.flatpack.FlatPackVisitor;
+import com.getperka.flatpack.Visitors;
+import com.getperka.flatpack.benchmarks.domain.Widget;
+import com.getperka.flatpack.ext.Codex;
+import com.getperka.flatpack.ext.EntityDescription;
+import com.getperka.flatpack.ext.TypeContext;
+import com.getperka.flatpack.inject.HasInjector;
+import com.getperka.flatpack.util.FlatPackTypes;
+import com.google.inject.Injector;
+
+/**
+ * Measures type introspection lookups and the per-entity traversal performed by
+ * {@code EntityCodex.acceptNotNull()}.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 2)
+public class TypeContextBenchmark {
+  private final Type listType = FlatPackTypes.createType(List.class, Widget.class);
+  private TypeContext typeContext;
+  private FlatPackVisitor visitor;
+  private Visitors visitors;
+  private Widget widget;
+
+  @Benchmark
+  public Widget acceptEntity() {
+    return visitors.visit(visitor, widget);
+  }
+
+  @Benchmark
+  public EntityDescription describe() {
+    return typeContext.describe(Widget.class);
+  }
+
+  @Benchmark
+  public Codex<?> getCodexForClass() {
+    return typeContext.getCodex(Widget.class);
+  }
+
+  @Benchmark
+  public Codex<?> getCodexForParameterizedType() {
+    return typeContext.getCodex(listType);
+  }
+
+  @Setup
+  public void setup() {
+    FlatPack flatpack = BenchmarkFlatPacks.create();
+    Injector injector = ((HasInjector) flatpack).getInjector();
+    typeContext = injector.getInstance(TypeContext.class);
+    visitors = injector.getInstance(Visitors.class);
+    // A greedy visitor that traverses every property
+    visitor = new FlatPackVisitor();
+    widget = Graph.populate(new Widget(), 1);
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * #%L
+ * FlatPack Benchmarks
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.benchmarks;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.getperka.flatpack.FlatPack;
+import com.getperka.flatpack.benchmarks.domain.Widget;
+import com.getperka.flatpack.ext.Codex;
+import com.getperka.flatpack.ext.EntityDescription;
+import com.getperka.flatpack.ext.TypeContext;
+import com.getperka.flatpack.inject.HasInjector;
+import com.getperka.flatpack.util.FlatPackTypes;
+
+/**
+ * Hammers a single shared {@link TypeContext} from many threads. Setting {@code serialized} to
+ * {@code true} wraps each lookup in a monitor on the TypeContext, which reproduces the cost of the
+ * formerly-synchronized lookup methods for comparison.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Threads(32)
+@Warmup(iterations = 5, time = 2)
+public class TypeContextContentionBenchmark {
+  private final Type listType = FlatPackTypes.createType(List.class, Widget.class);
+  @Param({ "false", "true" })
+  private boolean serialized;
+  private TypeContext typeContext;
+
+  @Benchmark
+  public EntityDescription describe() {
+    if (serialized) {
+      synchronized (typeContext) {
+        return typeContext.describe(Widget.class);
+      }
+    }
+    return typeContext.describe(Widget.class);
+  }
+
+  @Benchmark
+  public Codex<?> getCodexForClass() {
+    if (serialized) {
+      synchronized (typeContext) {
+        return typeContext.getCodex(Widget.class);
+      }
+    }
+    return typeContext.getCodex(Widget.class);
+  }
+
+  @Benchmark
+  public Codex<?> getCodexForParameterizedType() {
+    if (serialized) {
+      synchronized (typeContext) {
+        return typeContext.getCodex(listType);
+      }
+    }
+    return typeContext.getCodex(listType);
+  }
+
+  @Setup
+  public void setup() {
+    FlatPack flatpack = BenchmarkFlatPacks.create();
+    typeContext = ((HasInjector) flatpack).getInjector().getInstance(TypeContext.class);
+    // Populate the caches
+    typeContext.describe(Widget.class);
+    typeContext.getCodex(listType);
+  }
+}
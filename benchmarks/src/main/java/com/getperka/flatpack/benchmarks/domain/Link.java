@@ -0,0 +1,46 @@
+/*
+ * #%L
+ * FlatPack Benchmarks
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.benchmarks.domain;
+
+import com.getperka.flatpack.BaseHasUuid;
+
+/**
+ * An element of a singly-linked chain, used to create deep object graphs.
+ */
+public class Link extends BaseHasUuid {
+  private int index;
+  private Link next;
+
+  public int getIndex() {
+    return index;
+  }
+
+  public Link getNext() {
+    return next;
+  }
+
+  public void setIndex(int index) {
+    this.index = index;
+  }
+
+  public void setNext(Link next) {
+    this.next = next;
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * #%L
+ * FlatPack Benchmarks
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.benchmarks.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.getperka.flatpack.BaseHasUuid;
+import com.getperka.flatpack.ext.NoPack;
+
+/**
+ * An entity whose access is controlled by {@code benchmark.policy}.
+ */
+public class Member extends BaseHasUuid {
+  private Member boss;
+  private List<String> globalGroups = new ArrayList<String>();
+  private String name;
+  private List<Member> peers = new ArrayList<Member>();
+
+  public Member getBoss() {
+    return boss;
+  }
+
+  @NoPack
+  public List<String> getGlobalGroups() {
+    return globalGroups;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public List<Member> getPeers() {
+    return peers;
+  }
+
+  public void setBoss(Member boss) {
+    this.boss = boss;
+  }
+
+  @NoPack
+  public void setGlobalGroups(List<String> globalGroups) {
+    this.globalGroups = globalGroups;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public void setPeers(List<Member> peers) {
+    this.peers = peers;
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * #%L
+ * FlatPack Benchmarks
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.benchmarks.domain;
+
+import java.security.Principal;
+
+/**
+ * A Principal that represents a {@link Member}.
+ */
+public class MemberPrincipal implements Principal {
+  private final Member member;
+
+  public MemberPrincipal(Member member) {
+    this.member = member;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof MemberPrincipal)) {
+      return false;
+    }
+    return member.equals(((MemberPrincipal) obj).member);
+  }
+
+  public Member getMember() {
+    return member;
+  }
+
+  @Override
+  public String getName() {
+    return member.getUuid().toString();
+  }
+
+  @Override
+  public int hashCode() {
+    return member.hashCode();
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * #%L
+ * FlatPack Benchmarks
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.benchmarks.domain;
+
+import java.security.Principal;
+import java.util.Collections;
+import java.util.List;
+
+import com.getperka.flatpack.HasUuid;
+import com.getperka.flatpack.security.PrincipalMapper;
+import com.getperka.flatpack.security.SecurityTarget;
+
+/**
+ * Maps {@link Member} entities to {@link MemberPrincipal} instances.
+ */
+public class MemberPrincipalMapper implements PrincipalMapper {
+  @Override
+  public List<String> getGlobalSecurityGroups(Principal principal) {
+    return ((MemberPrincipal) principal).getMember().getGlobalGroups();
+  }
+
+  @Override
+  public List<Principal> getPrincipals(HasUuid entity) {
+    if (entity instanceof Member) {
+      return Collections.<Principal> singletonList(new MemberPrincipal((Member) entity));
+    }
+    return null;
+  }
+
+  /**
+   * Payloads that are not packed on behalf of a Member are unrestricted.
+   */
+  @Override
+  public boolean isAccessEnforced(Principal principal, SecurityTarget target) {
+    return principal != null;
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * #%L
+ * FlatPack Benchmarks
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.benchmarks.domain;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.getperka.flatpack.PersistenceAware;
+
+/**
+ * A dirty-tracking Widget. Only the {@code label} property is tracked.
+ */
+public class TrackedWidget extends Widget implements PersistenceAware {
+  private final Set<String> dirtyPropertyNames = new HashSet<String>();
+  private boolean persistent;
+
+  @Override
+  public Set<String> dirtyPropertyNames() {
+    return Collections.unmodifiableSet(dirtyPropertyNames);
+  }
+
+  @Override
+  public void markPersistent() {
+    persistent = true;
+    dirtyPropertyNames.clear();
+  }
+
+  @Override
+  public void setLabel(String label) {
+    dirtyPropertyNames.add("label");
+    super.setLabel(label);
+  }
+
+  @Override
+  public boolean wasPersistent() {
+    return persistent;
+  }
+}
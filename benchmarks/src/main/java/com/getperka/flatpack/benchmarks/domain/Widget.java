@@ -0,0 +1,138 @@
+/*
+ * #%L
+ * FlatPack Benchmarks
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.benchmarks.domain;
+
+import java.util.UUID;
+
+import com.getperka.flatpack.BaseHasUuid;
+
+/**
+ * A wide entity with many scalar properties.
+ */
+public class Widget extends BaseHasUuid {
+  private boolean active;
+  private String alpha;
+  private String beta;
+  private int count;
+  private String delta;
+  private String gamma;
+  private long identifier;
+  private String label;
+  private double price;
+  private UUID reference;
+  private int size;
+  private double weight;
+
+  public String getAlpha() {
+    return alpha;
+  }
+
+  public String getBeta() {
+    return beta;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  public String getDelta() {
+    return delta;
+  }
+
+  public String getGamma() {
+    return gamma;
+  }
+
+  public long getIdentifier() {
+    return identifier;
+  }
+
+  public String getLabel() {
+    return label;
+  }
+
+  public double getPrice() {
+    return price;
+  }
+
+  public UUID getReference() {
+    return reference;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public double getWeight() {
+    return weight;
+  }
+
+  public boolean isActive() {
+    return active;
+  }
+
+  public void setActive(boolean active) {
+    this.active = active;
+  }
+
+  public void setAlpha(String alpha) {
+    this.alpha = alpha;
+  }
+
+  public void setBeta(String beta) {
+    this.beta = beta;
+  }
+
+  public void setCount(int count) {
+    this.count = count;
+  }
+
+  public void setDelta(String delta) {
+    this.delta = delta;
+  }
+
+  public void setGamma(String gamma) {
+    this.gamma = gamma;
+  }
+
+  public void setIdentifier(long identifier) {
+    this.identifier = identifier;
+  }
+
+  public void setLabel(String label) {
+    this.label = label;
+  }
+
+  public void setPrice(double price) {
+    this.price = price;
+  }
+
+  public void setReference(UUID reference) {
+    this.reference = reference;
+  }
+
+  public void setSize(int size) {
+    this.size = size;
+  }
+
+  public void setWeight(double weight) {
+    this.weight = weight;
+  }
+}
@@ -19,37 +19,135 @@
  */
 package com.getperka.flatpack.client.impl;
 
+import java.io.Closeable;
 import java.net.HttpURLConnection;
 import java.net.URI;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.getperka.flatpack.FlatPack;
+import com.getperka.flatpack.FlatPackEntity;
 import com.getperka.flatpack.client.Api;
 import com.getperka.flatpack.util.IoObserver;
 import com.getperka.flatpack.util.LogChunker;
 
 /**
- * A base class for accessing FlatPack API servers.
+ * A base class for accessing FlatPack API servers. Closing the ApiBase shuts down the default
+ * executor used by {@code executeAsync()}.
  */
-public abstract class ApiBase implements Api {
+public abstract class ApiBase implements Api, Closeable {
+  /**
+   * The number of threads used by the default executor for {@code executeAsync()}. The
+   * threads spend most of their time waiting for the server, so the pool is much larger than the
+   * number of processors.
+   */
+  public static final int DEFAULT_ASYNC_THREADS = 64;
+
   private static final String CHUNK_SIZE_PROPERTY = "flatpack.log.chunk.size";
 
+  private String batchPath = "batch";
+  private boolean closed;
+  private boolean columnarData;
+  private int compressionThreshold = -1;
+  private ExecutorService executor;
+  private boolean ownsExecutor;
   private final FlatPack flatpack;
   private URI serverBase;
   private final Logger logger = LoggerFactory.getLogger(getClass());
   private IoObserver ioObserver = new IoObserver.Null();
+  private ResponseCache responseCache;
 
   protected ApiBase(FlatPack flatpack) {
     this.flatpack = flatpack;
   }
 
+  /**
+   * Shuts down the default executor, if it has been created. Requests that have already been
+   * submitted by {@code executeAsync()} will be completed, but new asynchronous requests
+   * will be rejected. An executor passed to {@link #setExecutor(ExecutorService)} is not shut down.
+   */
+  @Override
+  public synchronized void close() {
+    closed = true;
+    if (ownsExecutor) {
+      executor.shutdown();
+    }
+  }
+
   @Override
   public URI getServerBase() {
     return serverBase;
   }
 
+  /**
+   * Returns a new {@link Batch}, which sends several requests to the server in a single round trip.
+   */
+  public Batch newBatch() {
+    return new Batch(this, batchPath);
+  }
+
+  /**
+   * Sets the path, relative to the {@link #setServerBase(URI) server base}, to which batches of
+   * requests are sent. The default value is {@code batch}.
+   */
+  public void setBatchPath(String batchPath) {
+    this.batchPath = batchPath;
+  }
+
+  /**
+   * Asks the server to write the {@code data} section of responses as tables of entities, which
+   * reduces the size of payloads that contain many entities of the same type.
+   * 
+   * @see FlatPackEntity#withColumnarData(boolean)
+   */
+  public void setColumnarData(boolean columnarData) {
+    this.columnarData = columnarData;
+  }
+
+  /**
+   * Enables the gzip compression of request payloads that are larger than {@code threshold} bytes.
+   * A negative value, the default, disables compression, since the server must be able to decode
+   * compressed requests. Compressed responses are always accepted.
+   */
+  public void setCompressionThreshold(int threshold) {
+    this.compressionThreshold = threshold;
+  }
+
+  /**
+   * Sets the executor that will send requests and unpack their responses when
+   * {@code executeAsync()} is called. The size of the executor bounds the number of
+   * requests that will be in flight at once. If no executor is set, a pool of
+   * {@value #DEFAULT_ASYNC_THREADS} daemon threads, which exit when idle, will be created when the
+   * first asynchronous request is made. The caller remains responsible for shutting down an
+   * executor passed to this method.
+   */
+  public synchronized void setExecutor(ExecutorService executor) {
+    if (ownsExecutor) {
+      this.executor.shutdown();
+    }
+    this.executor = executor;
+    ownsExecutor = false;
+  }
+
+  /**
+   * Retains the payloads of up to {@code size} {@code GET} responses that carry an {@code ETag}
+   * header. Repeated requests for the same URL and variant will send the tag in an
+   * {@code If-None-Match} header and the retained payload will be unpacked again if the server
+   * responds with {@code 304 Not Modified}. {@code Last-Modified} dates are not used, since they
+   * can't show that the payload sent to one principal is the one another would receive. A value of
+   * zero, the default, disables the cache.
+   */
+  public void setResponseCacheSize(int size) {
+    responseCache = size > 0 ? new ResponseCache(size) : null;
+  }
+
   @Override
   public void setServerBase(URI serverBase) {
     this.serverBase = serverBase;
@@ -73,6 +171,43 @@ public abstract class ApiBase implements Api {
     return conn;
   }
 
+  protected int getCompressionThreshold() {
+    return compressionThreshold;
+  }
+
+  /**
+   * Returns the executor used by {@code executeAsync()}, creating the default executor if
+   * necessary.
+   * 
+   * @throws IllegalStateException if the ApiBase has been closed
+   */
+  protected synchronized ExecutorService getExecutor() {
+    if (closed) {
+      throw new IllegalStateException("The " + getClass().getSimpleName() + " has been closed");
+    }
+    if (executor == null) {
+      final String prefix = getClass().getSimpleName() + "-";
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(DEFAULT_ASYNC_THREADS,
+          DEFAULT_ASYNC_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+          new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+              Thread t = new Thread(r, prefix + count.incrementAndGet());
+              // Don't prevent the JVM from exiting if the ApiBase is abandoned
+              t.setDaemon(true);
+              return t;
+            }
+          });
+      // Threads are only started as requests are made, and exit once the ApiBase is idle
+      pool.allowCoreThreadTimeOut(true);
+      executor = pool;
+      ownsExecutor = true;
+    }
+    return executor;
+  }
+
   protected FlatPack getFlatPack() {
     return flatpack;
   }
@@ -84,4 +219,12 @@ public abstract class ApiBase implements Api {
   protected Logger getLogger() {
     return logger;
   }
+
+  protected boolean isColumnarData() {
+    return columnarData;
+  }
+
+  ResponseCache getResponseCache() {
+    return responseCache;
+  }
 }
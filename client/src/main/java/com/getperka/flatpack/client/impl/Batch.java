@@ -0,0 +1,289 @@
+/*
+ * #%L
+ * FlatPack Client
+ * %%
+ * Copyright (C) 2012 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.client.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import com.getperka.flatpack.FlatPackEntity;
+import com.getperka.flatpack.client.FlatPackRequest;
+import com.getperka.flatpack.client.StatusCodeException;
+import com.getperka.flatpack.util.ContentEncoding;
+import com.getperka.flatpack.util.FlatPackCollections;
+import com.getperka.flatpack.util.FlatPackTypes;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Sends several {@link FlatPackRequest FlatPackRequests} to the server in a single HTTP round
+ * trip. The server executes the requests in order and returns all of their payloads with a single
+ * {@code data} section, so an entity referenced by several responses is only transferred once.
+ * Batches are always sent using the JSON wire format and do not use the response cache.
+ * 
+ * <pre>
+ * Batch batch = api.newBatch();
+ * Future&lt;FlatPackEntity&lt;Foo&gt;&gt; foo = batch.add(api.fooGet(uuid));
+ * Future&lt;FlatPackEntity&lt;Bar&gt;&gt; bar = batch.add(api.barGet(uuid));
+ * batch.execute();
+ * foo.get().getValue();
+ * </pre>
+ * 
+ * The server must have a {@code FlatPackBatchResource} installed.
+ */
+public class Batch {
+  /**
+   * A request in the batch, which will be unpacked once the batch response has been received.
+   */
+  private static class Call<X> implements Callable<FlatPackEntity<X>> {
+    private IOException failure;
+    private JsonElement payload;
+    private final FlatPackRequestBase<?, X> request;
+    private int status;
+    private final FutureTask<FlatPackEntity<X>> task = new FutureTask<FlatPackEntity<X>>(this);
+
+    Call(FlatPackRequestBase<?, X> request) {
+      this.request = request;
+    }
+
+    @Override
+    public FlatPackEntity<X> call() throws IOException {
+      if (failure != null) {
+        throw failure;
+      }
+      return request.unpack(status, payload);
+    }
+
+    void complete(int status, JsonElement payload) {
+      this.status = status;
+      this.payload = payload;
+      task.run();
+    }
+
+    JsonObject describe() throws IOException {
+      URI uri = request.getUri();
+      String path = uri.getRawPath();
+      if (uri.getRawQuery() != null) {
+        path += "?" + uri.getRawQuery();
+      }
+
+      JsonObject toReturn = new JsonObject();
+      toReturn.addProperty("method", request.getMethod());
+      toReturn.addProperty("path", path);
+      if (!request.getHeaders().isEmpty()) {
+        JsonObject headers = new JsonObject();
+        for (Map.Entry<String, Object> entry : request.getHeaders().entrySet()) {
+          headers.addProperty(entry.getKey(), entry.getValue().toString());
+        }
+        toReturn.add("headers", headers);
+      }
+      String body = request.packEntity();
+      if (body != null) {
+        toReturn.addProperty("body", body);
+      }
+      return toReturn;
+    }
+
+    void fail(IOException failure) {
+      this.failure = failure;
+      task.run();
+    }
+  }
+
+  private final ApiBase api;
+  private final List<Call<?>> calls = FlatPackCollections.listForAny();
+  private boolean executed;
+  private final String path;
+
+  Batch(ApiBase api, String path) {
+    this.api = api;
+    this.path = path;
+  }
+
+  /**
+   * Adds a request to the batch. The returned Future will be completed once the batch has been
+   * executed. If the server responds to the request with a non-2XX status code, the Future will
+   * report a {@link StatusCodeException}.
+   * 
+   * @throws IllegalArgumentException if the request was not created by the batch's ApiBase
+   * @throws IllegalStateException if the batch has already been executed
+   */
+  public synchronized <X> Future<FlatPackEntity<X>> add(FlatPackRequest<?, X> request) {
+    if (executed) {
+      throw new IllegalStateException("The batch has already been executed");
+    }
+    if (!(request instanceof FlatPackRequestBase)
+      || ((FlatPackRequestBase<?, X>) request).getApi() != api) {
+      throw new IllegalArgumentException("The request was not created by this Api");
+    }
+    Call<X> call = new Call<X>((FlatPackRequestBase<?, X>) request);
+    calls.add(call);
+    return call.task;
+  }
+
+  /**
+   * Sends all requests in the batch to the server and unpacks the responses.
+   * 
+   * @throws IOException if the batch could not be sent or its response could not be read, in which
+   *           case the exception will also be reported by each request's Future that has not
+   *           already been completed
+   */
+  public synchronized void execute() throws IOException {
+    if (executed) {
+      throw new IllegalStateException("The batch has already been executed");
+    }
+    executed = true;
+    if (calls.isEmpty()) {
+      return;
+    }
+
+    try {
+      JsonArray requests = new JsonArray();
+      for (Call<?> call : calls) {
+        requests.add(call.describe());
+      }
+      JsonObject batch = new JsonObject();
+      batch.add("requests", requests);
+      JsonObject response = send(batch);
+
+      JsonElement data = response.get("data");
+      JsonElement responses = response.get("responses");
+      if (responses == null || !responses.isJsonArray()) {
+        throw new IOException("The batch response did not contain a responses array");
+      }
+      JsonArray array = responses.getAsJsonArray();
+      for (int i = 0, j = calls.size(); i < j; i++) {
+        JsonObject result = i < array.size() ? array.get(i).getAsJsonObject() : null;
+        if (result == null) {
+          calls.get(i).complete(0, null);
+        } else {
+          calls.get(i).complete(result.get("status").getAsInt(), toPayload(result, data));
+        }
+      }
+    } catch (IOException e) {
+      failRemaining(e);
+      throw e;
+    } catch (RuntimeException e) {
+      IOException ex = new IOException("Could not process the batch response", e);
+      failRemaining(ex);
+      throw ex;
+    }
+  }
+
+  /**
+   * Executes the batch on the {@link ApiBase#setExecutor(java.util.concurrent.ExecutorService)
+   * Api's executor}.
+   */
+  public Future<Void> executeAsync() {
+    return api.getExecutor().submit(new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        execute();
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Returns the number of requests in the batch.
+   */
+  public synchronized int size() {
+    return calls.size();
+  }
+
+  /**
+   * Reports a failure to every call that has not already been completed.
+   */
+  private void failRemaining(IOException failure) {
+    for (Call<?> call : calls) {
+      if (!call.task.isDone()) {
+        call.fail(failure);
+      }
+    }
+  }
+
+  private JsonObject send(JsonObject batch) throws IOException {
+    URI sendTo = api.getServerBase().resolve(path);
+    HttpURLConnection conn = (HttpURLConnection) sendTo.toURL().openConnection();
+    conn.setDoOutput(true);
+    conn.setRequestMethod("POST");
+    conn.setRequestProperty("Accept", "application/json");
+    conn.setRequestProperty("Accept-Encoding", ContentEncoding.ACCEPT_ENCODING);
+    conn.setRequestProperty("Content-Type", "application/json; charset=UTF8");
+    conn = api.filter(conn);
+
+    Writer out = api.getIoObserver().observe(
+        new OutputStreamWriter(conn.getOutputStream(), FlatPackTypes.UTF8));
+    new Gson().toJson(batch, out);
+    out.close();
+
+    int status = conn.getResponseCode();
+    if (status != HttpURLConnection.HTTP_OK) {
+      throw new StatusCodeException(status, null);
+    }
+    InputStream in = conn.getInputStream();
+    ContentEncoding encoding = ContentEncoding.forHeader(conn.getContentEncoding());
+    if (encoding != null) {
+      in = encoding.decode(in);
+    }
+    Reader reader = api.getIoObserver().observe(new InputStreamReader(in, FlatPackTypes.UTF8));
+    try {
+      return new JsonParser().parse(reader).getAsJsonObject();
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Reassembles the FlatPack payload of a single response, or returns {@code null} if the response
+   * was not packed.
+   */
+  private JsonElement toPayload(JsonObject result, JsonElement data) {
+    if (result.has("body") || result.has("contentType")) {
+      return null;
+    }
+    JsonObject toReturn = new JsonObject();
+    for (Map.Entry<String, JsonElement> entry : result.entrySet()) {
+      if (!"status".equals(entry.getKey())) {
+        toReturn.add(entry.getKey(), entry.getValue());
+      }
+    }
+    if (toReturn.entrySet().isEmpty()) {
+      return null;
+    }
+    if (!toReturn.has("data") && data != null) {
+      toReturn.add("data", data);
+    }
+    return toReturn;
+  }
+}
@@ -19,11 +19,15 @@
  */
 package com.getperka.flatpack.client.impl;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
@@ -32,14 +36,28 @@ import org.slf4j.Logger;
 
 import com.getperka.flatpack.FlatPackEntity;
 import com.getperka.flatpack.TraversalMode;
+import com.getperka.flatpack.WireFormat;
 import com.getperka.flatpack.client.FlatPackRequest;
 import com.getperka.flatpack.client.StatusCodeException;
+import com.getperka.flatpack.util.ContentEncoding;
 import com.getperka.flatpack.util.FlatPackTypes;
 import com.getperka.flatpack.util.IoObserver;
+import com.getperka.flatpack.util.ThresholdEncodingOutputStream;
+import com.google.gson.JsonElement;
 
 public class FlatPackRequestBase<R extends FlatPackRequest<R, X>, X>
     extends RequestBase<R, FlatPackEntity<X>> implements FlatPackRequest<R, X> {
+  private boolean cacheable;
+  /**
+   * The {@link ResponseCache#key key} of the response, computed once the request headers are set.
+   */
+  private String cacheKey;
   private final Logger logger;
+  /**
+   * The cached response whose validators were sent, which is retained in case it is evicted from
+   * the cache before a {@code 304 Not Modified} response arrives.
+   */
+  private ResponseCache.CachedResponse validated;
   private final Type returnType;
   private FlatPackEntity<X> toSend;
   private final IoObserver ioObserver;
@@ -70,24 +88,58 @@ public class FlatPackRequestBase<R extends FlatPackRequest<R, X>, X>
     toSend.withTraversalMode(TraversalMode.DEEP);
   }
 
+  /**
+   * Unpacks the response. If the {@link ApiBase#setResponseCacheSize(int) response cache} is
+   * enabled, the payloads of {@code GET} responses with validators are retained and a
+   * {@code 304 Not Modified} response is unpacked from the retained payload.
+   */
   @Override
   protected FlatPackEntity<X> execute(HttpURLConnection conn) throws IOException {
-    Reader reader;
     int status = conn.getResponseCode();
-    if (!isOk(status)) {
-      InputStream errorStream = conn.getErrorStream();
-      reader = errorStream == null ? null : new InputStreamReader(errorStream, FlatPackTypes.UTF8);
-    } else {
-      reader = new InputStreamReader(conn.getInputStream(), FlatPackTypes.UTF8);
+    ResponseCache cache = cacheable ? getApi().getResponseCache() : null;
+    ResponseCache.CachedResponse cached = null;
+    if (cache != null && status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+      cached = validated;
     }
 
-    reader = ioObserver.observe(reader);
+    InputStream in;
+    String contentType;
+    if (cached == null) {
+      in = isOk(status) ? conn.getInputStream() : conn.getErrorStream();
+      contentType = conn.getContentType();
+    } else {
+      in = new ByteArrayInputStream(cached.getPayload());
+      contentType = cached.getContentType();
+      status = HttpURLConnection.HTTP_OK;
+    }
+    boolean binary = WireFormat.BINARY.equals(WireFormat.forMediaType(contentType));
 
     Throwable cause = null;
     FlatPackEntity<X> entity = null;
-    if (reader != null) {
+    if (in != null) {
       try {
-        entity = getApi().getFlatPack().getUnpacker().unpack(returnType, reader, null);
+        ContentEncoding encoding = cached == null ? ContentEncoding.forHeader(conn
+            .getContentEncoding()) : null;
+        if (encoding != null) {
+          in = encoding.decode(in);
+        }
+        if (cache != null && cached == null && status == HttpURLConnection.HTTP_OK) {
+          String etag = conn.getHeaderField("ETag");
+          if (etag == null) {
+            cache.remove(cacheKey);
+          } else {
+            byte[] payload = readFully(in);
+            cache.put(cacheKey, new ResponseCache.CachedResponse(contentType, etag, payload));
+            in = new ByteArrayInputStream(payload);
+          }
+        }
+        if (binary) {
+          entity = getApi().getFlatPack().getUnpacker().unpack(returnType, in,
+              WireFormat.BINARY, null);
+        } else {
+          Reader reader = ioObserver.observe(new InputStreamReader(in, FlatPackTypes.UTF8));
+          entity = getApi().getFlatPack().getUnpacker().unpack(returnType, reader, null);
+        }
       } catch (IOException e) {
         cause = e;
         status = 0;
@@ -97,25 +149,132 @@ public class FlatPackRequestBase<R extends FlatPackRequest<R, X>, X>
       }
     }
 
-    // Treat any non-2XX response as an error
-    if (!isOk(status)) {
-      StatusCodeException sce = new StatusCodeException(status, cause);
-      sce.setEntity(entity);
-      throw sce;
-    }
-
-    return entity;
+    return checkStatus(status, entity, cause);
   }
 
+  /**
+   * Sends the entity using the {@link WireFormat} configured for the FlatPack instance. If the
+   * binary format is configured, it will also be requested for the response, allowing the server to
+   * fall back to JSON. Compressed responses are always accepted, and the entity will be compressed
+   * if it exceeds {@link ApiBase#setCompressionThreshold(int) the threshold}. Columnar data is
+   * requested if {@link ApiBase#setColumnarData(boolean)} has been enabled. The entity tag of a
+   * cached response is sent with a repeated {@code GET} request.
+   */
   @Override
   protected void writeEntity(HttpURLConnection connection) throws IOException {
+    // Only GET requests that the caller has not made conditional are cached
+    ResponseCache cache = getApi().getResponseCache();
+    cacheable = cache != null && "GET".equals(connection.getRequestMethod())
+      && connection.getRequestProperty("If-None-Match") == null
+      && connection.getRequestProperty("If-Modified-Since") == null;
+    if (connection.getRequestProperty("Accept-Encoding") == null) {
+      connection.setRequestProperty("Accept-Encoding", ContentEncoding.ACCEPT_ENCODING);
+    }
+    if (getApi().isColumnarData()) {
+      connection.setRequestProperty(FlatPackEntity.LAYOUT_HEADER, FlatPackEntity.COLUMNAR_LAYOUT);
+    }
+    WireFormat format = getApi().getFlatPack().getWireFormat();
+    if (WireFormat.BINARY.equals(format) && connection.getRequestProperty("Accept") == null) {
+      connection.setRequestProperty("Accept", WireFormat.BINARY_MEDIA_TYPE + ", "
+        + WireFormat.JSON_MEDIA_TYPE + ";q=0.5");
+    }
+    // The key depends on the Accept and layout headers set above
+    cacheKey = cacheable ? ResponseCache.key(connection) : null;
+    validated = cacheable ? cache.get(cacheKey) : null;
+    if (validated != null) {
+      connection.setRequestProperty("If-None-Match", validated.getEtag());
+    }
     if (getEntity() == null) {
       return;
     }
+    if (WireFormat.BINARY.equals(format)) {
+      connection.setRequestProperty("Content-Type", WireFormat.BINARY_MEDIA_TYPE);
+      OutputStream out = openOutputStream(connection);
+      // The stream will be closed by the Packer
+      getApi().getFlatPack().getPacker().pack(toSend, out, format);
+      return;
+    }
     connection.setRequestProperty("Content-Type", "application/json; charset=UTF8");
-    Writer out = new OutputStreamWriter(connection.getOutputStream(), FlatPackTypes.UTF8);
+    Writer out = new OutputStreamWriter(openOutputStream(connection), FlatPackTypes.UTF8);
     out = ioObserver.observe(out);
     getApi().getFlatPack().getPacker().pack(toSend, out);
     out.close();
   }
-}
\ No newline at end of file
+
+  /**
+   * Returns the JSON payload of the request, or {@code null} if the request has no entity. Used to
+   * describe the request to the server when it is part of a {@link Batch}.
+   */
+  String packEntity() throws IOException {
+    if (getEntity() == null) {
+      return null;
+    }
+    StringWriter out = new StringWriter();
+    getApi().getFlatPack().getPacker().pack(toSend, ioObserver.observe(out));
+    return out.toString();
+  }
+
+  /**
+   * Unpacks the response to the request when it was sent as part of a {@link Batch}.
+   */
+  FlatPackEntity<X> unpack(int status, JsonElement payload) throws IOException {
+    Throwable cause = null;
+    FlatPackEntity<X> entity = null;
+    if (payload != null) {
+      try {
+        entity = getApi().getFlatPack().getUnpacker().unpack(returnType, payload, null);
+      } catch (IOException e) {
+        cause = e;
+        status = 0;
+      } catch (RuntimeException e) {
+        cause = e;
+        status = 0;
+      }
+    }
+    return checkStatus(status, entity, cause);
+  }
+
+  /**
+   * Treat any non-2XX response as an error.
+   */
+  private FlatPackEntity<X> checkStatus(int status, FlatPackEntity<X> entity, Throwable cause)
+      throws StatusCodeException {
+    if (!isOk(status)) {
+      StatusCodeException sce = new StatusCodeException(status, cause);
+      sce.setEntity(entity);
+      throw sce;
+    }
+    return entity;
+  }
+
+  /**
+   * Returns the stream for the request body, which will compress the payload if it is larger than
+   * the threshold configured in the ApiBase.
+   */
+  private OutputStream openOutputStream(final HttpURLConnection connection) throws IOException {
+    int threshold = getApi().getCompressionThreshold();
+    if (threshold < 0) {
+      return connection.getOutputStream();
+    }
+    return new ThresholdEncodingOutputStream(ContentEncoding.GZIP, threshold,
+        new ThresholdEncodingOutputStream.Target() {
+          @Override
+          public OutputStream open(ContentEncoding encoding) throws IOException {
+            if (encoding != null) {
+              connection.setRequestProperty("Content-Encoding", encoding.getToken());
+            }
+            return connection.getOutputStream();
+          }
+        });
+  }
+
+  private static byte[] readFully(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+      out.write(buffer, 0, read);
+    }
+    in.close();
+    return out.toByteArray();
+  }
+}
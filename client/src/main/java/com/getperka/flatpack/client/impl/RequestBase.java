@@ -25,6 +25,8 @@ import java.net.URI;
 import java.net.URLEncoder;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -52,33 +54,7 @@ abstract class RequestBase<R extends Request<R, X>, X> implements Request<R, X>
 
   @Override
   public X execute() throws IOException {
-    String replacedPath = path;
-
-    // Replace all {foo} in the path with the args
-    Matcher m = pathArgPattern.matcher(replacedPath);
-    int index = 0;
-    while (m.find() && index < args.length) {
-      replacedPath = m.replaceFirst(args[index++].toString());
-      m = pathArgPattern.matcher(replacedPath);
-    }
-
-    StringBuilder sb = new StringBuilder(replacedPath);
-    // Now add query parameters
-    if (!queryParams.isEmpty()) {
-      sb.append("?");
-      boolean needsAmp = false;
-      for (Map.Entry<String, Object> entry : queryParams.entrySet()) {
-        if (needsAmp) {
-          sb.append("&");
-        } else {
-          needsAmp = true;
-        }
-        sb.append(entry.getKey()).append("=")
-            .append(URLEncoder.encode(entry.getValue().toString(), "UTF8"));
-      }
-    }
-
-    URI sendTo = api.getServerBase().resolve(sb.toString());
+    URI sendTo = getUri();
 
     HttpURLConnection conn = (HttpURLConnection) sendTo.toURL().openConnection();
     conn.setDoOutput(hasPayload);
@@ -91,6 +67,27 @@ abstract class RequestBase<R extends Request<R, X>, X> implements Request<R, X>
     return execute(conn);
   }
 
+  /**
+   * A convenience that calls {@link #execute()} on the {@link ApiBase#getExecutor() Api's
+   * executor}, returning immediately. Any exception thrown by {@link #execute()} will be reported as
+   * the cause of an {@link java.util.concurrent.ExecutionException ExecutionException} when the
+   * result is retrieved.
+   * <p>
+   * The request itself still uses blocking I/O, so each request occupies one of the executor's
+   * threads while it is sent and its response is unpacked. The number of requests in flight at once
+   * is therefore capped by the size of the executor, and further requests wait in its queue. The
+   * default executor allows {@value ApiBase#DEFAULT_ASYNC_THREADS} requests in flight; a different
+   * bound may be chosen with {@link ApiBase#setExecutor ApiBase.setExecutor()}.
+   */
+  public Future<X> executeAsync() {
+    return api.getExecutor().submit(new Callable<X>() {
+      @Override
+      public X call() throws IOException {
+        return execute();
+      }
+    });
+  }
+
   public Object getEntity() {
     return entity;
   }
@@ -128,6 +125,50 @@ abstract class RequestBase<R extends Request<R, X>, X> implements Request<R, X>
     return api;
   }
 
+  /**
+   * Returns the custom headers that have been added to the request.
+   */
+  protected Map<String, Object> getHeaders() {
+    return headers;
+  }
+
+  protected String getMethod() {
+    return method;
+  }
+
+  /**
+   * Returns the URI of the request, with its path arguments and query parameters.
+   */
+  protected URI getUri() throws IOException {
+    String replacedPath = path;
+
+    // Replace all {foo} in the path with the args
+    Matcher m = pathArgPattern.matcher(replacedPath);
+    int index = 0;
+    while (m.find() && index < args.length) {
+      replacedPath = m.replaceFirst(args[index++].toString());
+      m = pathArgPattern.matcher(replacedPath);
+    }
+
+    StringBuilder sb = new StringBuilder(replacedPath);
+    // Now add query parameters
+    if (!queryParams.isEmpty()) {
+      sb.append("?");
+      boolean needsAmp = false;
+      for (Map.Entry<String, Object> entry : queryParams.entrySet()) {
+        if (needsAmp) {
+          sb.append("&");
+        } else {
+          needsAmp = true;
+        }
+        sb.append(entry.getKey()).append("=")
+            .append(URLEncoder.encode(entry.getValue().toString(), "UTF8"));
+      }
+    }
+
+    return api.getServerBase().resolve(sb.toString());
+  }
+
   /**
    * Returns {@code true} for a 2XX series response code.
    */
@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * FlatPack Client
+ * %%
+ * Copyright (C) 2012 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.client.impl;
+
+import java.net.HttpURLConnection;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.getperka.flatpack.FlatPackEntity;
+
+/**
+ * Retains the payloads of {@code GET} responses that carried an {@code ETag}, so that the request
+ * may be repeated conditionally and the payload reused if the server responds with
+ * {@code 304 Not Modified}. The least-recently-used entry is evicted once the cache is full.
+ * <p>
+ * Entries are keyed by the URL and the request headers that select a variant of the response. The
+ * JDK's connections won't reveal an {@code Authorization} header, and credentials supplied by an
+ * {@link java.net.Authenticator} are never visible, so the key can't be relied upon to separate
+ * principals. For that reason only the entity tag is used as a validator: the server derives it
+ * from the payload, so a match means that the retained payload is the one the caller would have
+ * received. A {@code Last-Modified} date carries no such guarantee and is ignored.
+ */
+class ResponseCache {
+  static class CachedResponse {
+    private final String contentType;
+    private final String etag;
+    private final byte[] payload;
+
+    CachedResponse(String contentType, String etag, byte[] payload) {
+      this.contentType = contentType;
+      this.etag = etag;
+      this.payload = payload;
+    }
+
+    public String getContentType() {
+      return contentType;
+    }
+
+    public String getEtag() {
+      return etag;
+    }
+
+    /**
+     * Returns the payload, after any content coding has been removed.
+     */
+    public byte[] getPayload() {
+      return payload;
+    }
+  }
+
+  /**
+   * The request headers that select the variant of a response.
+   */
+  private static final List<String> VARIANT_HEADERS = Arrays.asList("Accept", "Authorization",
+      "Cookie", FlatPackEntity.LAYOUT_HEADER);
+
+  /**
+   * Returns the key under which the response to {@code conn} is cached, which consists of the URL
+   * and the value of each variant-selecting header that the connection reveals.
+   */
+  static String key(HttpURLConnection conn) {
+    StringBuilder sb = new StringBuilder(conn.getURL().toString());
+    for (String header : VARIANT_HEADERS) {
+      String value = conn.getRequestProperty(header);
+      if (value != null) {
+        sb.append('\n').append(header).append(": ").append(value);
+      }
+    }
+    return sb.toString();
+  }
+
+  private final Map<String, CachedResponse> entries;
+
+  ResponseCache(final int maxEntries) {
+    entries = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  public synchronized CachedResponse get(String key) {
+    return entries.get(key);
+  }
+
+  public synchronized void put(String key, CachedResponse response) {
+    entries.put(key, response);
+  }
+
+  public synchronized void remove(String key) {
+    entries.remove(key);
+  }
+}
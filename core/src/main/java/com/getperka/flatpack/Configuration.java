@@ -25,7 +25,9 @@ import java.util.Set;
 
 import com.getperka.flatpack.ext.CodexMapper;
 import com.getperka.flatpack.ext.EntityResolver;
+import com.getperka.flatpack.ext.PropertyAccessorFactory;
 import com.getperka.flatpack.security.PrincipalMapper;
+import com.getperka.flatpack.security.SecurityDecisionCache;
 import com.getperka.flatpack.security.SecurityPolicy;
 import com.getperka.flatpack.util.FlatPackCollections;
 
@@ -35,14 +37,23 @@ import com.getperka.flatpack.util.FlatPackCollections;
 public class Configuration {
   private final Set<Class<?>> allTypes = FlatPackCollections.setForIteration();
   private List<CodexMapper> extraMappers = FlatPackCollections.listForAny();
+  private FragmentCache fragmentCache;
   private boolean ignoreUnresolvableTypes = false;
+  private boolean parallelPack;
+  private boolean parallelUnpack;
   private boolean prettyPrint;
   private List<PersistenceMapper> persistenceMappers;
   private PrincipalMapper principalMapper;
+  private PropertyAccessorFactory propertyAccessorFactory;
   private List<EntityResolver> resolvers = FlatPackCollections.listForAny();
+  private SecurityDecisionCache securityDecisionCache;
   private SecurityPolicy securityPolicy;
+  private boolean singlePassPack;
+  private boolean streamingUnpack;
+  private boolean uuidTable;
   private boolean verbose;
   private int verboseLogChunkSize = Integer.MAX_VALUE;
+  private WireFormat wireFormat = WireFormat.JSON;
 
   /**
    * Add an additional CodexMapper which will be queried before any previously-added mappers.
@@ -97,6 +108,14 @@ public class Configuration {
     return Collections.unmodifiableList(extraMappers);
   }
 
+  /**
+   * Returns the cache of entity fragments that is shared between requests, or {@code null} if
+   * every entity is written from scratch.
+   */
+  public FragmentCache getFragmentCache() {
+    return fragmentCache;
+  }
+
   /**
    * Returns an immutable view of the {@link PersistenceMapper} instances that were passed to
    * {@link #addPersistenceMapper(PersistenceMapper)}.
@@ -110,6 +129,22 @@ public class Configuration {
     return principalMapper;
   }
 
+  /**
+   * Returns the strategy used to read and write entity properties, or {@code null} to use the
+   * default.
+   */
+  public PropertyAccessorFactory getPropertyAccessorFactory() {
+    return propertyAccessorFactory;
+  }
+
+  /**
+   * Returns the cache of security decisions that is shared between requests, or {@code null} if
+   * decisions are only memoized for the duration of a single pack or unpack operation.
+   */
+  public SecurityDecisionCache getSecurityDecisionCache() {
+    return securityDecisionCache;
+  }
+
   public SecurityPolicy getSecurityPolicy() {
     return securityPolicy;
   }
@@ -123,6 +158,14 @@ public class Configuration {
     return verboseLogChunkSize;
   }
 
+  /**
+   * Returns the encoding used by the stream-based {@link Packer} and {@link Unpacker} methods when
+   * no format is specified. Defaults to {@link WireFormat#JSON}.
+   */
+  public WireFormat getWireFormat() {
+    return wireFormat;
+  }
+
   /**
    * By default, Unpacker will refuse to process payloads that contain unresolvable types. This
    * behavior is typically desired for server operation, where an unresolvable type would typically
@@ -133,6 +176,27 @@ public class Configuration {
     return ignoreUnresolvableTypes;
   }
 
+  /**
+   * If {@code true}, Packer will write the entities in large {@code data} sections using a
+   * fork-join pool. The serialized output is identical to that of a sequential pack. Any
+   * {@link PrincipalMapper} or {@link SecurityPolicy} in use must then be safe for concurrent use.
+   * This setting has no effect if {@link #isSinglePassPack()} is enabled. The pool is created on
+   * first use and is shared with {@link #isParallelUnpack() parallel unpacking}.
+   */
+  public boolean isParallelPack() {
+    return parallelPack;
+  }
+
+  /**
+   * If {@code true}, Unpacker will apply the properties of large {@code data} sections using a
+   * fork-join pool, which is created by the first parallel pack or unpack operation of a FlatPack
+   * instance. Any {@link EntityResolver}, {@link PrincipalMapper}, or {@link SecurityPolicy} in use
+   * must then be safe for concurrent use.
+   */
+  public boolean isParallelUnpack() {
+    return parallelUnpack;
+  }
+
   /**
    * If {@code true}, payloads will be formatted to be human-readable.
    */
@@ -147,15 +211,64 @@ public class Configuration {
     return verbose;
   }
 
+  /**
+   * If {@code true}, Packer will discover and write entities in a single traversal of the object
+   * graph, instead of scanning the graph before writing it. Entities are buffered by type until the
+   * traversal is complete, so the order of entities within the {@code data} section may differ.
+   */
+  public boolean isSinglePassPack() {
+    return singlePassPack;
+  }
+
+  /**
+   * If {@code true}, Unpacker will populate each entity as soon as it has been read from the
+   * {@code data} section, instead of retaining the entire section in memory. Only those entities
+   * that refer to an entity that has not yet been read are retained until the end of the payload.
+   */
+  public boolean isStreamingUnpack() {
+    return streamingUnpack;
+  }
+
+  /**
+   * If {@code true}, Packer will list the UUIDs of the entities in the {@code data} section once,
+   * in a top-level {@code uuids} array, and will refer to those entities by their index in the
+   * array. Unpacker always accepts such payloads, so this should only be enabled when every
+   * consumer of the payloads is known to support the table. The table is not written by
+   * single-pass packing, and payloads that use it cannot be combined with
+   * {@code FlatPackEntityMerge}.
+   */
+  public boolean isUuidTable() {
+    return uuidTable;
+  }
+
   public void setVerbose(boolean verbose) {
     this.verbose = verbose;
   }
 
+  /**
+   * Enables the reuse of the JSON written for unchanged entities across requests. The application
+   * should retain a reference to the cache in order to invalidate it and to monitor its hit rate.
+   */
+  public Configuration withFragmentCache(FragmentCache cache) {
+    this.fragmentCache = cache;
+    return this;
+  }
+
   public Configuration withIgnoreUnresolvableTypes(boolean ignore) {
     this.ignoreUnresolvableTypes = ignore;
     return this;
   }
 
+  public Configuration withParallelPack(boolean parallelPack) {
+    this.parallelPack = parallelPack;
+    return this;
+  }
+
+  public Configuration withParallelUnpack(boolean parallelUnpack) {
+    this.parallelUnpack = parallelUnpack;
+    return this;
+  }
+
   public Configuration withPrettyPrint(boolean prettyPrint) {
     this.prettyPrint = prettyPrint;
     return this;
@@ -166,11 +279,43 @@ public class Configuration {
     return this;
   }
 
+  /**
+   * Replaces the default strategy for reading and writing entity properties.
+   */
+  public Configuration withPropertyAccessorFactory(PropertyAccessorFactory factory) {
+    this.propertyAccessorFactory = factory;
+    return this;
+  }
+
+  /**
+   * Enables the reuse of security decisions across requests. The application should retain a
+   * reference to the cache in order to invalidate it when security-relevant state changes.
+   */
+  public Configuration withSecurityDecisionCache(SecurityDecisionCache cache) {
+    this.securityDecisionCache = cache;
+    return this;
+  }
+
   public Configuration withSecurityPolicy(SecurityPolicy securityPolicy) {
     this.securityPolicy = securityPolicy;
     return this;
   }
 
+  public Configuration withSinglePassPack(boolean singlePassPack) {
+    this.singlePassPack = singlePassPack;
+    return this;
+  }
+
+  public Configuration withStreamingUnpack(boolean streamingUnpack) {
+    this.streamingUnpack = streamingUnpack;
+    return this;
+  }
+
+  public Configuration withUuidTable(boolean uuidTable) {
+    this.uuidTable = uuidTable;
+    return this;
+  }
+
   public Configuration withVerbose(boolean verbose) {
     setVerbose(verbose);
     return this;
@@ -180,4 +325,12 @@ public class Configuration {
     this.verboseLogChunkSize = size;
     return this;
   }
+
+  /**
+   * Selects the default encoding for the stream-based {@link Packer} and {@link Unpacker} methods.
+   */
+  public Configuration withWireFormat(WireFormat wireFormat) {
+    this.wireFormat = wireFormat;
+    return this;
+  }
 }
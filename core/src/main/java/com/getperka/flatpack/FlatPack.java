@@ -71,6 +71,13 @@ public abstract class FlatPack {
    */
   public abstract Visitors getVisitors();
 
+  /**
+   * Returns the default encoding used by {@link #getPacker()} and {@link #getUnpacker()}.
+   * 
+   * @see Configuration#withWireFormat(WireFormat)
+   */
+  public abstract WireFormat getWireFormat();
+
   /**
    * Returns {@code true} if the given type is an entity or may contain a reference to an entity.
    */
@@ -45,6 +45,17 @@ import com.google.inject.TypeLiteral;
  * @param <T> the type of value being returned
  */
 public class FlatPackEntity<T> extends TypeReference<T> {
+  /**
+   * The value of {@link #LAYOUT_HEADER} that requests {@link #withColumnarData(boolean) columnar}
+   * data.
+   */
+  public static final String COLUMNAR_LAYOUT = "columnar";
+  /**
+   * A request header that a client may send to select the layout of the {@code data} section of the
+   * response.
+   */
+  public static final String LAYOUT_HEADER = "X-FlatPack-Layout";
+
   /**
    * A convenience method to create a FlatPackEntity for a List of entities.
    * 
@@ -100,8 +111,9 @@ public class FlatPackEntity<T> extends TypeReference<T> {
    * @param key the key entity type
    * @param value the value entity type
    */
-  public static <K extends HasUuid, V extends HasUuid> FlatPackEntity<Map<? extends K, ? extends V>> mapOf(
-      final Class<K> key, final Class<V> value) {
+  public static <K extends HasUuid, V extends HasUuid>
+      FlatPackEntity<Map<? extends K, ? extends V>> mapOf(final Class<K> key,
+          final Class<V> value) {
     return new FlatPackEntity<Map<? extends K, ? extends V>>(new ParameterizedType() {
       @Override
       public Type[] getActualTypeArguments() {
@@ -154,6 +166,7 @@ public class FlatPackEntity<T> extends TypeReference<T> {
     });
   }
 
+  private boolean columnarData;
   private DateTime lastModifiedTime;
   private Map<String, String> extraData;
   private Set<HasUuid> extraEntities;
@@ -188,7 +201,8 @@ public class FlatPackEntity<T> extends TypeReference<T> {
   /**
    * Populate the {@code errors} segment of the payload from {@link ConstraintViolation}.
    */
-  public FlatPackEntity<T> addConstraintViolations(Set<? extends ConstraintViolation<?>> violations) {
+  public FlatPackEntity<T> addConstraintViolations(
+      Set<? extends ConstraintViolation<?>> violations) {
     if (this.violations == null) {
       this.violations = FlatPackCollections.setForIteration();
     }
@@ -298,6 +312,15 @@ public class FlatPackEntity<T> extends TypeReference<T> {
     return traversalMode;
   }
 
+  /**
+   * Returns {@code true} if the entities in the {@code data} section will be written as tables.
+   * 
+   * @see #withColumnarData(boolean)
+   */
+  public boolean isColumnarData() {
+    return columnarData;
+  }
+
   /**
    * Returns the data previous passed to {@link #withValue(Object)}.
    */
@@ -315,6 +338,17 @@ public class FlatPackEntity<T> extends TypeReference<T> {
     extraData.put(key, value);
   }
 
+  /**
+   * Write each type of entity in the {@code data} section as a single list of property names
+   * followed by rows of property values, instead of as an array of objects that each repeat the
+   * property names. Only types with more than one entity are written as tables. The
+   * {@link Unpacker} accepts either layout.
+   */
+  public FlatPackEntity<T> withColumnarData(boolean columnarData) {
+    this.columnarData = columnarData;
+    return this;
+  }
+
   public FlatPackEntity<T> withLastModifiedTime(DateTime lastModified) {
     this.lastModifiedTime = lastModified;
     return this;
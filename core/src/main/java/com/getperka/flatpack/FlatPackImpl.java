@@ -49,6 +49,8 @@ class FlatPackImpl extends FlatPack implements HasInjector {
   private Unpacker unpacker;
   @Inject
   private Visitors visitors;
+  @Inject
+  private WireFormat wireFormat;
 
   FlatPackImpl() {}
 
@@ -82,6 +84,11 @@ class FlatPackImpl extends FlatPack implements HasInjector {
     return visitors;
   }
 
+  @Override
+  public WireFormat getWireFormat() {
+    return wireFormat;
+  }
+
   @Override
   public boolean isRootType(Type clazz) {
     Codex<?> codex = types.getCodex(clazz);
@@ -0,0 +1,274 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.joda.time.DateTime;
+
+import com.getperka.flatpack.security.PrincipalMapper;
+import com.getperka.flatpack.security.SecurityGroup;
+import com.google.gson.JsonElement;
+
+/**
+ * A bounded cache of the JSON objects written for entities in the {@code data} section, which is
+ * shared across all pack operations performed by a FlatPack instance. When an entity's fragment is
+ * found in the cache, its properties are not serialized again, which avoids the codex work and the
+ * write-time property checks. The entity graph is still scanned beforehand to find the entities to
+ * be written, so property getters and the read checks made by the scan still run on a hit.
+ * <p>
+ * Fragments are keyed on the entity's type and uuid, the version returned by
+ * {@link #getVersion(HasUuid)}, the {@link TraversalMode}, and a description of the principal's
+ * security context. Entities without a version are never cached. The security context is the list
+ * of global groups returned by {@link PrincipalMapper#getGlobalSecurityGroups}, which allows
+ * principals with the same groups to share fragments, unless the type or one of its properties may
+ * be granted to an entity-relative {@link SecurityGroup}, in which case fragments are only shared
+ * with the same principal.
+ * <p>
+ * The version of an entity usually does not reflect changes to the objects embedded within it, so
+ * applications should call one of the {@code invalidate} methods when such state changes.
+ * Fragments are not used for {@link PersistenceAware} entities, when
+ * {@link Configuration#withUuidTable(boolean) uuid tables} are enabled, or by the
+ * {@link Configuration#withSinglePassPack(boolean) single-pass} packer. The least-recently-used
+ * fragment is evicted once the maximum size has been exceeded.
+ *
+ * @see Configuration#withFragmentCache(FragmentCache)
+ */
+public class FragmentCache {
+  static class Key {
+    private final int hashCode;
+    private final Object security;
+    private final TraversalMode traversalMode;
+    private final Class<? extends HasUuid> type;
+    private final UUID uuid;
+    private final Object version;
+
+    public Key(HasUuid entity, Object version, Object security, TraversalMode traversalMode) {
+      this.security = security;
+      this.traversalMode = traversalMode;
+      this.type = entity.getClass();
+      this.uuid = entity.getUuid();
+      this.version = version;
+
+      hashCode = uuid.hashCode() * 3 + version.hashCode() * 5
+        + (security == null ? 0 : security.hashCode() * 7) + traversalMode.hashCode() * 11;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+
+      return uuid.equals(other.uuid) && type.equals(other.type) && version.equals(other.version)
+        && traversalMode.equals(other.traversalMode)
+        && (security == null ? other.security == null : security.equals(other.security));
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public String toString() {
+      return type.getName() + " " + uuid + " " + version + " " + traversalMode + " " + security;
+    }
+  }
+
+  /**
+   * Returns a cache that never retains any fragments.
+   */
+  public static FragmentCache disabled() {
+    return new FragmentCache(0);
+  }
+
+  private final AtomicLong evictions = new AtomicLong();
+  private final Map<Key, JsonElement> fragments;
+  private final AtomicLong hits = new AtomicLong();
+  private final int maximumSize;
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * Constructs a new cache.
+   *
+   * @param maximumSize the maximum number of fragments to retain, or {@code 0} to disable caching
+   */
+  public FragmentCache(final int maximumSize) {
+    if (maximumSize < 0) {
+      throw new IllegalArgumentException("maximumSize must be non-negative");
+    }
+    this.maximumSize = maximumSize;
+    fragments = new LinkedHashMap<Key, JsonElement>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, JsonElement> eldest) {
+        if (size() > maximumSize) {
+          evictions.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Returns a previously-written fragment, or {@code null} if the entity must be written. The
+   * returned element must not be modified.
+   */
+  public JsonElement get(HasUuid entity, Object version, Object security,
+      TraversalMode traversalMode) {
+    if (!isEnabled()) {
+      return null;
+    }
+    JsonElement toReturn;
+    synchronized (fragments) {
+      toReturn = fragments.get(new Key(entity, version, security, traversalMode));
+    }
+    if (toReturn == null) {
+      misses.incrementAndGet();
+    } else {
+      hits.incrementAndGet();
+    }
+    return toReturn;
+  }
+
+  /**
+   * Returns the number of fragments that have been discarded to keep the cache within its maximum
+   * size.
+   */
+  public long getEvictionCount() {
+    return evictions.get();
+  }
+
+  /**
+   * Returns the number of calls to {@link #get} that returned a fragment.
+   */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * Returns the fraction of calls to {@link #get} that returned a fragment, or {@code 0} if the
+   * cache has not been used.
+   */
+  public double getHitRate() {
+    long hitCount = getHitCount();
+    long total = hitCount + getMissCount();
+    return total == 0 ? 0 : (double) hitCount / total;
+  }
+
+  public int getMaximumSize() {
+    return maximumSize;
+  }
+
+  /**
+   * Returns the number of calls to {@link #get} that did not return a fragment.
+   */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * Returns the number of fragments currently retained.
+   */
+  public int getSize() {
+    synchronized (fragments) {
+      return fragments.size();
+    }
+  }
+
+  /**
+   * Returns a value that changes whenever the entity's properties change, or {@code null} if the
+   * entity should not be cached. This implementation returns the
+   * {@link HasTimestamps#getUpdatedAt() last-modified time} of entities that have one. Subclasses
+   * may override this method to return a version number maintained by the persistence layer.
+   */
+  public Object getVersion(HasUuid entity) {
+    if (!(entity instanceof HasTimestamps)) {
+      return null;
+    }
+    DateTime updatedAt = ((HasTimestamps) entity).getUpdatedAt();
+    return updatedAt == null ? null : updatedAt.getMillis();
+  }
+
+  /**
+   * Removes all fragments for the given entity.
+   */
+  public void invalidate(HasUuid entity) {
+    UUID uuid = entity.getUuid();
+    synchronized (fragments) {
+      for (Iterator<Key> it = fragments.keySet().iterator(); it.hasNext();) {
+        if (it.next().uuid.equals(uuid)) {
+          it.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes all fragments for entities of the given type or its subtypes.
+   */
+  public void invalidate(Class<? extends HasUuid> entityType) {
+    synchronized (fragments) {
+      for (Iterator<Key> it = fragments.keySet().iterator(); it.hasNext();) {
+        if (entityType.isAssignableFrom(it.next().type)) {
+          it.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes all fragments.
+   */
+  public void invalidateAll() {
+    synchronized (fragments) {
+      fragments.clear();
+    }
+  }
+
+  public boolean isEnabled() {
+    return maximumSize > 0;
+  }
+
+  /**
+   * Records the JSON object written for an entity. The fragment must not be modified afterwards.
+   */
+  public void put(HasUuid entity, Object version, Object security, TraversalMode traversalMode,
+      JsonElement fragment) {
+    if (!isEnabled()) {
+      return;
+    }
+    Key key = new Key(entity, version, security, traversalMode);
+    synchronized (fragments) {
+      fragments.put(key, fragment);
+    }
+  }
+}
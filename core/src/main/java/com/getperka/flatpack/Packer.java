@@ -20,6 +20,8 @@
 package com.getperka.flatpack;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.security.Principal;
 
@@ -33,9 +35,13 @@ import com.getperka.flatpack.ext.TypeContext;
 import com.getperka.flatpack.inject.FlatPackLogger;
 import com.getperka.flatpack.inject.PackScope;
 import com.getperka.flatpack.inject.PrettyPrint;
+import com.getperka.flatpack.inject.SinglePassPack;
+import com.getperka.flatpack.util.BinaryJsonWriter;
+import com.getperka.flatpack.util.FlatPackTypes;
 import com.getperka.flatpack.util.IoObserver;
 import com.getperka.flatpack.visitors.PackScanner;
 import com.getperka.flatpack.visitors.PackWriter;
+import com.getperka.flatpack.visitors.SinglePassPackWriter;
 import com.google.gson.JsonElement;
 import com.google.gson.internal.bind.JsonTreeWriter;
 import com.google.gson.stream.JsonWriter;
@@ -63,8 +69,15 @@ public class Packer {
   @Inject
   private Provider<PackScanner> scanners;
   @Inject
+  @SinglePassPack
+  private boolean singlePassPack;
+  @Inject
+  private Provider<SinglePassPackWriter> singlePassWriters;
+  @Inject
   private Visitors visitorSupport;
   @Inject
+  private WireFormat wireFormat;
+  @Inject
   private Provider<PackWriter> writers;
 
   protected Packer() {}
@@ -166,10 +179,57 @@ public class Packer {
     }
   }
 
+  /**
+   * Write the given entity into an {@link OutputStream} using the configured {@link WireFormat}.
+   * 
+   * @param entity the entity to write
+   * @param out the destination output which will be closed by this method
+   * @see Configuration#withWireFormat(WireFormat)
+   */
+  public void pack(FlatPackEntity<?> entity, OutputStream out) throws IOException {
+    pack(entity, out, wireFormat);
+  }
+
+  /**
+   * Write the given entity into an {@link OutputStream}.
+   * 
+   * @param entity the entity to write
+   * @param out the destination output which will be closed by this method
+   * @param format the encoding to use
+   */
+  public void pack(FlatPackEntity<?> entity, OutputStream out, WireFormat format)
+      throws IOException {
+    if (WireFormat.JSON.equals(format)) {
+      pack(entity, new OutputStreamWriter(out, FlatPackTypes.UTF8));
+      return;
+    }
+
+    JsonWriter json = new BinaryJsonWriter(out);
+    json.setSerializeNulls(false);
+
+    packScope.enter().withEntity(entity).withJsonWriter(json);
+    try {
+      SerializationContext context = contexts.get();
+      doPack(entity, context);
+      context.runPostWork();
+      context.close();
+    } finally {
+      packScope.exit();
+    }
+  }
+
   protected void doPack(FlatPackEntity<?> entity, SerializationContext context) throws IOException {
     try {
-      visitorSupport.visit(scanners.get(), entity);
-      visitorSupport.visit(writers.get(), entity);
+      if (singlePassPack) {
+        SinglePassPackWriter singlePass = singlePassWriters.get();
+        visitorSupport.visit(singlePass, entity);
+        PackWriter writer = writers.get();
+        writer.setRenderedData(singlePass);
+        visitorSupport.visit(writer, entity);
+      } else {
+        visitorSupport.visit(scanners.get(), entity);
+        visitorSupport.visit(writers.get(), entity);
+      }
     } catch (Exception e) {
       context.fail(e);
     }
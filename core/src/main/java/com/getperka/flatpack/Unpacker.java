@@ -20,12 +20,17 @@
 package com.getperka.flatpack;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
 import java.security.Principal;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
@@ -33,22 +38,34 @@ import javax.inject.Provider;
 import org.slf4j.Logger;
 
 import com.getperka.flatpack.codexes.EntityCodex;
+import com.getperka.flatpack.ext.BulkEntityResolver;
 import com.getperka.flatpack.ext.Codex;
 import com.getperka.flatpack.ext.DeserializationContext;
 import com.getperka.flatpack.ext.EntityDescription;
+import com.getperka.flatpack.ext.EntityResolver;
+import com.getperka.flatpack.ext.ForkedDeserializationContext;
 import com.getperka.flatpack.ext.TypeContext;
 import com.getperka.flatpack.inject.FlatPackLogger;
 import com.getperka.flatpack.inject.IgnoreUnresolvableTypes;
 import com.getperka.flatpack.inject.PackScope;
+import com.getperka.flatpack.inject.ParallelUnpack;
+import com.getperka.flatpack.inject.StreamingUnpack;
+import com.getperka.flatpack.security.MemoizingSecurity;
+import com.getperka.flatpack.util.BinaryJsonReader;
 import com.getperka.flatpack.util.FlatPackCollections;
+import com.getperka.flatpack.util.FlatPackTypes;
+import com.getperka.flatpack.util.FlatPackUuids;
 import com.getperka.flatpack.util.IoObserver;
 import com.getperka.flatpack.visitors.PackReader;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
 import com.google.gson.internal.bind.JsonTreeReader;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
+import com.google.inject.Key;
 
 /**
  * Allows {@link FlatPackEntity} instances to be restored from their serialized representations.
@@ -56,9 +73,50 @@ import com.google.gson.stream.JsonToken;
  * @see FlatPack#getUnpacker()
  */
 public class Unpacker {
+  /**
+   * Populates a contiguous partition of the retained {@code data} entries in a scope forked from
+   * the unpacking thread.
+   */
+  @SuppressWarnings("serial")
+  private class ReadEntitiesTask extends RecursiveAction {
+    private final List<Map.Entry<HasUuid, JsonObject>> entries;
+    private final Map<Key<?>, Object> scopeData;
+
+    ReadEntitiesTask(List<Map.Entry<HasUuid, JsonObject>> entries,
+        Map<Key<?>, Object> scopeData) {
+      this.entries = entries;
+      this.scopeData = scopeData;
+    }
+
+    @Override
+    protected void compute() {
+      packScope.enter(scopeData);
+      try {
+        PackReader packReader = packReaders.get();
+        for (Map.Entry<HasUuid, JsonObject> entry : entries) {
+          readEntity(packReader, entry.getKey(), entry.getValue());
+        }
+      } finally {
+        packScope.exit();
+      }
+    }
+  }
+
+  /**
+   * The maximum number of entities to be passed to {@link BulkEntityResolver#resolveAll}.
+   */
+  private static final int BULK_RESOLVE_BATCH_SIZE = 500;
+  /**
+   * The minimum number of entities to be populated by each task when properties are applied in
+   * parallel.
+   */
+  private static final int PARALLEL_UNPACK_MIN_PARTITION = 64;
+
   @Inject
   private Provider<DeserializationContext> contexts;
   @Inject
+  private EntityResolver entityResolver;
+  @Inject
   private Provider<EntityCodex<EntityMetadata>> metaCodex;
   @IgnoreUnresolvableTypes
   @Inject
@@ -73,9 +131,19 @@ public class Unpacker {
   @Inject
   private Provider<PackReader> packReaders;
   @Inject
+  private Provider<ForkJoinPool> pools;
+  @ParallelUnpack
+  @Inject
+  private boolean parallelUnpack;
+  @StreamingUnpack
+  @Inject
+  private boolean streamingUnpack;
+  @Inject
   private TypeContext typeContext;
   @Inject
   private Visitors visitors;
+  @Inject
+  private WireFormat wireFormat;
 
   protected Unpacker() {}
 
@@ -150,6 +218,45 @@ public class Unpacker {
     }
   }
 
+  /**
+   * Reify a {@link FlatPackEntity} from its serialized form, using the configured
+   * {@link WireFormat}.
+   * 
+   * @param <T> the type of data to return
+   * @param returnType a reference to {@code T}
+   * @param in the source of the serialized data
+   * @param principal the identity for which the unpacking is occurring
+   * @return the reified {@link FlatPackEntity}.
+   * @see Configuration#withWireFormat(WireFormat)
+   */
+  public <T> FlatPackEntity<T> unpack(Type returnType, InputStream in, Principal principal)
+      throws IOException {
+    return unpack(returnType, in, wireFormat, principal);
+  }
+
+  /**
+   * Reify a {@link FlatPackEntity} from its serialized form.
+   * 
+   * @param <T> the type of data to return
+   * @param returnType a reference to {@code T}
+   * @param in the source of the serialized data
+   * @param format the encoding of the serialized data
+   * @param principal the identity for which the unpacking is occurring
+   * @return the reified {@link FlatPackEntity}.
+   */
+  public <T> FlatPackEntity<T> unpack(Type returnType, InputStream in, WireFormat format,
+      Principal principal) throws IOException {
+    if (WireFormat.JSON.equals(format)) {
+      return unpack(returnType, new InputStreamReader(in, FlatPackTypes.UTF8), principal);
+    }
+    packScope.enter().withPrincipal(principal);
+    try {
+      return doUnpack(returnType, new BinaryJsonReader(in), principal);
+    } finally {
+      packScope.exit();
+    }
+  }
+
   /**
    * Reify a {@link FlatPackEntity} from its serialized form.
    * 
@@ -199,9 +306,13 @@ public class Unpacker {
     /*
      * Decoding is done as a two-pass operation since the runtime type of an allocated object cannot
      * be swizzled. The per-entity data is held as a semi-reified JsonObject to be passed off to a
-     * Codex.
+     * Codex. In streaming mode, only entities that contain forward references are held.
      */
     Map<HasUuid, JsonObject> entityData = FlatPackCollections.mapForIteration();
+    // Used to populate entities in streaming mode
+    PackReader packReader = packReaders.get();
+    // Entities are allocated in batches if their uuids can be resolved in bulk
+    int batchSize = entityResolver instanceof BulkEntityResolver ? BULK_RESOLVE_BATCH_SIZE : 1;
     // Used to populate the entityData map
     JsonParser jsonParser = new JsonParser();
     /*
@@ -249,18 +360,46 @@ public class Unpacker {
             EntityCodex<?> codex = (EntityCodex<?>) typeContext.getCodex(desc.getEntityType());
 
             // Take the n-many property objects and stash them for later decoding
-            reader.beginArray();
-            while (!JsonToken.END_ARRAY.equals(reader.peek())) {
-              JsonObject chunk = jsonParser.parse(reader).getAsJsonObject();
-              HasUuid entity = codex.allocate(chunk, context);
-              if (entity != null) {
-                toReturn.addExtraEntity(entity);
-                entityData.put(entity, chunk.getAsJsonObject());
+            List<JsonObject> batch = FlatPackCollections.listForAny();
+            if (JsonToken.BEGIN_OBJECT.equals(reader.peek())) {
+              // { "properties" : [ "name", ... ], "rows" : [ [ value, ... ], ... ] }
+              List<String> properties = FlatPackCollections.listForAny();
+              reader.beginObject();
+              while (JsonToken.NAME.equals(reader.peek())) {
+                String key = reader.nextName();
+                if ("properties".equals(key)) {
+                  reader.beginArray();
+                  while (!JsonToken.END_ARRAY.equals(reader.peek())) {
+                    properties.add(reader.nextString());
+                  }
+                  reader.endArray();
+                } else if ("rows".equals(key)) {
+                  reader.beginArray();
+                  while (!JsonToken.END_ARRAY.equals(reader.peek())) {
+                    batch.add(toObject(properties, parse(jsonParser, reader).getAsJsonArray()));
+                    if (batch.size() >= batchSize) {
+                      allocate(codex, batch, context, toReturn, entityData, packReader);
+                    }
+                  }
+                  reader.endArray();
+                } else {
+                  reader.skipValue();
+                }
               }
+              reader.endObject();
+            } else {
+              reader.beginArray();
+              while (!JsonToken.END_ARRAY.equals(reader.peek())) {
+                batch.add(parse(jsonParser, reader).getAsJsonObject());
+                if (batch.size() >= batchSize) {
+                  allocate(codex, batch, context, toReturn, entityData, packReader);
+                }
+              }
+              reader.endArray();
             }
-            reader.endArray();
+            allocate(codex, batch, context, toReturn, entityData, packReader);
           } finally {
-            context.popPath();
+            context.dropPath();
           }
         }
         reader.endObject();
@@ -281,19 +420,27 @@ public class Unpacker {
 
         Codex<EntityMetadata> metaCodex = typeContext.getCodex(EntityMetadata.class);
         while (!JsonToken.END_ARRAY.equals(reader.peek())) {
-          JsonObject metaElement = jsonParser.parse(reader).getAsJsonObject();
-          PackReader packReader = packReaders.get();
+          JsonObject metaElement = parse(jsonParser, reader).getAsJsonObject();
           packReader.setPayload(metaElement);
           EntityMetadata meta = new EntityMetadata();
-          meta.setUuid(UUID.fromString(metaElement.get("uuid").getAsString()));
+          meta.setUuid(context.getUuid(metaElement.get("uuid")));
           meta = visitors.getWalkers().walkSingleton(metaCodex).accept(packReader, meta);
           toReturn.addMetadata(meta);
         }
 
         reader.endArray();
+      } else if ("uuids".equals(name)) {
+        // "uuids" : [ "uuid", "uuid" ], which must precede any references to its contents
+        List<UUID> uuids = FlatPackCollections.listForAny();
+        reader.beginArray();
+        while (!JsonToken.END_ARRAY.equals(reader.peek())) {
+          uuids.add(FlatPackUuids.fromString(reader.nextString()));
+        }
+        reader.endArray();
+        context.setUuidTable(uuids);
       } else if ("value".equals(name)) {
         // Just stash the value element in case it occurs first
-        value = jsonParser.parse(reader);
+        value = parse(jsonParser, reader);
       } else if ("warnings".equals(name)) {
         // "warnings" : { "path" : "problem", "path2" : "problem2" }
         reader.beginObject();
@@ -318,14 +465,7 @@ public class Unpacker {
     reader.endObject();
     reader.close();
 
-    PackReader packReader = packReaders.get();
-    for (Map.Entry<HasUuid, JsonObject> entry : entityData.entrySet()) {
-      HasUuid entity = entry.getKey();
-      EntityCodex<HasUuid> codex = (EntityCodex<HasUuid>) typeContext
-          .getCodex(entity.getClass());
-      packReader.setPayload(entry.getValue());
-      visitors.getWalkers().walkImmutable(codex).accept(packReader, entity);
-    }
+    readEntities(packReader, entityData, context);
 
     @SuppressWarnings("unchecked")
     Codex<T> returnCodex = (Codex<T>) typeContext.getCodex(toReturn.getType());
@@ -350,4 +490,198 @@ public class Unpacker {
 
     return toReturn;
   }
+
+  /**
+   * Allocates the entities described by a batch of {@code data} entries, resolving them in bulk if
+   * possible. In streaming mode, entities that do not refer to unallocated entities are populated
+   * immediately. The batch will be cleared.
+   */
+  private void allocate(EntityCodex<?> codex, List<JsonObject> batch,
+      DeserializationContext context, FlatPackEntity<?> toReturn,
+      Map<HasUuid, JsonObject> entityData, PackReader packReader) {
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    Map<UUID, ? extends HasUuid> resolved = null;
+    if (entityResolver instanceof BulkEntityResolver) {
+      List<UUID> uuids = FlatPackCollections.listForAny();
+      for (JsonObject chunk : batch) {
+        JsonElement uuid = chunk.get("uuid");
+        if (uuid != null) {
+          uuids.add(context.getUuid(uuid));
+        }
+      }
+      try {
+        resolved = ((BulkEntityResolver) entityResolver).resolveAll(codex.getEntityType(), uuids);
+      } catch (Exception e) {
+        context.fail(e);
+      }
+    }
+
+    for (JsonObject chunk : batch) {
+      HasUuid entity = resolved == null ? codex.allocate(chunk, context) :
+          codex.allocate(chunk, context, resolved);
+      if (entity == null) {
+        continue;
+      }
+      toReturn.addExtraEntity(entity);
+      if (streamingUnpack && !hasForwardReference(chunk, context)) {
+        // Every referenced entity has been allocated, so populate it immediately
+        String path = context.popPath();
+        try {
+          readEntity(packReader, entity, chunk);
+        } finally {
+          context.pushPath(path);
+        }
+      } else {
+        entityData.put(entity, chunk);
+      }
+    }
+    batch.clear();
+  }
+
+  /**
+   * Returns {@code true} if the payload contains a string that looks like a UUID for which no
+   * entity has yet been allocated. Object keys are also examined, since maps keyed by entities use
+   * the UUIDs of the keys as property names. This test is conservative, since string-valued
+   * properties that happen to contain a UUID will also be reported. Similarly, if the payload has a
+   * table of UUIDs, any integer that could be an index of an unallocated entity is reported.
+   */
+  private boolean hasForwardReference(JsonElement element, DeserializationContext context) {
+    if (element.isJsonObject()) {
+      for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+        if ("uuid".equals(entry.getKey())) {
+          continue;
+        }
+        if (isForwardReference(entry.getKey(), context)
+          || hasForwardReference(entry.getValue(), context)) {
+          return true;
+        }
+      }
+    } else if (element.isJsonArray()) {
+      for (JsonElement child : (JsonArray) element) {
+        if (hasForwardReference(child, context)) {
+          return true;
+        }
+      }
+    } else if (element.isJsonPrimitive()) {
+      JsonPrimitive primitive = element.getAsJsonPrimitive();
+      if (primitive.isNumber()) {
+        List<UUID> table = context.getUuidTable();
+        if (table.isEmpty()) {
+          return false;
+        }
+        double value = primitive.getAsDouble();
+        int index = (int) value;
+        return index == value && index >= 0 && index < table.size()
+          && context.getEntity(table.get(index)) == null;
+      }
+      return primitive.isString() && isForwardReference(primitive.getAsString(), context);
+    }
+    return false;
+  }
+
+  /**
+   * Returns {@code true} if the string is a UUID for which no entity has yet been allocated.
+   */
+  private boolean isForwardReference(String value, DeserializationContext context) {
+    UUID uuid = FlatPackUuids.parse(value);
+    return uuid != null && context.getEntity(uuid) == null;
+  }
+
+  /**
+   * Reads the next value from the payload. Binary payloads are read directly, which retains the
+   * native representation of numbers.
+   */
+  private JsonElement parse(JsonParser jsonParser, JsonReader reader) throws IOException {
+    if (reader instanceof BinaryJsonReader) {
+      return ((BinaryJsonReader) reader).nextElement();
+    }
+    return jsonParser.parse(reader);
+  }
+
+  /**
+   * Populates the entities retained from the {@code data} section. In parallel mode, the entities
+   * are split into contiguous partitions which are populated by fork-join tasks, each with its own
+   * PackReader and {@link ForkedDeserializationContext}. The forks are joined in partition order,
+   * so post-work and warnings are recorded in the same order as a sequential unpack.
+   */
+  private void readEntities(PackReader packReader, Map<HasUuid, JsonObject> entityData,
+      DeserializationContext context) {
+    if (!parallelUnpack || entityData.size() < 2 * PARALLEL_UNPACK_MIN_PARTITION) {
+      for (Map.Entry<HasUuid, JsonObject> entry : entityData.entrySet()) {
+        readEntity(packReader, entry.getKey(), entry.getValue());
+      }
+      return;
+    }
+
+    ForkJoinPool pool = pools.get();
+    int partitions = Math.min(entityData.size() / PARALLEL_UNPACK_MIN_PARTITION,
+        pool.getParallelism() * 4);
+    List<Map.Entry<HasUuid, JsonObject>> entries = FlatPackCollections
+        .listForAny(entityData.entrySet());
+    Map<Key<?>, Object> snapshot = packScope.snapshot();
+    // Each task will create its own instances of these
+    snapshot.remove(Key.get(MemoizingSecurity.class));
+    snapshot.remove(Key.get(PackReader.class));
+
+    List<ForkedDeserializationContext> forks = FlatPackCollections.listForAny();
+    List<ReadEntitiesTask> tasks = FlatPackCollections.listForAny();
+    for (int i = 0; i < partitions; i++) {
+      int from = (int) ((long) entries.size() * i / partitions);
+      int to = (int) ((long) entries.size() * (i + 1) / partitions);
+
+      ForkedDeserializationContext fork = new ForkedDeserializationContext(context);
+      Map<Key<?>, Object> scopeData = FlatPackCollections.mapForIteration(snapshot);
+      scopeData.put(Key.get(DeserializationContext.class), fork);
+
+      ReadEntitiesTask task = new ReadEntitiesTask(entries.subList(from, to), scopeData);
+      pool.execute(task);
+      forks.add(fork);
+      tasks.add(task);
+    }
+
+    // Wait for every task, even if one fails, so no work continues in the background
+    Throwable failure = null;
+    for (int i = 0, j = tasks.size(); i < j; i++) {
+      ReadEntitiesTask task = tasks.get(i);
+      task.quietlyJoin();
+      if (task.isCompletedAbnormally()) {
+        if (failure == null) {
+          failure = task.getException();
+        }
+      } else {
+        forks.get(i).join();
+      }
+    }
+    if (failure != null) {
+      context.fail(failure);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void readEntity(PackReader packReader, HasUuid entity, JsonObject chunk) {
+    EntityCodex<HasUuid> codex = (EntityCodex<HasUuid>) typeContext.getCodex(entity.getClass());
+    packReader.setPayload(chunk);
+    visitors.getWalkers().walkImmutable(codex).accept(packReader, entity);
+  }
+
+  /**
+   * Converts a row of a columnar {@code data} section back into an entity object. A {@code null}
+   * value indicates that the entity has no such property.
+   */
+  private JsonObject toObject(List<String> properties, JsonArray row) {
+    if (row.size() > properties.size()) {
+      throw new IllegalArgumentException("A row has more values than there are properties");
+    }
+    JsonObject toReturn = new JsonObject();
+    for (int i = 0, j = row.size(); i < j; i++) {
+      JsonElement value = row.get(i);
+      if (!value.isJsonNull()) {
+        toReturn.add(properties.get(i), value);
+      }
+    }
+    return toReturn;
+  }
 }
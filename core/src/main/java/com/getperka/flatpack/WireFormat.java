@@ -0,0 +1,80 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack;
+
+/**
+ * The encodings in which a FlatPack payload may be transmitted. Both formats describe the same
+ * {@code data}, {@code value}, {@code errors}, {@code metadata}, and {@code warnings} sections.
+ * 
+ * @see Configuration#withWireFormat(WireFormat)
+ */
+public enum WireFormat {
+  /**
+   * A compact encoding of the JSON document structure, written by
+   * {@link com.getperka.flatpack.util.BinaryJsonWriter}. UUIDs are stored as 16 bytes, integral
+   * numbers as variable-length integers, and dates as a number of milliseconds since the epoch.
+   * Property names are written once and subsequently referred to by index.
+   */
+  BINARY(WireFormat.BINARY_MEDIA_TYPE),
+  /**
+   * The default, human-readable encoding.
+   */
+  JSON(WireFormat.JSON_MEDIA_TYPE);
+
+  /**
+   * The media type used to identify {@link #BINARY} payloads.
+   */
+  public static final String BINARY_MEDIA_TYPE = "application/x-flatpack";
+  /**
+   * The media type used to identify {@link #JSON} payloads.
+   */
+  public static final String JSON_MEDIA_TYPE = "application/json";
+
+  /**
+   * Returns the WireFormat identified by a {@code Content-Type} or {@code Accept} value, ignoring
+   * any parameters, or {@code null} if the media type is not recognized.
+   */
+  public static WireFormat forMediaType(String mediaType) {
+    if (mediaType == null) {
+      return null;
+    }
+    int idx = mediaType.indexOf(';');
+    String bare = (idx == -1 ? mediaType : mediaType.substring(0, idx)).trim();
+    for (WireFormat format : values()) {
+      if (format.mediaType.equalsIgnoreCase(bare)) {
+        return format;
+      }
+    }
+    return null;
+  }
+
+  private final String mediaType;
+
+  private WireFormat(String mediaType) {
+    this.mediaType = mediaType;
+  }
+
+  /**
+   * Returns the media type used to identify the format.
+   */
+  public String getMediaType() {
+    return mediaType;
+  }
+}
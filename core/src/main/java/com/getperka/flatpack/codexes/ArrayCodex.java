@@ -77,9 +77,9 @@ public class ArrayCodex<T> extends Codex<T[]> {
     @SuppressWarnings("unchecked")
     T[] toReturn = (T[]) Array.newInstance(elementType, array.size());
     for (int i = 0, j = array.size(); i < j; i++) {
-      context.pushPath("[" + i + "]");
+      context.pushPathIndex(i);
       toReturn[i] = valueCodex.read(array.get(i), context);
-      context.popPath();
+      context.dropPath();
     }
     return toReturn;
   }
@@ -90,9 +90,9 @@ public class ArrayCodex<T> extends Codex<T[]> {
     writer.beginArray();
     int count = 0;
     for (T t : object) {
-      context.pushPath("[" + count++ + "]");
+      context.pushPathIndex(count++);
       valueCodex.write(t, context);
-      context.popPath();
+      context.dropPath();
     }
     writer.endArray();
   }
@@ -0,0 +1,157 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.codexes;
+
+import java.util.Arrays;
+
+import com.getperka.flatpack.ext.DeserializationContext;
+import com.getperka.flatpack.ext.JsonKind;
+import com.getperka.flatpack.ext.SerializationContext;
+import com.getperka.flatpack.ext.Type;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+
+/**
+ * Encodes byte arrays as a padded base64 string. A JSON array of numbers, which is how byte arrays
+ * were previously written, will also be accepted.
+ */
+public class ByteArrayCodex extends ValueCodex<byte[]> {
+  private static final char[] ALPHABET =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+  private static final int[] VALUES = new int[128];
+
+  static {
+    Arrays.fill(VALUES, -1);
+    for (int i = 0, j = ALPHABET.length; i < j; i++) {
+      VALUES[ALPHABET[i]] = i;
+    }
+  }
+
+  /**
+   * Decodes a padded base64 string.
+   * 
+   * @throws IllegalArgumentException if {@code encoded} is not valid base64 data
+   */
+  static byte[] decode(String encoded) {
+    int length = encoded.length();
+    if (length % 4 != 0) {
+      throw new IllegalArgumentException("Base64 data must be padded to a multiple of 4");
+    }
+    int padding = 0;
+    if (length > 0 && encoded.charAt(length - 1) == '=') {
+      padding = encoded.charAt(length - 2) == '=' ? 2 : 1;
+    }
+    byte[] toReturn = new byte[length / 4 * 3 - padding];
+    int out = 0;
+    for (int i = 0; i < length; i += 4) {
+      int bits = value(encoded, i) << 18 | value(encoded, i + 1) << 12;
+      boolean last = i + 4 == length;
+      if (last && padding == 2) {
+        toReturn[out] = (byte) (bits >> 16);
+        break;
+      }
+      bits |= value(encoded, i + 2) << 6;
+      if (last && padding == 1) {
+        toReturn[out] = (byte) (bits >> 16);
+        toReturn[out + 1] = (byte) (bits >> 8);
+        break;
+      }
+      bits |= value(encoded, i + 3);
+      toReturn[out++] = (byte) (bits >> 16);
+      toReturn[out++] = (byte) (bits >> 8);
+      toReturn[out++] = (byte) bits;
+    }
+    return toReturn;
+  }
+
+  /**
+   * Encodes the bytes as a padded base64 string.
+   */
+  static String encode(byte[] bytes) {
+    char[] out = new char[(bytes.length + 2) / 3 * 4];
+    int idx = 0;
+    int i = 0;
+    for (int j = bytes.length - bytes.length % 3; i < j; i += 3) {
+      int bits = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8 | bytes[i + 2] & 0xff;
+      out[idx++] = ALPHABET[bits >>> 18];
+      out[idx++] = ALPHABET[bits >>> 12 & 0x3f];
+      out[idx++] = ALPHABET[bits >>> 6 & 0x3f];
+      out[idx++] = ALPHABET[bits & 0x3f];
+    }
+    switch (bytes.length - i) {
+      case 1: {
+        int bits = (bytes[i] & 0xff) << 16;
+        out[idx++] = ALPHABET[bits >>> 18];
+        out[idx++] = ALPHABET[bits >>> 12 & 0x3f];
+        out[idx++] = '=';
+        out[idx++] = '=';
+        break;
+      }
+      case 2: {
+        int bits = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8;
+        out[idx++] = ALPHABET[bits >>> 18];
+        out[idx++] = ALPHABET[bits >>> 12 & 0x3f];
+        out[idx++] = ALPHABET[bits >>> 6 & 0x3f];
+        out[idx++] = '=';
+        break;
+      }
+    }
+    return new String(out);
+  }
+
+  private static int value(String encoded, int index) {
+    char c = encoded.charAt(index);
+    int toReturn = c < VALUES.length ? VALUES[c] : -1;
+    if (toReturn == -1) {
+      throw new IllegalArgumentException("Illegal base64 character '" + c + "' at index " + index);
+    }
+    return toReturn;
+  }
+
+  /**
+   * Requires injection.
+   */
+  protected ByteArrayCodex() {}
+
+  @Override
+  public Type describe() {
+    return new Type.Builder()
+        .withJsonKind(JsonKind.STRING)
+        .build();
+  }
+
+  @Override
+  public byte[] readNotNull(JsonElement element, DeserializationContext context) {
+    if (element.isJsonArray()) {
+      JsonArray array = element.getAsJsonArray();
+      byte[] toReturn = new byte[array.size()];
+      for (int i = 0, j = toReturn.length; i < j; i++) {
+        toReturn[i] = array.get(i).getAsByte();
+      }
+      return toReturn;
+    }
+    return decode(element.getAsString());
+  }
+
+  @Override
+  public void writeNotNull(byte[] object, SerializationContext context) throws Exception {
+    context.getWriter().value(encode(object));
+  }
+}
@@ -71,9 +71,9 @@ public abstract class CollectionCodex<T extends Collection<V>, V> extends Updati
     JsonArray array = element.getAsJsonArray();
     int count = 0;
     for (JsonElement elt : array) {
-      context.pushPath("[" + count++ + "]");
+      context.pushPathIndex(count++);
       toReturn.add(valueCodex.read(elt, context));
-      context.popPath();
+      context.dropPath();
     }
     return toReturn;
   }
@@ -91,9 +91,9 @@ public abstract class CollectionCodex<T extends Collection<V>, V> extends Updati
     writer.beginArray();
     int count = 0;
     for (V t : collection) {
-      context.pushPath("[" + count++ + "]");
+      context.pushPathIndex(count++);
       valueCodex.write(t, context);
-      context.popPath();
+      context.dropPath();
     }
     writer.endArray();
   }
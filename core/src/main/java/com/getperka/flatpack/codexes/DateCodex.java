@@ -25,26 +25,37 @@ import java.util.Date;
 
 import javax.inject.Inject;
 
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.ISODateTimeFormat;
 
+import com.getperka.flatpack.WireFormat;
 import com.getperka.flatpack.ext.DeserializationContext;
 import com.getperka.flatpack.ext.JsonKind;
 import com.getperka.flatpack.ext.SerializationContext;
 import com.getperka.flatpack.ext.Type;
 import com.getperka.flatpack.ext.TypeHint;
+import com.getperka.flatpack.util.BinaryJsonWriter;
+import com.getperka.flatpack.util.Iso8601;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
 import com.google.inject.TypeLiteral;
 
 /**
  * Supports {@code java.util.Date} and its ilk.
  * <p>
- * Dates are always written as an ISO8601 time. Dates may be read as a number of milliseconds since
- * the epoch or something approximating an ISO8601 date-time string.
+ * Dates are written as an ISO8601 time, or as a number of milliseconds since the epoch when using
+ * the {@link WireFormat#BINARY} format. Dates may be read as a number of milliseconds since
+ * the epoch or something approximating an ISO8601 date-time string. Values in the usual shape are
+ * handled by {@link Iso8601}, while Joda is used for any other values.
  * 
  * @param <D> the concrete type of Date to instantiate.
  */
 public class DateCodex<D extends Date> extends ValueCodex<D> {
+  private static final DateTimeFormatter PARSER = ISODateTimeFormat.dateTimeParser();
+  private static final DateTimeFormatter PRINTER = ISODateTimeFormat.dateTime();
+
   private Constructor<D> constructor;
 
   protected DateCodex() {}
@@ -65,7 +76,11 @@ public class DateCodex<D extends Date> extends ValueCodex<D> {
       if (primitive.isNumber()) {
         instant = primitive.getAsLong();
       } else {
-        instant = ISODateTimeFormat.dateTimeParser().parseMillis(primitive.getAsString());
+        String value = primitive.getAsString();
+        instant = Iso8601.parse(value);
+        if (instant == Iso8601.UNPARSEABLE) {
+          instant = PARSER.parseMillis(value);
+        }
       }
       return constructor.newInstance(instant);
     }
@@ -74,8 +89,18 @@ public class DateCodex<D extends Date> extends ValueCodex<D> {
 
   @Override
   public void writeNotNull(D object, SerializationContext context) throws Exception {
-    String value = ISODateTimeFormat.dateTime().print(object.getTime());
-    context.getWriter().value(value);
+    JsonWriter writer = context.getWriter();
+    if (writer instanceof BinaryJsonWriter) {
+      writer.value(object.getTime());
+      return;
+    }
+    long instant = object.getTime();
+    // Use the same time zone as Joda's default formatter
+    String value = Iso8601.format(instant, DateTimeZone.getDefault().getOffset(instant));
+    if (value == null) {
+      value = PRINTER.print(instant);
+    }
+    writer.value(value);
   }
 
   @Inject
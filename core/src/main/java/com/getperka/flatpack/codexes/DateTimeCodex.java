@@ -0,0 +1,90 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.codexes;
+
+import java.io.IOException;
+
+import org.joda.time.DateTime;
+import org.joda.time.chrono.ISOChronology;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+import com.getperka.flatpack.WireFormat;
+import com.getperka.flatpack.ext.DeserializationContext;
+import com.getperka.flatpack.ext.JsonKind;
+import com.getperka.flatpack.ext.SerializationContext;
+import com.getperka.flatpack.ext.Type;
+import com.getperka.flatpack.ext.TypeHint;
+import com.getperka.flatpack.util.BinaryJsonWriter;
+import com.getperka.flatpack.util.Iso8601;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Support for Joda's {@link DateTime}, which would otherwise be handled by {@link ToStringCodex}.
+ * Values are written in the same format as {@link DateTime#toString()}, or as a number of
+ * milliseconds since the epoch when using the {@link WireFormat#BINARY} format, and are read into
+ * the default time zone, as with the {@link DateTime#DateTime(Object)} constructor. Either form is
+ * accepted when reading.
+ */
+public class DateTimeCodex extends ValueCodex<DateTime> {
+  public static final TypeHint HINT = TypeHint.create(DateTime.class);
+  private static final DateTimeFormatter PARSER = ISODateTimeFormat.dateTimeParser();
+
+  protected DateTimeCodex() {}
+
+  @Override
+  public Type describe() {
+    return new Type.Builder()
+        .withJsonKind(JsonKind.STRING)
+        .withTypeHint(HINT)
+        .build();
+  }
+
+  @Override
+  public DateTime readNotNull(JsonElement element, DeserializationContext context) {
+    JsonPrimitive primitive = element.getAsJsonPrimitive();
+    if (primitive.isNumber()) {
+      return new DateTime(primitive.getAsLong());
+    }
+    String value = primitive.getAsString();
+    long instant = Iso8601.parse(value);
+    if (instant == Iso8601.UNPARSEABLE) {
+      instant = PARSER.parseMillis(value);
+    }
+    return new DateTime(instant);
+  }
+
+  @Override
+  public void writeNotNull(DateTime object, SerializationContext context) throws IOException {
+    JsonWriter writer = context.getWriter();
+    if (writer instanceof BinaryJsonWriter) {
+      writer.value(object.getMillis());
+      return;
+    }
+    String value = null;
+    if (object.getChronology() instanceof ISOChronology) {
+      long instant = object.getMillis();
+      value = Iso8601.format(instant, object.getZone().getOffset(instant));
+    }
+    writer.value(value == null ? object.toString() : value);
+  }
+}
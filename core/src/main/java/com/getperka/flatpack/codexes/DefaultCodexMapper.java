@@ -19,8 +19,6 @@
  */
 package com.getperka.flatpack.codexes;
 
-import static com.getperka.flatpack.util.FlatPackTypes.BOXED_TYPES;
-import static com.getperka.flatpack.util.FlatPackTypes.PRIMITIVE_TYPES;
 import static com.getperka.flatpack.util.FlatPackTypes.box;
 import static com.getperka.flatpack.util.FlatPackTypes.createType;
 import static com.getperka.flatpack.util.FlatPackTypes.erase;
@@ -41,6 +39,7 @@ import java.util.UUID;
 
 import javax.inject.Inject;
 
+import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 
 import com.getperka.flatpack.FlatPackEntity;
@@ -97,7 +96,7 @@ public class DefaultCodexMapper implements CodexMapper {
 
     // Collections and collection-like objects
     if (erased.isArray()) {
-      // Treat an array like a list
+      // Treat an array like a list; common numeric arrays are handled by simpleCodexes
       if (erased.getComponentType().isPrimitive()) {
         return getInstance(PrimitiveArrayCodex.class, box(erased.getComponentType()));
       }
@@ -149,38 +148,47 @@ public class DefaultCodexMapper implements CodexMapper {
     this.injector = injector;
 
     simpleCodexes.put(Annotation.class, injector.getInstance(AnnotationCodex.class));
-    simpleCodexes.put(BigDecimal.class, (NumberCodex<?>) injector.getInstance(
-        Key.get(createType(NumberCodex.class, BigDecimal.class))));
-    simpleCodexes.put(BigInteger.class, (NumberCodex<?>) injector.getInstance(
-        Key.get(createType(NumberCodex.class, BigInteger.class))));
+    simpleCodexes.put(BigDecimal.class, injector.getInstance(NumberCodex.BigDecimalCodex.class));
+    simpleCodexes.put(BigInteger.class, injector.getInstance(NumberCodex.BigIntegerCodex.class));
     simpleCodexes.put(boolean.class, injector.getInstance(BooleanCodex.class));
     simpleCodexes.put(Boolean.class, injector.getInstance(BooleanCodex.class));
+    simpleCodexes.put(byte.class, injector.getInstance(NumberCodex.ByteCodex.class));
+    simpleCodexes.put(Byte.class, injector.getInstance(NumberCodex.ByteCodex.class));
+    simpleCodexes.put(byte[].class, injector.getInstance(ByteArrayCodex.class));
     simpleCodexes.put(char.class, injector.getInstance(CharacterCodex.class));
     simpleCodexes.put(Character.class, injector.getInstance(CharacterCodex.class));
     simpleCodexes.put(Class.class, injector.getInstance(HasUuidClassCodex.class));
+    simpleCodexes.put(DateTime.class, injector.getInstance(DateTimeCodex.class));
     simpleCodexes.put(DateTimeZone.class, injector.getInstance(DateTimeZoneCodex.class));
+    simpleCodexes.put(double.class, injector.getInstance(NumberCodex.DoubleCodex.class));
+    simpleCodexes.put(Double.class, injector.getInstance(NumberCodex.DoubleCodex.class));
+    simpleCodexes.put(double[].class, injector.getInstance(DoubleArrayCodex.class));
+    simpleCodexes.put(float.class, injector.getInstance(NumberCodex.FloatCodex.class));
+    simpleCodexes.put(Float.class, injector.getInstance(NumberCodex.FloatCodex.class));
+    simpleCodexes.put(float[].class, injector.getInstance(FloatArrayCodex.class));
+    simpleCodexes.put(int.class, injector.getInstance(NumberCodex.IntegerCodex.class));
+    simpleCodexes.put(Integer.class, injector.getInstance(NumberCodex.IntegerCodex.class));
+    simpleCodexes.put(int[].class, injector.getInstance(IntArrayCodex.class));
     simpleCodexes.put(JsonElement.class, injector.getInstance(JsonElementCodex.class));
+    simpleCodexes.put(long.class, injector.getInstance(NumberCodex.LongCodex.class));
+    simpleCodexes.put(Long.class, injector.getInstance(NumberCodex.LongCodex.class));
+    simpleCodexes.put(long[].class, injector.getInstance(LongArrayCodex.class));
+    simpleCodexes.put(short.class, injector.getInstance(NumberCodex.ShortCodex.class));
+    simpleCodexes.put(Short.class, injector.getInstance(NumberCodex.ShortCodex.class));
+    simpleCodexes.put(short[].class, injector.getInstance(ShortArrayCodex.class));
     simpleCodexes.put(String.class, injector.getInstance(StringCodex.class));
     simpleCodexes.put(TypeHint.class, injector.getInstance(TypeHintCodex.class));
     simpleCodexes.put(UUID.class, injector.getInstance(UUIDCodex.class));
     simpleCodexes.put(void.class, injector.getInstance(VoidCodex.class));
     simpleCodexes.put(Void.class, injector.getInstance(VoidCodex.class));
 
-    for (Class<?> clazz : BOXED_TYPES) {
-      if (Number.class.isAssignableFrom(clazz)) {
-        @SuppressWarnings("unchecked")
-        Key<ValueCodex<?>> key = (Key<ValueCodex<?>>) Key.get(createType(NumberCodex.class, clazz));
-        simpleCodexes.put(clazz, injector.getInstance(key));
-      }
-    }
-
-    for (Class<?> clazz : PRIMITIVE_TYPES) {
-      Class<?> boxed = box(clazz);
-      if (Number.class.isAssignableFrom(boxed)) {
-        @SuppressWarnings("unchecked")
-        Key<ValueCodex<?>> key = (Key<ValueCodex<?>>) Key.get(createType(NumberCodex.class, boxed));
-        simpleCodexes.put(clazz, injector.getInstance(key));
-      }
+    // Only available when running on Java 8 or later
+    for (String name : JavaTimeCodex.TYPE_NAMES) {
+      try {
+        Class<?> clazz = Class.forName(name);
+        simpleCodexes.put(clazz, (ValueCodex<?>) injector.getInstance(
+            Key.get(createType(JavaTimeCodex.class, clazz))));
+      } catch (ClassNotFoundException ignored) {}
     }
   }
 
@@ -22,7 +22,6 @@ package com.getperka.flatpack.codexes;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.UUID;
-import java.util.regex.Pattern;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
@@ -36,6 +35,7 @@ import com.getperka.flatpack.ext.SerializationContext;
 import com.getperka.flatpack.ext.Type;
 import com.getperka.flatpack.ext.TypeContext;
 import com.getperka.flatpack.ext.VisitorContext;
+import com.getperka.flatpack.util.FlatPackUuids;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonPrimitive;
 
@@ -44,9 +44,6 @@ import com.google.gson.JsonPrimitive;
  * the payload.
  */
 public class DynamicCodex extends Codex<Object> {
-  private static final Pattern UUID_PATTERN = Pattern
-      .compile("[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
-
   // Use Provider to prevent cyclic reference
   private Provider<ListCodex<Object>> listCodex;
   private Provider<StringMapCodex<String, Object>> mapCodex;
@@ -91,8 +88,8 @@ public class DynamicCodex extends Codex<Object> {
         String value = primitive.getAsString();
 
         // Interpret UUIDs as entity references
-        if (UUID_PATTERN.matcher(value).matches()) {
-          UUID uuid = UUID.fromString(value);
+        UUID uuid = FlatPackUuids.parse(value);
+        if (uuid != null) {
           HasUuid entity = context.getEntity(uuid);
           if (entity != null) {
             return entity;
@@ -113,6 +110,17 @@ public class DynamicCodex extends Codex<Object> {
 
   @Override
   public void writeNotNull(Object object, SerializationContext context) throws IOException {
+    /*
+     * Always write references and UUIDs as strings, since an index into the payload's uuids table
+     * would be read back as a number.
+     */
+    if (object instanceof HasUuid) {
+      context.getWriter().value(FlatPackUuids.toString(((HasUuid) object).getUuid()));
+      return;
+    } else if (object instanceof UUID) {
+      context.getWriter().value(FlatPackUuids.toString((UUID) object));
+      return;
+    }
     Codex<Object> actual = typeContext.getCodex(object.getClass());
     actual.write(object, context);
   }
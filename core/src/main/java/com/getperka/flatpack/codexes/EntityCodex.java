@@ -26,6 +26,7 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.inject.Inject;
@@ -35,6 +36,7 @@ import com.getperka.flatpack.FlatPackVisitor;
 import com.getperka.flatpack.HasUuid;
 import com.getperka.flatpack.PostUnpack;
 import com.getperka.flatpack.PreUnpack;
+import com.getperka.flatpack.ext.BulkEntityResolver;
 import com.getperka.flatpack.ext.Codex;
 import com.getperka.flatpack.ext.DeserializationContext;
 import com.getperka.flatpack.ext.DeserializationContext.EntitySource;
@@ -49,7 +51,6 @@ import com.getperka.flatpack.ext.VisitorContext;
 import com.getperka.flatpack.ext.Walker;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.stream.JsonWriter;
 import com.google.inject.TypeLiteral;
 
 /**
@@ -125,17 +126,26 @@ public class EntityCodex<T extends HasUuid> extends Codex<T> {
    *          newly-allocated entity
    */
   public T allocate(JsonElement element, DeserializationContext context) {
-    JsonElement uuidElement = element.getAsJsonObject().get("uuid");
-    if (uuidElement == null) {
-      context.fail(new IllegalArgumentException("Data entry missing uuid:\n"
-        + element.toString()));
-    }
-    UUID uuid = UUID.fromString(uuidElement.getAsString());
-    return allocate(uuid, element, context, true);
+    return allocate(getUuid(element, context), element, context, true, null);
+  }
+
+  /**
+   * Creates a stub object using the results of a prior call to
+   * {@link BulkEntityResolver#resolveAll}, instead of calling the {@link EntityResolver}.
+   * 
+   * @param element a JsonObject containing a {@code uuid} property.
+   * @param context this method will call {@link DeserializationContext#putEntity} to store the
+   *          newly-allocated entity
+   * @param resolved the entities that were resolved in bulk, keyed by UUID. A UUID with no
+   *          corresponding entity will be allocated as a new instance.
+   */
+  public T allocate(JsonElement element, DeserializationContext context,
+      Map<UUID, ? extends HasUuid> resolved) {
+    return allocate(getUuid(element, context), element, context, true, resolved);
   }
 
   public T allocateEmbedded(JsonElement element, DeserializationContext context) {
-    return allocate(UUID.randomUUID(), element, context, false);
+    return allocate(UUID.randomUUID(), element, context, false, null);
   }
 
   @Override
@@ -146,6 +156,13 @@ public class EntityCodex<T extends HasUuid> extends Codex<T> {
         .build();
   }
 
+  /**
+   * Returns the type of entity that the codex operates on.
+   */
+  public Class<T> getEntityType() {
+    return clazz;
+  }
+
   public List<Method> getPostUnpackMethods() {
     return postUnpackMethods;
   }
@@ -161,7 +178,7 @@ public class EntityCodex<T extends HasUuid> extends Codex<T> {
 
   @Override
   public T readNotNull(JsonElement element, DeserializationContext context) {
-    UUID uuid = UUID.fromString(element.getAsString());
+    UUID uuid = context.getUuid(element);
     HasUuid entity = context.getEntity(uuid);
     /*
      * If the UUID is a reference to an entity that isn't in the data section, delegate to the
@@ -169,7 +186,12 @@ public class EntityCodex<T extends HasUuid> extends Codex<T> {
      * will be created if possible.
      */
     if (entity == null) {
-      entity = allocate(uuid, element, context, true);
+      entity = allocate(uuid, element, context, true, null);
+      // Prefer an instance allocated concurrently by another thread
+      HasUuid canonical = context.getEntity(uuid);
+      if (canonical != null) {
+        entity = canonical;
+      }
     }
     try {
       return clazz.cast(entity);
@@ -189,8 +211,7 @@ public class EntityCodex<T extends HasUuid> extends Codex<T> {
 
   @Override
   public void writeNotNull(T object, SerializationContext context) throws IOException {
-    JsonWriter writer = context.getWriter();
-    writer.value(object.getUuid().toString());
+    context.writeUuid(object.getUuid());
   }
 
   /**
@@ -204,7 +225,7 @@ public class EntityCodex<T extends HasUuid> extends Codex<T> {
    */
   protected Object getProperty(Property property, HasUuid target) {
     try {
-      return property.getGetter() == null ? null : property.getGetter().invoke(target);
+      return property.getGetter() == null ? null : property.getAccessor().get(target);
     } catch (Exception e) {
       throw new RuntimeException("Could not retrieve property value", e);
     }
@@ -226,12 +247,12 @@ public class EntityCodex<T extends HasUuid> extends Codex<T> {
         @SuppressWarnings("unchecked")
         Codex<Object> codex = (Codex<Object>) property.getCodex();
         if (codex instanceof UpdatingCodex && property.getGetter() != null) {
-          Object oldValue = property.getGetter().invoke(target);
+          Object oldValue = property.getAccessor().get(target);
           if (oldValue != null && value != null) {
             value = ((UpdatingCodex<Object>) codex).replacementValue(oldValue, value);
           }
         }
-        property.getSetter().invoke(target, value);
+        property.getAccessor().set(target, value);
       } catch (Exception e) {
         throw new RuntimeException("Could not set property value", e);
       }
@@ -278,13 +299,14 @@ public class EntityCodex<T extends HasUuid> extends Codex<T> {
   }
 
   private T allocate(UUID uuid, JsonElement element, DeserializationContext context,
-      boolean useResolvers) {
+      boolean useResolvers, Map<UUID, ? extends HasUuid> resolved) {
     T toReturn = null;
 
     // Possibly delegate to injected resolvers
     if (useResolvers) {
       try {
-        toReturn = entityResolver.resolve(clazz, uuid);
+        toReturn = resolved == null ? entityResolver.resolve(clazz, uuid) :
+            clazz.cast(resolved.get(uuid));
         if (toReturn != null) {
           context.putEntity(uuid, toReturn, EntitySource.RESOLVED);
         }
@@ -303,4 +325,12 @@ public class EntityCodex<T extends HasUuid> extends Codex<T> {
     return toReturn;
   }
 
+  private UUID getUuid(JsonElement element, DeserializationContext context) {
+    JsonElement uuidElement = element.getAsJsonObject().get("uuid");
+    if (uuidElement == null) {
+      context.fail(new IllegalArgumentException("Data entry missing uuid:\n"
+        + element.toString()));
+    }
+    return context.getUuid(uuidElement);
+  }
 }
\ No newline at end of file
@@ -35,6 +35,7 @@ import com.getperka.flatpack.ext.TypeContext;
 import com.getperka.flatpack.ext.UpdatingCodex;
 import com.getperka.flatpack.ext.VisitorContext;
 import com.getperka.flatpack.util.FlatPackCollections;
+import com.getperka.flatpack.util.FlatPackUuids;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.stream.JsonWriter;
@@ -85,13 +86,13 @@ public class EntityMapCodex<K extends HasUuid, V> extends UpdatingCodex<Map<K, V
       throws IOException {
     Map<K, V> toReturn = FlatPackCollections.mapForIteration();
     for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
-      context.pushPath("." + entry.getKey());
+      context.pushPathMember(entry.getKey());
       try {
         K key = keyCodex.read(new JsonPrimitive(entry.getKey()), context);
         V value = valueCodex.read(entry.getValue(), context);
         toReturn.put(key, value);
       } finally {
-        context.popPath();
+        context.dropPath();
       }
     }
     return toReturn;
@@ -109,13 +110,13 @@ public class EntityMapCodex<K extends HasUuid, V> extends UpdatingCodex<Map<K, V
     JsonWriter writer = context.getWriter();
     writer.beginObject();
     for (Map.Entry<K, V> entry : object.entrySet()) {
-      String key = entry.getKey().getUuid().toString();
-      context.pushPath("." + key);
+      String key = FlatPackUuids.toString(entry.getKey().getUuid());
+      context.pushPathMember(key);
       try {
         writer.name(key);
         valueCodex.write(entry.getValue(), context);
       } finally {
-        context.popPath();
+        context.dropPath();
       }
     }
     writer.endObject();
@@ -0,0 +1,58 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.codexes;
+
+import com.getperka.flatpack.ext.DeserializationContext;
+import com.getperka.flatpack.ext.SerializationContext;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Reads and writes {@code float[]} arrays without boxing each element.
+ */
+public class FloatArrayCodex extends NumericArrayCodex<float[]> {
+  /**
+   * Requires injection.
+   */
+  protected FloatArrayCodex() {
+    super(float.class);
+  }
+
+  @Override
+  public float[] readNotNull(JsonElement element, DeserializationContext context) {
+    JsonArray array = element.getAsJsonArray();
+    float[] toReturn = new float[array.size()];
+    for (int i = 0, j = toReturn.length; i < j; i++) {
+      toReturn[i] = array.get(i).getAsFloat();
+    }
+    return toReturn;
+  }
+
+  @Override
+  public void writeNotNull(float[] object, SerializationContext context) throws Exception {
+    JsonWriter writer = context.getWriter();
+    writer.beginArray();
+    for (float value : object) {
+      NumberCodex.FloatCodex.write(writer, value);
+    }
+    writer.endArray();
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.codexes;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.UndeclaredThrowableException;
+
+import javax.inject.Inject;
+
+import com.getperka.flatpack.WireFormat;
+import com.getperka.flatpack.ext.DeserializationContext;
+import com.getperka.flatpack.ext.JsonKind;
+import com.getperka.flatpack.ext.SerializationContext;
+import com.getperka.flatpack.ext.Type;
+import com.getperka.flatpack.ext.TypeHint;
+import com.getperka.flatpack.util.BinaryJsonWriter;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+import com.google.inject.TypeLiteral;
+
+/**
+ * Support for the {@code java.time} {@code Instant}, {@code LocalDate}, and {@code OffsetDateTime}
+ * types, which are written in their ISO8601 {@code toString()} form and read with their static
+ * {@code parse()} methods. When using the {@link WireFormat#BINARY} format, an {@code Instant}
+ * without sub-millisecond precision is written as a number of milliseconds since the epoch, like
+ * {@link DateCodex}; the other types would lose their offset or calendar meaning, so they are
+ * always written as strings. A number of milliseconds since the epoch is accepted for any of the
+ * types, and is interpreted in UTC.
+ * <p>
+ * The types are accessed reflectively, since FlatPack may be running on a VM that does not
+ * provide them. {@link DefaultCodexMapper} only registers this codex for the types that are
+ * present.
+ */
+public class JavaTimeCodex<T> extends ValueCodex<T> {
+  /**
+   * The names of the supported types.
+   */
+  static final String[] TYPE_NAMES = { "java.time.Instant", "java.time.LocalDate",
+      "java.time.OffsetDateTime" };
+  private static final MethodType FROM_MILLIS_TYPE = MethodType.methodType(Object.class,
+      long.class);
+  private static final MethodType PARSE_TYPE = MethodType.methodType(Object.class,
+      CharSequence.class);
+  private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000;
+
+  /**
+   * Used by the {@code LocalDate} conversion, rounding towards negative infinity.
+   */
+  private static long toEpochDay(long millis) {
+    long day = millis / MILLIS_PER_DAY;
+    return millis % MILLIS_PER_DAY < 0 ? day - 1 : day;
+  }
+
+  private Class<T> clazz;
+  /**
+   * Creates an instance from a number of milliseconds since the epoch.
+   */
+  private MethodHandle fromMillis;
+  /**
+   * {@code Instant.getNano()}, or {@code null} if the type is not written as a number.
+   */
+  private MethodHandle getNano;
+  private MethodHandle parse;
+  /**
+   * {@code Instant.toEpochMilli()}, or {@code null} if the type is not written as a number.
+   */
+  private MethodHandle toEpochMilli;
+
+  protected JavaTimeCodex() {}
+
+  @Override
+  public Type describe() {
+    return new Type.Builder()
+        .withJsonKind(JsonKind.STRING)
+        .withTypeHint(TypeHint.create(clazz))
+        .build();
+  }
+
+  @Override
+  public T readNotNull(JsonElement element, DeserializationContext context) throws Exception {
+    JsonPrimitive primitive = element.getAsJsonPrimitive();
+    try {
+      if (primitive.isNumber()) {
+        return clazz.cast((Object) fromMillis.invokeExact(primitive.getAsLong()));
+      }
+      return clazz.cast((Object) parse.invokeExact((CharSequence) primitive.getAsString()));
+    } catch (Exception e) {
+      throw e;
+    } catch (Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new UndeclaredThrowableException(t);
+    }
+  }
+
+  @Override
+  public void writeNotNull(T object, SerializationContext context) throws IOException {
+    JsonWriter writer = context.getWriter();
+    if (toEpochMilli != null && writer instanceof BinaryJsonWriter) {
+      try {
+        if ((int) getNano.invokeExact((Object) object) % 1000000 == 0) {
+          writer.value((long) toEpochMilli.invokeExact((Object) object));
+          return;
+        }
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Error e) {
+        throw e;
+      } catch (Throwable t) {
+        throw new UndeclaredThrowableException(t);
+      }
+    }
+    writer.value(object.toString());
+  }
+
+  @Inject
+  @SuppressWarnings("unchecked")
+  void inject(TypeLiteral<T> type) {
+    clazz = (Class<T>) type.getRawType();
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+      parse = lookup.findStatic(clazz, "parse", MethodType.methodType(clazz, CharSequence.class))
+          .asType(PARSE_TYPE);
+
+      Class<?> instant = Class.forName("java.time.Instant");
+      MethodHandle ofEpochMilli = lookup.findStatic(instant, "ofEpochMilli",
+          MethodType.methodType(instant, long.class));
+      if (clazz.equals(instant)) {
+        fromMillis = ofEpochMilli;
+        getNano = lookup.findVirtual(instant, "getNano", MethodType.methodType(int.class))
+            .asType(MethodType.methodType(int.class, Object.class));
+        toEpochMilli = lookup
+            .findVirtual(instant, "toEpochMilli", MethodType.methodType(long.class))
+            .asType(MethodType.methodType(long.class, Object.class));
+      } else if (clazz.getName().equals("java.time.LocalDate")) {
+        fromMillis = MethodHandles.filterArguments(
+            lookup.findStatic(clazz, "ofEpochDay", MethodType.methodType(clazz, long.class)), 0,
+            MethodHandles.lookup().findStatic(JavaTimeCodex.class, "toEpochDay",
+                MethodType.methodType(long.class, long.class)));
+      } else {
+        // OffsetDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC)
+        Class<?> zoneId = Class.forName("java.time.ZoneId");
+        Object utc = Class.forName("java.time.ZoneOffset").getField("UTC").get(null);
+        MethodHandle ofInstant = lookup.findStatic(clazz, "ofInstant",
+            MethodType.methodType(clazz, instant, zoneId));
+        fromMillis = MethodHandles.filterArguments(
+            MethodHandles.insertArguments(ofInstant, 1, utc), 0, ofEpochMilli);
+      }
+      fromMillis = fromMillis.asType(FROM_MILLIS_TYPE);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalArgumentException("Should not use JavaTimeCodex with a " + clazz, e);
+    } catch (NoSuchFieldException e) {
+      throw new IllegalArgumentException("Should not use JavaTimeCodex with a " + clazz, e);
+    } catch (NoSuchMethodException e) {
+      throw new IllegalArgumentException("Should not use JavaTimeCodex with a " + clazz, e);
+    } catch (IllegalAccessException e) {
+      throw new IllegalArgumentException("Should not use JavaTimeCodex with a " + clazz, e);
+    }
+  }
+}
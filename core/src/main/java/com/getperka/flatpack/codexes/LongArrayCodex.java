@@ -0,0 +1,58 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.codexes;
+
+import com.getperka.flatpack.ext.DeserializationContext;
+import com.getperka.flatpack.ext.SerializationContext;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Reads and writes {@code long[]} arrays without boxing each element.
+ */
+public class LongArrayCodex extends NumericArrayCodex<long[]> {
+  /**
+   * Requires injection.
+   */
+  protected LongArrayCodex() {
+    super(long.class);
+  }
+
+  @Override
+  public long[] readNotNull(JsonElement element, DeserializationContext context) {
+    JsonArray array = element.getAsJsonArray();
+    long[] toReturn = new long[array.size()];
+    for (int i = 0, j = toReturn.length; i < j; i++) {
+      toReturn[i] = array.get(i).getAsLong();
+    }
+    return toReturn;
+  }
+
+  @Override
+  public void writeNotNull(long[] object, SerializationContext context) throws Exception {
+    JsonWriter writer = context.getWriter();
+    writer.beginArray();
+    for (long value : object) {
+      writer.value(value);
+    }
+    writer.endArray();
+  }
+}
@@ -30,15 +30,206 @@ import com.getperka.flatpack.ext.JsonKind;
 import com.getperka.flatpack.ext.SerializationContext;
 import com.getperka.flatpack.ext.Type;
 import com.getperka.flatpack.ext.TypeHint;
+import com.getperka.flatpack.util.BinaryJsonWriter;
 import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonWriter;
 import com.google.inject.TypeLiteral;
 
 /**
- * Primitive numberic support.
+ * Primitive numberic support. {@link DefaultCodexMapper} uses the nested subclasses, which avoid
+ * testing the type of number for each value, for the built-in number types.
  *
  * @param <N> the boxed Number type
  */
 public class NumberCodex<N extends Number> extends ValueCodex<N> {
+  /**
+   * Specialized for {@link BigDecimal} values.
+   */
+  public static class BigDecimalCodex extends NumberCodex<BigDecimal> {
+    protected BigDecimalCodex() {}
+
+    @Override
+    public boolean isDefaultValue(BigDecimal value) {
+      return value == null || BigDecimal.ZERO.compareTo(value) == 0;
+    }
+
+    @Override
+    public BigDecimal readNotNull(JsonElement element, DeserializationContext context) {
+      return element.getAsBigDecimal();
+    }
+
+    @Override
+    public void writeNotNull(BigDecimal object, SerializationContext context) throws IOException {
+      context.getWriter().value(object.toString());
+    }
+  }
+
+  /**
+   * Specialized for {@link BigInteger} values.
+   */
+  public static class BigIntegerCodex extends NumberCodex<BigInteger> {
+    protected BigIntegerCodex() {}
+
+    @Override
+    public boolean isDefaultValue(BigInteger value) {
+      return value == null || BigInteger.ZERO.compareTo(value) == 0;
+    }
+
+    @Override
+    public BigInteger readNotNull(JsonElement element, DeserializationContext context) {
+      return element.getAsBigInteger();
+    }
+
+    @Override
+    public void writeNotNull(BigInteger object, SerializationContext context) throws IOException {
+      context.getWriter().value(object.toString());
+    }
+  }
+
+  /**
+   * Specialized for {@code byte} values.
+   */
+  public static class ByteCodex extends NumberCodex<Byte> {
+    protected ByteCodex() {}
+
+    @Override
+    public boolean isDefaultValue(Byte value) {
+      return value == null || value.byteValue() == 0;
+    }
+
+    @Override
+    public Byte readNotNull(JsonElement element, DeserializationContext context) {
+      return element.getAsByte();
+    }
+
+    @Override
+    public void writeNotNull(Byte object, SerializationContext context) throws IOException {
+      context.getWriter().value(object.longValue());
+    }
+  }
+
+  /**
+   * Specialized for {@code double} values.
+   */
+  public static class DoubleCodex extends NumberCodex<Double> {
+    protected DoubleCodex() {}
+
+    @Override
+    public boolean isDefaultValue(Double value) {
+      return value == null || value.doubleValue() == 0.0;
+    }
+
+    @Override
+    public Double readNotNull(JsonElement element, DeserializationContext context) {
+      return element.getAsDouble();
+    }
+
+    @Override
+    public void writeNotNull(Double object, SerializationContext context) throws IOException {
+      context.getWriter().value(object.doubleValue());
+    }
+  }
+
+  /**
+   * Specialized for {@code float} values.
+   */
+  public static class FloatCodex extends NumberCodex<Float> {
+    /**
+     * Writes the shortest decimal representation of a float, rather than that of the wider double
+     * value. The binary format stores the widened double, which is exact, so nothing is allocated.
+     */
+    static void write(JsonWriter writer, float value) throws IOException {
+      if (writer instanceof BinaryJsonWriter) {
+        writer.value((double) value);
+      } else {
+        writer.value(Float.valueOf(value));
+      }
+    }
+
+    protected FloatCodex() {}
+
+    @Override
+    public boolean isDefaultValue(Float value) {
+      return value == null || value.floatValue() == 0.0f;
+    }
+
+    @Override
+    public Float readNotNull(JsonElement element, DeserializationContext context) {
+      return element.getAsFloat();
+    }
+
+    @Override
+    public void writeNotNull(Float object, SerializationContext context) throws IOException {
+      write(context.getWriter(), object);
+    }
+  }
+
+  /**
+   * Specialized for {@code int} values.
+   */
+  public static class IntegerCodex extends NumberCodex<Integer> {
+    protected IntegerCodex() {}
+
+    @Override
+    public boolean isDefaultValue(Integer value) {
+      return value == null || value.intValue() == 0;
+    }
+
+    @Override
+    public Integer readNotNull(JsonElement element, DeserializationContext context) {
+      return element.getAsInt();
+    }
+
+    @Override
+    public void writeNotNull(Integer object, SerializationContext context) throws IOException {
+      context.getWriter().value(object.longValue());
+    }
+  }
+
+  /**
+   * Specialized for {@code long} values.
+   */
+  public static class LongCodex extends NumberCodex<Long> {
+    protected LongCodex() {}
+
+    @Override
+    public boolean isDefaultValue(Long value) {
+      return value == null || value.longValue() == 0;
+    }
+
+    @Override
+    public Long readNotNull(JsonElement element, DeserializationContext context) {
+      return element.getAsLong();
+    }
+
+    @Override
+    public void writeNotNull(Long object, SerializationContext context) throws IOException {
+      context.getWriter().value(object.longValue());
+    }
+  }
+
+  /**
+   * Specialized for {@code short} values.
+   */
+  public static class ShortCodex extends NumberCodex<Short> {
+    protected ShortCodex() {}
+
+    @Override
+    public boolean isDefaultValue(Short value) {
+      return value == null || value.shortValue() == 0;
+    }
+
+    @Override
+    public Short readNotNull(JsonElement element, DeserializationContext context) {
+      return element.getAsShort();
+    }
+
+    @Override
+    public void writeNotNull(Short object, SerializationContext context) throws IOException {
+      context.getWriter().value(object.longValue());
+    }
+  }
+
   private Class<N> clazz;
 
   @Inject
@@ -0,0 +1,51 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.codexes;
+
+import javax.inject.Inject;
+
+import com.getperka.flatpack.ext.JsonKind;
+import com.getperka.flatpack.ext.Type;
+import com.getperka.flatpack.ext.TypeContext;
+
+/**
+ * Common code for the codexes that handle arrays of primitive numbers. Unlike
+ * {@link PrimitiveArrayCodex}, subclasses read and write the elements directly and do not record a
+ * path index for each element.
+ *
+ * @param <A> the array type
+ */
+public abstract class NumericArrayCodex<A> extends ValueCodex<A> {
+  private final Class<?> componentType;
+  @Inject
+  private TypeContext typeContext;
+
+  protected NumericArrayCodex(Class<?> componentType) {
+    this.componentType = componentType;
+  }
+
+  @Override
+  public Type describe() {
+    return new Type.Builder()
+        .withJsonKind(JsonKind.LIST)
+        .withListElement(typeContext.getCodex(componentType).describe())
+        .build();
+  }
+}
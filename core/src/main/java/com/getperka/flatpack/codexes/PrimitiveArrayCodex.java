@@ -75,9 +75,9 @@ public class PrimitiveArrayCodex<T> extends ValueCodex<Object> {
     JsonWriter writer = context.getWriter();
     writer.beginArray();
     for (int i = 0, j = Array.getLength(object); i < j; i++) {
-      context.pushPath("[" + i + "]");
+      context.pushPathIndex(i);
       valueCodex.write(boxedType.cast(Array.get(object, i)), context);
-      context.popPath();
+      context.dropPath();
     }
     writer.endArray();
   }
@@ -102,7 +102,7 @@ public class StringMapCodex<K, V> extends UpdatingCodex<Map<K, V>> {
       throws IOException {
     Map<K, V> toReturn = FlatPackCollections.mapForIteration();
     for (Map.Entry<String, JsonElement> elt : element.getAsJsonObject().entrySet()) {
-      context.pushPath("[" + elt.getKey() + "]");
+      context.pushPathKey(elt.getKey());
       try {
         K key = keyCodex.read(new JsonPrimitive(elt.getKey()), context);
         V value = valueCodex.read(elt.getValue(), context);
@@ -110,7 +110,7 @@ public class StringMapCodex<K, V> extends UpdatingCodex<Map<K, V>> {
       } catch (Exception e) {
         context.fail(e);
       } finally {
-        context.popPath();
+        context.dropPath();
       }
     }
     return toReturn;
@@ -128,7 +128,7 @@ public class StringMapCodex<K, V> extends UpdatingCodex<Map<K, V>> {
     JsonWriter writer = context.getWriter();
     writer.beginObject();
     for (Map.Entry<K, V> entry : object.entrySet()) {
-      context.pushPath("[" + entry.getKey() + "]");
+      context.pushPathKey(entry.getKey());
       try {
         StealingSerializationContext stealing = new StealingSerializationContext(context);
         keyCodex.write(entry.getKey(), stealing);
@@ -137,7 +137,7 @@ public class StringMapCodex<K, V> extends UpdatingCodex<Map<K, V>> {
         writer.name(keyJson.getAsString());
         valueCodex.write(entry.getValue(), context);
       } finally {
-        context.popPath();
+        context.dropPath();
       }
     }
     writer.endObject();
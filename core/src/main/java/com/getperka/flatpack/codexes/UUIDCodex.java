@@ -47,11 +47,11 @@ public class UUIDCodex extends ValueCodex<UUID> {
 
   @Override
   public UUID readNotNull(JsonElement element, DeserializationContext context) {
-    return UUID.fromString(element.getAsString());
+    return context.getUuid(element);
   }
 
   @Override
   public void writeNotNull(UUID object, SerializationContext context) throws IOException {
-    context.getWriter().value(object.toString());
+    context.writeUuid(object);
   }
 }
\ No newline at end of file
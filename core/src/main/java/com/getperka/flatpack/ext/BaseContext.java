@@ -25,9 +25,8 @@ import static com.getperka.flatpack.util.FlatPackCollections.mapForIteration;
 import java.io.Closeable;
 import java.io.IOException;
 import java.security.Principal;
-import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -53,21 +52,36 @@ import com.getperka.flatpack.HasUuid;
  *   } catch (CheckedException e) {
  *     context.fail(e);
  *   } finally {
- *     context.popPath();
+ *     context.dropPath();
  *   }
  * }
  * </pre>
+ * 
+ * The path is only rendered into a string if an error is reported, so frequently-called code
+ * should prefer {@link #pushPathIndex(int)}, {@link #pushPathKey(Object)}, or
+ * {@link #pushPathMember(Object)} to building path strings eagerly, and should remove elements with
+ * {@link #dropPath()}, which does not render the removed element.
  */
 public abstract class BaseContext implements Closeable {
+  /**
+   * Kinds of path elements, which determine how an element will be rendered.
+   */
+  private static final byte INDEX = 0;
+  private static final byte KEY = 1;
+  private static final byte LITERAL = 2;
+  private static final byte MEMBER = 3;
 
-  private final Deque<String> path = new ArrayDeque<String>();
+  private int pathDepth;
+  private Object[] pathElements = new Object[16];
+  private int[] pathIndexes = new int[16];
+  private byte[] pathKinds = new byte[16];
   private final List<Callable<?>> postWork = listForAny();
   @Inject
   private Principal principal;
   private final Map<UUID, String> warnings = mapForIteration();
 
   BaseContext() {
-    path.addLast("<root>");
+    push(LITERAL, "<root>", 0);
   }
 
   /**
@@ -88,6 +102,14 @@ public abstract class BaseContext implements Closeable {
   @Override
   public void close() throws IOException {}
 
+  /**
+   * Removes the topmost path element without rendering it.
+   */
+  public void dropPath() {
+    pathDepth--;
+    pathElements[pathDepth] = null;
+  }
+
   /**
    * Updates the exception's stack trace with the current path elements and performs a "sneaky"
    * throw to continue to propagate the (checked) exception up the stack.
@@ -118,10 +140,16 @@ public abstract class BaseContext implements Closeable {
   /**
    * Removes the topmost path.
    * 
-   * @return the removed path element
+   * @return the removed path element, rendered as it appears in {@link #toString()}, which may be
+   *         passed to {@link #pushPath(String)} to restore it
+   * @see #dropPath()
    */
   public String popPath() {
-    return path.removeLast();
+    int index = pathDepth - 1;
+    String toReturn = pathKinds[index] == LITERAL ? (String) pathElements[index]
+        : render(new StringBuilder(), index).toString();
+    dropPath();
+    return toReturn;
   }
 
   /**
@@ -130,7 +158,30 @@ public abstract class BaseContext implements Closeable {
    * @param element the path element to add
    */
   public void pushPath(String element) {
-    path.addLast(element);
+    push(LITERAL, element, 0);
+  }
+
+  /**
+   * Adds a collection index to the error-reporting stack, which will be rendered as
+   * {@code [index]}.
+   */
+  public void pushPathIndex(int index) {
+    push(INDEX, null, index);
+  }
+
+  /**
+   * Adds a map key to the error-reporting stack, which will be rendered as {@code [key]}.
+   */
+  public void pushPathKey(Object key) {
+    push(KEY, key, 0);
+  }
+
+  /**
+   * Adds a named member to the error-reporting stack, which will be rendered as {@code .name}. A
+   * {@link Property} is rendered using its name and an entity is rendered using its UUID.
+   */
+  public void pushPathMember(Object member) {
+    push(MEMBER, member, 0);
   }
 
   /**
@@ -146,7 +197,7 @@ public abstract class BaseContext implements Closeable {
       } catch (Exception e) {
         fail(e);
       } finally {
-        popPath();
+        dropPath();
       }
     }
     postWork.clear();
@@ -158,12 +209,60 @@ public abstract class BaseContext implements Closeable {
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder();
-    for (String p : path) {
-      sb.append(p);
+    for (int i = 0; i < pathDepth; i++) {
+      render(sb, i);
     }
     return sb.toString();
   }
 
+  /**
+   * Moves any accumulated post-work and warnings into another context, preserving their order.
+   */
+  void transferTo(BaseContext other) {
+    other.postWork.addAll(postWork);
+    other.warnings.putAll(warnings);
+    postWork.clear();
+    warnings.clear();
+  }
+
+  private void push(byte kind, Object element, int index) {
+    if (pathDepth == pathElements.length) {
+      int newLength = pathDepth * 2;
+      pathElements = Arrays.copyOf(pathElements, newLength);
+      pathIndexes = Arrays.copyOf(pathIndexes, newLength);
+      pathKinds = Arrays.copyOf(pathKinds, newLength);
+    }
+    pathElements[pathDepth] = element;
+    pathIndexes[pathDepth] = index;
+    pathKinds[pathDepth] = kind;
+    pathDepth++;
+  }
+
+  /**
+   * Appends a single path element.
+   */
+  private StringBuilder render(StringBuilder sb, int i) {
+    Object element = pathElements[i];
+    switch (pathKinds[i]) {
+      case INDEX:
+        return sb.append("[").append(pathIndexes[i]).append("]");
+      case KEY:
+        return sb.append("[").append(element).append("]");
+      case LITERAL:
+        return sb.append(element);
+      case MEMBER:
+        sb.append(".");
+        if (element instanceof Property) {
+          return sb.append(((Property) element).getName());
+        } else if (element instanceof HasUuid) {
+          return sb.append(((HasUuid) element).getUuid());
+        }
+        return sb.append(element);
+      default:
+        throw new UnsupportedOperationException(String.valueOf(pathKinds[i]));
+    }
+  }
+
   /**
    * A method to throw a possibly checked exception.
    */
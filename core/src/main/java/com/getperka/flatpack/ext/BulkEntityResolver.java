@@ -0,0 +1,46 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.ext;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+import com.getperka.flatpack.HasUuid;
+
+/**
+ * An {@link EntityResolver} that can look up many entities of the same type at once. When the
+ * configured resolver implements this interface, the entities in each type's portion of the
+ * {@code data} section are resolved in batches rather than one at a time, which allows a
+ * database-backed resolver to issue a single query per batch.
+ */
+public interface BulkEntityResolver extends EntityResolver {
+  /**
+   * Return the existing instances of the requested type with the given uuids.
+   * 
+   * @param <T> the type to be loaded
+   * @param clazz the type to be loaded
+   * @param uuids the UUIDs of the entities to load
+   * @return a map of the entities that already exist, keyed by UUID. Any UUID without a
+   *         corresponding entry will be treated as a new entity.
+   */
+  <T extends HasUuid> Map<UUID, T> resolveAll(Class<T> clazz, Collection<UUID> uuids)
+      throws Exception;
+}
@@ -32,14 +32,18 @@ import com.google.gson.stream.JsonWriter;
  * @param <T> the type of data that the instance operates on
  */
 public abstract class Codex<T> implements Walker<T> {
+  private final Class<T> parameterization;
   /**
-   * Memoizing this value for the path-tracking saves a non-trivial amount of wall-time.
+   * Memoizing these values for the path-tracking saves a non-trivial amount of wall-time.
    */
+  private final String readPath;
   private final String simpleName;
-  private final Class<T> parameterization;
+  private final String writePath;
 
   protected Codex() {
     simpleName = getClass().getSimpleName();
+    readPath = "(" + simpleName + ".read())";
+    writePath = "(" + simpleName + ".write())";
     parameterization = erase(getSingleParameterization(getClass(), Codex.class));
   }
 
@@ -93,14 +97,14 @@ public abstract class Codex<T> implements Walker<T> {
     if (element == null || element.isJsonNull()) {
       return null;
     }
-    context.pushPath("(" + simpleName + ".read())");
+    context.pushPath(readPath);
     try {
       return readNotNull(element, context);
     } catch (Exception e) {
       context.fail(e);
       return null;
     } finally {
-      context.popPath();
+      context.dropPath();
     }
   }
 
@@ -146,7 +150,7 @@ public abstract class Codex<T> implements Walker<T> {
    * @param context the serialization context
    */
   public void write(T object, SerializationContext context) {
-    context.pushPath("(" + simpleName + ".write())");
+    context.pushPath(writePath);
     try {
       JsonWriter writer = context.getWriter();
       if (object == null) {
@@ -157,7 +161,7 @@ public abstract class Codex<T> implements Walker<T> {
     } catch (Exception e) {
       context.fail(e);
     } finally {
-      context.popPath();
+      context.dropPath();
     }
   }
 
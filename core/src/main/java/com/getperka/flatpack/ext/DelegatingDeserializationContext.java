@@ -89,6 +89,11 @@ public class DelegatingDeserializationContext extends DeserializationContext {
     return delegate.getWarnings();
   }
 
+  @Override
+  public void dropPath() {
+    delegate.dropPath();
+  }
+
   @Override
   public String popPath() {
     return delegate.popPath();
@@ -99,6 +104,21 @@ public class DelegatingDeserializationContext extends DeserializationContext {
     delegate.pushPath(element);
   }
 
+  @Override
+  public void pushPathIndex(int index) {
+    delegate.pushPathIndex(index);
+  }
+
+  @Override
+  public void pushPathKey(Object key) {
+    delegate.pushPathKey(key);
+  }
+
+  @Override
+  public void pushPathMember(Object member) {
+    delegate.pushPathMember(member);
+  }
+
   @Override
   public void putEntity(UUID uuid, HasUuid entity, EntitySource source) {
     delegate.putEntity(uuid, entity, source);
@@ -91,6 +91,16 @@ public class DelegatingSerializationContext extends SerializationContext {
     return delegate.getWriter();
   }
 
+  @Override
+  public boolean isModified(HasUuid entity) {
+    return delegate.isModified(entity);
+  }
+
+  @Override
+  public void dropPath() {
+    delegate.dropPath();
+  }
+
   @Override
   public String popPath() {
     return delegate.popPath();
@@ -101,6 +111,21 @@ public class DelegatingSerializationContext extends SerializationContext {
     delegate.pushPath(element);
   }
 
+  @Override
+  public void pushPathIndex(int index) {
+    delegate.pushPathIndex(index);
+  }
+
+  @Override
+  public void pushPathKey(Object key) {
+    delegate.pushPathKey(key);
+  }
+
+  @Override
+  public void pushPathMember(Object member) {
+    delegate.pushPathMember(member);
+  }
+
   @Override
   public void runPostWork() {
     delegate.runPostWork();
@@ -22,9 +22,11 @@ package com.getperka.flatpack.ext;
 import static com.getperka.flatpack.util.FlatPackCollections.mapForLookup;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 
@@ -33,6 +35,9 @@ import com.getperka.flatpack.inject.PackScoped;
 import com.getperka.flatpack.security.MemoizingSecurity;
 import com.getperka.flatpack.security.PrincipalMapper;
 import com.getperka.flatpack.util.FlatPackCollections;
+import com.getperka.flatpack.util.FlatPackUuids;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
 
 /**
  * Contains state relating to in-process deserialization.
@@ -45,16 +50,20 @@ public class DeserializationContext extends BaseContext {
     UNKNOWN;
   }
 
-  private final Map<UUID, HasUuid> entities = mapForLookup();
+  /**
+   * Entities may be looked up concurrently when properties are applied in parallel.
+   */
+  private final Map<UUID, HasUuid> entities = new ConcurrentHashMap<UUID, HasUuid>();
   private final Map<HasUuid, Set<Property>> modified = mapForLookup();
   @Inject
   private PrincipalMapper principalMapper;
-  private final Map<UUID, EntitySource> sources = mapForLookup();
+  private final Map<UUID, EntitySource> sources = new ConcurrentHashMap<UUID, EntitySource>();
   @Inject
   private MemoizingSecurity security;
 
   @Inject
   private TypeContext typeContext;
+  private List<UUID> uuidTable = Collections.emptyList();
 
   protected DeserializationContext() {}
 
@@ -95,6 +104,30 @@ public class DeserializationContext extends BaseContext {
     return toReturn == null ? Collections.<Property> emptySet() : toReturn;
   }
 
+  /**
+   * Returns the UUID represented by a payload value, which is either a UUID string or an index into
+   * the payload's table of UUIDs.
+   */
+  public UUID getUuid(JsonElement element) {
+    JsonPrimitive primitive = element.getAsJsonPrimitive();
+    if (!primitive.isNumber()) {
+      return FlatPackUuids.fromString(primitive.getAsString());
+    }
+    List<UUID> table = getUuidTable();
+    int index = primitive.getAsInt();
+    if (index < 0 || index >= table.size()) {
+      fail(new IllegalArgumentException("UUID index " + index + " is not in the uuids table"));
+    }
+    return table.get(index);
+  }
+
+  /**
+   * Returns the table of UUIDs read from the payload, which may be empty.
+   */
+  public List<UUID> getUuidTable() {
+    return uuidTable;
+  }
+
   /**
    * Stores an entity to be identified by a UUID.
    * 
@@ -107,4 +140,11 @@ public class DeserializationContext extends BaseContext {
     sources.put(uuid, source);
   }
 
+  /**
+   * Records the table of UUIDs read from the payload's {@code uuids} section.
+   */
+  public void setUuidTable(List<UUID> uuidTable) {
+    this.uuidTable = uuidTable;
+  }
+
 }
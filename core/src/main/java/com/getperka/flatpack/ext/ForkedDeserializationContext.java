@@ -0,0 +1,97 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.ext;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import com.getperka.flatpack.HasUuid;
+
+/**
+ * A DeserializationContext for use by a single worker thread when entity properties are applied in
+ * parallel. Entity bookkeeping is shared with the parent context, while the error-reporting path,
+ * post-work, and warnings are retained by the fork until {@link #join()} is called. Joining forks
+ * in a fixed order makes the resulting post-work order independent of thread scheduling.
+ */
+public class ForkedDeserializationContext extends DeserializationContext {
+  private final DeserializationContext parent;
+
+  public ForkedDeserializationContext(DeserializationContext parent) {
+    this.parent = parent;
+  }
+
+  @Override
+  public boolean addModified(HasUuid entity, Property property) {
+    synchronized (parent) {
+      return parent.addModified(entity, property);
+    }
+  }
+
+  @Override
+  public HasUuid getEntity(UUID uuid) {
+    return parent.getEntity(uuid);
+  }
+
+  @Override
+  public EntitySource getEntitySource(HasUuid entity) {
+    return parent.getEntitySource(entity);
+  }
+
+  @Override
+  public Set<Property> getModifiedProperties(HasUuid entity) {
+    synchronized (parent) {
+      return parent.getModifiedProperties(entity);
+    }
+  }
+
+  @Override
+  public Principal getPrincipal() {
+    return parent.getPrincipal();
+  }
+
+  @Override
+  public List<UUID> getUuidTable() {
+    return parent.getUuidTable();
+  }
+
+  /**
+   * Moves the post-work and warnings accumulated by this context into the parent context. This
+   * method must only be called by the thread that owns the parent context.
+   */
+  public void join() {
+    transferTo(parent);
+  }
+
+  /**
+   * Stores the entity in the parent context, unless another thread has already stored an entity
+   * with the same UUID. Callers should use {@link #getEntity(UUID)} to obtain the canonical
+   * instance.
+   */
+  @Override
+  public void putEntity(UUID uuid, HasUuid entity, EntitySource source) {
+    synchronized (parent) {
+      if (parent.getEntity(uuid) == null) {
+        parent.putEntity(uuid, entity, source);
+      }
+    }
+  }
+}
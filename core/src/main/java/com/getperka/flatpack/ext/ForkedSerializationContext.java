@@ -0,0 +1,98 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.ext;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.Set;
+import java.util.UUID;
+
+import com.getperka.flatpack.HasUuid;
+import com.getperka.flatpack.TraversalMode;
+import com.google.gson.internal.bind.JsonTreeWriter;
+
+/**
+ * A SerializationContext for use by a single worker thread when the {@code data} section is written
+ * in parallel. Output is accumulated in a private JSON tree that the owning thread will copy into
+ * the payload. The error-reporting path and any warnings are retained by the fork until
+ * {@link #join()} is called, while the remaining state is read from the parent context.
+ */
+public class ForkedSerializationContext extends SerializationContext {
+  private final SerializationContext parent;
+  private final JsonTreeWriter writer = new JsonTreeWriter();
+
+  public ForkedSerializationContext(SerializationContext parent) {
+    this.parent = parent;
+    writer.setSerializeNulls(parent.getWriter().getSerializeNulls());
+  }
+
+  @Override
+  public boolean add(HasUuid entity) {
+    synchronized (parent) {
+      return parent.add(entity);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    writer.close();
+  }
+
+  @Override
+  public Set<HasUuid> getEntities() {
+    return parent.getEntities();
+  }
+
+  @Override
+  public Principal getPrincipal() {
+    return parent.getPrincipal();
+  }
+
+  @Override
+  public TraversalMode getTraversalMode() {
+    return parent.getTraversalMode();
+  }
+
+  @Override
+  public Integer getUuidIndex(UUID uuid) {
+    return parent.getUuidIndex(uuid);
+  }
+
+  /**
+   * Returns the writer that accumulates the fork's output.
+   */
+  @Override
+  public JsonTreeWriter getWriter() {
+    return writer;
+  }
+
+  @Override
+  public boolean isModified(HasUuid entity) {
+    return parent.isModified(entity);
+  }
+
+  /**
+   * Moves the warnings accumulated by this context into the parent context. This method must only
+   * be called by the thread that owns the parent context.
+   */
+  public void join() {
+    transferTo(parent);
+  }
+}
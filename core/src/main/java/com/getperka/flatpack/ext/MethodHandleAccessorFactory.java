@@ -0,0 +1,149 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.ext;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * The default {@link PropertyAccessorFactory}, which adapts getters and setters into
+ * {@link MethodHandle MethodHandles} with an erased {@code Object} signature. Compared to
+ * {@link Method#invoke}, this avoids allocating an argument array and repeating access checks on
+ * every call. If a handle cannot be constructed for a method, a reflective accessor is returned
+ * instead.
+ */
+public class MethodHandleAccessorFactory implements PropertyAccessorFactory {
+  /**
+   * The arguments are checked before the handles are invoked, since the handles would report an
+   * argument of the wrong type with a ClassCastException that could not be distinguished from one
+   * thrown by the method. Anything thrown by a handle is then wrapped, as {@link Method#invoke}
+   * would.
+   */
+  static class MethodHandleAccessor implements PropertyAccessor {
+    private final Class<?> declaringClass;
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    private final boolean valueNullable;
+    /**
+     * The setter's parameter type, boxed if it is a primitive type.
+     */
+    private final Class<?> valueType;
+
+    MethodHandleAccessor(Class<?> declaringClass, MethodHandle getter, MethodHandle setter,
+        Class<?> valueType) {
+      this.declaringClass = declaringClass;
+      this.getter = getter;
+      this.setter = setter;
+      this.valueNullable = valueType == null || !valueType.isPrimitive();
+      this.valueType = valueType == null ? null : MethodType.methodType(valueType).wrap()
+          .returnType();
+    }
+
+    @Override
+    public Object get(Object target) throws Exception {
+      if (getter == null) {
+        throw new UnsupportedOperationException("No getter");
+      }
+      checkTarget(target);
+      try {
+        return (Object) getter.invokeExact(target);
+      } catch (Throwable t) {
+        throw new InvocationTargetException(t);
+      }
+    }
+
+    @Override
+    public boolean isReadable() {
+      return getter != null;
+    }
+
+    @Override
+    public boolean isWritable() {
+      return setter != null;
+    }
+
+    @Override
+    public void set(Object target, Object value) throws Exception {
+      if (setter == null) {
+        throw new UnsupportedOperationException("No setter");
+      }
+      checkTarget(target);
+      if (value == null ? !valueNullable : !valueType.isInstance(value)) {
+        throw new IllegalArgumentException("Cannot assign " + value + " to a "
+          + valueType.getName());
+      }
+      try {
+        setter.invokeExact(target, value);
+      } catch (Throwable t) {
+        throw new InvocationTargetException(t);
+      }
+    }
+
+    /**
+     * For debugging use only.
+     */
+    @Override
+    public String toString() {
+      return "method handle " + getter + " " + setter;
+    }
+
+    private void checkTarget(Object target) {
+      if (target == null) {
+        throw new NullPointerException();
+      }
+      if (!declaringClass.isInstance(target)) {
+        throw new IllegalArgumentException("Object is not an instance of "
+          + declaringClass.getName());
+      }
+    }
+  }
+
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+  private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class,
+      Object.class);
+
+  private final ReflectiveAccessorFactory fallback = new ReflectiveAccessorFactory();
+
+  @Override
+  public PropertyAccessor create(Method getter, Method setter) {
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    try {
+      MethodHandle getterHandle = null;
+      if (getter != null) {
+        getter.setAccessible(true);
+        getterHandle = lookup.unreflect(getter).asType(GETTER_TYPE);
+      }
+      MethodHandle setterHandle = null;
+      if (setter != null) {
+        setter.setAccessible(true);
+        setterHandle = lookup.unreflect(setter).asType(SETTER_TYPE);
+      }
+      Class<?> declaringClass = getter == null ? setter.getDeclaringClass()
+          : getter.getDeclaringClass();
+      return new MethodHandleAccessor(declaringClass, getterHandle, setterHandle,
+          setter == null ? null : setter.getParameterTypes()[0]);
+    } catch (IllegalAccessException e) {
+      return fallback.create(getter, setter);
+    }
+  }
+}
@@ -24,9 +24,12 @@ import static com.getperka.flatpack.util.FlatPackTypes.hasAnnotationWithSimpleNa
 import java.lang.annotation.Annotation;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.inject.Inject;
 
@@ -35,6 +38,8 @@ import com.getperka.flatpack.HasUuid;
 import com.getperka.flatpack.JsonProperty;
 import com.getperka.flatpack.SuppressDefaultValue;
 import com.getperka.flatpack.security.GroupPermissions;
+import com.getperka.flatpack.security.SecurityAction;
+import com.getperka.flatpack.security.SecurityGroup;
 import com.getperka.flatpack.security.SecurityGroups;
 import com.getperka.flatpack.util.UuidDigest;
 
@@ -47,6 +52,8 @@ public class Property extends BaseHasUuid {
    * Constructs {@link Property} instances.
    */
   static class Builder {
+    @Inject
+    private PropertyAccessorFactory accessorFactory;
     @Inject
     private Property prop;
     @Inject
@@ -75,6 +82,7 @@ public class Property extends BaseHasUuid {
         throw new IllegalStateException("No getter or setter");
       }
       toReturn.type = toReturn.codex.describe();
+      toReturn.accessor = accessorFactory.create(getter, setter);
 
       return toReturn;
     }
@@ -142,6 +150,7 @@ public class Property extends BaseHasUuid {
     }
   };
 
+  private PropertyAccessor accessor;
   private Codex<?> codex;
   private boolean deepTraversalOnly;
   /**
@@ -157,6 +166,12 @@ public class Property extends BaseHasUuid {
   private boolean embedded;
   private Method getter;
   private GroupPermissions groupPermissions;
+  /**
+   * The groups in {@link #groupPermissions} that grant each action, computed as actions are
+   * requested.
+   */
+  private final ConcurrentMap<SecurityAction, List<SecurityGroup>> groupsGranting =
+      new ConcurrentHashMap<SecurityAction, List<SecurityGroup>>();
   private Property implied;
   private String name;
   private Method setter;
@@ -166,6 +181,15 @@ public class Property extends BaseHasUuid {
   @Inject
   private Property() {}
 
+  /**
+   * Returns the object used to read and write the property's value. This should be preferred over
+   * invoking {@link #getGetter()} or {@link #getSetter()} reflectively.
+   */
+  @NoPack
+  public PropertyAccessor getAccessor() {
+    return accessor;
+  }
+
   @NoPack
   public Codex<?> getCodex() {
     return codex;
@@ -209,6 +233,28 @@ public class Property extends BaseHasUuid {
     return groupPermissions;
   }
 
+  /**
+   * Returns the groups in the property's {@link GroupPermissions} that can grant {@code action}, or
+   * {@code null} if the property has no permissions. The list is computed once for each action and
+   * shared by every entity and principal, so it may be consulted for every property of every entity
+   * in a payload without allocating.
+   */
+  public List<SecurityGroup> getGroupsGranting(SecurityAction action) {
+    GroupPermissions permissions = groupPermissions;
+    if (permissions == null) {
+      return null;
+    }
+    List<SecurityGroup> toReturn = groupsGranting.get(action);
+    if (toReturn == null) {
+      toReturn = Collections.unmodifiableList(permissions.grants(action));
+      List<SecurityGroup> existing = groupsGranting.putIfAbsent(action, toReturn);
+      if (existing != null) {
+        toReturn = existing;
+      }
+    }
+    return toReturn;
+  }
+
   /**
    * When a new value is assigned to the current property in some instance, the implied property of
    * the new value should also be updated with the current instance.
@@ -274,6 +320,7 @@ public class Property extends BaseHasUuid {
 
   public void setGroupPermissions(GroupPermissions groupPermissions) {
     this.groupPermissions = groupPermissions;
+    groupsGranting.clear();
   }
 
   /**
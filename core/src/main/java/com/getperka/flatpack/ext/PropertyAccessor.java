@@ -0,0 +1,64 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.ext;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Reads and writes the value of a {@link Property} on an entity instance. A PropertyAccessor is
+ * created once for each Property by a {@link PropertyAccessorFactory} and is used by both the pack
+ * and unpack code paths instead of calling {@link java.lang.reflect.Method#invoke} directly.
+ * <p>
+ * Implementations report failures in the same way as {@code Method.invoke}, regardless of how the
+ * getter or setter is actually called, so that callers may unwrap errors consistently.
+ */
+public interface PropertyAccessor {
+  /**
+   * Returns the value of the property in {@code target}.
+   *
+   * @throws IllegalArgumentException if {@code target} is not an instance of the type that declares
+   *           the property
+   * @throws InvocationTargetException if the getter throws an exception, which will be the cause
+   * @throws NullPointerException if {@code target} is {@code null}
+   * @throws UnsupportedOperationException if the property has no getter
+   */
+  Object get(Object target) throws Exception;
+
+  /**
+   * Returns {@code true} if {@link #get(Object)} may be called.
+   */
+  boolean isReadable();
+
+  /**
+   * Returns {@code true} if {@link #set(Object, Object)} may be called.
+   */
+  boolean isWritable();
+
+  /**
+   * Assigns a new value of the property in {@code target}.
+   *
+   * @throws IllegalArgumentException if {@code target} is not an instance of the type that declares
+   *           the property, or if {@code value} cannot be assigned to the property
+   * @throws InvocationTargetException if the setter throws an exception, which will be the cause
+   * @throws NullPointerException if {@code target} is {@code null}
+   * @throws UnsupportedOperationException if the property has no setter
+   */
+  void set(Object target, Object value) throws Exception;
+}
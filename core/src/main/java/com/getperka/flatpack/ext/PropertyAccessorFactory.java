@@ -0,0 +1,42 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.ext;
+
+import java.lang.reflect.Method;
+
+import com.getperka.flatpack.Configuration;
+
+/**
+ * Creates the {@link PropertyAccessor} for a {@link Property} when the enclosing type is first
+ * described by {@link TypeContext}. An alternate strategy may be installed via
+ * {@link Configuration#withPropertyAccessorFactory(PropertyAccessorFactory)}.
+ *
+ * @see MethodHandleAccessorFactory
+ * @see ReflectiveAccessorFactory
+ */
+public interface PropertyAccessorFactory {
+  /**
+   * Returns a PropertyAccessor for the given methods.
+   *
+   * @param getter the property's getter, which may be {@code null}
+   * @param setter the property's setter, which may be {@code null}
+   */
+  PropertyAccessor create(Method getter, Method setter);
+}
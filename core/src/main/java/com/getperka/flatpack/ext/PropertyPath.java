@@ -111,7 +111,7 @@ public class PropertyPath extends BaseHasUuid {
       if (prop.getGetter() == null) {
         return false;
       }
-      Object currentValue = prop.getGetter().invoke(target);
+      Object currentValue = prop.getAccessor().get(target);
       if (currentValue == null) {
         return false;
       }
@@ -138,10 +138,12 @@ public class PropertyPath extends BaseHasUuid {
       return true;
     } catch (IllegalArgumentException e) {
       ex = e;
-    } catch (IllegalAccessException e) {
-      ex = e;
+    } catch (RuntimeException e) {
+      throw e;
     } catch (InvocationTargetException e) {
       ex = e.getCause();
+    } catch (Exception e) {
+      ex = e;
     }
     throw new RuntimeException(ex);
   }
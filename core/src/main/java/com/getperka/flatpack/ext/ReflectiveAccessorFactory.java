@@ -0,0 +1,83 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.ext;
+
+import java.lang.reflect.Method;
+
+/**
+ * Creates {@link PropertyAccessor} instances that use {@link Method#invoke}. This is the most
+ * broadly-compatible strategy and is used as a fallback by {@link MethodHandleAccessorFactory}.
+ */
+public class ReflectiveAccessorFactory implements PropertyAccessorFactory {
+  static class ReflectiveAccessor implements PropertyAccessor {
+    private final Method getter;
+    private final Method setter;
+
+    ReflectiveAccessor(Method getter, Method setter) {
+      this.getter = getter;
+      this.setter = setter;
+    }
+
+    @Override
+    public Object get(Object target) throws Exception {
+      if (getter == null) {
+        throw new UnsupportedOperationException("No getter");
+      }
+      return getter.invoke(target);
+    }
+
+    @Override
+    public boolean isReadable() {
+      return getter != null;
+    }
+
+    @Override
+    public boolean isWritable() {
+      return setter != null;
+    }
+
+    @Override
+    public void set(Object target, Object value) throws Exception {
+      if (setter == null) {
+        throw new UnsupportedOperationException("No setter");
+      }
+      setter.invoke(target, value);
+    }
+
+    /**
+     * For debugging use only.
+     */
+    @Override
+    public String toString() {
+      return "reflective " + getter + " " + setter;
+    }
+  }
+
+  @Override
+  public PropertyAccessor create(Method getter, Method setter) {
+    if (getter != null) {
+      getter.setAccessible(true);
+    }
+    if (setter != null) {
+      setter.setAccessible(true);
+    }
+    return new ReflectiveAccessor(getter, setter);
+  }
+}
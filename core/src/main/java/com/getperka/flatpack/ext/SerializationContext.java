@@ -20,8 +20,11 @@
 package com.getperka.flatpack.ext;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 
 import javax.inject.Inject;
 
@@ -33,6 +36,7 @@ import com.getperka.flatpack.TraversalMode;
 import com.getperka.flatpack.inject.LastModifiedTime;
 import com.getperka.flatpack.inject.PackScoped;
 import com.getperka.flatpack.util.FlatPackCollections;
+import com.getperka.flatpack.util.FlatPackUuids;
 import com.google.gson.stream.JsonWriter;
 
 /**
@@ -50,6 +54,8 @@ public class SerializationContext extends BaseContext {
   @Inject
   private TraversalMode traversalMode;
 
+  private Map<UUID, Integer> uuidIndexes = Collections.emptyMap();
+
   @Inject
   private JsonWriter writer;
 
@@ -84,13 +90,7 @@ public class SerializationContext extends BaseContext {
     }
     Set<HasUuid> toReturn = FlatPackCollections.setForIteration();
     for (HasUuid entity : entities.keySet()) {
-      if (entity instanceof HasTimestamps) {
-        HasTimestamps ts = (HasTimestamps) entity;
-        DateTime lastModified = ts.getUpdatedAt() == null ? ts.getCreatedAt() : ts.getUpdatedAt();
-        if (lastModifiedTime.isBefore(lastModified)) {
-          toReturn.add(entity);
-        }
-      } else {
+      if (isModified(entity)) {
         toReturn.add(entity);
       }
     }
@@ -104,10 +104,55 @@ public class SerializationContext extends BaseContext {
     return traversalMode;
   }
 
+  /**
+   * Returns {@code true} if {@code entity} has been modified since the cutoff time, or if it does
+   * not record its modification time.
+   */
+  public boolean isModified(HasUuid entity) {
+    if (lastModifiedTime.getMillis() == 0 || !(entity instanceof HasTimestamps)) {
+      return true;
+    }
+    HasTimestamps ts = (HasTimestamps) entity;
+    DateTime lastModified = ts.getUpdatedAt() == null ? ts.getCreatedAt() : ts.getUpdatedAt();
+    return lastModifiedTime.isBefore(lastModified);
+  }
+
+  /**
+   * Returns the index of {@code uuid} in the payload's table of UUIDs, or {@code null} if the UUID
+   * is not in the table.
+   */
+  public Integer getUuidIndex(UUID uuid) {
+    return uuidIndexes.get(uuid);
+  }
+
   /**
    * Returns the JsonWriter accumulating JSON to be written.
    */
   public JsonWriter getWriter() {
     return writer;
   }
+
+  /**
+   * Records the table of UUIDs that has been written into the payload. Subsequent calls to
+   * {@link #writeUuid(UUID)} will refer to the table.
+   */
+  public void setUuidTable(List<UUID> uuids) {
+    Map<UUID, Integer> map = FlatPackCollections.mapForLookup();
+    for (int i = 0, j = uuids.size(); i < j; i++) {
+      map.put(uuids.get(i), i);
+    }
+    uuidIndexes = map;
+  }
+
+  /**
+   * Writes a UUID value, either as its index in the payload's table of UUIDs or as a string.
+   */
+  public void writeUuid(UUID uuid) throws IOException {
+    Integer index = getUuidIndex(uuid);
+    if (index == null) {
+      getWriter().value(FlatPackUuids.toString(uuid));
+    } else {
+      getWriter().value(index.longValue());
+    }
+  }
 }
@@ -22,7 +22,6 @@ package com.getperka.flatpack.ext;
 import static com.getperka.flatpack.util.FlatPackCollections.identitySetForIteration;
 import static com.getperka.flatpack.util.FlatPackCollections.listForAny;
 import static com.getperka.flatpack.util.FlatPackCollections.mapForIteration;
-import static com.getperka.flatpack.util.FlatPackCollections.mapForLookup;
 import static com.getperka.flatpack.util.FlatPackCollections.sortedMapForIteration;
 import static com.getperka.flatpack.util.FlatPackTypes.decapitalize;
 import static com.getperka.flatpack.util.FlatPackTypes.erase;
@@ -39,6 +38,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
@@ -63,7 +64,9 @@ import com.getperka.flatpack.util.FlatPackTypes;
 /**
  * Provides access to typesystem information and vends helper objects.
  * <p>
- * Instances of TypeContext are thread-safe and intended to be long-lived.
+ * Instances of TypeContext are thread-safe and intended to be long-lived. Lookups of previously
+ * computed codexes and entity descriptions do not acquire any locks; only the first request for a
+ * given type synchronizes on the instance.
  */
 @Singleton
 public class TypeContext {
@@ -139,15 +142,25 @@ public class TypeContext {
   /**
    * A map of flattened type representations to a codex capable of handling that type.
    */
-  private final Map<List<Type>, Codex<?>> codexes = mapForLookup();
+  private final ConcurrentMap<List<Type>, Codex<?>> codexes =
+      new ConcurrentHashMap<List<Type>, Codex<?>>();
+  /**
+   * A fast-path cache for raw class lookups, which avoids flattening the type into a new key.
+   */
+  private final ConcurrentMap<Class<?>, Codex<?>> codexesByClass =
+      new ConcurrentHashMap<Class<?>, Codex<?>>();
   /**
    * A DynamicCodex acts as a placeholder when type information can't be determined (which should be
    * rare).
    */
   @Inject
   private DynamicCodex dynamicCodex;
+  /**
+   * All descriptions, including those that are still being extracted. Guarded by {@code this}.
+   */
   private final Map<Class<? extends HasUuid>, EntityDescription> entitiesByClass = mapForIteration();
-  private final Map<String, EntityDescription> entitiesByName = mapForIteration();
+  private final ConcurrentMap<String, EntityDescription> entitiesByName =
+      new ConcurrentHashMap<String, EntityDescription>();
   /**
    * State management to make {@link #describe(Class)} behave in the reentrant case.
    */
@@ -157,6 +170,12 @@ public class TypeContext {
   private Logger logger;
   @Inject
   private PersistenceMapper persistenceMapper;
+  /**
+   * Descriptions whose security information has been finalized, which may be returned from
+   * {@link #describe(Class)} without acquiring a lock.
+   */
+  private final ConcurrentMap<Class<? extends HasUuid>, EntityDescription> published =
+      new ConcurrentHashMap<Class<? extends HasUuid>, EntityDescription>();
   @Inject
   private SecurityPolicy securityPolicy;
 
@@ -167,33 +186,16 @@ public class TypeContext {
    * Examine a class and return an {@link EntityDescription} with introspection data. Calls to this
    * method are cached in the instance of {@link TypeContext}.
    */
-  public synchronized EntityDescription describe(Class<? extends HasUuid> clazz) {
+  public EntityDescription describe(Class<? extends HasUuid> clazz) {
     if (clazz == null) {
       throw new NullPointerException("clazz must be non-null");
     }
 
-    EntityDescription toReturn = entitiesByClass.get(clazz);
+    EntityDescription toReturn = published.get(clazz);
     if (toReturn != null) {
       return toReturn;
     }
-
-    boolean topCall = isExtracting.isEmpty();
-
-    // Create the type and add it to the map to short-circuit type-reference loops
-    toReturn = new EntityDescription();
-    isExtracting.add(toReturn);
-    entitiesByClass.put(clazz, toReturn);
-
-    // Extract the entity data
-    extractOneEntity(toReturn, clazz);
-    if (entitiesByName.put(toReturn.getTypeName(), toReturn) != null) {
-      logger.warn("Duplicate type name {}", clazz.getName());
-    }
-
-    if (topCall) {
-      finalizeEntityDescriptions();
-    }
-    return toReturn;
+    return describeSlowly(clazz);
   }
 
   /**
@@ -215,22 +217,25 @@ public class TypeContext {
   /**
    * Return a Codex instance that can operate on the specified type.
    */
-  public synchronized Codex<?> getCodex(Type type) {
+  public Codex<?> getCodex(Type type) {
+    // Plain classes dominate the lookups and can be resolved without allocating
+    if (type instanceof Class) {
+      Codex<?> toReturn = codexesByClass.get(type);
+      if (toReturn != null) {
+        return toReturn;
+      }
+    }
+
     // Use a canonical representation of the type
     List<Type> flattened = flatten(type);
 
     Codex<?> toReturn = codexes.get(flattened);
-    if (toReturn != null) {
-      return toReturn;
-    }
-
-    toReturn = codexMapper.getCodex(this, type);
-
     if (toReturn == null) {
-      toReturn = dynamicCodex;
+      toReturn = createCodex(type, flattened);
+    }
+    if (type instanceof Class) {
+      codexesByClass.putIfAbsent((Class<?>) type, toReturn);
     }
-
-    codexes.put(flattened, toReturn);
     return toReturn;
   }
 
@@ -241,8 +246,8 @@ public class TypeContext {
     return entitiesByName.get(typeName);
   }
 
-  public Collection<EntityDescription> getEntityDescriptions() {
-    return Collections.unmodifiableCollection(entitiesByClass.values());
+  public synchronized Collection<EntityDescription> getEntityDescriptions() {
+    return Collections.unmodifiableCollection(listForAny(entitiesByClass.values()));
   }
 
   /**
@@ -254,7 +259,7 @@ public class TypeContext {
   }
 
   @Inject
-  void inject(@AllTypes Collection<Class<?>> allTypes) {
+  synchronized void inject(@AllTypes Collection<Class<?>> allTypes) {
     if (allTypes.isEmpty()) {
       logger.warn("No unpackable classes. Will not be able to deserialize entity payloads");
       return;
@@ -291,6 +296,55 @@ public class TypeContext {
     finalizeEntityDescriptions();
   }
 
+  /**
+   * Constructs a codex while holding the lock. Codexes for composite types will reentrantly request
+   * codexes for their component types.
+   */
+  private synchronized Codex<?> createCodex(Type type, List<Type> flattened) {
+    Codex<?> toReturn = codexes.get(flattened);
+    if (toReturn != null) {
+      return toReturn;
+    }
+
+    toReturn = codexMapper.getCodex(this, type);
+
+    if (toReturn == null) {
+      toReturn = dynamicCodex;
+    }
+
+    codexes.put(flattened, toReturn);
+    return toReturn;
+  }
+
+  /**
+   * Looks up or extracts a description while holding the lock. A description that is still being
+   * extracted by the current thread will be returned to allow type-reference loops to resolve.
+   */
+  private synchronized EntityDescription describeSlowly(Class<? extends HasUuid> clazz) {
+    EntityDescription toReturn = entitiesByClass.get(clazz);
+    if (toReturn != null) {
+      return toReturn;
+    }
+
+    boolean topCall = isExtracting.isEmpty();
+
+    // Create the type and add it to the map to short-circuit type-reference loops
+    toReturn = new EntityDescription();
+    isExtracting.add(toReturn);
+    entitiesByClass.put(clazz, toReturn);
+
+    // Extract the entity data
+    extractOneEntity(toReturn, clazz);
+    if (entitiesByName.put(toReturn.getTypeName(), toReturn) != null) {
+      logger.warn("Duplicate type name {}", clazz.getName());
+    }
+
+    if (topCall) {
+      finalizeEntityDescriptions();
+    }
+    return toReturn;
+  }
+
   private void extractOneEntity(EntityDescription d, Class<? extends HasUuid> clazz) {
     // Set identifying information before there's any chance of an escape
     d.setEntityType(clazz);
@@ -412,6 +466,8 @@ public class TypeContext {
             logger.debug("{}.{} -> {}", d.getTypeName(), p.getName(), p.getGroupPermissions());
           }
         }
+        // Now safe to return from describe() without synchronization
+        published.put(d.getEntityType(), d);
       }
     }
   }
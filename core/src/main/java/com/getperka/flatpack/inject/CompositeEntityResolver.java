@@ -20,15 +20,20 @@
 package com.getperka.flatpack.inject;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import com.getperka.flatpack.HasUuid;
+import com.getperka.flatpack.ext.BulkEntityResolver;
 import com.getperka.flatpack.ext.EntityResolver;
+import com.getperka.flatpack.util.FlatPackCollections;
 
 /**
- * Aggregates all user-provided resolvers into a single instance.
+ * Aggregates all user-provided resolvers into a single instance. Resolvers that do not implement
+ * {@link BulkEntityResolver} will be called once for each UUID in a bulk request.
  */
-class CompositeEntityResolver implements EntityResolver {
+class CompositeEntityResolver implements BulkEntityResolver {
 
   private final Collection<EntityResolver> resolvers;
 
@@ -46,4 +51,35 @@ class CompositeEntityResolver implements EntityResolver {
     }
     return null;
   }
+
+  @Override
+  public <T extends HasUuid> Map<UUID, T> resolveAll(Class<T> clazz, Collection<UUID> uuids)
+      throws Exception {
+    Map<UUID, T> toReturn = FlatPackCollections.mapForIteration();
+    List<UUID> remaining = FlatPackCollections.listForAny(uuids);
+    for (EntityResolver resolver : resolvers) {
+      if (remaining.isEmpty()) {
+        break;
+      }
+      if (resolver instanceof BulkEntityResolver) {
+        Map<UUID, T> resolved = ((BulkEntityResolver) resolver).resolveAll(clazz, remaining);
+        if (resolved != null) {
+          for (Map.Entry<UUID, T> entry : resolved.entrySet()) {
+            if (entry.getValue() != null) {
+              toReturn.put(entry.getKey(), entry.getValue());
+            }
+          }
+        }
+      } else {
+        for (UUID uuid : remaining) {
+          T entity = resolver.resolve(clazz, uuid);
+          if (entity != null) {
+            toReturn.put(uuid, entity);
+          }
+        }
+      }
+      remaining.removeAll(toReturn.keySet());
+    }
+    return toReturn;
+  }
 }
@@ -21,6 +21,7 @@ package com.getperka.flatpack.inject;
 
 import java.security.Principal;
 import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
 
 import org.joda.time.DateTime;
 import org.slf4j.ILoggerFactory;
@@ -29,11 +30,15 @@ import org.slf4j.LoggerFactory;
 
 import com.getperka.flatpack.Configuration;
 import com.getperka.flatpack.FlatPack;
+import com.getperka.flatpack.FragmentCache;
 import com.getperka.flatpack.PersistenceMapper;
 import com.getperka.flatpack.TraversalMode;
+import com.getperka.flatpack.WireFormat;
 import com.getperka.flatpack.codexes.DefaultCodexMapper;
 import com.getperka.flatpack.ext.CodexMapper;
 import com.getperka.flatpack.ext.EntityResolver;
+import com.getperka.flatpack.ext.MethodHandleAccessorFactory;
+import com.getperka.flatpack.ext.PropertyAccessorFactory;
 import com.getperka.flatpack.security.MemoizingSecurity;
 import com.getperka.flatpack.security.NoSecurity;
 import com.getperka.flatpack.security.PermissivePrincipalMapper;
@@ -41,6 +46,7 @@ import com.getperka.flatpack.security.PrincipalMapper;
 import com.getperka.flatpack.security.PrincipalSecurity;
 import com.getperka.flatpack.security.ReflexiveSecurityPolicy;
 import com.getperka.flatpack.security.Security;
+import com.getperka.flatpack.security.SecurityDecisionCache;
 import com.getperka.flatpack.security.SecurityPolicy;
 import com.getperka.flatpack.util.IoObserver;
 import com.google.gson.stream.JsonWriter;
@@ -67,9 +73,24 @@ public class FlatPackModule extends AbstractModule {
     bindConstant()
         .annotatedWith(IgnoreUnresolvableTypes.class)
         .to(configuration.isIgnoreUnresolvableTypes());
+    bindConstant()
+        .annotatedWith(ParallelPack.class)
+        .to(configuration.isParallelPack());
+    bindConstant()
+        .annotatedWith(ParallelUnpack.class)
+        .to(configuration.isParallelUnpack());
     bindConstant()
         .annotatedWith(PrettyPrint.class)
         .to(configuration.isPrettyPrint());
+    bindConstant()
+        .annotatedWith(SinglePassPack.class)
+        .to(configuration.isSinglePassPack());
+    bindConstant()
+        .annotatedWith(StreamingUnpack.class)
+        .to(configuration.isStreamingUnpack());
+    bindConstant()
+        .annotatedWith(UuidTable.class)
+        .to(configuration.isUuidTable());
     bindConstant()
         .annotatedWith(Verbose.class)
         .to(configuration.isVerbose());
@@ -77,6 +98,8 @@ public class FlatPackModule extends AbstractModule {
         .annotatedWith(VerboseLogChunkSize.class)
         .to(configuration.getVerboseLogChunkSize());
 
+    bind(WireFormat.class).toInstance(configuration.getWireFormat());
+
     // Provide all class types
     bind(new TypeLiteral<Collection<Class<?>>>() {})
         .annotatedWith(AllTypes.class)
@@ -87,6 +110,16 @@ public class FlatPackModule extends AbstractModule {
     bindUserTypes();
   }
 
+  /**
+   * The pool used by parallel pack and unpack operations, which is only created if one of those
+   * modes is enabled.
+   */
+  @Provides
+  @Singleton
+  protected ForkJoinPool forkJoinPool() {
+    return new ForkJoinPool();
+  }
+
   @Provides
   @FlatPackLogger
   @Singleton
@@ -166,6 +199,20 @@ public class FlatPackModule extends AbstractModule {
           .toInstance(new CompositeEntityResolver(configuration.getEntityResolvers()));
     }
 
+    // FragmentCache
+    if (configuration.getFragmentCache() == null) {
+      bind(FragmentCache.class).toInstance(FragmentCache.disabled());
+    } else {
+      bind(FragmentCache.class).toInstance(configuration.getFragmentCache());
+    }
+
+    // PropertyAccessorFactory
+    if (configuration.getPropertyAccessorFactory() == null) {
+      bind(PropertyAccessorFactory.class).to(MethodHandleAccessorFactory.class);
+    } else {
+      bind(PropertyAccessorFactory.class).toInstance(configuration.getPropertyAccessorFactory());
+    }
+
     // PersistenceMapper
     if (configuration.getPersistenceMappers().size() == 1) {
       bind(PersistenceMapper.class).toInstance(configuration.getPersistenceMappers().get(0));
@@ -192,5 +239,12 @@ public class FlatPackModule extends AbstractModule {
     // Security
     bind(Security.class).to(PrincipalSecurity.class);
 
+    // SecurityDecisionCache
+    if (configuration.getSecurityDecisionCache() == null) {
+      bind(SecurityDecisionCache.class).toInstance(SecurityDecisionCache.disabled());
+    } else {
+      bind(SecurityDecisionCache.class).toInstance(configuration.getSecurityDecisionCache());
+    }
+
   }
 }
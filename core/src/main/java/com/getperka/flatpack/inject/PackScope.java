@@ -68,7 +68,8 @@ public class PackScope implements Scope {
   /**
    * Retains the thread-local data.
    */
-  private final ThreadLocal<Deque<Map<Key<?>, Object>>> allData = new ThreadLocal<Deque<Map<Key<?>, Object>>>() {
+  private final ThreadLocal<Deque<Map<Key<?>, Object>>> allData =
+      new ThreadLocal<Deque<Map<Key<?>, Object>>>() {
 
     @Override
     protected Deque<Map<Key<?>, Object>> initialValue() {
@@ -79,7 +80,17 @@ public class PackScope implements Scope {
   PackScope() {}
 
   public PackScope enter() {
-    allData.get().push(FlatPackCollections.<Key<?>, Object> mapForLookup());
+    allData.get().push(FlatPackCollections.<Key<?>, Object> mapForIteration());
+    return this;
+  }
+
+  /**
+   * Enters a new scope on the current thread which is initially populated with a copy of a
+   * {@link #snapshot()}. This allows work that is forked from a pack or unpack operation to share
+   * its scoped objects.
+   */
+  public PackScope enter(Map<Key<?>, Object> snapshot) {
+    allData.get().push(FlatPackCollections.<Key<?>, Object> mapForIteration(snapshot));
     return this;
   }
 
@@ -113,6 +124,19 @@ public class PackScope implements Scope {
     });
   }
 
+  /**
+   * Returns a mutable copy of the objects in the current scope, which may be passed to
+   * {@link #enter(Map)} on another thread. Scoped objects that are not thread-safe should be
+   * removed from the copy so that the other thread will create its own instances.
+   */
+  public Map<Key<?>, Object> snapshot() {
+    Map<Key<?>, Object> map = data();
+    if (map == null) {
+      throw new OutOfScopeException("Not in a PackScope");
+    }
+    return FlatPackCollections.mapForIteration(map);
+  }
+
   public PackScope withEntity(FlatPackEntity<?> entity) {
     withLastModifiedTime(entity.getLastModifiedTime());
     withPrincipal(entity.getPrincipal());
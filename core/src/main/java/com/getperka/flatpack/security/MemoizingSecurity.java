@@ -23,12 +23,25 @@ package com.getperka.flatpack.security;
 import static com.getperka.flatpack.util.FlatPackCollections.mapForLookup;
 
 import java.security.Principal;
+import java.util.List;
 import java.util.Map;
 
 import javax.inject.Inject;
 
+import com.getperka.flatpack.HasUuid;
+import com.getperka.flatpack.ext.Property;
+
 /**
  * Memoizes security decisions.
+ * <p>
+ * Checks against entity properties, which are made for every property of every entity in a
+ * payload, may use {@link #may(Principal, HasUuid, Property, SecurityAction)}. When a property has
+ * no {@link GroupPermissions}, or its permissions grant an action to the principal via the
+ * inclusive group or one of the principal's global groups, the action is permitted on any entity.
+ * Those cases are decided from the groups precomputed by {@link Property#getGroupsGranting} without
+ * allocating a {@link SecurityTarget}. This relies on the {@link SecurityPolicy} returning the same
+ * permissions for a property regardless of the entity being examined, as is the case for the
+ * built-in policies.
  */
 public class MemoizingSecurity implements Security {
   static class Key {
@@ -73,6 +86,15 @@ public class MemoizingSecurity implements Security {
   private final Map<Key, Boolean> cache = mapForLookup();
   @Inject
   private Security delegate;
+  /**
+   * The global security groups of {@link #globalGroupsPrincipal}, computed lazily.
+   */
+  private List<String> globalGroups;
+  private Principal globalGroupsPrincipal;
+  @Inject
+  private PrincipalMapper principalMapper;
+  @Inject
+  private SecurityGroups securityGroups;
 
   /**
    * Requires injection.
@@ -91,4 +113,42 @@ public class MemoizingSecurity implements Security {
     return toReturn;
   }
 
+  /**
+   * Equivalent to {@code may(principal, SecurityTarget.of(entity, property), op)}, but avoids
+   * per-entity work when the property's permissions grant the action to the principal outright.
+   */
+  public boolean may(Principal principal, HasUuid entity, Property property, SecurityAction op) {
+    List<SecurityGroup> groups = property.getGroupsGranting(op);
+    // Unsecured property, as in PrincipalSecurity
+    if (groups == null) {
+      return true;
+    }
+    for (int i = 0, j = groups.size(); i < j; i++) {
+      SecurityGroup group = groups.get(i);
+      if (securityGroups.getGroupAll().equals(group)) {
+        return true;
+      }
+      if (group.isGlobalSecurityGroup() && principal != null) {
+        List<String> global = getGlobalGroups(principal);
+        if (global != null && global.contains(group.getName())) {
+          return true;
+        }
+      }
+    }
+    // May be granted by an entity-relative group or denied, which requires a full check
+    return may(principal, SecurityTarget.of(entity, property), op);
+  }
+
+  /**
+   * Returns the principal's global security groups, which are retained for the principal most
+   * recently examined.
+   */
+  private List<String> getGlobalGroups(Principal principal) {
+    if (globalGroupsPrincipal != principal) {
+      // The pack-scoped principal is almost always used, so just start over
+      globalGroups = principalMapper.getGlobalSecurityGroups(principal);
+      globalGroupsPrincipal = principal;
+    }
+    return globalGroups;
+  }
 }
@@ -39,15 +39,26 @@ import com.getperka.flatpack.inject.FlatPackLogger;
  */
 public class PrincipalSecurity implements Security {
   static class Result {
+    /**
+     * {@code true} if the decision would be the same for any entity of the target's type.
+     */
+    final boolean cacheable;
     final boolean decision;
     final String reason;
 
     public Result(boolean decision, String reason) {
+      this(decision, reason, false);
+    }
+
+    public Result(boolean decision, String reason, boolean cacheable) {
+      this.cacheable = cacheable;
       this.decision = decision;
       this.reason = reason;
     }
   }
 
+  @Inject
+  private SecurityDecisionCache decisionCache;
   @FlatPackLogger
   @Inject
   private Logger logger;
@@ -81,6 +92,8 @@ public class PrincipalSecurity implements Security {
    * by a {@link Principal}. The rule will match if the current principal is a member of the mapped
    * principals.
    * </ul>
+   * If a {@link SecurityDecisionCache} has been configured, decisions that do not involve any
+   * entity-relative groups will be reused for subsequent requests.
    */
   @Override
   public boolean may(final Principal principal, SecurityTarget target, SecurityAction op) {
@@ -96,32 +109,51 @@ public class PrincipalSecurity implements Security {
       return new Result(true, "isAccessEnforced=false");
     }
 
+    // Look for a decision made on behalf of an earlier request
+    Boolean cached = decisionCache.get(principal, target, op);
+    if (cached != null) {
+      return new Result(cached, "SecurityDecisionCache");
+    }
+
+    Result toReturn = mayImplUncached(principal, target, op);
+    if (toReturn.cacheable) {
+      decisionCache.put(principal, target, op, toReturn.decision);
+    }
+    return toReturn;
+  }
+
+  private Result mayImplUncached(final Principal principal, SecurityTarget target,
+      SecurityAction op) {
     // Find the permissions that govern access to the requested target
     GroupPermissions permissions = securityPolicy.getPermissions(target);
 
     // Unsecured target, allow access
     if (permissions == null) {
-      return new Result(true, "no GroupPermissions");
+      return new Result(true, "no GroupPermissions", true);
     }
 
+    // A denial is only cacheable if no entity-relative group could have granted access
+    boolean entityRelative = false;
+
     // Iterate over each SecurityGroup that can grant the requested action
     for (SecurityGroup group : permissions.grants(op)) {
 
       // Inclusive security group
       if (securityGroups.getGroupAll().equals(group)) {
-        return new Result(true, group.getDescription());
+        return new Result(true, group.getDescription(), true);
       }
 
       // Global
       if (group.isGlobalSecurityGroup()) {
         List<String> global = principalMapper.getGlobalSecurityGroups(principal);
         if (global != null && global.contains(group.getName())) {
-          return new Result(true, group.getDescription());
+          return new Result(true, group.getDescription(), true);
         }
         continue;
       }
 
       // Entity-relative
+      entityRelative = true;
       final HasUuid entity = target.getEntity();
       if (entity != null) {
         final AtomicBoolean found = new AtomicBoolean();
@@ -146,6 +178,6 @@ public class PrincipalSecurity implements Security {
         }
       }
     }
-    return new Result(false, "no match");
+    return new Result(false, "no match", !entityRelative);
   }
 }
@@ -0,0 +1,314 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.security;
+
+import java.security.Principal;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.getperka.flatpack.Configuration;
+import com.getperka.flatpack.HasUuid;
+import com.getperka.flatpack.ext.EntityDescription;
+
+/**
+ * A bounded cache of security decisions that is shared across all pack and unpack operations
+ * performed by a FlatPack instance. Whereas {@link MemoizingSecurity} only retains decisions for
+ * the duration of a single operation, this cache allows {@link PrincipalSecurity} to skip policy
+ * evaluation for a principal that has recently been granted or denied the same action on the same
+ * type or property.
+ * <p>
+ * Only decisions that do not depend upon the identity of a specific entity are stored. Targets are
+ * generalized to their type or property before being used as a key, in the same manner as
+ * {@code StaticPolicy}, so the installed {@link SecurityPolicy} must not vary its permissions
+ * between instances of the same type. Decisions that are affected by an entity-relative
+ * {@link SecurityGroup} are always re-evaluated.
+ * <p>
+ * Entries are evicted in insertion order once the maximum size has been exceeded and are ignored
+ * once their time-to-live has elapsed. An expired entry keeps its place in the cache until the
+ * decision is recorded again or the entry is evicted. Because decisions may be retained for some
+ * time after a principal's global groups have changed, applications should call one of the
+ * {@code invalidate} methods when changing security-relevant state.
+ *
+ * @see Configuration#withSecurityDecisionCache(SecurityDecisionCache)
+ */
+public class SecurityDecisionCache {
+  static class Entry {
+    final boolean decision;
+    final long expiresAt;
+
+    Entry(boolean decision, long expiresAt) {
+      this.decision = decision;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  static class Key {
+    private final SecurityAction action;
+    private final int hashCode;
+    private final Principal principal;
+    private final SecurityTarget target;
+
+    public Key(Principal principal, SecurityTarget target, SecurityAction action) {
+      this.action = action;
+      this.principal = principal;
+      this.target = target;
+
+      hashCode = target.hashCode() * 3 + action.hashCode() * 5
+        + (principal == null ? 0 : principal.hashCode() * 7);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+
+      return target.equals(other.target) && action.equals(other.action)
+        && (principal == null ? other.principal == null : principal.equals(other.principal));
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public String toString() {
+      return principal + " " + action + " " + target;
+    }
+  }
+
+  /**
+   * Returns a cache that never retains any decisions.
+   */
+  public static SecurityDecisionCache disabled() {
+    return new SecurityDecisionCache(0, 0, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Returns a target that describes the type or property referred to by {@code target}, without
+   * retaining a reference to any specific entity.
+   */
+  static SecurityTarget generalize(SecurityTarget target) {
+    switch (target.getKind()) {
+      case ENTITY:
+        return SecurityTarget.of(target.getEntityType());
+      case ENTITY_PROPERTY:
+        return SecurityTarget.of(target.getProperty());
+      case GLOBAL:
+      case PROPERTY:
+      case TYPE:
+        return target;
+      default:
+        throw new UnsupportedOperationException(target.getKind().name());
+    }
+  }
+
+  private final ConcurrentMap<Key, Entry> decisions = new ConcurrentHashMap<Key, Entry>();
+  private final AtomicLong evictions = new AtomicLong();
+  private final AtomicLong hits = new AtomicLong();
+  private final Queue<Key> insertionOrder = new ConcurrentLinkedQueue<Key>();
+  private final int maximumSize;
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicInteger size = new AtomicInteger();
+  private final long ttlNanos;
+
+  /**
+   * Constructs a new cache.
+   *
+   * @param maximumSize the maximum number of decisions to retain, or {@code 0} to disable caching
+   * @param ttl the length of time that a decision may be reused, or {@code 0} for no expiration
+   * @param unit the unit of {@code ttl}
+   */
+  public SecurityDecisionCache(int maximumSize, long ttl, TimeUnit unit) {
+    if (maximumSize < 0) {
+      throw new IllegalArgumentException("maximumSize must be non-negative");
+    }
+    if (ttl < 0) {
+      throw new IllegalArgumentException("ttl must be non-negative");
+    }
+    this.maximumSize = maximumSize;
+    this.ttlNanos = unit.toNanos(ttl);
+  }
+
+  /**
+   * Returns a previously-recorded decision, or {@code null} if the decision must be computed.
+   */
+  public Boolean get(Principal principal, SecurityTarget target, SecurityAction action) {
+    if (!isEnabled()) {
+      return null;
+    }
+    Key key = new Key(principal, generalize(target), action);
+    Entry entry = decisions.get(key);
+    /*
+     * An expired entry is left in place, so that its key keeps a single position in the insertion
+     * order. It will be replaced when the caller records the recomputed decision.
+     */
+    if (entry == null || ttlNanos > 0 && System.nanoTime() - entry.expiresAt > 0) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return entry.decision;
+  }
+
+  /**
+   * Returns the number of decisions that have been discarded to keep the cache within its maximum
+   * size.
+   */
+  public long getEvictionCount() {
+    return evictions.get();
+  }
+
+  /**
+   * Returns the number of calls to {@link #get} that returned a decision.
+   */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public int getMaximumSize() {
+    return maximumSize;
+  }
+
+  /**
+   * Returns the number of calls to {@link #get} that did not return a decision.
+   */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * Returns the approximate number of decisions currently retained.
+   */
+  public int getSize() {
+    return size.get();
+  }
+
+  /**
+   * Removes all decisions that refer to the given type, its subtypes, or their properties.
+   */
+  public void invalidate(Class<? extends HasUuid> entityType) {
+    for (Key key : decisions.keySet()) {
+      SecurityTarget target = key.target;
+      Class<? extends HasUuid> affected;
+      if (target.getEntityType() != null) {
+        affected = target.getEntityType();
+      } else if (target.getProperty() != null) {
+        EntityDescription enclosing = target.getProperty().getEnclosingType();
+        affected = enclosing == null ? null : enclosing.getEntityType();
+      } else {
+        affected = null;
+      }
+      // Global decisions may be affected by any type
+      if (affected == null || entityType.isAssignableFrom(affected)) {
+        remove(key);
+      }
+    }
+    insertionOrder.retainAll(decisions.keySet());
+  }
+
+  /**
+   * Removes all decisions made on behalf of the given principal.
+   */
+  public void invalidate(Principal principal) {
+    for (Key key : decisions.keySet()) {
+      if (key.principal == null ? principal == null : key.principal.equals(principal)) {
+        remove(key);
+      }
+    }
+    insertionOrder.retainAll(decisions.keySet());
+  }
+
+  /**
+   * Removes all decisions.
+   */
+  public void invalidateAll() {
+    for (Key key : decisions.keySet()) {
+      remove(key);
+    }
+    insertionOrder.retainAll(decisions.keySet());
+  }
+
+  public boolean isEnabled() {
+    return maximumSize > 0;
+  }
+
+  /**
+   * Records a decision that has been determined not to depend upon any specific entity.
+   */
+  public void put(Principal principal, SecurityTarget target, SecurityAction action,
+      boolean decision) {
+    if (!isEnabled()) {
+      return;
+    }
+    Key key = new Key(principal, generalize(target), action);
+    Entry entry = new Entry(decision, System.nanoTime() + ttlNanos);
+    // A replaced entry's key is already in the insertion order
+    if (decisions.put(key, entry) == null) {
+      size.incrementAndGet();
+      insertionOrder.add(key);
+    }
+
+    // Evict the oldest decisions
+    while (size.get() > maximumSize) {
+      Key oldest = insertionOrder.poll();
+      if (oldest == null) {
+        break;
+      }
+      if (remove(oldest)) {
+        evictions.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of keys in the eviction queue. Visible for testing.
+   */
+  int getQueueLength() {
+    return insertionOrder.size();
+  }
+
+  private boolean remove(Key key) {
+    if (decisions.remove(key) != null) {
+      size.decrementAndGet();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * For debugging use only.
+   */
+  @Override
+  public String toString() {
+    return "SecurityDecisionCache size=" + getSize() + " hits=" + getHitCount() + " misses="
+      + getMissCount() + " evictions=" + getEvictionCount();
+  }
+}
@@ -0,0 +1,430 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.util;
+
+import static com.getperka.flatpack.util.BinaryJsonWriter.BEGIN_ARRAY;
+import static com.getperka.flatpack.util.BinaryJsonWriter.BEGIN_OBJECT;
+import static com.getperka.flatpack.util.BinaryJsonWriter.DOUBLE;
+import static com.getperka.flatpack.util.BinaryJsonWriter.END_ARRAY;
+import static com.getperka.flatpack.util.BinaryJsonWriter.END_OBJECT;
+import static com.getperka.flatpack.util.BinaryJsonWriter.FALSE;
+import static com.getperka.flatpack.util.BinaryJsonWriter.LONG;
+import static com.getperka.flatpack.util.BinaryJsonWriter.MAGIC;
+import static com.getperka.flatpack.util.BinaryJsonWriter.NAME_DEFINITION;
+import static com.getperka.flatpack.util.BinaryJsonWriter.NAME_REFERENCE;
+import static com.getperka.flatpack.util.BinaryJsonWriter.NULL;
+import static com.getperka.flatpack.util.BinaryJsonWriter.STRING;
+import static com.getperka.flatpack.util.BinaryJsonWriter.TRUE;
+import static com.getperka.flatpack.util.BinaryJsonWriter.UUID;
+import static com.getperka.flatpack.util.BinaryJsonWriter.VERSION;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.List;
+
+import com.getperka.flatpack.WireFormat;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Reads the {@link WireFormat#BINARY} encoding written by {@link BinaryJsonWriter}. UUIDs and
+ * numbers are presented as strings by {@link #nextString()}, so the reader may be used anywhere a
+ * textual JsonReader is expected. This class is not thread-safe.
+ */
+public class BinaryJsonReader extends JsonReader {
+  /**
+   * Strings longer than this are read incrementally, so that a corrupt or hostile length prefix
+   * cannot allocate more memory than the payload actually contains.
+   */
+  private static final int CHUNK_SIZE = 8192;
+  /**
+   * Indicates that no tag has been read ahead.
+   */
+  private static final int NO_TAG = -1;
+  /**
+   * Indicates that the end of the stream has been reached.
+   */
+  private static final int EOF = -2;
+
+  private static final Reader UNREADABLE_READER = new Reader() {
+    @Override
+    public void close() throws IOException {
+      throw new AssertionError();
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int count) throws IOException {
+      throw new AssertionError();
+    }
+  };
+
+  private final DataInputStream in;
+  private final List<String> names = FlatPackCollections.listForAny();
+  private int tag = NO_TAG;
+  private boolean started;
+
+  public BinaryJsonReader(InputStream in) {
+    super(UNREADABLE_READER);
+    this.in = new DataInputStream(new BufferedInputStream(in));
+  }
+
+  @Override
+  public void beginArray() throws IOException {
+    expect(BEGIN_ARRAY, JsonToken.BEGIN_ARRAY);
+  }
+
+  @Override
+  public void beginObject() throws IOException {
+    expect(BEGIN_OBJECT, JsonToken.BEGIN_OBJECT);
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  @Override
+  public void endArray() throws IOException {
+    expect(END_ARRAY, JsonToken.END_ARRAY);
+  }
+
+  @Override
+  public void endObject() throws IOException {
+    expect(END_OBJECT, JsonToken.END_OBJECT);
+  }
+
+  @Override
+  public boolean hasNext() throws IOException {
+    int next = peekTag();
+    return next != END_ARRAY && next != END_OBJECT && next != EOF;
+  }
+
+  @Override
+  public boolean nextBoolean() throws IOException {
+    int next = peekTag();
+    if (next == TRUE || next == FALSE) {
+      tag = NO_TAG;
+      return next == TRUE;
+    }
+    throw unexpected(JsonToken.BOOLEAN);
+  }
+
+  @Override
+  public double nextDouble() throws IOException {
+    int next = peekTag();
+    if (next == DOUBLE) {
+      tag = NO_TAG;
+      return in.readDouble();
+    }
+    if (next == LONG) {
+      tag = NO_TAG;
+      return readZigZag();
+    }
+    if (next == STRING) {
+      return Double.parseDouble(nextString());
+    }
+    throw unexpected(JsonToken.NUMBER);
+  }
+
+  /**
+   * Reads the next value as a JsonElement, which avoids the conversion of numbers into strings
+   * that would be performed by {@link com.google.gson.JsonParser}.
+   */
+  public JsonElement nextElement() throws IOException {
+    int next = peekTag();
+    switch (next) {
+      case BEGIN_ARRAY: {
+        beginArray();
+        JsonArray array = new JsonArray();
+        while (hasNext()) {
+          array.add(nextElement());
+        }
+        endArray();
+        return array;
+      }
+      case BEGIN_OBJECT: {
+        beginObject();
+        JsonObject object = new JsonObject();
+        while (hasNext()) {
+          String name = nextName();
+          object.add(name, nextElement());
+        }
+        endObject();
+        return object;
+      }
+      case DOUBLE:
+        return new JsonPrimitive(nextDouble());
+      case FALSE:
+      case TRUE:
+        return new JsonPrimitive(nextBoolean());
+      case LONG:
+        tag = NO_TAG;
+        return new JsonPrimitive(readZigZag());
+      case NULL:
+        nextNull();
+        return JsonNull.INSTANCE;
+      case STRING:
+      case UUID:
+        return new JsonPrimitive(nextString());
+      default:
+        throw unexpected(null);
+    }
+  }
+
+  @Override
+  public int nextInt() throws IOException {
+    long value = nextLong();
+    if ((int) value != value) {
+      throw new NumberFormatException("Expected an int but was " + value);
+    }
+    return (int) value;
+  }
+
+  @Override
+  public long nextLong() throws IOException {
+    int next = peekTag();
+    if (next == LONG) {
+      tag = NO_TAG;
+      return readZigZag();
+    }
+    if (next == DOUBLE) {
+      tag = NO_TAG;
+      double value = in.readDouble();
+      if ((long) value != value) {
+        throw new NumberFormatException("Expected a long but was " + value);
+      }
+      return (long) value;
+    }
+    if (next == STRING) {
+      return Long.parseLong(nextString());
+    }
+    throw unexpected(JsonToken.NUMBER);
+  }
+
+  @Override
+  public String nextName() throws IOException {
+    int next = peekTag();
+    if (next == NAME_DEFINITION) {
+      tag = NO_TAG;
+      String name = readString();
+      names.add(name);
+      return name;
+    }
+    if (next == NAME_REFERENCE) {
+      tag = NO_TAG;
+      long index = readVarLong();
+      if (index < 0 || index >= names.size()) {
+        throw new JsonSyntaxException("Undefined name index " + index);
+      }
+      return names.get((int) index);
+    }
+    throw unexpected(JsonToken.NAME);
+  }
+
+  @Override
+  public void nextNull() throws IOException {
+    expect(NULL, JsonToken.NULL);
+  }
+
+  @Override
+  public String nextString() throws IOException {
+    int next = peekTag();
+    switch (next) {
+      case DOUBLE:
+        return String.valueOf(nextDouble());
+      case LONG:
+        tag = NO_TAG;
+        return String.valueOf(readZigZag());
+      case STRING:
+        tag = NO_TAG;
+        return readString();
+      case UUID:
+        tag = NO_TAG;
+        return FlatPackUuids.toString(in.readLong(), in.readLong());
+      default:
+        throw unexpected(JsonToken.STRING);
+    }
+  }
+
+  @Override
+  public JsonToken peek() throws IOException {
+    switch (peekTag()) {
+      case BEGIN_ARRAY:
+        return JsonToken.BEGIN_ARRAY;
+      case BEGIN_OBJECT:
+        return JsonToken.BEGIN_OBJECT;
+      case DOUBLE:
+      case LONG:
+        return JsonToken.NUMBER;
+      case END_ARRAY:
+        return JsonToken.END_ARRAY;
+      case END_OBJECT:
+        return JsonToken.END_OBJECT;
+      case EOF:
+        return JsonToken.END_DOCUMENT;
+      case FALSE:
+      case TRUE:
+        return JsonToken.BOOLEAN;
+      case NAME_DEFINITION:
+      case NAME_REFERENCE:
+        return JsonToken.NAME;
+      case NULL:
+        return JsonToken.NULL;
+      case STRING:
+      case UUID:
+        return JsonToken.STRING;
+      default:
+        throw new JsonSyntaxException("Unknown tag " + tag);
+    }
+  }
+
+  /**
+   * Skips the next value, including any nested values. Names defined within the value are
+   * retained, since they may be referred to later in the stream.
+   */
+  @Override
+  public void skipValue() throws IOException {
+    int depth = 0;
+    do {
+      switch (peekTag()) {
+        case BEGIN_ARRAY:
+        case BEGIN_OBJECT:
+          tag = NO_TAG;
+          depth++;
+          break;
+        case END_ARRAY:
+        case END_OBJECT:
+          tag = NO_TAG;
+          depth--;
+          break;
+        case NAME_DEFINITION:
+        case NAME_REFERENCE:
+          nextName();
+          // Skip the name's value as well
+          continue;
+        case FALSE:
+        case NULL:
+        case TRUE:
+          tag = NO_TAG;
+          break;
+        case EOF:
+          throw new EOFException();
+        default:
+          nextString();
+          break;
+      }
+    } while (depth > 0);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName();
+  }
+
+  private void expect(int expected, JsonToken token) throws IOException {
+    if (peekTag() != expected) {
+      throw unexpected(token);
+    }
+    tag = NO_TAG;
+  }
+
+  private int peekTag() throws IOException {
+    if (tag != NO_TAG) {
+      return tag;
+    }
+    if (!started) {
+      started = true;
+      int magic;
+      try {
+        magic = in.readUnsignedShort();
+      } catch (EOFException e) {
+        return tag = EOF;
+      }
+      if (magic != MAGIC) {
+        throw new JsonSyntaxException("Not a binary FlatPack payload");
+      }
+      int version = in.read();
+      if (version != VERSION) {
+        throw new JsonSyntaxException("Unsupported binary FlatPack version " + version);
+      }
+    }
+    int next = in.read();
+    tag = next == -1 ? EOF : next;
+    return tag;
+  }
+
+  private String readString() throws IOException {
+    long length = readVarLong();
+    if (length < 0 || length > Integer.MAX_VALUE) {
+      throw new JsonSyntaxException("Bad string length " + length);
+    }
+    if (length <= CHUNK_SIZE) {
+      byte[] bytes = new byte[(int) length];
+      in.readFully(bytes);
+      return new String(bytes, FlatPackTypes.UTF8);
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(CHUNK_SIZE);
+    byte[] chunk = new byte[CHUNK_SIZE];
+    for (long remaining = length; remaining > 0;) {
+      int count = in.read(chunk, 0, (int) Math.min(remaining, CHUNK_SIZE));
+      if (count == -1) {
+        throw new EOFException();
+      }
+      bytes.write(chunk, 0, count);
+      remaining -= count;
+    }
+    return new String(bytes.toByteArray(), FlatPackTypes.UTF8);
+  }
+
+  private long readVarLong() throws IOException {
+    long toReturn = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.read();
+      if (b == -1) {
+        throw new EOFException();
+      }
+      toReturn |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return toReturn;
+      }
+    }
+    throw new JsonSyntaxException("Malformed variable-length integer");
+  }
+
+  private long readZigZag() throws IOException {
+    long value = readVarLong();
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private IllegalStateException unexpected(JsonToken expected) throws IOException {
+    return new IllegalStateException("Expected " + expected + " but was " + peek());
+  }
+}
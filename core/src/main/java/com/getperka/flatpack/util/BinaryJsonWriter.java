@@ -0,0 +1,301 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.Map;
+
+import com.getperka.flatpack.WireFormat;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes the {@link WireFormat#BINARY} encoding of a JSON document. Each token is written as a
+ * single tag byte, followed by any payload:
+ * <ul>
+ * <li>Object and array delimiters, booleans, and {@code null} have no payload.</li>
+ * <li>The first occurrence of a property name is written as its length and UTF-8 bytes and is
+ * assigned the next index in a name table. Subsequent occurrences are written as that index.</li>
+ * <li>Strings that are the canonical form of a UUID are written as 16 bytes. Other strings are
+ * written as their length and UTF-8 bytes.</li>
+ * <li>Integral numbers are written as zig-zag variable-length integers, and other numbers are
+ * written as 8-byte IEEE 754 doubles.</li>
+ * </ul>
+ * The document is preceded by a magic number and version byte. This class is not thread-safe.
+ * 
+ * @see BinaryJsonReader
+ */
+public class BinaryJsonWriter extends JsonWriter {
+  static final int MAGIC = 0x4650; // "FP"
+  static final int VERSION = 1;
+
+  static final int BEGIN_ARRAY = 1;
+  static final int BEGIN_OBJECT = 2;
+  static final int DOUBLE = 3;
+  static final int END_ARRAY = 4;
+  static final int END_OBJECT = 5;
+  static final int FALSE = 6;
+  static final int LONG = 7;
+  static final int NAME_DEFINITION = 8;
+  static final int NAME_REFERENCE = 9;
+  static final int NULL = 10;
+  static final int STRING = 11;
+  static final int TRUE = 12;
+  static final int UUID = 13;
+
+  private static final Writer UNWRITABLE_WRITER = new Writer() {
+    @Override
+    public void close() throws IOException {
+      throw new AssertionError();
+    }
+
+    @Override
+    public void flush() throws IOException {
+      throw new AssertionError();
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int counter) {
+      throw new AssertionError();
+    }
+  };
+
+  /**
+   * Returns the value of a lower-case hex digit, or {@code -1}.
+   */
+  private static int hexValue(char c) {
+    if (c >= '0' && c <= '9') {
+      return c - '0';
+    }
+    if (c >= 'a' && c <= 'f') {
+      return c - 'a' + 10;
+    }
+    return -1;
+  }
+
+  private String deferredName;
+  private final Map<String, Integer> names = FlatPackCollections.mapForLookup();
+  private final DataOutputStream out;
+  private boolean started;
+
+  public BinaryJsonWriter(OutputStream out) {
+    super(UNWRITABLE_WRITER);
+    this.out = new DataOutputStream(new BufferedOutputStream(out));
+  }
+
+  @Override
+  public JsonWriter beginArray() throws IOException {
+    writeDeferredName();
+    out.write(BEGIN_ARRAY);
+    return this;
+  }
+
+  @Override
+  public JsonWriter beginObject() throws IOException {
+    writeDeferredName();
+    out.write(BEGIN_OBJECT);
+    return this;
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+
+  @Override
+  public JsonWriter endArray() throws IOException {
+    out.write(END_ARRAY);
+    return this;
+  }
+
+  @Override
+  public JsonWriter endObject() throws IOException {
+    // A name whose null value was suppressed
+    deferredName = null;
+    out.write(END_OBJECT);
+    return this;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  @Override
+  public JsonWriter name(String name) throws IOException {
+    if (name == null) {
+      throw new NullPointerException("name == null");
+    }
+    if (deferredName != null) {
+      throw new IllegalStateException();
+    }
+    deferredName = name;
+    return this;
+  }
+
+  @Override
+  public JsonWriter nullValue() throws IOException {
+    if (deferredName != null && !getSerializeNulls()) {
+      deferredName = null;
+      return this;
+    }
+    writeDeferredName();
+    out.write(NULL);
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(boolean value) throws IOException {
+    writeDeferredName();
+    out.write(value ? TRUE : FALSE);
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(double value) throws IOException {
+    writeDeferredName();
+    out.write(DOUBLE);
+    out.writeDouble(value);
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(long value) throws IOException {
+    writeDeferredName();
+    out.write(LONG);
+    writeVarLong((value << 1) ^ (value >> 63));
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(Number value) throws IOException {
+    if (value == null) {
+      return nullValue();
+    }
+    if (value instanceof Long || value instanceof Integer || value instanceof Short
+      || value instanceof Byte) {
+      return value(value.longValue());
+    }
+    if (value instanceof Double || value instanceof Float) {
+      return value(value.doubleValue());
+    }
+
+    // Arbitrary-precision or lazily-parsed numbers
+    String text = value.toString();
+    try {
+      return value(Long.parseLong(text));
+    } catch (NumberFormatException ignored) {}
+    BigDecimal exact = new BigDecimal(text);
+    double approximate = exact.doubleValue();
+    if (!Double.isInfinite(approximate)
+      && new BigDecimal(Double.toString(approximate)).compareTo(exact) == 0) {
+      return value(approximate);
+    }
+    // Retain the exact representation
+    return value(text);
+  }
+
+  @Override
+  public JsonWriter value(String value) throws IOException {
+    if (value == null) {
+      return nullValue();
+    }
+    writeDeferredName();
+    if (!writeUuid(value)) {
+      out.write(STRING);
+      writeString(value);
+    }
+    return this;
+  }
+
+  private void writeDeferredName() throws IOException {
+    if (!started) {
+      out.writeShort(MAGIC);
+      out.write(VERSION);
+      started = true;
+    }
+    if (deferredName == null) {
+      return;
+    }
+    Integer index = names.get(deferredName);
+    if (index == null) {
+      names.put(deferredName, names.size());
+      out.write(NAME_DEFINITION);
+      writeString(deferredName);
+    } else {
+      out.write(NAME_REFERENCE);
+      writeVarLong(index);
+    }
+    deferredName = null;
+  }
+
+  private void writeString(String value) throws IOException {
+    byte[] bytes = value.getBytes(FlatPackTypes.UTF8);
+    writeVarLong(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Writes the string as a UUID if it is in the canonical, lower-case form that will be produced
+   * by {@link java.util.UUID#toString()} when it is read.
+   */
+  private boolean writeUuid(String value) throws IOException {
+    if (value.length() != 36) {
+      return false;
+    }
+    long msb = 0;
+    long lsb = 0;
+    int digits = 0;
+    for (int i = 0; i < 36; i++) {
+      char c = value.charAt(i);
+      if (i == 8 || i == 13 || i == 18 || i == 23) {
+        if (c != '-') {
+          return false;
+        }
+        continue;
+      }
+      int hex = hexValue(c);
+      if (hex == -1) {
+        return false;
+      }
+      if (digits++ < 16) {
+        msb = (msb << 4) | hex;
+      } else {
+        lsb = (lsb << 4) | hex;
+      }
+    }
+    out.write(UUID);
+    out.writeLong(msb);
+    out.writeLong(lsb);
+    return true;
+  }
+
+  private void writeVarLong(long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The HTTP content-codings that may be applied to a payload. Payloads are encoded and decoded
+ * incrementally, so a compressed payload never needs to be held in memory.
+ * 
+ * @see ThresholdEncodingOutputStream
+ */
+public enum ContentEncoding {
+  /**
+   * The preferred encoding.
+   */
+  GZIP("gzip"),
+  /**
+   * A zlib stream, which is what HTTP calls {@code deflate}.
+   */
+  DEFLATE("deflate");
+
+  /**
+   * A value for an {@code Accept-Encoding} header that lists every supported encoding.
+   */
+  public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+  private static final int BUFFER_SIZE = 8192;
+
+  /**
+   * Returns the ContentEncoding named by a {@code Content-Encoding} header, or {@code null} if the
+   * header is absent or names the {@code identity} encoding.
+   * 
+   * @throws IllegalArgumentException if the header names an unsupported encoding
+   */
+  public static ContentEncoding forHeader(String contentEncoding) {
+    if (contentEncoding == null) {
+      return null;
+    }
+    String token = contentEncoding.trim();
+    if (token.isEmpty() || "identity".equalsIgnoreCase(token)) {
+      return null;
+    }
+    for (ContentEncoding encoding : values()) {
+      if (encoding.matches(token)) {
+        return encoding;
+      }
+    }
+    throw new IllegalArgumentException("Unsupported Content-Encoding " + contentEncoding);
+  }
+
+  /**
+   * Selects the supported encoding with the highest quality value in an {@code Accept-Encoding}
+   * header. Ties are resolved in declaration order.
+   * 
+   * @return the preferred encoding, or {@code null} if the header is absent or does not accept any
+   *         supported encoding
+   */
+  public static ContentEncoding negotiate(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return null;
+    }
+    ContentEncoding[] encodings = values();
+    // A quality of -1 indicates that the encoding was not mentioned
+    float[] qualities = new float[encodings.length];
+    float wildcard = -1;
+    for (int i = 0, j = qualities.length; i < j; i++) {
+      qualities[i] = -1;
+    }
+
+    for (String part : acceptEncoding.split(",")) {
+      String[] params = part.split(";");
+      String token = params[0].trim();
+      float quality = 1;
+      for (int i = 1, j = params.length; i < j; i++) {
+        String param = params[i].trim();
+        if (param.startsWith("q=") || param.startsWith("Q=")) {
+          try {
+            quality = Float.parseFloat(param.substring(2).trim());
+          } catch (NumberFormatException e) {
+            quality = 0;
+          }
+        }
+      }
+      if ("*".equals(token)) {
+        wildcard = quality;
+        continue;
+      }
+      for (int i = 0, j = encodings.length; i < j; i++) {
+        if (encodings[i].matches(token)) {
+          qualities[i] = quality;
+        }
+      }
+    }
+
+    ContentEncoding toReturn = null;
+    float best = 0;
+    for (int i = 0, j = encodings.length; i < j; i++) {
+      float quality = qualities[i] == -1 ? wildcard : qualities[i];
+      if (quality > best) {
+        best = quality;
+        toReturn = encodings[i];
+      }
+    }
+    return toReturn;
+  }
+
+  private final String token;
+
+  private ContentEncoding(String token) {
+    this.token = token;
+  }
+
+  /**
+   * Returns a stream that decodes the contents of {@code in}. Closing the returned stream will
+   * close {@code in}.
+   */
+  public InputStream decode(InputStream in) throws IOException {
+    switch (this) {
+      case DEFLATE:
+        return new InflaterInputStream(in);
+      case GZIP:
+        return new GZIPInputStream(in, BUFFER_SIZE);
+    }
+    throw new UnsupportedOperationException(name());
+  }
+
+  /**
+   * Returns a stream that encodes data into {@code out}. The returned stream must be closed to
+   * complete the encoding, which will also close {@code out}.
+   */
+  public OutputStream encode(OutputStream out) throws IOException {
+    switch (this) {
+      case DEFLATE:
+        return new DeflaterOutputStream(out);
+      case GZIP:
+        return new GZIPOutputStream(out, BUFFER_SIZE);
+    }
+    throw new UnsupportedOperationException(name());
+  }
+
+  /**
+   * Returns the token that identifies the encoding in HTTP headers.
+   */
+  public String getToken() {
+    return token;
+  }
+
+  private boolean matches(String token) {
+    // Also accept the legacy x-gzip alias
+    return this.token.equalsIgnoreCase(token) || ("x-" + this.token).equalsIgnoreCase(token);
+  }
+}
@@ -20,114 +20,436 @@ package com.getperka.flatpack.util;
  * #L%
  */
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import com.getperka.flatpack.Packer;
-import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.internal.bind.JsonTreeReader;
+import com.google.gson.internal.bind.JsonTreeWriter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * A utility class to allow packed FlatPackEntities to be merged together without reifying them.
+ * The {@code data} sections of the packs are combined, with the properties of an entity that
+ * appears in several packs being taken from the last pack that contains them. All other top-level
+ * properties are copied from the last pack.
+ * <p>
+ * The packs are read as streams of tokens. Only the properties of each distinct entity are
+ * retained, as compact JSON strings, so packs may be merged from {@link Reader Readers} into a
+ * {@link Writer} without building a tree for any of them.
+ * <p>
+ * Packs written with a {@link com.getperka.flatpack.Configuration#withUuidTable(boolean) uuid
+ * table} cannot be merged.
  * 
  * @see Packer#pack(com.getperka.flatpack.FlatPackEntity)
  */
 public class FlatPackEntityMerge {
+  /**
+   * Merges a contiguous range of packs, splitting the range in half until it is small enough.
+   */
+  @SuppressWarnings("serial")
+  private static class MergeTask extends RecursiveTask<FlatPackEntityMerge> {
+    private final int from;
+    private final List<? extends Reader> packs;
+    private final int to;
+
+    MergeTask(List<? extends Reader> packs, int from, int to) {
+      this.from = from;
+      this.packs = packs;
+      this.to = to;
+    }
+
+    @Override
+    protected FlatPackEntityMerge compute() {
+      if (to - from <= PARALLEL_MERGE_MIN_PARTITION) {
+        FlatPackEntityMerge toReturn = new FlatPackEntityMerge();
+        try {
+          for (int i = from; i < to; i++) {
+            toReturn.read(jsonReader(packs.get(i)), i == packs.size() - 1);
+          }
+        } catch (IOException e) {
+          // Unwrapped by merge()
+          throw new RuntimeException(e);
+        }
+        return toReturn;
+      }
+      int mid = (from + to) >>> 1;
+      MergeTask left = new MergeTask(packs, from, mid);
+      left.fork();
+      FlatPackEntityMerge right = new MergeTask(packs, mid, to).compute();
+      FlatPackEntityMerge toReturn = left.join();
+      toReturn.addAll(right);
+      return toReturn;
+    }
+  }
+
+  /**
+   * The minimum number of packs to be read by each task of a parallel merge.
+   */
+  private static final int PARALLEL_MERGE_MIN_PARTITION = 8;
 
   public static JsonElement merge(Collection<? extends JsonElement> packs) {
-    return new FlatPackEntityMerge(packs).merge();
+    FlatPackEntityMerge merge = new FlatPackEntityMerge();
+    JsonTreeWriter out = new JsonTreeWriter();
+    try {
+      for (Iterator<? extends JsonElement> it = packs.iterator(); it.hasNext();) {
+        JsonElement pack = it.next();
+        merge.read(new JsonTreeReader(pack), !it.hasNext());
+      }
+      merge.write(out);
+    } catch (IOException e) {
+      // Not expected when reading and writing trees
+      throw new IllegalArgumentException(e);
+    }
+    return out.get();
   }
 
   /**
-   * Merge several
+   * Merge several packs.
    * 
-   * @param packs
-   * @return
+   * @param packs the packs to merge, in increasing order of precedence
+   * @return the merged pack
    */
   public static JsonElement merge(JsonElement... packs) {
     return merge(Arrays.asList(packs));
   }
 
-  private final Map<String, Map<UUID, JsonObject>> data = FlatPackCollections.mapForIteration();
-  private final Iterator<? extends JsonElement> iterator;
+  /**
+   * Merge several serialized packs into a stream.
+   * 
+   * @param packs the packs to merge, in increasing order of precedence, which will be closed
+   * @param out the destination of the merged pack, which will be closed
+   */
+  public static void merge(List<? extends Reader> packs, Writer out) throws IOException {
+    FlatPackEntityMerge merge = new FlatPackEntityMerge();
+    for (int i = 0, j = packs.size(); i < j; i++) {
+      merge.read(jsonReader(packs.get(i)), i == j - 1);
+    }
+    merge.write(out);
+  }
 
-  private FlatPackEntityMerge(Collection<? extends JsonElement> packs) {
-    iterator = packs.iterator();
+  /**
+   * Merge several serialized packs into a stream, reading the packs in parallel. This is worthwhile
+   * when merging a large number of packs.
+   * 
+   * @param packs the packs to merge, in increasing order of precedence, which will be closed
+   * @param out the destination of the merged pack, which will be closed
+   * @param pool the pool in which to read the packs
+   */
+  public static void merge(List<? extends Reader> packs, Writer out, ForkJoinPool pool)
+      throws IOException {
+    FlatPackEntityMerge merge;
+    try {
+      merge = pool.invoke(new MergeTask(packs, 0, packs.size()));
+    } catch (RuntimeException e) {
+      // The pool may wrap the exception thrown by the task that failed
+      for (Throwable t = e; t != null; t = t.getCause()) {
+        if (t instanceof IOException) {
+          throw (IOException) t;
+        }
+      }
+      throw e;
+    }
+    merge.write(out);
   }
 
   /**
-   * Reassemble the type x uuid -> data map in {@link #data} into a single {@link JsonObject}.
+   * Copy a single value, which may be an array or object, between streams.
    */
-  private JsonObject collateData() {
-    JsonObject toReturn = new JsonObject();
-    for (Map.Entry<String, Map<UUID, JsonObject>> entry : data.entrySet()) {
-      JsonArray array = new JsonArray();
+  private static void copy(JsonReader in, JsonWriter out) throws IOException {
+    int depth = 0;
+    do {
+      switch (in.peek()) {
+        case BEGIN_ARRAY:
+          in.beginArray();
+          out.beginArray();
+          depth++;
+          break;
+        case BEGIN_OBJECT:
+          in.beginObject();
+          out.beginObject();
+          depth++;
+          break;
+        case BOOLEAN:
+          out.value(in.nextBoolean());
+          break;
+        case END_ARRAY:
+          in.endArray();
+          out.endArray();
+          depth--;
+          break;
+        case END_OBJECT:
+          in.endObject();
+          out.endObject();
+          depth--;
+          break;
+        case NAME:
+          out.name(in.nextName());
+          break;
+        case NULL:
+          in.nextNull();
+          out.nullValue();
+          break;
+        case NUMBER:
+          out.value(new LazilyParsedNumber(in.nextString()));
+          break;
+        case STRING:
+          out.value(in.nextString());
+          break;
+        default:
+          throw new IOException("Unexpected token " + in.peek());
+      }
+    } while (depth > 0);
+  }
+
+  private static JsonReader jsonReader(Reader in) {
+    JsonReader toReturn = new JsonReader(in);
+    toReturn.setLenient(true);
+    return toReturn;
+  }
+
+  private static JsonWriter jsonWriter(Writer out) {
+    JsonWriter toReturn = new JsonWriter(out);
+    toReturn.setLenient(true);
+    return toReturn;
+  }
+
+  /**
+   * Type name x uuid x property name -> serialized property value.
+   */
+  private final Map<String, Map<UUID, Map<String, String>>> data = FlatPackCollections
+      .mapForIteration();
+  /**
+   * Canonical instances of property names, which are repeated by every entity of a type.
+   */
+  private final Map<String, String> names = FlatPackCollections.mapForLookup();
+  /**
+   * The top-level properties of the last pack, other than {@code data}.
+   */
+  private Map<String, String> properties;
+
+  private FlatPackEntityMerge() {}
 
-      for (JsonObject entity : entry.getValue().values()) {
-        array.add(entity);
+  /**
+   * Merge the entities and properties of a pack that was read by another instance into this one.
+   */
+  private void addAll(FlatPackEntityMerge other) {
+    for (Map.Entry<String, Map<UUID, Map<String, String>>> entry : other.data.entrySet()) {
+      Map<UUID, Map<String, String>> map = entities(entry.getKey());
+      for (Map.Entry<UUID, Map<String, String>> entity : entry.getValue().entrySet()) {
+        Map<String, String> dest = map.get(entity.getKey());
+        if (dest == null) {
+          map.put(entity.getKey(), entity.getValue());
+        } else {
+          dest.putAll(entity.getValue());
+        }
       }
+    }
+    if (other.properties != null) {
+      properties = other.properties;
+    }
+  }
 
-      toReturn.add(entry.getKey(), array);
+  /**
+   * Returns the map of entities for a type name, creating it if necessary.
+   */
+  private Map<UUID, Map<String, String>> entities(String typeName) {
+    Map<UUID, Map<String, String>> toReturn = data.get(typeName);
+    if (toReturn == null) {
+      toReturn = FlatPackCollections.mapForIteration();
+      data.put(typeName, toReturn);
     }
     return toReturn;
   }
 
-  private JsonObject merge() {
-    JsonObject toReturn = new JsonObject();
-    JsonObject last = null;
-    while (iterator.hasNext()) {
-      last = iterator.next().getAsJsonObject();
-      mergeOnePack(last, toReturn);
-    }
-    // Copy only properties from the last entry
-    for (Map.Entry<String, JsonElement> entry : last.entrySet()) {
-      toReturn.add(entry.getKey(), entry.getValue());
+  private String intern(String name) {
+    String toReturn = names.get(name);
+    if (toReturn == null) {
+      names.put(name, name);
+      toReturn = name;
     }
-    toReturn.add("data", collateData());
     return toReturn;
   }
 
   /**
-   * Merges a map of type names to arrays of data values.
+   * Merge the values of a single entity into the entities of its type.
    */
-  private void mergeDataSection(JsonObject source) {
-    for (Map.Entry<String, JsonElement> entry : source.entrySet()) {
-      String entityName = entry.getKey();
-      JsonArray entityArray = entry.getValue().getAsJsonArray();
+  private void mergeEntity(String typeName, Map<String, String> values) throws IOException {
+    String uuid = values.get("uuid");
+    if (uuid == null) {
+      throw new IOException("An entity in " + typeName + " has no uuid");
+    }
+    UUID key = FlatPackUuids.fromString(jsonReader(new StringReader(uuid)).nextString());
+    Map<UUID, Map<String, String>> map = entities(typeName);
+    Map<String, String> dest = map.get(key);
+    if (dest == null) {
+      map.put(key, values);
+    } else {
+      dest.putAll(values);
+    }
+  }
 
-      Map<UUID, JsonObject> map = data.get(entityName);
-      if (map == null) {
-        map = FlatPackCollections.mapForIteration();
-        data.put(entityName, map);
-      }
-      for (JsonElement entityData : entityArray) {
-        mergeEntityValues(entityData.getAsJsonObject(), map);
+  /**
+   * Reads a single pack, closing the reader.
+   * 
+   * @param last {@code true} if the top-level properties of the pack should be retained
+   */
+  private void read(JsonReader in, boolean last) throws IOException {
+    if (last) {
+      properties = FlatPackCollections.mapForIteration();
+    }
+    try {
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if ("data".equals(name)) {
+          readData(in);
+        } else if ("uuids".equals(name)) {
+          /*
+           * Entities and references are written as indexes into the table. Since they can't be
+           * told apart from other numeric properties without the entities' types, and each pack
+           * has its own table, the indexes can't be rewritten.
+           */
+          throw new IOException("Packs written with a uuid table cannot be merged; "
+            + "disable Configuration.withUuidTable() for the packs being merged");
+        } else if (last) {
+          properties.put(name, toString(in));
+        } else {
+          in.skipValue();
+        }
       }
+      in.endObject();
+    } finally {
+      in.close();
     }
   }
 
   /**
-   * Merge the JsonObject for a single entity's data into a correlation map.
+   * Reads a {@code data} section, which maps type names to arrays of entities or to tables of
+   * entities.
    */
-  private void mergeEntityValues(JsonObject source, Map<UUID, JsonObject> map) {
-    UUID uuid = UUID.fromString(source.get("uuid").getAsString());
-    JsonObject dest = map.get(uuid);
-    if (dest == null) {
-      dest = new JsonObject();
-      map.put(uuid, dest);
+  private void readData(JsonReader in) throws IOException {
+    in.beginObject();
+    while (in.hasNext()) {
+      String typeName = intern(in.nextName());
+
+      // A columnar section: { properties: [ name, ... ], rows: [ [ value, ... ], ... ] }
+      if (JsonToken.BEGIN_OBJECT.equals(in.peek())) {
+        readTable(typeName, in);
+        continue;
+      }
+
+      in.beginArray();
+      while (in.hasNext()) {
+        Map<String, String> values = FlatPackCollections.mapForIteration();
+        in.beginObject();
+        while (in.hasNext()) {
+          String name = intern(in.nextName());
+          values.put(name, toString(in));
+        }
+        in.endObject();
+        mergeEntity(typeName, values);
+      }
+      in.endArray();
     }
-    for (Map.Entry<String, JsonElement> entry : source.entrySet()) {
-      dest.add(entry.getKey(), entry.getValue());
+    in.endObject();
+  }
+
+  private void readTable(String typeName, JsonReader in) throws IOException {
+    List<String> columns = FlatPackCollections.listForAny();
+    in.beginObject();
+    while (in.hasNext()) {
+      String name = in.nextName();
+      if ("properties".equals(name)) {
+        in.beginArray();
+        while (in.hasNext()) {
+          columns.add(intern(in.nextString()));
+        }
+        in.endArray();
+      } else if ("rows".equals(name)) {
+        in.beginArray();
+        while (in.hasNext()) {
+          Map<String, String> values = FlatPackCollections.mapForIteration();
+          in.beginArray();
+          for (int i = 0; in.hasNext(); i++) {
+            // Missing properties are written as nulls
+            if (JsonToken.NULL.equals(in.peek())) {
+              in.nextNull();
+            } else {
+              values.put(columns.get(i), toString(in));
+            }
+          }
+          in.endArray();
+          mergeEntity(typeName, values);
+        }
+        in.endArray();
+      } else {
+        in.skipValue();
+      }
     }
+    in.endObject();
+  }
+
+  /**
+   * Read a single value into a compact JSON string.
+   */
+  private String toString(JsonReader in) throws IOException {
+    StringWriter toReturn = new StringWriter();
+    copy(in, jsonWriter(toReturn));
+    return toReturn.toString();
   }
 
-  private void mergeOnePack(JsonObject source, JsonObject toReturn) {
-    if (source.has("data")) {
-      mergeDataSection(source.get("data").getAsJsonObject());
+  /**
+   * Write the merged pack.
+   */
+  private void write(JsonWriter out) throws IOException {
+    out.beginObject();
+    out.name("data");
+    out.beginObject();
+    for (Map.Entry<String, Map<UUID, Map<String, String>>> entry : data.entrySet()) {
+      out.name(entry.getKey());
+      out.beginArray();
+      for (Map<String, String> entity : entry.getValue().values()) {
+        out.beginObject();
+        for (Map.Entry<String, String> value : entity.entrySet()) {
+          out.name(value.getKey());
+          copy(jsonReader(new StringReader(value.getValue())), out);
+        }
+        out.endObject();
+      }
+      out.endArray();
+    }
+    out.endObject(); // data
+    if (properties != null) {
+      for (Map.Entry<String, String> entry : properties.entrySet()) {
+        out.name(entry.getKey());
+        copy(jsonReader(new StringReader(entry.getValue())), out);
+      }
     }
+    out.endObject();
+  }
+
+  /**
+   * Write the merged pack, closing the writer.
+   */
+  private void write(Writer out) throws IOException {
+    JsonWriter json = new JsonWriter(out);
+    write(json);
+    json.close();
   }
 }
@@ -0,0 +1,124 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.util;
+
+import java.util.UUID;
+
+/**
+ * Converts UUIDs to and from their canonical string form, e.g.
+ * {@code 123e4567-e89b-12d3-a456-426614174000}, using lookup tables. Strings are validated and
+ * parsed in a single pass, without the regular expressions or substrings used by
+ * {@link UUID#fromString(String)}.
+ */
+public class FlatPackUuids {
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+  /**
+   * Maps an ASCII character to its hexadecimal value, or {@code -1}.
+   */
+  private static final byte[] HEX_VALUES = new byte[128];
+
+  static {
+    for (int i = 0; i < HEX_VALUES.length; i++) {
+      HEX_VALUES[i] = -1;
+    }
+    for (int i = 0; i < 16; i++) {
+      HEX_VALUES[HEX_DIGITS[i]] = (byte) i;
+      HEX_VALUES[Character.toUpperCase(HEX_DIGITS[i])] = (byte) i;
+    }
+  }
+
+  /**
+   * Parses a UUID, accepting the same values as {@link UUID#fromString(String)}. Values in the
+   * canonical form are handled without allocating any intermediate objects.
+   * 
+   * @throws IllegalArgumentException if the value is not a UUID
+   */
+  public static UUID fromString(String value) {
+    UUID toReturn = parse(value);
+    return toReturn == null ? UUID.fromString(value) : toReturn;
+  }
+
+  /**
+   * Parses a UUID in the canonical, 36-character form. Upper- and lower-case hexadecimal digits are
+   * accepted.
+   * 
+   * @return the UUID, or {@code null} if the value is not in the canonical form
+   */
+  public static UUID parse(CharSequence value) {
+    if (value.length() != 36 || value.charAt(8) != '-' || value.charAt(13) != '-'
+      || value.charAt(18) != '-' || value.charAt(23) != '-') {
+      return null;
+    }
+    long msb = 0;
+    long lsb = 0;
+    for (int i = 0; i < 36; i++) {
+      if (i == 8 || i == 13 || i == 18 || i == 23) {
+        continue;
+      }
+      char c = value.charAt(i);
+      int hex = c < 128 ? HEX_VALUES[c] : -1;
+      if (hex == -1) {
+        return null;
+      }
+      if (i < 19) {
+        msb = (msb << 4) | hex;
+      } else {
+        lsb = (lsb << 4) | hex;
+      }
+    }
+    return new UUID(msb, lsb);
+  }
+
+  /**
+   * Returns the canonical form of a UUID, which is identical to {@link UUID#toString()}.
+   */
+  public static String toString(long mostSignificantBits, long leastSignificantBits) {
+    char[] out = new char[36];
+    writeHex(out, 0, mostSignificantBits >>> 32, 8);
+    out[8] = '-';
+    writeHex(out, 9, mostSignificantBits >>> 16, 4);
+    out[13] = '-';
+    writeHex(out, 14, mostSignificantBits, 4);
+    out[18] = '-';
+    writeHex(out, 19, leastSignificantBits >>> 48, 4);
+    out[23] = '-';
+    writeHex(out, 24, leastSignificantBits, 12);
+    return new String(out);
+  }
+
+  /**
+   * Returns the canonical form of a UUID, which is identical to {@link UUID#toString()}.
+   */
+  public static String toString(UUID uuid) {
+    return toString(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+  }
+
+  /**
+   * Writes the low-order {@code count} hex digits of {@code value}.
+   */
+  private static void writeHex(char[] out, int offset, long value, int count) {
+    for (int i = offset + count - 1; i >= offset; i--) {
+      out[i] = HEX_DIGITS[(int) (value & 0xF)];
+      value >>>= 4;
+    }
+  }
+
+  private FlatPackUuids() {}
+}
@@ -0,0 +1,238 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.util;
+
+/**
+ * Formats and parses the fixed ISO8601 date-time shape used in FlatPack payloads, e.g.
+ * {@code 2013-01-02T03:04:05.678-08:00}. The output is identical to Joda's
+ * {@code ISODateTimeFormat.dateTime()}, but no intermediate objects are created. Values that do not
+ * fit the fixed shape, such as years outside of {@code 0000-9999} or offsets with a seconds
+ * component, are rejected so that the caller may fall back to a general-purpose implementation.
+ */
+public class Iso8601 {
+  /**
+   * Returned by {@link #parse(String)} for strings that are not in the fixed shape.
+   */
+  public static final long UNPARSEABLE = Long.MIN_VALUE;
+
+  private static final int MILLIS_PER_DAY = 24 * 60 * 60 * 1000;
+  private static final int MILLIS_PER_HOUR = 60 * 60 * 1000;
+  private static final int MILLIS_PER_MINUTE = 60 * 1000;
+
+  /**
+   * Formats an instant as a local time in the given offset, including milliseconds.
+   * 
+   * @param millis the instant, in milliseconds since the epoch
+   * @param offsetMillis the offset from UTC of the local time to print
+   * @return the formatted value, or {@code null} if the instant and offset cannot be represented
+   *         in the fixed shape
+   */
+  public static String format(long millis, int offsetMillis) {
+    if (offsetMillis % MILLIS_PER_MINUTE != 0) {
+      return null;
+    }
+    long local = millis + offsetMillis;
+    long days = floorDiv(local, MILLIS_PER_DAY);
+    int millisOfDay = (int) (local - days * MILLIS_PER_DAY);
+
+    // Convert the day number into a year, month, and day
+    long z = days + 719468;
+    long era = (z >= 0 ? z : z - 146096) / 146097;
+    int dayOfEra = (int) (z - era * 146097);
+    int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    int shiftedMonth = (5 * dayOfYear + 2) / 153;
+    int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+    int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+    long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+    if (year < 0 || year > 9999) {
+      return null;
+    }
+
+    char[] out = new char[offsetMillis == 0 ? 24 : 29];
+    write4(out, 0, (int) year);
+    out[4] = '-';
+    write2(out, 5, month);
+    out[7] = '-';
+    write2(out, 8, day);
+    out[10] = 'T';
+    write2(out, 11, millisOfDay / MILLIS_PER_HOUR);
+    out[13] = ':';
+    write2(out, 14, millisOfDay / MILLIS_PER_MINUTE % 60);
+    out[16] = ':';
+    write2(out, 17, millisOfDay / 1000 % 60);
+    out[19] = '.';
+    int fraction = millisOfDay % 1000;
+    out[20] = (char) ('0' + fraction / 100);
+    write2(out, 21, fraction % 100);
+
+    if (offsetMillis == 0) {
+      out[23] = 'Z';
+    } else {
+      int offsetMinutes = offsetMillis / MILLIS_PER_MINUTE;
+      out[23] = offsetMinutes < 0 ? '-' : '+';
+      offsetMinutes = Math.abs(offsetMinutes);
+      write2(out, 24, offsetMinutes / 60);
+      out[26] = ':';
+      write2(out, 27, offsetMinutes % 60);
+    }
+    return new String(out);
+  }
+
+  /**
+   * Parses a date-time in the fixed shape. The fractional seconds are optional and are truncated to
+   * milliseconds, and the offset may be written as {@code Z}, {@code +HH}, {@code +HHmm}, or
+   * {@code +HH:mm}.
+   * 
+   * @return the instant, in milliseconds since the epoch, or {@link #UNPARSEABLE} if the value is
+   *         not in the fixed shape or does not describe a valid date-time
+   */
+  public static long parse(String value) {
+    int length = value.length();
+    if (length < 20 || value.charAt(4) != '-' || value.charAt(7) != '-'
+      || value.charAt(10) != 'T' || value.charAt(13) != ':' || value.charAt(16) != ':') {
+      return UNPARSEABLE;
+    }
+    int year = digits(value, 0, 4);
+    int month = digits(value, 5, 2);
+    int day = digits(value, 8, 2);
+    int hour = digits(value, 11, 2);
+    int minute = digits(value, 14, 2);
+    int second = digits(value, 17, 2);
+    if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+      || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+      return UNPARSEABLE;
+    }
+
+    // Optional fractional seconds
+    int idx = 19;
+    int millis = 0;
+    char c = value.charAt(idx);
+    if (c == '.' || c == ',') {
+      int scale = 100;
+      int start = ++idx;
+      while (idx < length && idx - start < 9) {
+        int digit = value.charAt(idx) - '0';
+        if (digit < 0 || digit > 9) {
+          break;
+        }
+        millis += digit * scale;
+        scale /= 10;
+        idx++;
+      }
+      if (idx == start || idx == length) {
+        return UNPARSEABLE;
+      }
+      c = value.charAt(idx);
+    }
+
+    // Mandatory offset
+    int offsetMillis;
+    if (c == 'Z') {
+      if (idx + 1 != length) {
+        return UNPARSEABLE;
+      }
+      offsetMillis = 0;
+    } else if (c == '+' || c == '-') {
+      int remaining = length - idx - 1;
+      int offsetHours = remaining >= 2 ? digits(value, idx + 1, 2) : -1;
+      int offsetMinutes;
+      if (remaining == 2) {
+        offsetMinutes = 0;
+      } else if (remaining == 4) {
+        offsetMinutes = digits(value, idx + 3, 2);
+      } else if (remaining == 5 && value.charAt(idx + 3) == ':') {
+        offsetMinutes = digits(value, idx + 4, 2);
+      } else {
+        return UNPARSEABLE;
+      }
+      if (offsetHours < 0 || offsetHours > 23 || offsetMinutes < 0 || offsetMinutes > 59) {
+        return UNPARSEABLE;
+      }
+      offsetMillis = offsetHours * MILLIS_PER_HOUR + offsetMinutes * MILLIS_PER_MINUTE;
+      if (c == '-') {
+        offsetMillis = -offsetMillis;
+      }
+    } else {
+      return UNPARSEABLE;
+    }
+
+    // Convert the year, month, and day into a day number
+    int y = month <= 2 ? year - 1 : year;
+    int era = (y >= 0 ? y : y - 399) / 400;
+    int yearOfEra = y - era * 400;
+    int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+    int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    long days = era * 146097L + dayOfEra - 719468;
+
+    return days * MILLIS_PER_DAY + hour * MILLIS_PER_HOUR + minute * MILLIS_PER_MINUTE
+      + second * 1000 + millis - offsetMillis;
+  }
+
+  private static int daysInMonth(int year, int month) {
+    switch (month) {
+      case 2:
+        boolean leap = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+        return leap ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
+  /**
+   * Returns the value of a run of decimal digits, or {@code -1} if a non-digit is encountered.
+   */
+  private static int digits(String value, int start, int count) {
+    int toReturn = 0;
+    for (int i = start, j = start + count; i < j; i++) {
+      int digit = value.charAt(i) - '0';
+      if (digit < 0 || digit > 9) {
+        return -1;
+      }
+      toReturn = toReturn * 10 + digit;
+    }
+    return toReturn;
+  }
+
+  private static long floorDiv(long dividend, long divisor) {
+    long toReturn = dividend / divisor;
+    if ((dividend % divisor != 0) && ((dividend ^ divisor) < 0)) {
+      toReturn--;
+    }
+    return toReturn;
+  }
+
+  private static void write2(char[] out, int offset, int value) {
+    out[offset] = (char) ('0' + value / 10);
+    out[offset + 1] = (char) ('0' + value % 10);
+  }
+
+  private static void write4(char[] out, int offset, int value) {
+    write2(out, offset, value / 100);
+    write2(out, offset + 2, value % 100);
+  }
+
+  private Iso8601() {}
+}
@@ -0,0 +1,159 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Applies a {@link ContentEncoding} to a payload only if the payload is larger than a threshold.
+ * Up to {@code threshold} bytes are buffered; if more data is written, the destination is opened
+ * with the encoding and all subsequent data is encoded as it is written. Otherwise, the destination
+ * is opened without an encoding when the stream is closed. This allows the {@code Content-Encoding}
+ * header to be chosen before any data is sent, without holding the whole payload in memory.
+ */
+public class ThresholdEncodingOutputStream extends OutputStream {
+  /**
+   * The initial size of the buffer, which grows as needed up to the threshold, so that small
+   * payloads don't pay for a large threshold.
+   */
+  private static final int INITIAL_BUFFER_SIZE = 512;
+
+  /**
+   * Provides the stream that will receive the payload.
+   */
+  public interface Target {
+    /**
+     * Called exactly once, before any data is written, to obtain the stream that will receive the
+     * (possibly encoded) payload. Implementations should record the choice of encoding, for
+     * example by setting a {@code Content-Encoding} header.
+     * 
+     * @param encoding the encoding that will be applied, or {@code null} if the payload will be
+     *          sent without an encoding
+     */
+    OutputStream open(ContentEncoding encoding) throws IOException;
+  }
+
+  private byte[] buffer;
+  private boolean closed;
+  private int count;
+  private final ContentEncoding encoding;
+  private OutputStream out;
+  private final Target target;
+  private final int threshold;
+
+  /**
+   * @param encoding the encoding to apply to large payloads
+   * @param threshold the size, in bytes, of the largest payload that will not be encoded
+   * @param target provides the destination stream
+   */
+  public ThresholdEncodingOutputStream(ContentEncoding encoding, int threshold, Target target) {
+    if (encoding == null) {
+      throw new IllegalArgumentException("encoding");
+    }
+    if (threshold < 0) {
+      throw new IllegalArgumentException("threshold");
+    }
+    this.buffer = new byte[Math.min(threshold, INITIAL_BUFFER_SIZE)];
+    this.encoding = encoding;
+    this.target = target;
+    this.threshold = threshold;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (out == null) {
+      open(null);
+    }
+    out.close();
+  }
+
+  /**
+   * Flushes the destination stream, if it has been opened. Buffered data is retained until the
+   * choice of encoding has been made.
+   */
+  @Override
+  public void flush() throws IOException {
+    if (out != null) {
+      out.flush();
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    checkOpen();
+    if (out == null) {
+      if (count + len <= threshold) {
+        ensureCapacity(count + len);
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+        return;
+      }
+      open(encoding);
+    }
+    out.write(b, off, len);
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    checkOpen();
+    if (out == null) {
+      if (count < threshold) {
+        ensureCapacity(count + 1);
+        buffer[count++] = (byte) b;
+        return;
+      }
+      open(encoding);
+    }
+    out.write(b);
+  }
+
+  private void checkOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+
+  /**
+   * Doubles the size of the buffer, up to the threshold, until it can hold {@code capacity} bytes.
+   */
+  private void ensureCapacity(int capacity) {
+    if (capacity <= buffer.length) {
+      return;
+    }
+    int size = Math.max(buffer.length, 1);
+    while (size < capacity) {
+      size = (int) Math.min(2L * size, threshold);
+    }
+    buffer = Arrays.copyOf(buffer, size);
+  }
+
+  private void open(ContentEncoding toUse) throws IOException {
+    OutputStream raw = target.open(toUse);
+    out = toUse == null ? raw : toUse.encode(raw);
+    out.write(buffer, 0, count);
+    buffer = null;
+  }
+}
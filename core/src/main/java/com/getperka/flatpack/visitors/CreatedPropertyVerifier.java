@@ -59,7 +59,7 @@ class CreatedPropertyVerifier implements Callable<Void> {
     if (!security.may(principal, SecurityTarget.of(entity, property), action)) {
       Object originalValue = FlatPackTypes.getDefaultValue(
           property.getSetter().getParameterTypes()[0]);
-      property.getSetter().invoke(entity, originalValue);
+      property.getAccessor().set(entity, originalValue);
     }
     return null;
   }
@@ -60,7 +60,7 @@ class ImpliedPropertySetter implements Callable<Void> {
        * collection property, it will have been reset to a new collection instance already.
        */
       @SuppressWarnings("unchecked")
-      Collection<Object> temp = (Collection<Object>) toSet.getGetter().invoke(target);
+      Collection<Object> temp = (Collection<Object>) toSet.getAccessor().get(target);
       collection = temp;
 
       // Create a new collection as necessary
@@ -70,7 +70,7 @@ class ImpliedPropertySetter implements Callable<Void> {
         } else {
           collection = FlatPackCollections.listForAny();
         }
-        toSet.getSetter().invoke(target, collection);
+        toSet.getAccessor().set(target, collection);
         context.addModified(entity, toSet);
       }
       // We can't assume much about the collection's behavior
@@ -79,10 +79,10 @@ class ImpliedPropertySetter implements Callable<Void> {
       }
     } else if (target instanceof Collection) {
       for (Object element : (Collection<?>) target) {
-        toSet.getSetter().invoke(element, value);
+        toSet.getAccessor().set(element, value);
       }
     } else {
-      toSet.getSetter().invoke(target, value);
+      toSet.getAccessor().set(target, value);
     }
     return null;
   }
@@ -41,7 +41,6 @@ import com.getperka.flatpack.ext.VisitorContext;
 import com.getperka.flatpack.inject.PackScoped;
 import com.getperka.flatpack.security.CrudOperation;
 import com.getperka.flatpack.security.MemoizingSecurity;
-import com.getperka.flatpack.security.SecurityTarget;
 import com.google.gson.JsonObject;
 
 /**
@@ -73,7 +72,7 @@ public class PackReader extends FlatPackVisitor {
 
   @Override
   public void endVisit(Property prop, VisitorContext<Property> ctx) {
-    context.pushPath("." + prop.getName());
+    context.pushPathMember(prop);
     try {
       // Ignore properties that cannot be set
       if (prop.getSetter() == null) {
@@ -91,7 +90,7 @@ public class PackReader extends FlatPackVisitor {
         return;
       }
 
-      context.pushPath("." + simplePropertyName);
+      context.pushPathMember(simplePropertyName);
       try {
         Object value;
         if (prop.isEmbedded()) {
@@ -154,17 +153,17 @@ public class PackReader extends FlatPackVisitor {
       } catch (Exception e) {
         context.fail(e);
       } finally {
-        context.popPath();
+        context.dropPath();
       }
     } finally {
-      context.popPath();
+      context.dropPath();
     }
   }
 
   @Override
   public <Q extends HasUuid> void endVisit(Q entity, EntityCodex<Q> codex, VisitorContext<Q> ctx) {
     stack.pop();
-    context.popPath();
+    context.dropPath();
   }
 
   public void setPayload(JsonObject payload) {
@@ -181,7 +180,7 @@ public class PackReader extends FlatPackVisitor {
 
   @Override
   public <Q extends HasUuid> boolean visit(Q entity, EntityCodex<Q> codex, VisitorContext<Q> ctx) {
-    context.pushPath("." + entity.getUuid());
+    context.pushPathMember(entity);
 
     PackReader.State state = new State();
     stack.push(state);
@@ -224,7 +223,7 @@ public class PackReader extends FlatPackVisitor {
   protected void setProperty(Property property, HasUuid target, Object value) {
     if (property.getSetter() != null) {
       try {
-        property.getSetter().invoke(target, value);
+        property.getAccessor().set(target, value);
       } catch (Exception e) {
         throw new RuntimeException("Could not set property value", e);
       }
@@ -237,7 +236,6 @@ public class PackReader extends FlatPackVisitor {
       HasUuid entity = (HasUuid) object;
       Principal principal = ctx.getPrincipal();
       // Verify the new value may be set
-      SecurityTarget target = SecurityTarget.of(entity, property);
 
       switch (context.getEntitySource(entity)) {
         case CREATED: {
@@ -248,8 +246,8 @@ public class PackReader extends FlatPackVisitor {
           return true;
         }
         case RESOLVED: {
-          boolean mayDelete = security.may(principal, target, DELETE_ACTION);
-          boolean mayUpdate = security.may(principal, target, UPDATE_ACTION);
+          boolean mayDelete = security.may(principal, entity, property, DELETE_ACTION);
+          boolean mayUpdate = security.may(principal, entity, property, UPDATE_ACTION);
           if (value == null) {
             return mayDelete || mayUpdate;
           }
@@ -55,22 +55,21 @@ public class PackScanner extends FlatPackVisitor {
 
   @Override
   public void endVisit(Property property, VisitorContext<Property> ctx) {
-    context.popPath();
+    context.dropPath();
   }
 
   @Override
   public <T extends HasUuid> void endVisit(T entity, EntityCodex<T> codex, VisitorContext<T> ctx) {
     if (mayRead(entity)) {
       stack.pop();
-      context.popPath();
+      context.dropPath();
     }
   }
 
   @Override
   public boolean visit(Property property, VisitorContext<Property> ctx) {
-    context.pushPath("." + property.getName());
-    if (!security.may(context.getPrincipal(),
-        SecurityTarget.of(stack.peek(), property), READ_ACTION)) {
+    context.pushPathMember(property);
+    if (!security.may(context.getPrincipal(), stack.peek(), property, READ_ACTION)) {
       return false;
     }
     if (property.isEmbedded()) {
@@ -87,7 +86,7 @@ public class PackScanner extends FlatPackVisitor {
     if (!mayRead(entity)) {
       return false;
     }
-    context.pushPath("." + entity.getUuid());
+    context.pushPathMember(entity);
     stack.push(entity);
     return context.add(entity);
   }
@@ -23,12 +23,18 @@ package com.getperka.flatpack.visitors;
 import static com.getperka.flatpack.security.CrudOperation.READ_ACTION;
 
 import java.io.IOException;
+import java.security.Principal;
 import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
@@ -37,21 +43,37 @@ import javax.validation.ConstraintViolation;
 import com.getperka.flatpack.EntityMetadata;
 import com.getperka.flatpack.FlatPackEntity;
 import com.getperka.flatpack.FlatPackVisitor;
+import com.getperka.flatpack.FragmentCache;
 import com.getperka.flatpack.HasUuid;
 import com.getperka.flatpack.PersistenceAware;
 import com.getperka.flatpack.PersistenceMapper;
+import com.getperka.flatpack.TraversalMode;
 import com.getperka.flatpack.Visitors;
 import com.getperka.flatpack.codexes.EntityCodex;
 import com.getperka.flatpack.ext.Codex;
+import com.getperka.flatpack.ext.ForkedSerializationContext;
 import com.getperka.flatpack.ext.Property;
 import com.getperka.flatpack.ext.SerializationContext;
 import com.getperka.flatpack.ext.TypeContext;
 import com.getperka.flatpack.ext.VisitorContext;
+import com.getperka.flatpack.inject.PackScope;
 import com.getperka.flatpack.inject.PackScoped;
+import com.getperka.flatpack.inject.ParallelPack;
+import com.getperka.flatpack.inject.UuidTable;
+import com.getperka.flatpack.security.GroupPermissions;
 import com.getperka.flatpack.security.MemoizingSecurity;
+import com.getperka.flatpack.security.PrincipalMapper;
+import com.getperka.flatpack.security.SecurityGroup;
+import com.getperka.flatpack.security.SecurityGroups;
+import com.getperka.flatpack.security.SecurityPolicy;
 import com.getperka.flatpack.security.SecurityTarget;
 import com.getperka.flatpack.util.FlatPackCollections;
+import com.getperka.flatpack.util.FlatPackUuids;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.internal.Streams;
 import com.google.gson.stream.JsonWriter;
+import com.google.inject.Key;
 
 /**
  * Writes a {@link FlatPackEntity} and the entities contained in a {@link SerializationContext} into
@@ -65,18 +87,87 @@ public class PackWriter extends FlatPackVisitor {
     Property property;
   }
 
+  /**
+   * Writes a contiguous run of entities of a single type into the buffer of a
+   * {@link ForkedSerializationContext}, using a scope forked from the packing thread.
+   */
+  @SuppressWarnings("serial")
+  private class WriteEntitiesTask extends RecursiveAction {
+    private final List<HasUuid> entities;
+    private final ForkedSerializationContext fork;
+    private final Map<Key<?>, Object> scopeData;
+
+    WriteEntitiesTask(List<HasUuid> entities, ForkedSerializationContext fork,
+        Map<Key<?>, Object> scopeData) {
+      this.entities = entities;
+      this.fork = fork;
+      this.scopeData = scopeData;
+    }
+
+    @Override
+    protected void compute() {
+      packScope.enter(scopeData);
+      try {
+        PackWriter writer = packWriters.get();
+        JsonWriter json = fork.getWriter();
+        json.beginArray();
+        for (HasUuid value : entities) {
+          writer.writeEntity(value);
+        }
+        json.endArray();
+      } catch (IOException e) {
+        fork.fail(e);
+      } finally {
+        packScope.exit();
+      }
+    }
+  }
+
+  /**
+   * The minimum number of entities to be written by each task when the {@code data} section is
+   * written in parallel.
+   */
+  private static final int PARALLEL_PACK_MIN_PARTITION = 64;
+
+  private boolean columnarData;
   @Inject
   private SerializationContext context;
+  /**
+   * Memoizes {@link #hasEntityRelativeGroups(Class)}.
+   */
+  private final Map<Class<? extends HasUuid>, Boolean> entityRelativeTypes = FlatPackCollections
+      .mapForLookup();
+  @Inject
+  private FragmentCache fragmentCache;
   @Inject
   private Provider<EntityCodex<EntityMetadata>> metadataCodex;
   @Inject
+  private PackScope packScope;
+  @Inject
+  private Provider<PackWriter> packWriters;
+  @ParallelPack
+  @Inject
+  private boolean parallelPack;
+  @Inject
   private PersistenceMapper persistenceMapper;
   private List<HasUuid> persistent = FlatPackCollections.listForAny();
   @Inject
+  private Provider<ForkJoinPool> pools;
+  @Inject
+  private PrincipalMapper principalMapper;
+  private SinglePassPackWriter rendered;
+  @Inject
   private MemoizingSecurity security;
+  @Inject
+  private SecurityGroups securityGroups;
+  @Inject
+  private SecurityPolicy securityPolicy;
   private final Deque<PackWriter.State> stack = new ArrayDeque<PackWriter.State>();
   @Inject
   private TypeContext typeContext;
+  @UuidTable
+  @Inject
+  private boolean uuidTable;
   @Inject
   private Visitors visitors;
 
@@ -87,7 +178,7 @@ public class PackWriter extends FlatPackVisitor {
 
   @Override
   public void endVisit(Property property, VisitorContext<Property> ctx) {
-    context.popPath();
+    context.dropPath();
   }
 
   @Override
@@ -100,30 +191,72 @@ public class PackWriter extends FlatPackVisitor {
         context.fail(e);
       }
     }
-    context.popPath();
+    context.dropPath();
   }
 
   @Override
   public <T> boolean visit(FlatPackEntity<T> entity, Codex<T> codex,
       VisitorContext<FlatPackEntity<T>> ctx) {
     JsonWriter json = context.getWriter();
+    columnarData = entity.isColumnarData();
     try {
       json.beginObject();
 
+      Map<Class<? extends HasUuid>, List<HasUuid>> collated = null;
+      if (rendered == null) {
+        collated = collate(context.getEntities());
+        if (uuidTable) {
+          writeUuidTable(collated);
+        }
+      }
+
       // data : { typeName : [ { entity }, { entity } ]
       json.name("data");
       json.beginObject();
-      for (Map.Entry<Class<? extends HasUuid>, List<HasUuid>> entry : collate(
-          context.getEntities()).entrySet()) {
-        json.name(typeContext.describe(entry.getKey()).getTypeName());
-        json.beginArray();
-        for (HasUuid value : entry.getValue()) {
+      if (rendered == null) {
+        int total = 0;
+        for (List<HasUuid> values : collated.values()) {
+          total += values.size();
+        }
+        if (parallelPack && total >= 2 * PARALLEL_PACK_MIN_PARTITION) {
+          writeDataInParallel(collated, total);
+        } else {
+          for (Map.Entry<Class<? extends HasUuid>, List<HasUuid>> entry : collated.entrySet()) {
+            json.name(typeContext.describe(entry.getKey()).getTypeName());
+            List<HasUuid> values = entry.getValue();
+            for (HasUuid value : values) {
+              if (persistenceMapper.isPersisted(value)) {
+                persistent.add(value);
+              }
+            }
+            if (isColumnar(values.size())) {
+              writeColumnar(buffer(values, true));
+              continue;
+            }
+            json.beginArray();
+            for (HasUuid value : values) {
+              writeEntity(value);
+            }
+            json.endArray();
+          }
+        }
+      } else {
+        // Copy the entities that have already been written
+        for (Map.Entry<Class<? extends HasUuid>, JsonElement> entry : rendered.getData()
+            .entrySet()) {
+          json.name(typeContext.describe(entry.getKey()).getTypeName());
+          JsonArray values = entry.getValue().getAsJsonArray();
+          if (isColumnar(values.size())) {
+            writeColumnar(values);
+          } else {
+            Streams.write(values, json);
+          }
+        }
+        for (HasUuid value : rendered.getEmitted()) {
           if (persistenceMapper.isPersisted(value)) {
             persistent.add(value);
           }
-          visitors.visit(this, value);
         }
-        json.endArray();
       }
       json.endObject(); // end data
 
@@ -190,7 +323,7 @@ public class PackWriter extends FlatPackVisitor {
 
   @Override
   public boolean visit(Property prop, VisitorContext<Property> ctx) {
-    context.pushPath("." + prop.getName());
+    context.pushPathMember(prop);
     PackWriter.State state = stack.peek();
 
     // Ignore set-only properties
@@ -198,8 +331,7 @@ public class PackWriter extends FlatPackVisitor {
       return false;
     }
     // Check access
-    if (!security.may(context.getPrincipal(),
-        SecurityTarget.of(stack.peek().entity, prop), READ_ACTION)) {
+    if (!security.may(context.getPrincipal(), stack.peek().entity, prop, READ_ACTION)) {
       return false;
     }
     // Ignore OneToMany type properties unless specifically requested
@@ -221,7 +353,7 @@ public class PackWriter extends FlatPackVisitor {
 
   @Override
   public <T extends HasUuid> boolean visit(T entity, EntityCodex<T> codex, VisitorContext<T> ctx) {
-    context.pushPath("." + entity.getUuid());
+    context.pushPathMember(entity);
     PackWriter.State state = new State();
 
     if (!security.may(context.getPrincipal(), SecurityTarget.of(entity), READ_ACTION)) {
@@ -249,6 +381,14 @@ public class PackWriter extends FlatPackVisitor {
     return true;
   }
 
+  /**
+   * Use the entities that have already been written by a {@link SinglePassPackWriter} to populate
+   * the {@code data} section, instead of visiting the entities in the {@link SerializationContext}.
+   */
+  public void setRenderedData(SinglePassPackWriter rendered) {
+    this.rendered = rendered;
+  }
+
   @Override
   public <T> boolean visitValue(T value, Codex<T> codex, VisitorContext<T> ctx) {
     // Indicates that the visitor is looking at a top-level value
@@ -279,6 +419,31 @@ public class PackWriter extends FlatPackVisitor {
     return false;
   }
 
+  /**
+   * Writes entities into a JSON array instead of the payload, by temporarily redirecting this
+   * writer's output into a {@link ForkedSerializationContext}.
+   */
+  private JsonArray buffer(List<HasUuid> values, boolean useFragments) throws IOException {
+    SerializationContext payloadContext = context;
+    ForkedSerializationContext fork = new ForkedSerializationContext(payloadContext);
+    context = fork;
+    try {
+      fork.getWriter().beginArray();
+      for (HasUuid value : values) {
+        if (useFragments) {
+          writeEntity(value);
+        } else {
+          visitors.visit(this, value);
+        }
+      }
+      fork.getWriter().endArray();
+    } finally {
+      context = payloadContext;
+    }
+    fork.join();
+    return fork.getWriter().get().getAsJsonArray();
+  }
+
   /**
    * Creates a map representing the {@code data} payload structure from an assortment of entities.
    * This method also filters out persistent objects that do not have any local mutations.
@@ -308,4 +473,242 @@ public class PackWriter extends FlatPackVisitor {
 
     return toReturn;
   }
-}
\ No newline at end of file
+
+  /**
+   * Returns {@code true} if the type or any of its properties may be granted to an entity-relative
+   * {@link SecurityGroup}, in which case the entity's fragment is specific to the principal.
+   */
+  private boolean hasEntityRelativeGroups(Class<? extends HasUuid> entityType) {
+    Boolean toReturn = entityRelativeTypes.get(entityType);
+    if (toReturn == null) {
+      toReturn = hasEntityRelativeGroups(securityPolicy.getPermissions(SecurityTarget
+          .of(entityType)));
+      for (Property prop : typeContext.describe(entityType).getProperties()) {
+        toReturn = toReturn
+          || hasEntityRelativeGroups(securityPolicy.getPermissions(SecurityTarget.of(prop)));
+      }
+      entityRelativeTypes.put(entityType, toReturn);
+    }
+    return toReturn;
+  }
+
+  private boolean hasEntityRelativeGroups(GroupPermissions permissions) {
+    if (permissions == null) {
+      return false;
+    }
+    for (SecurityGroup group : permissions.getOperations().keySet()) {
+      if (!group.isGlobalSecurityGroup() && !securityGroups.getGroupAll().equals(group)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns {@code true} if a type with {@code count} entities should be written as a table.
+   */
+  private boolean isColumnar(int count) {
+    return columnarData && count > 1;
+  }
+
+  /**
+   * Splits each type's entities into contiguous partitions which are written concurrently into
+   * private buffers. The buffers are then copied into the payload in their original order, so the
+   * output is the same as for a sequential pack.
+   */
+  private void writeDataInParallel(Map<Class<? extends HasUuid>, List<HasUuid>> collated,
+      int total) throws IOException {
+    ForkJoinPool pool = pools.get();
+    int partitionSize = Math.max(PARALLEL_PACK_MIN_PARTITION,
+        (total + pool.getParallelism() * 4 - 1) / (pool.getParallelism() * 4));
+
+    Map<Key<?>, Object> snapshot = packScope.snapshot();
+    // Each task will create its own instances of these
+    snapshot.remove(Key.get(MemoizingSecurity.class));
+    snapshot.remove(Key.get(PackWriter.class));
+
+    Map<Class<? extends HasUuid>, List<WriteEntitiesTask>> tasksByType = FlatPackCollections
+        .mapForIteration();
+    for (Map.Entry<Class<? extends HasUuid>, List<HasUuid>> entry : collated.entrySet()) {
+      List<HasUuid> values = entry.getValue();
+      List<WriteEntitiesTask> tasks = FlatPackCollections.listForAny();
+      for (int from = 0, j = values.size(); from < j; from += partitionSize) {
+        ForkedSerializationContext fork = new ForkedSerializationContext(context);
+        Map<Key<?>, Object> scopeData = FlatPackCollections.mapForIteration(snapshot);
+        scopeData.put(Key.get(JsonWriter.class), fork.getWriter());
+        scopeData.put(Key.get(SerializationContext.class), fork);
+
+        WriteEntitiesTask task = new WriteEntitiesTask(
+            values.subList(from, Math.min(from + partitionSize, j)), fork, scopeData);
+        pool.execute(task);
+        tasks.add(task);
+      }
+      tasksByType.put(entry.getKey(), tasks);
+
+      for (HasUuid value : values) {
+        if (persistenceMapper.isPersisted(value)) {
+          persistent.add(value);
+        }
+      }
+    }
+
+    // Wait for every task, even if one fails, so no work continues in the background
+    Throwable failure = null;
+    for (List<WriteEntitiesTask> tasks : tasksByType.values()) {
+      for (WriteEntitiesTask task : tasks) {
+        task.quietlyJoin();
+        if (failure == null && task.isCompletedAbnormally()) {
+          failure = task.getException();
+        }
+      }
+    }
+    if (failure != null) {
+      context.fail(failure);
+    }
+
+    JsonWriter json = context.getWriter();
+    for (Map.Entry<Class<? extends HasUuid>, List<WriteEntitiesTask>> entry : tasksByType
+        .entrySet()) {
+      json.name(typeContext.describe(entry.getKey()).getTypeName());
+      if (isColumnar(collated.get(entry.getKey()).size())) {
+        JsonArray values = new JsonArray();
+        for (WriteEntitiesTask task : entry.getValue()) {
+          values.addAll(task.fork.getWriter().get().getAsJsonArray());
+          task.fork.join();
+        }
+        writeColumnar(values);
+        continue;
+      }
+      json.beginArray();
+      for (WriteEntitiesTask task : entry.getValue()) {
+        for (JsonElement element : task.fork.getWriter().get().getAsJsonArray()) {
+          Streams.write(element, json);
+        }
+        task.fork.join();
+      }
+      json.endArray();
+    }
+  }
+
+  /**
+   * Writes a type's entities as a list of the property names that occur in any of the entities,
+   * followed by a row of values for each entity. Since {@code null} values are not written into the
+   * entity objects, a {@code null} in a row means that the entity does not have that property.
+   * 
+   * <pre>
+   * typeName : { properties : [ 'name', 'otherUuid' ], rows : [ [ 'value', 'uuid' ], [ ... ] ] }
+   * </pre>
+   */
+  private void writeColumnar(JsonArray values) throws IOException {
+    Map<String, Integer> indexes = FlatPackCollections.mapForIteration();
+    for (JsonElement value : values) {
+      for (Map.Entry<String, JsonElement> entry : value.getAsJsonObject().entrySet()) {
+        if (!indexes.containsKey(entry.getKey())) {
+          indexes.put(entry.getKey(), indexes.size());
+        }
+      }
+    }
+
+    JsonWriter json = context.getWriter();
+    json.beginObject();
+    json.name("properties");
+    json.beginArray();
+    for (String name : indexes.keySet()) {
+      json.value(name);
+    }
+    json.endArray();
+
+    json.name("rows");
+    json.beginArray();
+    JsonElement[] row = new JsonElement[indexes.size()];
+    for (JsonElement value : values) {
+      Arrays.fill(row, null);
+      for (Map.Entry<String, JsonElement> entry : value.getAsJsonObject().entrySet()) {
+        row[indexes.get(entry.getKey())] = entry.getValue();
+      }
+      json.beginArray();
+      for (JsonElement cell : row) {
+        if (cell == null) {
+          json.nullValue();
+        } else {
+          Streams.write(cell, json);
+        }
+      }
+      json.endArray();
+    }
+    json.endArray();
+    json.endObject();
+  }
+
+  /**
+   * Writes a top-level entity in the {@code data} section, reusing the fragment written by an
+   * earlier operation if the {@link FragmentCache} contains one.
+   */
+  private void writeEntity(HasUuid value) throws IOException {
+    Object version = null;
+    if (fragmentCache.isEnabled() && !uuidTable && !(value instanceof PersistenceAware)) {
+      version = fragmentCache.getVersion(value);
+    }
+    if (version == null) {
+      visitors.visit(this, value);
+      return;
+    }
+
+    // Describe the principal's view of the entity
+    Principal principal = context.getPrincipal();
+    Object security;
+    if (hasEntityRelativeGroups(value.getClass())) {
+      security = principal;
+    } else {
+      List<String> groups = principalMapper.getGlobalSecurityGroups(principal);
+      security = Arrays.asList(principalMapper.isAccessEnforced(principal,
+          SecurityTarget.of(value)), groups == null ? null : new TreeSet<String>(groups));
+    }
+
+    TraversalMode traversalMode = context.getTraversalMode();
+    JsonElement fragment = fragmentCache.get(value, version, security, traversalMode);
+    if (fragment == null) {
+      // Don't cache an entity that couldn't be read or that produced warnings
+      int warnings = context.getWarnings().size();
+      JsonArray buffered = buffer(Collections.singletonList(value), false);
+      if (buffered.size() == 0) {
+        return;
+      }
+      fragment = buffered.get(0);
+      if (context.getWarnings().size() == warnings) {
+        fragmentCache.put(value, version, security, traversalMode, fragment);
+      }
+    }
+    Streams.write(fragment, context.getWriter());
+  }
+
+  /**
+   * Writes the UUIDs of the readable entities in the {@code data} section, in the order that they
+   * will be written, so that references to them may be written as indexes into the table.
+   * 
+   * <pre>
+   * uuids : [ 'uuid', 'uuid' ]
+   * </pre>
+   */
+  private void writeUuidTable(Map<Class<? extends HasUuid>, List<HasUuid>> collated)
+      throws IOException {
+    List<UUID> uuids = FlatPackCollections.listForAny();
+    for (List<HasUuid> values : collated.values()) {
+      for (HasUuid value : values) {
+        if (security.may(context.getPrincipal(), SecurityTarget.of(value), READ_ACTION)) {
+          uuids.add(value.getUuid());
+        }
+      }
+    }
+
+    JsonWriter json = context.getWriter();
+    json.name("uuids");
+    json.beginArray();
+    for (UUID uuid : uuids) {
+      json.value(FlatPackUuids.toString(uuid));
+    }
+    json.endArray();
+
+    context.setUuidTable(uuids);
+  }
+}
@@ -0,0 +1,348 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.visitors;
+
+import static com.getperka.flatpack.security.CrudOperation.READ_ACTION;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+
+import com.getperka.flatpack.FlatPackEntity;
+import com.getperka.flatpack.FlatPackVisitor;
+import com.getperka.flatpack.HasUuid;
+import com.getperka.flatpack.PersistenceAware;
+import com.getperka.flatpack.Visitors;
+import com.getperka.flatpack.codexes.EntityCodex;
+import com.getperka.flatpack.codexes.ValueCodex;
+import com.getperka.flatpack.ext.Codex;
+import com.getperka.flatpack.ext.DelegatingSerializationContext;
+import com.getperka.flatpack.ext.Property;
+import com.getperka.flatpack.ext.SerializationContext;
+import com.getperka.flatpack.ext.VisitorContext;
+import com.getperka.flatpack.inject.PackScoped;
+import com.getperka.flatpack.security.MemoizingSecurity;
+import com.getperka.flatpack.security.SecurityTarget;
+import com.getperka.flatpack.util.FlatPackCollections;
+import com.google.gson.JsonElement;
+import com.google.gson.internal.bind.JsonTreeWriter;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Combines the work of {@link PackScanner} and the entity-writing portion of {@link PackWriter}
+ * into a single traversal of the object graph. Each reachable entity is visited exactly once and
+ * its properties are written into a per-type buffer while any entities that it refers to are
+ * queued for later processing. Once all entities have been written, the buffers should be passed to
+ * {@link PackWriter#setRenderedData(SinglePassPackWriter)} to assemble the final payload.
+ */
+@PackScoped
+public class SinglePassPackWriter extends FlatPackVisitor {
+  /**
+   * Redirects codex output into the buffer for the entity currently being written.
+   */
+  static class BufferContext extends DelegatingSerializationContext {
+    private JsonWriter writer;
+
+    public BufferContext(SerializationContext delegate) {
+      super(delegate);
+    }
+
+    @Override
+    public JsonWriter getWriter() {
+      return writer;
+    }
+  }
+
+  static class State {
+    Set<String> dirtyPropertyNames;
+    /**
+     * Entities referred to from within an embedded object are not added to the payload.
+     */
+    boolean embedded;
+    HasUuid entity;
+    Property property;
+    JsonWriter writer;
+  }
+
+  /**
+   * Pushed for entities that are only being recorded as references.
+   */
+  private static final State REFERENCE = new State();
+
+  private BufferContext bufferContext;
+  private final Map<Class<? extends HasUuid>, JsonTreeWriter> buffers = FlatPackCollections
+      .mapForIteration();
+  @Inject
+  private SerializationContext context;
+  private Map<Class<? extends HasUuid>, JsonElement> data;
+  private final List<HasUuid> emitted = FlatPackCollections.listForAny();
+  private HasUuid processing;
+  private final Deque<HasUuid> queue = new ArrayDeque<HasUuid>();
+  @Inject
+  private MemoizingSecurity security;
+  private final Deque<State> stack = new ArrayDeque<State>();
+  @Inject
+  private Visitors visitors;
+
+  /**
+   * Requires injection.
+   */
+  protected SinglePassPackWriter() {}
+
+  /**
+   * Write all queued entities and close the per-type buffers.
+   */
+  @Override
+  public <T> void endVisit(FlatPackEntity<T> x, Codex<T> codex,
+      VisitorContext<FlatPackEntity<T>> ctx) {
+    while (!queue.isEmpty()) {
+      processing = queue.poll();
+      visitors.visit(this, processing);
+    }
+    processing = null;
+
+    data = FlatPackCollections.mapForIteration();
+    try {
+      for (Map.Entry<Class<? extends HasUuid>, JsonTreeWriter> entry : buffers.entrySet()) {
+        JsonTreeWriter buffer = entry.getValue();
+        buffer.endArray();
+        data.put(entry.getKey(), buffer.get());
+      }
+    } catch (IOException e) {
+      context.fail(e);
+    }
+    buffers.clear();
+  }
+
+  @Override
+  public void endVisit(Property property, VisitorContext<Property> ctx) {
+    stack.peek().property = null;
+    context.dropPath();
+  }
+
+  @Override
+  public <Q extends HasUuid> void endVisit(Q entity, EntityCodex<Q> codex, VisitorContext<Q> ctx) {
+    State state = stack.pop();
+    if (state == REFERENCE) {
+      return;
+    }
+    if (stack.isEmpty() && state.writer != null) {
+      try {
+        state.writer.endObject();
+      } catch (IOException e) {
+        context.fail(e);
+      }
+    }
+    context.dropPath();
+  }
+
+  /**
+   * Returns the rendered {@code data} section, keyed by entity type. Each value is a JSON array of
+   * entity objects.
+   */
+  public Map<Class<? extends HasUuid>, JsonElement> getData() {
+    return data;
+  }
+
+  /**
+   * Returns the entities that were written into the {@code data} section.
+   */
+  public List<HasUuid> getEmitted() {
+    return emitted;
+  }
+
+  /**
+   * Begin a traversal of the value and extra entities, which will seed the queue.
+   */
+  @Override
+  public <T> boolean visit(FlatPackEntity<T> entity, Codex<T> codex,
+      VisitorContext<FlatPackEntity<T>> ctx) {
+    bufferContext = new BufferContext(context);
+    return true;
+  }
+
+  @Override
+  public boolean visit(Property prop, VisitorContext<Property> ctx) {
+    context.pushPathMember(prop);
+    State state = stack.peek();
+
+    // Ignore set-only properties
+    if (prop.getGetter() == null) {
+      return false;
+    }
+    // Check access
+    if (!security.may(context.getPrincipal(), state.entity, prop, READ_ACTION)) {
+      return false;
+    }
+    // Ignore OneToMany type properties unless specifically requested
+    if (prop.isDeepTraversalOnly() && !context.getTraversalMode().writeAllProperties()) {
+      return false;
+    }
+    state.property = prop;
+    return true;
+  }
+
+  @Override
+  public <T extends HasUuid> boolean visit(T entity, EntityCodex<T> codex, VisitorContext<T> ctx) {
+    State parent = stack.peek();
+
+    // A property that refers to another entity, or a root of the traversal
+    if (entity != processing && (parent == null || !isEmbedded(parent))) {
+      if (mayRead(entity) && context.add(entity)) {
+        queue.add(entity);
+      }
+      stack.push(REFERENCE);
+      return false;
+    }
+
+    context.pushPathMember(entity);
+    State state = new State();
+    stack.push(state);
+
+    if (!mayRead(entity)) {
+      return false;
+    }
+    state.entity = entity;
+
+    if (entity instanceof PersistenceAware) {
+      Set<String> dirtyPropertyNames = FlatPackCollections.setForIteration();
+      // Always write out uuid
+      dirtyPropertyNames.add("uuid");
+      dirtyPropertyNames.addAll(((PersistenceAware) entity).dirtyPropertyNames());
+      state.dirtyPropertyNames = dirtyPropertyNames;
+    }
+
+    if (parent == null) {
+      // Start a new top-level entity, unless it is filtered from the data section
+      processing = null;
+      if (shouldEmit(entity)) {
+        state.writer = buffer(entity.getClass());
+        emitted.add(entity);
+        try {
+          state.writer.beginObject();
+        } catch (IOException e) {
+          context.fail(e);
+        }
+      }
+    } else {
+      // Embedded objects are written inline with their parent
+      parent.property = null;
+      state.embedded = true;
+      state.writer = parent.writer;
+    }
+    return true;
+  }
+
+  @Override
+  public <T> boolean visitValue(T value, Codex<T> codex, VisitorContext<T> ctx) {
+    State state = stack.peek();
+
+    // Looking at the top-level value or extra entities
+    if (state == null) {
+      return true;
+    }
+
+    Property prop = state.property;
+    if (prop == null) {
+      // Looking at the contents of a property value, which may contain references
+      return !state.embedded;
+    }
+    if (prop.isEmbedded()) {
+      // Embedded properties should immediately traverse into the related entity
+      return shouldWrite(state, prop);
+    }
+    state.property = null;
+
+    if (shouldWrite(state, prop)
+      && !(prop.isSuppressDefaultValue() && codex.isDefaultValue(value))) {
+      // Write the name and defer to the codex to write the JSON value
+      bufferContext.writer = state.writer;
+      try {
+        state.writer.name(prop.getName() + codex.getPropertySuffix());
+      } catch (IOException e) {
+        context.fail(e);
+      }
+      codex.write(value, bufferContext);
+    }
+
+    // Look for referenced entities, unless the value cannot contain any
+    return !state.embedded && !(codex instanceof ValueCodex);
+  }
+
+  protected boolean mayRead(HasUuid entity) {
+    return security.may(context.getPrincipal(), SecurityTarget.of(entity), READ_ACTION);
+  }
+
+  private JsonTreeWriter buffer(Class<? extends HasUuid> clazz) {
+    JsonTreeWriter toReturn = buffers.get(clazz);
+    if (toReturn == null) {
+      toReturn = new JsonTreeWriter();
+      toReturn.setSerializeNulls(context.getWriter().getSerializeNulls());
+      try {
+        toReturn.beginArray();
+      } catch (IOException e) {
+        context.fail(e);
+      }
+      buffers.put(clazz, toReturn);
+    }
+    return toReturn;
+  }
+
+  private boolean isEmbedded(State parent) {
+    return parent.property != null && parent.property.isEmbedded();
+  }
+
+  /**
+   * Mirrors {@link SerializationContext#getEntities()} and the filtering of clean persistent
+   * entities performed by {@link PackWriter}.
+   */
+  private boolean shouldEmit(HasUuid entity) {
+    if (!context.isModified(entity)) {
+      return false;
+    }
+    if (entity instanceof PersistenceAware) {
+      PersistenceAware maybeDirty = (PersistenceAware) entity;
+      if (maybeDirty.wasPersistent() && maybeDirty.dirtyPropertyNames().isEmpty()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean shouldWrite(State state, Property prop) {
+    if (state.writer == null) {
+      return false;
+    }
+    // Don't emit a redundant uuid property
+    if (state.embedded && "uuid".equals(prop.getName())) {
+      return false;
+    }
+    // Skip clean properties
+    if (state.dirtyPropertyNames != null && !state.dirtyPropertyNames.contains(prop.getName())) {
+      return false;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.security.Principal;
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.getperka.flatpack.domain.Employee;
+
+/**
+ * Runs the {@link PackTest} suite using the {@link WireFormat#BINARY} format.
+ */
+public class BinaryPackTest extends PackTest {
+
+  @Test
+  public void testDates() throws IOException {
+    Date date = new Date(1234567890123L);
+    @SuppressWarnings("unchecked")
+    FlatPackEntity<Date> entity = (FlatPackEntity<Date>) FlatPackEntity.create(Date.class, date,
+        null);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    flatpack.getPacker().pack(entity, out);
+
+    FlatPackEntity<Date> entity2 = flatpack.getUnpacker().unpack(Date.class,
+        new ByteArrayInputStream(out.toByteArray()), null);
+    assertEquals(date, entity2.getValue());
+  }
+
+  @Test
+  public void testSmallerThanJson() throws IOException {
+    Employee employee = makeEmployee();
+    FlatPackEntity<Employee> entity = FlatPackEntity.entity(employee);
+
+    ByteArrayOutputStream binary = new ByteArrayOutputStream();
+    flatpack.getPacker().pack(entity, binary, WireFormat.BINARY);
+    ByteArrayOutputStream json = new ByteArrayOutputStream();
+    flatpack.getPacker().pack(entity, json, WireFormat.JSON);
+
+    assertEquals(true, binary.size() < json.size());
+  }
+
+  @Override
+  protected <T> T deepPack(Type type, T value, Principal principal) throws IOException {
+    @SuppressWarnings("unchecked")
+    FlatPackEntity<T> entity = (FlatPackEntity<T>) FlatPackEntity.create(type, value, principal)
+        .withTraversalMode(TraversalMode.DEEP);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    flatpack.getPacker().pack(entity, out);
+
+    FlatPackEntity<T> entity2 = flatpack.getUnpacker().unpack(type,
+        new ByteArrayInputStream(out.toByteArray()), principal);
+    return entity2.getValue();
+  }
+
+  @Override
+  protected Configuration getConfiguration() {
+    return super.getConfiguration().withWireFormat(WireFormat.BINARY);
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.getperka.flatpack.domain.Employee;
+import com.getperka.flatpack.ext.BulkEntityResolver;
+import com.getperka.flatpack.ext.EntityResolver;
+import com.getperka.flatpack.util.FlatPackCollections;
+import com.getperka.flatpack.util.FlatPackTypes;
+
+/**
+ * Verifies that the entities in the {@code data} section are resolved in bulk.
+ */
+public class BulkEntityResolverTest extends FlatPackTest {
+  class TestBulkResolver implements BulkEntityResolver {
+    @Override
+    public <T extends HasUuid> T resolve(Class<T> clazz, UUID uuid) throws Exception {
+      singleCalls++;
+      return clazz.cast(bulkData.get(uuid));
+    }
+
+    @Override
+    public <T extends HasUuid> Map<UUID, T> resolveAll(Class<T> clazz, Collection<UUID> uuids)
+        throws Exception {
+      bulkCalls++;
+      Map<UUID, T> toReturn = FlatPackCollections.mapForIteration();
+      for (UUID uuid : uuids) {
+        HasUuid entity = bulkData.get(uuid);
+        if (clazz.isInstance(entity)) {
+          toReturn.put(uuid, clazz.cast(entity));
+        }
+      }
+      return toReturn;
+    }
+  }
+
+  /**
+   * Only supports single lookups, to exercise the fallback in the composite resolver.
+   */
+  class TestSingleResolver implements EntityResolver {
+    @Override
+    public <T extends HasUuid> T resolve(Class<T> clazz, UUID uuid) throws Exception {
+      return clazz.cast(singleData.get(uuid));
+    }
+  }
+
+  private int bulkCalls;
+  private final Map<UUID, HasUuid> bulkData = FlatPackCollections.mapForIteration();
+  private int singleCalls;
+  private final Map<UUID, HasUuid> singleData = FlatPackCollections.mapForIteration();
+
+  @Test
+  public void test() throws IOException {
+    Employee e1 = makeEmployee();
+    Employee e2 = makeEmployee();
+    Employee e3 = makeEmployee();
+    bulkData.put(e1.getUuid(), e1);
+    singleData.put(e2.getUuid(), e2);
+
+    List<Employee> list = deepPack(FlatPackTypes.createType(List.class, Employee.class),
+        Arrays.asList(e1, e2, e3));
+
+    assertEquals(1, bulkCalls);
+    assertEquals(0, singleCalls);
+    assertEquals(3, list.size());
+    assertSame(e1, list.get(0));
+    assertSame(e2, list.get(1));
+    assertNotSame(e3, list.get(2));
+    assertEquals(e3.getUuid(), list.get(2).getUuid());
+    assertEquals(e3.getEmployeeNumber(), list.get(2).getEmployeeNumber());
+  }
+
+  @Override
+  protected Configuration getConfiguration() {
+    return super.getConfiguration()
+        .addEntityResolver(new TestBulkResolver())
+        .addEntityResolver(new TestSingleResolver());
+  }
+}
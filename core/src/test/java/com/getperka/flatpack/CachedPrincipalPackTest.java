@@ -0,0 +1,49 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.getperka.flatpack.security.SecurityDecisionCache;
+
+/**
+ * Runs the {@link PrincipalPackTest} suite with a {@link SecurityDecisionCache} installed, which
+ * must not change the outcome of entity-relative security checks.
+ */
+public class CachedPrincipalPackTest extends PrincipalPackTest {
+  private final SecurityDecisionCache cache = new SecurityDecisionCache(100, 1, TimeUnit.MINUTES);
+
+  @Test
+  public void testCacheUsed() throws IOException {
+    test();
+    assertTrue(cache.getHitCount() > 0);
+    assertTrue(cache.getSize() > 0);
+  }
+
+  @Override
+  protected Configuration getConfiguration() {
+    return super.getConfiguration().withSecurityDecisionCache(cache);
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.getperka.flatpack.domain.Employee;
+import com.getperka.flatpack.domain.Manager;
+import com.getperka.flatpack.util.FlatPackCollections;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Tests {@link FlatPackEntity#withColumnarData(boolean)}.
+ */
+public class ColumnarDataTest extends FlatPackTest {
+  /**
+   * Enough entities to be packed in parallel.
+   */
+  private static final int COUNT = 200;
+
+  @Test
+  public void testParallelPack() throws IOException {
+    testRoundTrip(FlatPack.create(getConfiguration().withParallelPack(true)));
+  }
+
+  @Test
+  public void testPayload() throws IOException {
+    JsonObject data = new JsonParser().parse(pack(flatpack)).getAsJsonObject()
+        .get("data").getAsJsonObject();
+
+    JsonObject employees = data.get("employee").getAsJsonObject();
+    assertTrue(employees.get("properties").getAsJsonArray().size() > 1);
+    assertEquals(COUNT, employees.get("rows").getAsJsonArray().size());
+
+    // Only one manager, so it's not worth writing a table
+    assertTrue(data.get("manager").isJsonArray());
+  }
+
+  @Test
+  public void testSequentialPack() throws IOException {
+    testRoundTrip(flatpack);
+  }
+
+  @Test
+  public void testSinglePassPack() throws IOException {
+    testRoundTrip(FlatPack.create(getConfiguration().withSinglePassPack(true)));
+  }
+
+  @Test
+  public void testStreamingUnpack() throws IOException {
+    testRoundTrip(FlatPack.create(getConfiguration().withStreamingUnpack(true)));
+  }
+
+  @Test
+  public void testUuidTable() throws IOException {
+    testRoundTrip(FlatPack.create(getConfiguration().withUuidTable(true)));
+  }
+
+  private List<Employee> makeEmployees() {
+    Manager manager = makeManager();
+    List<Employee> toReturn = FlatPackCollections.listForAny();
+    for (int i = 0; i < COUNT; i++) {
+      Employee employee = makeEmployee();
+      employee.setManager(manager);
+      // Missing properties are written as nulls
+      if (i % 3 == 0) {
+        employee.setName(null);
+      }
+      toReturn.add(employee);
+    }
+    return toReturn;
+  }
+
+  private String pack(FlatPack flatpack) throws IOException {
+    return pack(flatpack, makeEmployees());
+  }
+
+  private String pack(FlatPack flatpack, List<Employee> employees) throws IOException {
+    FlatPackEntity<Collection<? extends Employee>> entity = FlatPackEntity
+        .collectionOf(Employee.class).withValue(employees).withColumnarData(true);
+    StringWriter out = new StringWriter();
+    flatpack.getPacker().pack(entity, out);
+    return out.toString();
+  }
+
+  private void testRoundTrip(FlatPack flatpack) throws IOException {
+    List<Employee> employees = makeEmployees();
+    String payload = pack(flatpack, employees);
+
+    FlatPackEntity<Collection<? extends Employee>> entity = flatpack.getUnpacker().unpack(
+        FlatPackEntity.collectionOf(Employee.class).getType(), new StringReader(payload), null);
+    Collection<? extends Employee> out = entity.getValue();
+    assertEquals(COUNT, out.size());
+
+    Iterator<? extends Employee> it = out.iterator();
+    for (int i = 0; i < COUNT; i++) {
+      Employee expected = employees.get(i);
+      Employee actual = it.next();
+      assertEquals(expected.getUuid(), actual.getUuid());
+      assertEquals(expected.getEmployeeNumber(), actual.getEmployeeNumber());
+      if (expected.getName() == null) {
+        assertNull(actual.getName());
+      } else {
+        assertEquals(expected.getName(), actual.getName());
+      }
+      assertEquals(expected.getManager().getUuid(), actual.getManager().getUuid());
+      assertEquals("manager street", actual.getManager().getAddress().getStreet());
+    }
+  }
+}
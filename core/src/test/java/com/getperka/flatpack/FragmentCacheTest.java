@@ -0,0 +1,240 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.security.Principal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.junit.Test;
+
+import com.getperka.flatpack.domain.Employee;
+import com.getperka.flatpack.domain.Manager;
+import com.getperka.flatpack.security.CrudOperation;
+import com.getperka.flatpack.security.GroupPermissions;
+import com.getperka.flatpack.security.PrincipalMapper;
+import com.getperka.flatpack.security.SecurityGroups;
+import com.getperka.flatpack.security.SecurityPolicy;
+import com.getperka.flatpack.security.SecurityTarget;
+import com.getperka.flatpack.util.FlatPackCollections;
+
+/**
+ * Tests the reuse of entity fragments via {@link Configuration#withFragmentCache(FragmentCache)}.
+ */
+public class FragmentCacheTest extends FlatPackTest {
+  /**
+   * The test domain objects don't implement {@link HasTimestamps}, so every entity is treated as
+   * being unchanged until it is invalidated.
+   */
+  static class ConstantVersionCache extends FragmentCache {
+    public ConstantVersionCache() {
+      super(1000);
+    }
+
+    @Override
+    public Object getVersion(HasUuid entity) {
+      return 1L;
+    }
+  }
+
+  /**
+   * Maps each principal to a global group with the same name.
+   */
+  static class GroupPrincipalMapper implements PrincipalMapper {
+    @Override
+    public List<String> getGlobalSecurityGroups(Principal principal) {
+      return Collections.singletonList(principal.getName());
+    }
+
+    @Override
+    public List<Principal> getPrincipals(HasUuid entity) {
+      return null;
+    }
+
+    @Override
+    public boolean isAccessEnforced(Principal principal, SecurityTarget target) {
+      return true;
+    }
+  }
+
+  /**
+   * Only the {@code hr} group may read names.
+   */
+  static class NamePolicy implements SecurityPolicy {
+    @Inject
+    private SecurityGroups securityGroups;
+
+    @Override
+    public GroupPermissions getPermissions(SecurityTarget target) {
+      if (target.getProperty() == null || !"name".equals(target.getProperty().getName())) {
+        return securityGroups.getPermissionsAll();
+      }
+      GroupPermissions toReturn = new GroupPermissions();
+      toReturn.addPermissions(securityGroups.getGroupGlobal("hr"),
+          Collections.singleton(CrudOperation.READ_ACTION));
+      return toReturn;
+    }
+  }
+
+  static class NamedPrincipal implements Principal {
+    private final String name;
+
+    public NamedPrincipal(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+  }
+
+  private final FragmentCache cache = new ConstantVersionCache();
+
+  @Test
+  public void testDisabled() {
+    FragmentCache disabled = FragmentCache.disabled();
+    assertFalse(disabled.isEnabled());
+    assertEquals(0, disabled.getMaximumSize());
+  }
+
+  @Test
+  public void testFragmentsReused() throws IOException {
+    List<Employee> employees = makeEmployees();
+    String first = pack(flatpack, employees);
+    assertEquals(0, cache.getHitCount());
+    assertEquals(employees.size() + 1, cache.getSize());
+
+    String second = pack(flatpack, employees);
+    assertEquals(first, second);
+    assertEquals(employees.size() + 1, cache.getHitCount());
+    assertEquals(0.5, cache.getHitRate(), 0.001);
+  }
+
+  @Test
+  public void testInvalidate() throws IOException {
+    List<Employee> employees = makeEmployees();
+    pack(flatpack, employees);
+
+    // A change without a new version isn't noticed
+    Employee changed = employees.get(0);
+    changed.setName("Changed");
+    assertFalse(pack(flatpack, employees).contains("Changed"));
+
+    cache.invalidate(changed);
+    assertTrue(pack(flatpack, employees).contains("Changed"));
+
+    changed.setName("Changed again");
+    cache.invalidate(Employee.class);
+    assertTrue(pack(flatpack, employees).contains("Changed again"));
+
+    changed.setName("Changed yet again");
+    cache.invalidateAll();
+    assertEquals(0, cache.getSize());
+    assertTrue(pack(flatpack, employees).contains("Changed yet again"));
+  }
+
+  @Test
+  public void testParallelPack() throws IOException {
+    FlatPack parallel = FlatPack.create(getConfiguration().withParallelPack(true));
+    List<Employee> employees = FlatPackCollections.listForAny();
+    for (int i = 0; i < 200; i++) {
+      employees.add(makeEmployee());
+    }
+    String first = pack(parallel, employees);
+    assertEquals(first, pack(parallel, employees));
+    assertEquals(first, pack(FlatPack.create(super.getConfiguration()), employees));
+    assertEquals(employees.size(), cache.getHitCount());
+  }
+
+  /**
+   * Principals with different global groups must not share fragments.
+   */
+  @Test
+  public void testPrincipalGroups() throws IOException {
+    FlatPack secured = FlatPack.create(getConfiguration()
+        .withPrincipalMapper(new GroupPrincipalMapper())
+        .withSecurityPolicy(new NamePolicy()));
+    List<Employee> employees = makeEmployees();
+    String name = employees.get(0).getName();
+
+    String hr = pack(secured, employees, new NamedPrincipal("hr"));
+    assertTrue(hr.contains(name));
+    String staff = pack(secured, employees, new NamedPrincipal("staff"));
+    assertFalse(staff.contains(name));
+    assertEquals(0, cache.getHitCount());
+    assertEquals(2 * (employees.size() + 1), cache.getSize());
+
+    // Another principal in the same group reuses the fragments
+    assertEquals(staff, pack(secured, employees, new NamedPrincipal("staff")));
+    assertEquals(employees.size() + 1, cache.getHitCount());
+  }
+
+  @Test
+  public void testTraversalMode() throws IOException {
+    List<Employee> employees = makeEmployees();
+    pack(flatpack, employees);
+
+    // A deep pack writes different fragments
+    FlatPackEntity<Collection<? extends Employee>> entity = FlatPackEntity
+        .collectionOf(Employee.class).withValue(employees).withTraversalMode(TraversalMode.DEEP);
+    flatpack.getPacker().pack(entity, new StringWriter());
+    assertEquals(0, cache.getHitCount());
+    assertEquals(2 * (employees.size() + 1), cache.getSize());
+  }
+
+  @Override
+  protected Configuration getConfiguration() {
+    return super.getConfiguration().withFragmentCache(cache);
+  }
+
+  private List<Employee> makeEmployees() {
+    Manager manager = makeManager();
+    List<Employee> toReturn = FlatPackCollections.listForAny();
+    for (int i = 0; i < 3; i++) {
+      Employee employee = makeEmployee();
+      employee.setManager(manager);
+      toReturn.add(employee);
+    }
+    return toReturn;
+  }
+
+  private String pack(FlatPack flatpack, List<Employee> employees) throws IOException {
+    return pack(flatpack, employees, null);
+  }
+
+  private String pack(FlatPack flatpack, List<Employee> employees, Principal principal)
+      throws IOException {
+    FlatPackEntity<Collection<? extends Employee>> entity = FlatPackEntity
+        .collectionOf(Employee.class).withValue(employees).withPrincipal(principal);
+    StringWriter out = new StringWriter();
+    flatpack.getPacker().pack(entity, out);
+    return out.toString();
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+import com.getperka.flatpack.domain.Employee;
+import com.getperka.flatpack.domain.Manager;
+
+/**
+ * Runs the {@link PackTest} suite with {@link Configuration#withParallelPack(boolean)} enabled.
+ */
+public class ParallelPackTest extends PackTest {
+
+  /**
+   * Verifies that a payload large enough to be split across several tasks is identical to the
+   * payload produced by a sequential pack.
+   */
+  @Test
+  public void testLargePayload() throws IOException {
+    Manager manager = makeManager();
+    for (int i = 0; i < 1000; i++) {
+      Employee employee = makeEmployee();
+      employee.setManager(manager);
+      manager.getEmployees().add(employee);
+    }
+    FlatPackEntity<Manager> entity = FlatPackEntity.entity(manager)
+        .withTraversalMode(TraversalMode.DEEP);
+
+    StringWriter parallel = new StringWriter();
+    flatpack.getPacker().pack(entity, parallel);
+
+    StringWriter sequential = new StringWriter();
+    FlatPack.create(super.getConfiguration().withVerbose(false)).getPacker()
+        .pack(entity, sequential);
+
+    assertEquals(sequential.toString(), parallel.toString());
+
+    FlatPackEntity<Manager> unpacked = flatpack.getUnpacker().unpack(Manager.class,
+        new StringReader(parallel.toString()), null);
+    assertEquals(1000, unpacked.getValue().getEmployees().size());
+  }
+
+  @Override
+  protected Configuration getConfiguration() {
+    return super.getConfiguration().withParallelPack(true);
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.getperka.flatpack.domain.Employee;
+import com.getperka.flatpack.domain.Manager;
+import com.getperka.flatpack.util.FlatPackCollections;
+
+/**
+ * Runs the {@link PackTest} suite with {@link Configuration#withParallelUnpack(boolean)} enabled.
+ */
+public class ParallelUnpackPackTest extends PackTest {
+
+  /**
+   * Unpacks enough entities to be split across several tasks and verifies that the implied
+   * properties are populated in payload order.
+   */
+  @Test
+  public void testLargePayload() throws IOException {
+    UUID managerUuid = UUID.randomUUID();
+    List<UUID> employeeUuids = FlatPackCollections.listForAny();
+    StringBuilder payload = new StringBuilder("{\"data\":{\"employee\":[");
+    for (int i = 0; i < 2000; i++) {
+      UUID uuid = UUID.randomUUID();
+      employeeUuids.add(uuid);
+      if (i > 0) {
+        payload.append(",");
+      }
+      payload.append("{\"uuid\":\"").append(uuid).append("\",\"managerUuid\":\"")
+          .append(managerUuid).append("\",\"employeeNumber\":").append(i).append("}");
+    }
+    payload.append("],\"manager\":[{\"uuid\":\"").append(managerUuid)
+        .append("\",\"name\":\"Manager\"}]},\"value\":\"").append(managerUuid).append("\"}");
+
+    FlatPackEntity<Manager> entity = flatpack.getUnpacker().unpack(Manager.class,
+        new StringReader(payload.toString()), null);
+    Manager manager = entity.getValue();
+    assertEquals("Manager", manager.getName());
+
+    List<Employee> employees = manager.getEmployees();
+    assertEquals(employeeUuids.size(), employees.size());
+    for (int i = 0, j = employees.size(); i < j; i++) {
+      Employee employee = employees.get(i);
+      assertEquals(employeeUuids.get(i), employee.getUuid());
+      assertEquals(i, employee.getEmployeeNumber());
+      assertSame(manager, employee.getManager());
+      assertTrue(employee.employeePostUnpack);
+    }
+  }
+
+  @Override
+  protected Configuration getConfiguration() {
+    return super.getConfiguration().withParallelUnpack(true);
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.getperka.flatpack.domain.Employee;
+import com.getperka.flatpack.domain.Manager;
+import com.getperka.flatpack.domain.TestTypeSource;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Runs the {@link PackTest} suite with {@link Configuration#withSinglePassPack(boolean)} enabled.
+ */
+public class SinglePassPackTest extends PackTest {
+
+  /**
+   * Verify that the single-pass writer produces the same entities as the two-pass writer.
+   */
+  @Test
+  public void testEquivalentPayload() throws IOException {
+    Manager manager = makeManager();
+    for (int i = 0; i < 10; i++) {
+      Employee employee = makeEmployee();
+      employee.setManager(manager);
+      manager.getEmployees().add(employee);
+    }
+    Employee peer = makeEmployee();
+    manager.getEmployees().iterator().next().setManager(makeManager());
+
+    FlatPack twoPass = FlatPack.create(new Configuration().addTypeSource(new TestTypeSource()));
+
+    for (TraversalMode mode : TraversalMode.values()) {
+      FlatPackEntity<Manager> entity = FlatPackEntity.entity(manager).withTraversalMode(mode);
+      entity.addExtraEntity(peer);
+
+      StringWriter expected = new StringWriter();
+      twoPass.getPacker().pack(entity, expected);
+      StringWriter actual = new StringWriter();
+      flatpack.getPacker().pack(entity, actual);
+
+      JsonObject expectedJson = new JsonParser().parse(expected.toString()).getAsJsonObject();
+      JsonObject actualJson = new JsonParser().parse(actual.toString()).getAsJsonObject();
+      assertEquals(expectedJson.get("value"), actualJson.get("value"));
+      assertEquals(entitiesByType(expectedJson), entitiesByType(actualJson));
+    }
+  }
+
+  @Override
+  protected Configuration getConfiguration() {
+    return super.getConfiguration().withSinglePassPack(true);
+  }
+
+  /**
+   * The order of entities in the data section is not significant.
+   */
+  private Map<String, Set<JsonElement>> entitiesByType(JsonObject payload) {
+    Map<String, Set<JsonElement>> toReturn = new HashMap<String, Set<JsonElement>>();
+    for (Map.Entry<String, JsonElement> entry : payload.getAsJsonObject("data").entrySet()) {
+      Set<JsonElement> set = new HashSet<JsonElement>();
+      for (JsonElement elt : entry.getValue().getAsJsonArray()) {
+        set.add(elt);
+      }
+      toReturn.put(entry.getKey(), set);
+    }
+    return toReturn;
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.getperka.flatpack.domain.Employee;
+import com.getperka.flatpack.domain.Manager;
+import com.getperka.flatpack.domain.Person;
+
+/**
+ * Runs the {@link PackTest} suite with {@link Configuration#withStreamingUnpack(boolean)} enabled.
+ */
+public class StreamingPackTest extends PackTest {
+
+  @Test
+  public void testForwardReference() throws IOException {
+    UUID employeeUuid = UUID.randomUUID();
+    UUID managerUuid = UUID.randomUUID();
+    String payload = "{\"data\":{"
+      + "\"employee\":[{\"uuid\":\"" + employeeUuid + "\",\"managerUuid\":\"" + managerUuid
+      + "\",\"name\":\"Employee\"}],"
+      + "\"manager\":[{\"uuid\":\"" + managerUuid + "\",\"name\":\"Manager\"}]},"
+      + "\"value\":\"" + employeeUuid + "\"}";
+
+    FlatPackEntity<Employee> entity = flatpack.getUnpacker().unpack(Employee.class,
+        new StringReader(payload), null);
+    Employee employee = entity.getValue();
+    Manager manager = employee.getManager();
+    assertEquals("Employee", employee.getName());
+    assertEquals(managerUuid, manager.getUuid());
+    assertEquals("Manager", manager.getName());
+    assertSame(Manager.class, manager.getClass());
+  }
+
+  @Test
+  public void testForwardReferenceInMapKey() throws IOException {
+    UUID employeeUuid = UUID.randomUUID();
+    UUID managerUuid = UUID.randomUUID();
+    String payload = "{\"data\":{"
+      + "\"manager\":[{\"uuid\":\"" + managerUuid + "\",\"name\":\"Manager\","
+      + "\"notes\":{\"" + employeeUuid + "\":\"Note\"}}],"
+      + "\"employee\":[{\"uuid\":\"" + employeeUuid + "\",\"name\":\"Employee\"}]},"
+      + "\"value\":\"" + managerUuid + "\"}";
+
+    FlatPackEntity<Manager> entity = flatpack.getUnpacker().unpack(Manager.class,
+        new StringReader(payload), null);
+    Map<Person, String> notes = entity.getValue().getNotes();
+    assertEquals(1, notes.size());
+    Map.Entry<Person, String> note = notes.entrySet().iterator().next();
+    assertTrue(note.getKey() instanceof Employee);
+    assertEquals(employeeUuid, note.getKey().getUuid());
+    assertEquals("Employee", note.getKey().getName());
+    assertEquals("Note", note.getValue());
+  }
+
+  @Override
+  protected Configuration getConfiguration() {
+    return super.getConfiguration().withStreamingUnpack(true);
+  }
+}
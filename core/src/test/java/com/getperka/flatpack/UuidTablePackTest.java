@@ -0,0 +1,95 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.getperka.flatpack.domain.Employee;
+import com.getperka.flatpack.domain.Manager;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Runs the {@link PackTest} suite with {@link Configuration#withUuidTable(boolean)} enabled.
+ */
+public class UuidTablePackTest extends PackTest {
+
+  /**
+   * Verifies that a streaming unpack retains entities that refer to later entities by index.
+   */
+  @Test
+  public void testForwardReference() throws IOException {
+    UUID employeeUuid = UUID.randomUUID();
+    UUID managerUuid = UUID.randomUUID();
+    String payload = "{\"uuids\":[\"" + employeeUuid + "\",\"" + managerUuid + "\"],"
+      + "\"data\":{"
+      + "\"employee\":[{\"uuid\":0,\"managerUuid\":1,\"name\":\"Employee\"}],"
+      + "\"manager\":[{\"uuid\":1,\"name\":\"Manager\"}]},"
+      + "\"value\":0}";
+
+    FlatPack streaming = FlatPack.create(getConfiguration().withStreamingUnpack(true));
+    FlatPackEntity<Employee> entity = streaming.getUnpacker().unpack(Employee.class,
+        new StringReader(payload), null);
+    Employee employee = entity.getValue();
+    Manager manager = employee.getManager();
+    assertEquals(employeeUuid, employee.getUuid());
+    assertEquals("Employee", employee.getName());
+    assertEquals(managerUuid, manager.getUuid());
+    assertEquals("Manager", manager.getName());
+    assertSame(Manager.class, manager.getClass());
+  }
+
+  @Test
+  public void testPayload() throws IOException {
+    Manager manager = makeManager();
+    Employee employee = makeEmployee();
+    employee.setManager(manager);
+
+    JsonObject payload = flatpack.getPacker().pack(FlatPackEntity.entity(employee))
+        .getAsJsonObject();
+    JsonArray uuids = payload.get("uuids").getAsJsonArray();
+    assertEquals(2, uuids.size());
+
+    JsonObject data = payload.get("data").getAsJsonObject();
+    JsonObject employeeData = data.get("employee").getAsJsonArray().get(0).getAsJsonObject();
+    assertReference(uuids, employee.getUuid(), employeeData.get("uuid"));
+    assertReference(uuids, manager.getUuid(), employeeData.get("managerUuid"));
+    assertReference(uuids, employee.getUuid(), payload.get("value"));
+  }
+
+  @Override
+  protected Configuration getConfiguration() {
+    return super.getConfiguration().withUuidTable(true);
+  }
+
+  private void assertReference(JsonArray uuids, UUID expected, JsonElement reference) {
+    assertTrue(reference.getAsJsonPrimitive().isNumber());
+    assertEquals(expected.toString(), uuids.get(reference.getAsInt()).getAsString());
+  }
+}
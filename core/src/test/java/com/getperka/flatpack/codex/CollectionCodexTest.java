@@ -23,6 +23,9 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
 
 import java.util.Arrays;
 import java.util.Collection;
@@ -38,11 +41,22 @@ import org.junit.Test;
 import com.getperka.flatpack.FlatPackTest;
 import com.getperka.flatpack.HasUuid;
 import com.getperka.flatpack.codexes.ArrayCodex;
+import com.getperka.flatpack.codexes.ByteArrayCodex;
+import com.getperka.flatpack.codexes.DoubleArrayCodex;
+import com.getperka.flatpack.codexes.FloatArrayCodex;
+import com.getperka.flatpack.codexes.IntArrayCodex;
 import com.getperka.flatpack.codexes.ListCodex;
+import com.getperka.flatpack.codexes.LongArrayCodex;
 import com.getperka.flatpack.codexes.SetCodex;
+import com.getperka.flatpack.codexes.ShortArrayCodex;
 import com.getperka.flatpack.domain.Employee;
 import com.getperka.flatpack.domain.Person;
+import com.getperka.flatpack.ext.DeserializationContext;
+import com.getperka.flatpack.ext.SerializationContext;
+import com.getperka.flatpack.ext.TypeContext;
 import com.getperka.flatpack.util.FlatPackCollections;
+import com.google.gson.JsonParser;
+import com.google.inject.Injector;
 import com.google.inject.TypeLiteral;
 
 /**
@@ -55,15 +69,36 @@ public class CollectionCodexTest extends FlatPackTest {
   @Inject
   private TypeLiteral<ArrayCodex<String>> arrayString;
 
+  @Inject
+  private TypeLiteral<ByteArrayCodex> byteArray;
+
+  @Inject
+  private TypeLiteral<DoubleArrayCodex> doubleArray;
+
+  @Inject
+  private TypeLiteral<FloatArrayCodex> floatArray;
+
+  @Inject
+  private Injector injector;
+
+  @Inject
+  private TypeLiteral<IntArrayCodex> intArray;
+
   @Inject
   private TypeLiteral<ListCodex<Person>> listPerson;
 
   @Inject
   private TypeLiteral<ListCodex<String>> listString;
 
+  @Inject
+  private TypeLiteral<LongArrayCodex> longArray;
+
   @Inject
   private TypeLiteral<SetCodex<String>> setString;
 
+  @Inject
+  private TypeLiteral<ShortArrayCodex> shortArray;
+
   @Inject
   private Employee employee;
 
@@ -90,6 +125,36 @@ public class CollectionCodexTest extends FlatPackTest {
     assertEquals(employee.getUuid(), p.getUuid());
   }
 
+  @Test
+  public void testByteArray() throws Exception {
+    for (int length = 0; length < 6; length++) {
+      byte[] in = new byte[length];
+      for (int i = 0; i < length; i++) {
+        in[i] = (byte) (i * 97 - 128);
+      }
+      assertArrayEquals(in, testCodex(byteArray, in));
+    }
+
+    ByteArrayCodex codex = injector.getInstance(ByteArrayCodex.class);
+    StringWriter out = new StringWriter();
+    SerializationContext serialization = serializationContext(out);
+    try {
+      codex.write(new byte[] { 'f', 'o', 'o', 'b' }, serialization);
+    } finally {
+      closeContext();
+    }
+    assertEquals("\"Zm9vYg==\"", out.toString());
+
+    // Byte arrays used to be written as a list of numbers
+    DeserializationContext deserialization = deserializationContext();
+    try {
+      byte[] legacy = codex.read(new JsonParser().parse("[1, -2, 127]"), deserialization);
+      assertArrayEquals(new byte[] { 1, -2, 127 }, legacy);
+    } finally {
+      closeContext();
+    }
+  }
+
   @Test
   public void testList() {
     List<String> in = Arrays.asList("Hello", " ", "", null, "World!");
@@ -121,6 +186,30 @@ public class CollectionCodexTest extends FlatPackTest {
     assertNull(testCodex(setString, null));
   }
 
+  @Test
+  public void testPrimitiveArrays() {
+    TypeContext typeContext = injector.getInstance(TypeContext.class);
+    assertTrue(typeContext.getCodex(int[].class) instanceof IntArrayCodex);
+    assertTrue(typeContext.getCodex(byte[].class) instanceof ByteArrayCodex);
+
+    double[] doubles = { 0, -1.5, Double.MAX_VALUE, Double.MIN_VALUE };
+    assertArrayEquals(doubles, testCodex(doubleArray, doubles), 0);
+
+    float[] floats = { 0, 0.1f, -1.5f, Float.MAX_VALUE, Float.MIN_VALUE };
+    assertTrue(Arrays.equals(floats, testCodex(floatArray, floats)));
+
+    int[] ints = { 0, 1, -1, Integer.MAX_VALUE, Integer.MIN_VALUE };
+    assertArrayEquals(ints, testCodex(intArray, ints));
+
+    long[] longs = { 0, 1, -1, Long.MAX_VALUE, Long.MIN_VALUE };
+    assertArrayEquals(longs, testCodex(longArray, longs));
+
+    short[] shorts = { 0, 1, -1, Short.MAX_VALUE, Short.MIN_VALUE };
+    assertTrue(Arrays.equals(shorts, testCodex(shortArray, shorts)));
+
+    assertNull(testCodex(intArray, null));
+  }
+
   @Test
   public void testSet() {
     Set<String> in = new LinkedHashSet<String>(Arrays.asList("Hello", " ", "", null, "World!"));
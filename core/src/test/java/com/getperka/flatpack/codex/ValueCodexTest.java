@@ -21,23 +21,32 @@ package com.getperka.flatpack.codex;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
 
 import javax.inject.Inject;
+import javax.inject.Provider;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.junit.Test;
 
 import com.getperka.flatpack.Configuration;
+import com.getperka.flatpack.FlatPackEntity;
 import com.getperka.flatpack.FlatPackTest;
+import com.getperka.flatpack.WireFormat;
 import com.getperka.flatpack.codexes.BooleanCodex;
 import com.getperka.flatpack.codexes.CharacterCodex;
+import com.getperka.flatpack.codexes.DateTimeCodex;
 import com.getperka.flatpack.codexes.DateTimeZoneCodex;
 import com.getperka.flatpack.codexes.EnumCodex;
 import com.getperka.flatpack.codexes.HasUuidClassCodex;
+import com.getperka.flatpack.codexes.JavaTimeCodex;
 import com.getperka.flatpack.codexes.JsonElementCodex;
 import com.getperka.flatpack.codexes.NumberCodex;
 import com.getperka.flatpack.codexes.ToStringCodex;
@@ -47,12 +56,20 @@ import com.getperka.flatpack.domain.Employee;
 import com.getperka.flatpack.domain.TestTypeSource;
 import com.getperka.flatpack.ext.Codex;
 import com.getperka.flatpack.ext.DeserializationContext;
+import com.getperka.flatpack.ext.SerializationContext;
+import com.getperka.flatpack.ext.TypeContext;
 import com.getperka.flatpack.ext.TypeHint;
+import com.getperka.flatpack.inject.PackScope;
+import com.getperka.flatpack.util.BinaryJsonReader;
+import com.getperka.flatpack.util.BinaryJsonWriter;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
 import com.google.gson.JsonPrimitive;
 import com.google.inject.Injector;
 import com.google.inject.Key;
 import com.google.inject.ProvisionException;
 import com.google.inject.TypeLiteral;
+import com.google.inject.util.Providers;
 
 /**
  * Test serializing basic data types.
@@ -64,12 +81,18 @@ public class ValueCodexTest extends FlatPackTest {
 
   @Inject
   private Injector injector;
+  @Inject
+  private PackScope packScope;
+  @Inject
+  private Provider<SerializationContext> serializationContexts;
 
   @Inject
   private TypeLiteral<BooleanCodex> booleanCodex;
   @Inject
   private TypeLiteral<CharacterCodex> charCodex;
   @Inject
+  private TypeLiteral<DateTimeCodex> dateTimeCodex;
+  @Inject
   private TypeLiteral<DateTimeZoneCodex> dateTzCodex;
   @Inject
   private TypeLiteral<EnumCodex<MyEnum>> enumCodex;
@@ -116,6 +139,22 @@ public class ValueCodexTest extends FlatPackTest {
     testCodex(charCodex, null);
   }
 
+  @Test
+  public void testDateTimeCodex() {
+    testCodex(dateTimeCodex, DateTime.now());
+    testCodex(dateTimeCodex, new DateTime(0));
+    testCodex(dateTimeCodex, null);
+  }
+
+  @Test
+  public void testDateTimeCodexBinary() throws IOException {
+    DateTime now = DateTime.now();
+    Codex<DateTime> codex = injector.getInstance(Key.get(dateTimeCodex));
+    JsonElement element = writeBinary(codex, now);
+    assertEquals(new JsonPrimitive(now.getMillis()), element);
+    assertEquals(now, readElement(codex, element));
+  }
+
   @Test
   public void testDateTzCodex() {
     testCodex(dateTzCodex, DateTimeZone.UTC);
@@ -134,6 +173,64 @@ public class ValueCodexTest extends FlatPackTest {
     testCodex(classCodex, Employee.class);
   }
 
+  @Test
+  public void testJavaTime() throws Exception {
+    // The types are loaded reflectively, since they may not be available
+    String[][] values = { { "java.time.Instant", "2013-01-02T03:04:05.678901Z" },
+        { "java.time.LocalDate", "2013-01-02" },
+        { "java.time.OffsetDateTime", "2013-01-02T03:04:05.678-08:00" } };
+    TypeContext typeContext = injector.getInstance(TypeContext.class);
+    for (String[] value : values) {
+      Class<?> clazz;
+      try {
+        clazz = Class.forName(value[0]);
+      } catch (ClassNotFoundException e) {
+        return;
+      }
+      Object expected = clazz.getMethod("parse", CharSequence.class).invoke(null, value[1]);
+
+      @SuppressWarnings("unchecked")
+      Codex<Object> codex = (Codex<Object>) typeContext.getCodex(clazz);
+      assertTrue(codex instanceof JavaTimeCodex);
+      assertEquals(expected, testCodex(Providers.of(codex), expected, null));
+    }
+  }
+
+  @Test
+  public void testJavaTimeBinary() throws Exception {
+    Class<?> instant;
+    try {
+      instant = Class.forName("java.time.Instant");
+    } catch (ClassNotFoundException e) {
+      return;
+    }
+    TypeContext typeContext = injector.getInstance(TypeContext.class);
+    @SuppressWarnings("unchecked")
+    Codex<Object> codex = (Codex<Object>) typeContext.getCodex(instant);
+
+    // Millisecond precision is written as a number
+    Object millis = instant.getMethod("ofEpochMilli", long.class).invoke(null, 1357095845678L);
+    JsonElement element = writeBinary(codex, millis);
+    assertEquals(new JsonPrimitive(1357095845678L), element);
+    assertEquals(millis, readElement(codex, element));
+
+    // Finer precision must be retained
+    Object nanos = instant.getMethod("parse", CharSequence.class).invoke(null,
+        "2013-01-02T03:04:05.678901Z");
+    element = writeBinary(codex, nanos);
+    assertEquals(new JsonPrimitive("2013-01-02T03:04:05.678901Z"), element);
+    assertEquals(nanos, readElement(codex, element));
+
+    // Numbers are accepted for the other types, in UTC
+    Class<?> localDate = Class.forName("java.time.LocalDate");
+    @SuppressWarnings("unchecked")
+    Codex<Object> dateCodex = (Codex<Object>) typeContext.getCodex(localDate);
+    assertEquals(localDate.getMethod("parse", CharSequence.class).invoke(null, "2013-01-02"),
+        readElement(dateCodex, new JsonPrimitive(1357095845678L)));
+    assertEquals(localDate.getMethod("parse", CharSequence.class).invoke(null, "1969-12-31"),
+        readElement(dateCodex, new JsonPrimitive(-1L)));
+  }
+
   @Test
   public void testJsonElementCodex() {
     testCodex(jsonElementCodex, new JsonPrimitive("Hello world!"));
@@ -168,6 +265,32 @@ public class ValueCodexTest extends FlatPackTest {
     testCodex(voidCodex, null);
   }
 
+  private <T> T readElement(Codex<T> codex, JsonElement element) {
+    DeserializationContext ctx = deserializationContext();
+    try {
+      return codex.read(element, ctx);
+    } finally {
+      closeContext();
+    }
+  }
+
+  /**
+   * Writes a value using the {@link WireFormat#BINARY} format and returns it as a tree.
+   */
+  private <T> JsonElement writeBinary(Codex<T> codex, T value) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryJsonWriter writer = new BinaryJsonWriter(out);
+    packScope.enter().withEntity(FlatPackEntity.nullResponse()).withJsonWriter(writer);
+    try {
+      codex.write(value, serializationContexts.get());
+    } finally {
+      closeContext();
+    }
+    writer.close();
+    return new JsonParser().parse(new BinaryJsonReader(new ByteArrayInputStream(
+        out.toByteArray())));
+  }
+
   @Override
   protected Configuration getConfiguration() {
     return super.getConfiguration().addTypeSource(new TestTypeSource());
@@ -21,11 +21,13 @@ package com.getperka.flatpack.domain;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import com.getperka.flatpack.SparseCollection;
 
 public class Manager extends Person {
   private List<Employee> employees = new ArrayList<Employee>();
+  private Map<Person, String> notes;
 
   Manager() {}
 
@@ -34,7 +36,15 @@ public class Manager extends Person {
     return employees;
   }
 
+  public Map<Person, String> getNotes() {
+    return notes;
+  }
+
   public void setEmployees(List<Employee> employees) {
     this.employees = employees;
   }
+
+  public void setNotes(Map<Person, String> notes) {
+    this.notes = notes;
+  }
 }
@@ -0,0 +1,72 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.ext;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.getperka.flatpack.BaseHasUuid;
+import com.getperka.flatpack.FlatPackTest;
+
+public class BaseContextTest extends FlatPackTest {
+
+  /**
+   * Verify that structured path elements are rendered in the same format as the string elements
+   * that they replace.
+   */
+  @Test
+  public void testPathRendering() {
+    BaseHasUuid entity = new BaseHasUuid();
+    entity.setUuid(UUID.randomUUID());
+
+    DeserializationContext ctx = deserializationContext();
+    ctx.pushPathMember(entity);
+    ctx.pushPathMember("name");
+    ctx.pushPathIndex(3);
+    ctx.pushPathKey("key");
+    ctx.pushPath("(Codex.read())");
+    assertEquals("<root>." + entity.getUuid() + ".name[3][key](Codex.read())", ctx.toString());
+
+    assertEquals("(Codex.read())", ctx.popPath());
+    assertEquals("[key]", ctx.popPath());
+    assertEquals("[3]", ctx.popPath());
+    assertEquals("<root>." + entity.getUuid() + ".name", ctx.toString());
+
+    // A popped element may be restored, as a codex might do
+    String popped = ctx.popPath();
+    assertEquals(".name", popped);
+    ctx.pushPath(popped);
+    assertEquals("<root>." + entity.getUuid() + ".name", ctx.toString());
+
+    // Exceed the initial capacity
+    for (int i = 0; i < 100; i++) {
+      ctx.pushPathIndex(i);
+    }
+    for (int i = 0; i < 100; i++) {
+      ctx.dropPath();
+    }
+    ctx.dropPath();
+    ctx.dropPath();
+    assertEquals("<root>", ctx.toString());
+  }
+}
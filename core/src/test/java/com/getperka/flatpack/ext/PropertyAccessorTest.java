@@ -0,0 +1,134 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.ext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationTargetException;
+
+import javax.inject.Inject;
+
+import org.junit.Test;
+
+import com.getperka.flatpack.FlatPackTest;
+import com.getperka.flatpack.domain.Employee;
+
+public class PropertyAccessorTest extends FlatPackTest {
+  static class Throwing {
+    public String getValue() {
+      throw new IllegalStateException("get");
+    }
+
+    public void setValue(String value) {
+      throw new IllegalStateException("set");
+    }
+  }
+
+  @Inject
+  TypeContext typeContext;
+
+  /**
+   * Both factories must report failures in the same way.
+   */
+  @Test
+  public void testExceptions() throws Exception {
+    for (PropertyAccessorFactory factory : new PropertyAccessorFactory[] {
+        new MethodHandleAccessorFactory(), new ReflectiveAccessorFactory() }) {
+      PropertyAccessor throwing = factory.create(Throwing.class.getMethod("getValue"),
+          Throwing.class.getMethod("setValue", String.class));
+      try {
+        throwing.get(new Throwing());
+        fail(factory.toString());
+      } catch (InvocationTargetException expected) {
+        assertEquals("get", expected.getCause().getMessage());
+      }
+      try {
+        throwing.set(new Throwing(), "value");
+        fail(factory.toString());
+      } catch (InvocationTargetException expected) {
+        assertEquals("set", expected.getCause().getMessage());
+      }
+      try {
+        throwing.get(makeEmployee());
+        fail(factory.toString());
+      } catch (IllegalArgumentException expected) {}
+
+      PropertyAccessor number = factory.create(Employee.class.getMethod("getEmployeeNumber"),
+          Employee.class.getMethod("setEmployeeNumber", int.class));
+      for (Object bad : new Object[] { "42", null }) {
+        try {
+          number.set(makeEmployee(), bad);
+          fail(factory + " " + bad);
+        } catch (IllegalArgumentException expected) {}
+      }
+      try {
+        number.get(null);
+        fail(factory.toString());
+      } catch (NullPointerException expected) {}
+    }
+  }
+
+  @Test
+  public void testMethodHandleAccessor() throws Exception {
+    check(new MethodHandleAccessorFactory());
+  }
+
+  @Test
+  public void testReflectiveAccessor() throws Exception {
+    check(new ReflectiveAccessorFactory());
+  }
+
+  @Test
+  public void testPropertyHasAccessor() throws Exception {
+    Employee employee = makeEmployee();
+    for (Property prop : typeContext.describe(Employee.class).getProperties()) {
+      if ("name".equals(prop.getName())) {
+        prop.getAccessor().set(employee, "Accessed");
+        assertEquals("Accessed", prop.getAccessor().get(employee));
+        return;
+      }
+    }
+    throw new AssertionError("Did not find name property");
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testNoSetter() throws Exception {
+    PropertyAccessor accessor = new MethodHandleAccessorFactory().create(
+        Employee.class.getMethod("getName"), null);
+    assertTrue(accessor.isReadable());
+    assertFalse(accessor.isWritable());
+    accessor.set(makeEmployee(), "Unused");
+  }
+
+  private void check(PropertyAccessorFactory factory) throws Exception {
+    Employee employee = makeEmployee();
+    PropertyAccessor accessor = factory.create(Employee.class.getMethod("getEmployeeNumber"),
+        Employee.class.getMethod("setEmployeeNumber", int.class));
+    assertTrue(accessor.isReadable());
+    assertTrue(accessor.isWritable());
+
+    accessor.set(employee, 42);
+    assertEquals(42, accessor.get(employee));
+    assertEquals(42, employee.getEmployeeNumber());
+  }
+}
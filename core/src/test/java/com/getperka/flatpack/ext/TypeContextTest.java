@@ -20,21 +20,61 @@ package com.getperka.flatpack.ext;
  */
 
 import static com.getperka.flatpack.util.FlatPackTypes.createType;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
+import java.lang.reflect.Type;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.inject.Inject;
 
 import org.junit.Test;
 
+import com.getperka.flatpack.BaseHasUuid;
 import com.getperka.flatpack.FlatPackTest;
+import com.getperka.flatpack.util.FlatPackCollections;
 
 public class TypeContextTest extends FlatPackTest {
+  /**
+   * Not registered with the FlatPack instance, so it will be described lazily.
+   */
+  static class Lazy extends BaseHasUuid {
+    private String name;
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+  }
 
   @Inject
   TypeContext typeContext;
 
+  /**
+   * Codexes resolved through the raw-class cache should agree with those referenced by properties.
+   */
+  @Test
+  public void testClassCodexFastPath() {
+    Codex<?> c1 = typeContext.getCodex(Lazy.class);
+    Codex<?> c2 = typeContext.getCodex((Type) Lazy.class);
+    assertSame(c1, c2);
+
+    for (Property p : typeContext.describe(Lazy.class).getProperties()) {
+      if ("name".equals(p.getName())) {
+        assertSame(typeContext.getCodex(String.class), p.getCodex());
+      }
+    }
+  }
+
   @Test
   public void testCodexCanonicalization() throws NoSuchMethodException {
     Codex<?> c1 = typeContext.getCodex(createType(List.class, String.class));
@@ -44,6 +84,46 @@ public class TypeContextTest extends FlatPackTest {
     assertSame(c2, c3);
   }
 
+  /**
+   * Verify that threads racing to describe a type all observe the same, fully-initialized
+   * description.
+   */
+  @Test
+  public void testConcurrentDescribe() throws Exception {
+    final int threads = 16;
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<EntityDescription>> futures = FlatPackCollections.listForAny();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(new Callable<EntityDescription>() {
+          @Override
+          public EntityDescription call() throws Exception {
+            start.await();
+            typeContext.getCodex(Lazy.class);
+            return typeContext.describe(Lazy.class);
+          }
+        }));
+      }
+      start.countDown();
+
+      EntityDescription expected = typeContext.describe(Lazy.class);
+      for (Future<EntityDescription> future : futures) {
+        EntityDescription d = future.get();
+        assertSame(expected, d);
+        assertNotNull(d.getProperties());
+      }
+      boolean found = false;
+      for (Property p : expected.getProperties()) {
+        found |= "name".equals(p.getName());
+      }
+      assertTrue(found);
+      assertSame(typeContext.getCodex(Lazy.class), typeContext.getCodex(Lazy.class));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   List<String> foo() {
     return null;
   }
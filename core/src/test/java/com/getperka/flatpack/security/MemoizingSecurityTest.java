@@ -0,0 +1,153 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.security.Principal;
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+import org.junit.Test;
+
+import com.getperka.flatpack.BaseHasUuid;
+import com.getperka.flatpack.Configuration;
+import com.getperka.flatpack.FlatPackTest;
+import com.getperka.flatpack.HasUuid;
+import com.getperka.flatpack.ext.Property;
+import com.getperka.flatpack.ext.TypeContext;
+import com.getperka.flatpack.inject.PackScope;
+
+public class MemoizingSecurityTest extends FlatPackTest {
+  static class Document extends BaseHasUuid {
+    private String title;
+
+    public String getTitle() {
+      return title;
+    }
+
+    public void setTitle(String title) {
+      this.title = title;
+    }
+  }
+
+  static class TestPrincipal implements Principal {
+    private final String name;
+
+    public TestPrincipal(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof TestPrincipal && name.equals(((TestPrincipal) o).name);
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public int hashCode() {
+      return name.hashCode();
+    }
+  }
+
+  static class TestPrincipalMapper implements PrincipalMapper {
+    @Override
+    public List<String> getGlobalSecurityGroups(Principal principal) {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public List<Principal> getPrincipals(HasUuid entity) {
+      return Collections.<Principal> singletonList(new TestPrincipal(entity.getUuid().toString()));
+    }
+
+    @Override
+    public boolean isAccessEnforced(Principal principal, SecurityTarget target) {
+      return true;
+    }
+  }
+
+  @Inject
+  private PackScope packScope;
+  @Inject
+  private Provider<MemoizingSecurity> securities;
+  @Inject
+  private TypeContext typeContext;
+
+  /**
+   * Verify that the per-property decisions agree with a full evaluation when the permissions
+   * contain both inclusive and entity-relative groups.
+   */
+  @Test
+  public void testPropertyDecisions() {
+    Document mine = new Document();
+    Document other = new Document();
+    Principal principal = new TestPrincipal(mine.getUuid().toString());
+
+    packScope.enter().withPrincipal(principal);
+    MemoizingSecurity security = securities.get();
+    for (Property p : typeContext.describe(Document.class).getProperties()) {
+      // Allowed via the inclusive group
+      assertTrue(security.may(principal, other, p, CrudOperation.READ_ACTION));
+      // Allowed via the reflexive group
+      assertTrue(security.may(principal, mine, p, CrudOperation.UPDATE_ACTION));
+      assertFalse(security.may(principal, other, p, CrudOperation.UPDATE_ACTION));
+
+      for (SecurityAction op : new SecurityAction[] { CrudOperation.READ_ACTION,
+          CrudOperation.UPDATE_ACTION, CrudOperation.DELETE_ACTION }) {
+        for (Document d : new Document[] { mine, other }) {
+          assertEquals(security.may(principal, SecurityTarget.of(d, p), op),
+              security.may(principal, d, p, op));
+        }
+      }
+    }
+  }
+
+  /**
+   * Properties without permissions are unsecured, as in {@link PrincipalSecurity}.
+   */
+  @Test
+  public void testUnsecuredProperty() {
+    Document other = new Document();
+    Principal principal = new TestPrincipal("someone");
+
+    packScope.enter().withPrincipal(principal);
+    MemoizingSecurity security = securities.get();
+    for (Property p : typeContext.describe(Document.class).getProperties()) {
+      p.setGroupPermissions(null);
+      assertTrue(security.may(principal, other, p, CrudOperation.UPDATE_ACTION));
+      assertTrue(security.may(principal, other, p, CrudOperation.DELETE_ACTION));
+    }
+  }
+
+  @Override
+  protected Configuration getConfiguration() {
+    return super.getConfiguration().withPrincipalMapper(new TestPrincipalMapper());
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.security.Principal;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.getperka.flatpack.BaseHasUuid;
+
+public class SecurityDecisionCacheTest {
+  static class Employee extends Person {}
+
+  static class Person extends BaseHasUuid {}
+
+  static class TestPrincipal implements Principal {
+    private final String name;
+
+    public TestPrincipal(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof TestPrincipal && name.equals(((TestPrincipal) o).name);
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public int hashCode() {
+      return name.hashCode();
+    }
+  }
+
+  private final SecurityAction read = SecurityAction.of(CrudOperation.READ);
+  private final Principal alice = new TestPrincipal("alice");
+  private final Principal bob = new TestPrincipal("bob");
+
+  @Test
+  public void testDisabled() {
+    SecurityDecisionCache cache = SecurityDecisionCache.disabled();
+    cache.put(alice, SecurityTarget.of(Employee.class), read, true);
+    assertNull(cache.get(alice, SecurityTarget.of(Employee.class), read));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void testEviction() {
+    SecurityDecisionCache cache = new SecurityDecisionCache(1, 0, TimeUnit.SECONDS);
+    cache.put(alice, SecurityTarget.of(Employee.class), read, true);
+    cache.put(bob, SecurityTarget.of(Employee.class), read, false);
+    assertEquals(1, cache.getSize());
+    assertEquals(1, cache.getEvictionCount());
+    assertNull(cache.get(alice, SecurityTarget.of(Employee.class), read));
+    assertFalse(cache.get(bob, SecurityTarget.of(Employee.class), read));
+  }
+
+  /**
+   * Decisions about a specific entity should be reused for other entities of the same type.
+   */
+  @Test
+  public void testGeneralization() {
+    SecurityDecisionCache cache = new SecurityDecisionCache(10, 0, TimeUnit.SECONDS);
+    cache.put(alice, SecurityTarget.of(new Employee()), read, true);
+
+    assertTrue(cache.get(alice, SecurityTarget.of(new Employee()), read));
+    assertTrue(cache.get(alice, SecurityTarget.of(Employee.class), read));
+    assertNull(cache.get(bob, SecurityTarget.of(Employee.class), read));
+    assertNull(cache.get(alice, SecurityTarget.of(Person.class), read));
+    assertEquals(2, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+  }
+
+  @Test
+  public void testInvalidation() {
+    SecurityDecisionCache cache = new SecurityDecisionCache(10, 0, TimeUnit.SECONDS);
+    cache.put(alice, SecurityTarget.of(Employee.class), read, true);
+    cache.put(alice, SecurityTarget.of(Person.class), read, true);
+    cache.put(bob, SecurityTarget.of(Person.class), read, true);
+
+    cache.invalidate(Person.class);
+    assertEquals(0, cache.getSize());
+
+    cache.put(alice, SecurityTarget.of(Employee.class), read, true);
+    cache.put(bob, SecurityTarget.of(Employee.class), read, true);
+    cache.invalidate(alice);
+    assertNull(cache.get(alice, SecurityTarget.of(Employee.class), read));
+    assertTrue(cache.get(bob, SecurityTarget.of(Employee.class), read));
+
+    cache.invalidateAll();
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void testTtl() throws InterruptedException {
+    SecurityDecisionCache cache = new SecurityDecisionCache(10, 1, TimeUnit.MILLISECONDS);
+    cache.put(alice, SecurityTarget.of(Employee.class), read, true);
+    Thread.sleep(10);
+    assertNull(cache.get(alice, SecurityTarget.of(Employee.class), read));
+    // The expired entry is retained until the decision is recorded again
+    assertEquals(1, cache.getSize());
+    cache.put(alice, SecurityTarget.of(Employee.class), read, false);
+    assertFalse(cache.get(alice, SecurityTarget.of(Employee.class), read));
+    assertEquals(1, cache.getSize());
+  }
+
+  /**
+   * Repeatedly expiring and recording decisions must not grow the eviction queue, or allow an old
+   * position in the queue to evict a fresh decision.
+   */
+  @Test
+  public void testTtlQueueBounded() throws InterruptedException {
+    SecurityDecisionCache cache = new SecurityDecisionCache(2, 1, TimeUnit.MILLISECONDS);
+    for (int i = 0; i < 20; i++) {
+      cache.put(alice, SecurityTarget.of(Employee.class), read, true);
+      cache.put(bob, SecurityTarget.of(Employee.class), read, true);
+      Thread.sleep(2);
+      assertNull(cache.get(alice, SecurityTarget.of(Employee.class), read));
+      assertNull(cache.get(bob, SecurityTarget.of(Employee.class), read));
+    }
+    assertEquals(2, cache.getSize());
+    assertEquals(2, cache.getQueueLength());
+    assertEquals(0, cache.getEvictionCount());
+
+    cache = new SecurityDecisionCache(2, 200, TimeUnit.MILLISECONDS);
+    cache.put(alice, SecurityTarget.of(Employee.class), read, true);
+    Thread.sleep(300);
+    assertNull(cache.get(alice, SecurityTarget.of(Employee.class), read));
+    cache.put(alice, SecurityTarget.of(Person.class), read, true);
+    cache.put(bob, SecurityTarget.of(Person.class), read, true);
+    cache.put(alice, SecurityTarget.of(Employee.class), read, false);
+    assertFalse(cache.get(alice, SecurityTarget.of(Employee.class), read));
+    assertEquals(2, cache.getQueueLength());
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.internal.Streams;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Tests {@link BinaryJsonWriter} and {@link BinaryJsonReader}.
+ */
+public class BinaryJsonTest {
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    String uuid = UUID.randomUUID().toString();
+    String json = "{\"data\":{\"person\":["
+      + "{\"uuid\":\"" + uuid + "\",\"name\":\"\u00dcn\u00efcode\u0100\","
+      + "\"age\":-42,\"height\":0.1,"
+      + "\"big\":" + Long.MAX_VALUE + ",\"alive\":true,\"tags\":[\"a\",null,false]},"
+      + "{\"uuid\":\"" + uuid.toUpperCase() + "\",\"name\":\"\",\"age\":0}]},"
+      + "\"value\":\"" + uuid + "\"}";
+    JsonElement expected = new JsonParser().parse(json);
+
+    byte[] bytes = write(expected, true);
+    assertTrue(bytes.length < json.length());
+
+    // Read through the generic parser
+    assertEquals(expected, new JsonParser().parse(new BinaryJsonReader(
+        new ByteArrayInputStream(bytes))));
+
+    // Read native values
+    BinaryJsonReader reader = new BinaryJsonReader(new ByteArrayInputStream(bytes));
+    JsonObject object = reader.nextElement().getAsJsonObject();
+    JsonObject person = object.getAsJsonObject("data").getAsJsonArray("person").get(0)
+        .getAsJsonObject();
+    assertEquals(new JsonPrimitive(-42L), person.get("age"));
+    assertEquals(Long.MAX_VALUE, person.get("big").getAsLong());
+    assertEquals(JsonToken.END_DOCUMENT, reader.peek());
+  }
+
+  /**
+   * Strings longer than the reader's chunk size are read incrementally, and a length prefix that
+   * overstates the payload fails without allocating the declared length.
+   */
+  @Test
+  public void testLongStrings() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      sb.append(i % 2 == 0 ? 'a' : '\u00dc');
+    }
+    JsonElement expected = new JsonPrimitive(sb.toString());
+    assertEquals(expected, new JsonParser().parse(new BinaryJsonReader(
+        new ByteArrayInputStream(write(expected, true)))));
+
+    byte[] truncated = { 0x46, 0x50, BinaryJsonWriter.VERSION, BinaryJsonWriter.STRING,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07, 'a', 'b', 'c' };
+    try {
+      new BinaryJsonReader(new ByteArrayInputStream(truncated)).nextString();
+      fail();
+    } catch (EOFException expectedException) {}
+  }
+
+  @Test
+  public void testSkipValue() throws IOException {
+    JsonElement expected = new JsonParser().parse(
+        "{\"skipped\":{\"a\":1,\"b\":[2,3]},\"kept\":{\"a\":4,\"b\":5}}");
+    BinaryJsonReader reader = new BinaryJsonReader(new ByteArrayInputStream(write(expected,
+        true)));
+    reader.beginObject();
+    assertEquals("skipped", reader.nextName());
+    reader.skipValue();
+    assertEquals("kept", reader.nextName());
+    reader.beginObject();
+    // Names defined within the skipped value must still be resolved
+    assertEquals("a", reader.nextName());
+    assertEquals(4, reader.nextInt());
+    assertEquals("b", reader.nextName());
+    assertEquals("5", reader.nextString());
+    reader.endObject();
+    reader.endObject();
+    assertEquals(JsonToken.END_DOCUMENT, reader.peek());
+  }
+
+  @Test
+  public void testSuppressedNulls() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    JsonWriter writer = new BinaryJsonWriter(out);
+    writer.setSerializeNulls(false);
+    writer.beginObject();
+    writer.name("a").nullValue();
+    writer.name("b").value(1);
+    writer.name("c").value((String) null);
+    writer.endObject();
+    writer.close();
+
+    JsonReader reader = new BinaryJsonReader(new ByteArrayInputStream(out.toByteArray()));
+    assertEquals(new JsonParser().parse("{\"b\":1}"), new JsonParser().parse(reader));
+  }
+
+  private byte[] write(JsonElement element, boolean serializeNulls) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    JsonWriter writer = new BinaryJsonWriter(out);
+    writer.setSerializeNulls(serializeNulls);
+    Streams.write(element, writer);
+    writer.close();
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link ContentEncoding} and {@link ThresholdEncodingOutputStream}.
+ */
+public class ContentEncodingTest {
+  /**
+   * Records the encoding chosen by a {@link ThresholdEncodingOutputStream}.
+   */
+  static class RecordingTarget implements ThresholdEncodingOutputStream.Target {
+    ContentEncoding chosen;
+    int opened;
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    @Override
+    public OutputStream open(ContentEncoding encoding) {
+      chosen = encoding;
+      opened++;
+      return out;
+    }
+  }
+
+  @Test
+  public void testForHeader() {
+    assertNull(ContentEncoding.forHeader(null));
+    assertNull(ContentEncoding.forHeader("identity"));
+    assertEquals(ContentEncoding.GZIP, ContentEncoding.forHeader("gzip"));
+    assertEquals(ContentEncoding.GZIP, ContentEncoding.forHeader("x-gzip"));
+    assertEquals(ContentEncoding.DEFLATE, ContentEncoding.forHeader(" Deflate "));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testForHeaderUnsupported() {
+    ContentEncoding.forHeader("br");
+  }
+
+  @Test
+  public void testNegotiate() {
+    assertNull(ContentEncoding.negotiate(null));
+    assertNull(ContentEncoding.negotiate("identity"));
+    assertNull(ContentEncoding.negotiate("gzip;q=0, deflate;q=0"));
+    assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("deflate, gzip"));
+    assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("*"));
+    assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0.5, deflate"));
+    assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0, *"));
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    byte[] payload = payload(10000);
+    for (ContentEncoding encoding : ContentEncoding.values()) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      OutputStream out = encoding.encode(bytes);
+      out.write(payload);
+      out.close();
+      assertTrue(bytes.size() < payload.length);
+
+      assertArrayEquals(payload, read(encoding.decode(
+          new ByteArrayInputStream(bytes.toByteArray()))));
+    }
+  }
+
+  @Test
+  public void testThreshold() throws IOException {
+    // Payloads no larger than the threshold are sent as-is
+    RecordingTarget target = new RecordingTarget();
+    OutputStream out = new ThresholdEncodingOutputStream(ContentEncoding.GZIP, 100, target);
+    out.write(payload(60));
+    out.write(payload(40));
+    out.flush();
+    assertEquals(0, target.opened);
+    out.close();
+    assertEquals(1, target.opened);
+    assertNull(target.chosen);
+    assertEquals(100, target.out.size());
+
+    // Larger payloads are encoded
+    target = new RecordingTarget();
+    out = new ThresholdEncodingOutputStream(ContentEncoding.GZIP, 100, target);
+    byte[] payload = payload(1000);
+    out.write(payload, 0, 60);
+    out.write(payload[60]);
+    out.write(payload, 61, payload.length - 61);
+    out.close();
+    assertEquals(1, target.opened);
+    assertEquals(ContentEncoding.GZIP, target.chosen);
+    assertArrayEquals(payload, read(ContentEncoding.GZIP.decode(
+        new ByteArrayInputStream(target.out.toByteArray()))));
+  }
+
+  /**
+   * The buffer grows as data is written, so a large threshold is not allocated up front.
+   */
+  @Test
+  public void testThresholdBufferGrowth() throws IOException {
+    RecordingTarget target = new RecordingTarget();
+    OutputStream out = new ThresholdEncodingOutputStream(ContentEncoding.GZIP, 1 << 20, target);
+    byte[] payload = payload(100000);
+    out.write(payload, 0, 10);
+    for (int i = 10; i < 5000; i++) {
+      out.write(payload[i]);
+    }
+    out.write(payload, 5000, payload.length - 5000);
+    out.close();
+    assertNull(target.chosen);
+    assertArrayEquals(payload, target.out.toByteArray());
+  }
+
+  private byte[] payload(int length) {
+    byte[] toReturn = new byte[length];
+    for (int i = 0; i < length; i++) {
+      toReturn[i] = (byte) ('a' + i % 7);
+    }
+    return toReturn;
+  }
+
+  private byte[] read(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    for (int count = in.read(buffer); count != -1; count = in.read(buffer)) {
+      out.write(buffer, 0, count);
+    }
+    in.close();
+    return out.toByteArray();
+  }
+}
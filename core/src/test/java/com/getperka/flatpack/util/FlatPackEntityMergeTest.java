@@ -20,19 +20,30 @@ package com.getperka.flatpack.util;
  */
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Test;
 
 import com.getperka.flatpack.Configuration;
+import com.getperka.flatpack.FlatPack;
 import com.getperka.flatpack.FlatPackEntity;
 import com.getperka.flatpack.FlatPackTest;
 import com.getperka.flatpack.domain.Employee;
+import com.getperka.flatpack.domain.Manager;
 import com.getperka.flatpack.domain.TestTypeSource;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 
 public class FlatPackEntityMergeTest extends FlatPackTest {
 
@@ -58,9 +69,109 @@ public class FlatPackEntityMergeTest extends FlatPackTest {
     assertEquals(2, entity.getExtraEntities().size());
   }
 
+  @Test
+  public void testColumnar() throws IOException {
+    Manager manager = makeManager();
+    List<Employee> employees = FlatPackCollections.listForAny();
+    for (int i = 0; i < 3; i++) {
+      Employee employee = makeEmployee();
+      employee.setManager(manager);
+      employees.add(employee);
+    }
+    FlatPackEntity<Collection<? extends Employee>> toPack = FlatPackEntity
+        .collectionOf(Employee.class).withValue(employees).withColumnarData(true);
+    String columnar = pack(toPack);
+    String single = pack(FlatPackEntity.entity(makeEmployee()));
+
+    StringWriter out = new StringWriter();
+    FlatPackEntityMerge.merge(readers(single, columnar), out);
+    JsonObject merged = new JsonParser().parse(out.toString()).getAsJsonObject();
+    assertEquals(4, merged.get("data").getAsJsonObject().get("employee").getAsJsonArray().size());
+
+    FlatPackEntity<Collection<? extends Employee>> entity = flatpack.getUnpacker().unpack(
+        toPack.getType(), merged, null);
+    assertEquals(3, entity.getValue().size());
+    assertEquals("manager street", entity.getValue().iterator().next().getManager().getAddress()
+        .getStreet());
+  }
+
+  @Test
+  public void testParallel() throws IOException {
+    Manager manager = makeManager();
+    String[] packs = new String[200];
+    for (int i = 0; i < packs.length; i++) {
+      Employee employee = makeEmployee();
+      employee.setManager(manager);
+      // The last value of a property takes precedence
+      manager.setName("Manager " + i);
+      packs[i] = pack(FlatPackEntity.entity(employee));
+    }
+
+    StringWriter sequential = new StringWriter();
+    FlatPackEntityMerge.merge(readers(packs), sequential);
+    StringWriter parallel = new StringWriter();
+    FlatPackEntityMerge.merge(readers(packs), parallel, new ForkJoinPool(4));
+    assertEquals(sequential.toString(), parallel.toString());
+
+    JsonObject data = new JsonParser().parse(parallel.toString()).getAsJsonObject()
+        .get("data").getAsJsonObject();
+    assertEquals(packs.length, data.get("employee").getAsJsonArray().size());
+    JsonArray managers = data.get("manager").getAsJsonArray();
+    assertEquals(1, managers.size());
+    assertEquals("Manager " + (packs.length - 1),
+        managers.get(0).getAsJsonObject().get("name").getAsString());
+  }
+
+  @Test
+  public void testStreaming() throws IOException {
+    Employee e1 = makeEmployee();
+    Employee e2 = makeEmployee();
+
+    String p1 = pack(FlatPackEntity.entity(e1));
+    String p2 = pack(FlatPackEntity.entity(e2));
+
+    StringWriter out = new StringWriter();
+    FlatPackEntityMerge.merge(readers(p2, p1), out);
+
+    JsonParser parser = new JsonParser();
+    assertEquals(FlatPackEntityMerge.merge(parser.parse(p2), parser.parse(p1)),
+        parser.parse(out.toString()));
+  }
+
+  @Test
+  public void testUuidTable() throws IOException {
+    FlatPack withTable = FlatPack.create(getConfiguration().withUuidTable(true));
+    StringWriter table = new StringWriter();
+    withTable.getPacker().pack(FlatPackEntity.entity(makeEmployee()), table);
+    String plain = pack(FlatPackEntity.entity(makeEmployee()));
+
+    for (String[] packs : new String[][] { { table.toString(), plain },
+        { plain, table.toString() } }) {
+      try {
+        FlatPackEntityMerge.merge(readers(packs), new StringWriter());
+        fail();
+      } catch (IOException expected) {
+        assertTrue(expected.getMessage(), expected.getMessage().contains("uuid table"));
+      }
+    }
+  }
+
   @Override
   protected Configuration getConfiguration() {
     return super.getConfiguration().addTypeSource(new TestTypeSource());
   }
 
+  private String pack(FlatPackEntity<?> entity) throws IOException {
+    StringWriter out = new StringWriter();
+    flatpack.getPacker().pack(entity, out);
+    return out.toString();
+  }
+
+  private List<Reader> readers(String... packs) {
+    List<Reader> toReturn = FlatPackCollections.listForAny();
+    for (String pack : packs) {
+      toReturn.add(new StringReader(pack));
+    }
+    return toReturn;
+  }
 }
@@ -0,0 +1,73 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.UUID;
+
+import org.junit.Test;
+
+/**
+ * Compares {@link FlatPackUuids} with {@link UUID#fromString(String)} and {@link UUID#toString()}.
+ */
+public class FlatPackUuidsTest {
+
+  @Test
+  public void testNonCanonical() {
+    assertNull(FlatPackUuids.parse("1-2-3-4-5"));
+    assertEquals(UUID.fromString("1-2-3-4-5"), FlatPackUuids.fromString("1-2-3-4-5"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotAUuid() {
+    FlatPackUuids.fromString("Hello world!");
+  }
+
+  @Test
+  public void testParseInvalid() {
+    String[] values = { "", "123e4567-e89b-12d3-a456-42661417400",
+        "123e4567-e89b-12d3-a456-4266141740000", "123e4567+e89b-12d3-a456-426614174000",
+        "123e4567-e89b-12d3-a456-42661417400g", "123e4567-e89b-12d3-a456-42661417400\u0100" };
+    for (String value : values) {
+      assertNull(value, FlatPackUuids.parse(value));
+    }
+  }
+
+  @Test
+  public void testRoundTrip() {
+    UUID[] uuids = { new UUID(0, 0), new UUID(-1, -1), new UUID(Long.MIN_VALUE, Long.MAX_VALUE) };
+    for (UUID uuid : uuids) {
+      test(uuid);
+    }
+    for (int i = 0; i < 1000; i++) {
+      test(UUID.randomUUID());
+    }
+  }
+
+  private void test(UUID uuid) {
+    String expected = uuid.toString();
+    assertEquals(expected, FlatPackUuids.toString(uuid));
+    assertEquals(uuid, FlatPackUuids.parse(expected));
+    assertEquals(uuid, FlatPackUuids.parse(expected.toUpperCase()));
+    assertEquals(uuid, FlatPackUuids.fromString(expected));
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * #%L
+ * FlatPack serialization code
+ * %%
+ * Copyright (C) 2012 - 2013 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+import org.junit.Test;
+
+/**
+ * Compares {@link Iso8601} with Joda's ISO8601 formatter and parser.
+ */
+public class Iso8601Test {
+  private static final String[] ZONES = { "UTC", "America/Los_Angeles", "Asia/Kathmandu",
+      "Australia/Lord_Howe", "-03:30" };
+
+  @Test
+  public void testFormat() {
+    Random random = new Random(0);
+    for (String id : ZONES) {
+      DateTimeZone zone = DateTimeZone.forID(id);
+      DateTimeFormatter joda = ISODateTimeFormat.dateTime().withZone(zone);
+      for (int i = 0; i < 10000; i++) {
+        // Years 0000 to 9999
+        long instant = (long) (random.nextDouble() * 315537897599999L) - 62167219200000L;
+        String expected = joda.print(instant);
+        String actual = Iso8601.format(instant, zone.getOffset(instant));
+        // Historical offsets with a seconds component are left to Joda
+        if (actual != null) {
+          assertEquals(expected, actual);
+          assertEquals(expected, instant, Iso8601.parse(expected));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testFormatUnsupported() {
+    // Before year 0
+    assertNull(Iso8601.format(-62167219200001L, 0));
+    // After year 9999
+    assertNull(Iso8601.format(253402300800000L, 0));
+    // An offset with a seconds component
+    assertNull(Iso8601.format(0, 1000));
+  }
+
+  @Test
+  public void testParse() {
+    DateTimeFormatter joda = ISODateTimeFormat.dateTimeParser();
+    String[] values = { "2013-01-02T03:04:05Z", "2013-01-02T03:04:05.6Z",
+        "2013-01-02T03:04:05.678912345+05:45", "2013-01-02T03:04:05,678-08",
+        "2012-02-29T23:59:59-0800",
+        "0000-01-01T00:00:00.000Z", "9999-12-31T23:59:59.999+14:00" };
+    for (String value : values) {
+      assertEquals(value, joda.parseMillis(value), Iso8601.parse(value));
+    }
+  }
+
+  @Test
+  public void testParseUnsupported() {
+    String[] values = { "2013-01-02", "2013-01-02T03:04", "2013-01-02T03:04:05",
+        "2013-02-29T03:04:05Z", "2013-01-02T24:00:00Z", "2013-01-02T03:04:05.Z",
+        "2013-01-02T03:04:05+1", "2013-01-02T03:04:05Zjunk", "2013-01-02t03:04:05Z",
+        "+2013-01-02T03:04:05Z" };
+    for (String value : values) {
+      assertEquals(value, Iso8601.UNPARSEABLE, Iso8601.parse(value));
+    }
+  }
+}
@@ -0,0 +1,335 @@
+/*
+ * #%L
+ * FlatPack Jersey integration
+ * %%
+ * Copyright (C) 2012 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.jersey;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response.Status;
+
+import com.getperka.flatpack.FlatPackEntity;
+import com.getperka.flatpack.util.FlatPackCollections;
+import com.getperka.flatpack.util.FlatPackEntityMerge;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.sun.jersey.api.core.HttpContext;
+import com.sun.jersey.core.header.InBoundHeaders;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseWriter;
+import com.sun.jersey.spi.container.WebApplication;
+
+/**
+ * Executes several requests sent by a client in a single HTTP round trip. The body of the batch
+ * request is a JSON object:
+ * 
+ * <pre>
+ * { "requests" : [ { "method" : "GET", "path" : "/api/foo?bar=baz",
+ *                    "headers" : { "name" : "value" }, "body" : "..." }, ... ] }
+ * </pre>
+ * 
+ * Each request is dispatched through the {@link WebApplication} with the headers and security
+ * context of the batch request, overridden by its own headers. The requests are executed one at a
+ * time, in order, each on a worker thread so that it has its own request-scoped state. A request
+ * that fails with an unhandled exception is reported with a {@code 500} status, without affecting
+ * the other requests in the batch. Responses that are packed by the {@link FlatPackProvider} are
+ * returned with a single {@code data} section, so an entity referenced by several responses is
+ * only sent once:
+ * 
+ * <pre>
+ * { "data" : { ... }, "responses" : [ { "status" : 200, "value" : ..., "errors" : ... },
+ *                                     { "status" : 404, "contentType" : "text/html",
+ *                                       "body" : "..." } ] }
+ * </pre>
+ * 
+ * Since the WebApplication is only available once the container has been initialized, an instance
+ * of this resource is typically registered as a singleton from an override of
+ * {@code ServletContainer.initiate(ResourceConfig, WebApplication)}. The resource is bound to
+ * {@code /batch}; a subclass may be annotated with a different {@link Path}.
+ * 
+ * @see com.getperka.flatpack.client.impl.Batch
+ */
+@Path("batch")
+public class FlatPackBatchResource {
+  /**
+   * Buffers the status and body of a single response.
+   */
+  static class BufferedResponse implements ContainerResponseWriter {
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private ContainerResponse response;
+
+    @Override
+    public void finish() {}
+
+    public byte[] getBody() {
+      return body.toByteArray();
+    }
+
+    public ContainerResponse getResponse() {
+      return response;
+    }
+
+    @Override
+    public OutputStream writeStatusAndHeaders(long contentLength, ContainerResponse response) {
+      this.response = response;
+      return body;
+    }
+  }
+
+  /**
+   * The number of worker threads in the default executor.
+   */
+  private static final int DEFAULT_THREADS = 16;
+
+  /**
+   * Headers of the batch request that describe its own payload, rather than the caller, and which
+   * are not copied into the individual requests.
+   */
+  private static final Set<String> ENTITY_HEADERS = FlatPackCollections.setForLookup();
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  static {
+    ENTITY_HEADERS.addAll(Arrays.asList("accept", "accept-encoding", "content-encoding",
+        "content-length", "content-type", "if-modified-since", "if-none-match",
+        FlatPackEntity.LAYOUT_HEADER.toLowerCase()));
+  }
+
+  @Context
+  HttpContext httpContext;
+  private ExecutorService executor;
+  private int maximumRequests = 100;
+  private final WebApplication webApplication;
+
+  public FlatPackBatchResource(WebApplication webApplication) {
+    this.webApplication = webApplication;
+  }
+
+  @POST
+  @Consumes(MediaType.APPLICATION_JSON)
+  @Produces(MediaType.APPLICATION_JSON)
+  public JsonElement batch(JsonElement batch) {
+    JsonElement requests = batch.isJsonObject() ? batch.getAsJsonObject().get("requests") : null;
+    if (requests == null || !requests.isJsonArray()
+      || requests.getAsJsonArray().size() > maximumRequests) {
+      throw new WebApplicationException(Status.BAD_REQUEST);
+    }
+    ContainerRequest request = (ContainerRequest) httpContext.getRequest();
+
+    JsonArray responses = new JsonArray();
+    List<JsonElement> payloads = FlatPackCollections.listForAny();
+    for (JsonElement elt : requests.getAsJsonArray()) {
+      JsonObject response = execute(request, elt.getAsJsonObject());
+      responses.add(response);
+      // Entities in a payload with a uuid table can't be shared with other responses
+      if (response.has("data") && !response.has("uuids")) {
+        payloads.add(response);
+      }
+    }
+
+    JsonObject toReturn = new JsonObject();
+    if (!payloads.isEmpty()) {
+      toReturn.add("data", FlatPackEntityMerge.merge(payloads).getAsJsonObject().get("data"));
+      for (JsonElement payload : payloads) {
+        payload.getAsJsonObject().remove("data");
+      }
+    }
+    toReturn.add("responses", responses);
+    return toReturn;
+  }
+
+  /**
+   * Sets the executor that runs each request of a batch. If no executor is set, a pool of
+   * {@value #DEFAULT_THREADS} daemon threads, which exit when idle, will be created when the first
+   * batch is received. Since each batch waits for its requests in turn, this bounds the number of
+   * batches that are executed concurrently; additional batches wait in the pool's queue.
+   */
+  public synchronized void setExecutor(ExecutorService executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Sets the largest number of requests that may be sent in a single batch. Larger batches will be
+   * rejected with a {@code 400 Bad Request} response. The default is {@code 100}.
+   */
+  public void setMaximumRequests(int maximumRequests) {
+    this.maximumRequests = maximumRequests;
+  }
+
+  private boolean equals(String a, String b) {
+    return a == null ? b == null : a.equalsIgnoreCase(b);
+  }
+
+  /**
+   * Dispatch a single request, returning its packed payload and status.
+   */
+  private JsonObject execute(ContainerRequest batchRequest, JsonObject description) {
+    String method = description.get("method").getAsString();
+    URI requestUri = batchRequest.getRequestUri().resolve(description.get("path").getAsString())
+        .normalize();
+    URI baseUri = batchRequest.getBaseUri();
+
+    // Only requests to this application can be dispatched
+    if (!isWithin(baseUri, requestUri)) {
+      return status(Status.NOT_FOUND.getStatusCode());
+    }
+
+    InBoundHeaders headers = new InBoundHeaders();
+    for (Map.Entry<String, List<String>> entry : batchRequest.getRequestHeaders().entrySet()) {
+      if (!ENTITY_HEADERS.contains(entry.getKey().toLowerCase())) {
+        headers.put(entry.getKey(), new ArrayList<String>(entry.getValue()));
+      }
+    }
+    JsonElement requestHeaders = description.get("headers");
+    if (requestHeaders != null && requestHeaders.isJsonObject()) {
+      for (Map.Entry<String, JsonElement> entry : requestHeaders.getAsJsonObject().entrySet()) {
+        headers.putSingle(entry.getKey(), entry.getValue().getAsString());
+      }
+    }
+    JsonElement body = description.get("body");
+    byte[] entity = new byte[0];
+    if (body != null && body.isJsonPrimitive()) {
+      entity = body.getAsString().getBytes(UTF8);
+      headers.putSingle("Content-Type", MediaType.APPLICATION_JSON);
+    }
+
+    final ContainerRequest request = new ContainerRequest(webApplication, method, baseUri,
+        requestUri, headers, new ByteArrayInputStream(entity));
+    /*
+     * The batch request delegates to the container's SecurityContext. An injected SecurityContext
+     * can't be used, since it is a proxy for the current thread's request, which will be the
+     * dispatched request itself.
+     */
+    request.setSecurityContext(batchRequest);
+    // Asks the FlatPackProvider to return the packed payload instead of writing it
+    request.getProperties().put(FlatPackProvider.BATCH_PAYLOAD, Boolean.TRUE);
+
+    final BufferedResponse buffer = new BufferedResponse();
+    try {
+      getExecutor().submit(new Callable<Void>() {
+        @Override
+        public Void call() throws IOException {
+          webApplication.handleRequest(request, buffer);
+          return null;
+        }
+      }).get();
+    } catch (ExecutionException e) {
+      // Report the failure as this request's response, rather than failing the whole batch
+      return status(Status.INTERNAL_SERVER_ERROR.getStatusCode());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new WebApplicationException(e);
+    }
+
+    ContainerResponse response = buffer.getResponse();
+    if (response == null) {
+      // The application returned without writing a response
+      return status(Status.INTERNAL_SERVER_ERROR.getStatusCode());
+    }
+    Object payload = request.getProperties().get(FlatPackProvider.BATCH_PAYLOAD);
+    JsonObject toReturn;
+    if (payload instanceof JsonObject) {
+      toReturn = (JsonObject) payload;
+    } else {
+      toReturn = new JsonObject();
+      Object contentType = response.getHttpHeaders().getFirst("Content-Type");
+      if (contentType != null) {
+        toReturn.addProperty("contentType", contentType.toString());
+      }
+      byte[] bytes = buffer.getBody();
+      if (bytes.length > 0) {
+        toReturn.addProperty("body", new String(bytes, UTF8));
+      }
+    }
+    toReturn.addProperty("status", response.getStatus());
+    return toReturn;
+  }
+
+  private synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(DEFAULT_THREADS, DEFAULT_THREADS, 60,
+          TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+              Thread t = new Thread(r, FlatPackBatchResource.class.getSimpleName());
+              t.setDaemon(true);
+              return t;
+            }
+          });
+      // Release the threads once batches stop arriving
+      pool.allowCoreThreadTimeOut(true);
+      executor = pool;
+    }
+    return executor;
+  }
+
+  /**
+   * Returns {@code true} if {@code requestUri} refers to a resource within the application. The
+   * decoded path is normalized, so that encoded dot-segments can't escape the application, and is
+   * compared by path segment, so that {@code /api..} or {@code /apis} don't match {@code /api/}.
+   */
+  private boolean isWithin(URI baseUri, URI requestUri) {
+    if (!equals(baseUri.getScheme(), requestUri.getScheme())
+      || !equals(baseUri.getRawAuthority(), requestUri.getRawAuthority())) {
+      return false;
+    }
+    String path;
+    try {
+      path = new URI(null, null, requestUri.getPath(), null).normalize().getPath();
+    } catch (URISyntaxException e) {
+      return false;
+    }
+    String basePath = baseUri.getPath();
+    if (!basePath.endsWith("/")) {
+      basePath += "/";
+    }
+    return path.startsWith(basePath) || basePath.equals(path + "/");
+  }
+
+  private JsonObject status(int status) {
+    JsonObject toReturn = new JsonObject();
+    toReturn.addProperty("status", status);
+    return toReturn;
+  }
+}
@@ -19,20 +19,30 @@
  */
 package com.getperka.flatpack.jersey;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
-import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.Principal;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
 import java.util.Map;
+import java.util.TimeZone;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.Produces;
@@ -40,6 +50,8 @@ import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.ext.MessageBodyReader;
 import javax.ws.rs.ext.MessageBodyWriter;
 import javax.ws.rs.ext.Provider;
@@ -47,32 +59,62 @@ import javax.ws.rs.ext.Providers;
 
 import com.getperka.flatpack.FlatPack;
 import com.getperka.flatpack.FlatPackEntity;
+import com.getperka.flatpack.WireFormat;
+import com.getperka.flatpack.util.BinaryJsonReader;
+import com.getperka.flatpack.util.BinaryJsonWriter;
+import com.getperka.flatpack.util.ContentEncoding;
+import com.getperka.flatpack.util.FlatPackUuids;
 import com.getperka.flatpack.util.IoObserver;
+import com.getperka.flatpack.util.ThresholdEncodingOutputStream;
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
+import com.google.gson.internal.Streams;
 import com.sun.jersey.spi.container.ContainerRequest;
 import com.sun.jersey.spi.container.ContainerRequestFilter;
 import com.sun.jersey.spi.container.ContainerResponse;
 import com.sun.jersey.spi.container.ContainerResponseFilter;
 
 /**
- * Adapts the FlatPack serialization mechanisms to the Jersey / jax-rs stack.
+ * Adapts the FlatPack serialization mechanisms to the Jersey / jax-rs stack. Payloads using the
+ * {@link WireFormat#BINARY_MEDIA_TYPE} media type are encoded in the {@link WireFormat#BINARY}
+ * format. Payloads with a {@code Content-Encoding} header are decoded as they are read, and
+ * responses may be compressed by calling {@link #setCompressionThreshold(int)}. A client may send
+ * the {@link FlatPackEntity#LAYOUT_HEADER} to receive
+ * {@link FlatPackEntity#withColumnarData(boolean) columnar} data. Conditional requests may be
+ * enabled with {@link #setConditionalRequests(boolean)}.
  */
 @Provider
-@Consumes({ MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN })
-@Produces({ MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN })
+@Consumes({ MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN, WireFormat.BINARY_MEDIA_TYPE })
+@Produces({ MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN, WireFormat.BINARY_MEDIA_TYPE })
 public class FlatPackProvider implements MessageBodyReader<Object>, MessageBodyWriter<Object>,
     ContainerRequestFilter, ContainerResponseFilter {
+  /**
+   * A request property set by {@link FlatPackBatchResource}. The packed payload of the response
+   * will be stored in the property instead of being written.
+   */
+  static final String BATCH_PAYLOAD = FlatPackProvider.class.getName() + ".batchPayload";
 
+  private static final String ACCEPT_ENCODING = "Accept-Encoding";
+  private static final MediaType BINARY_TYPE = MediaType.valueOf(WireFormat.BINARY_MEDIA_TYPE);
+  private static final int BUFFER_SIZE = 8192;
+  private static final String CONTENT_ENCODING = "Content-Encoding";
+  private static final String ETAG = "ETag";
+  private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+  private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+  private static final String IF_NONE_MATCH = "If-None-Match";
+  private static final String LAST_MODIFIED = "Last-Modified";
   private static final Charset UTF8 = Charset.forName("UTF-8");
   private static final ThreadLocal<Principal> requestPrincipal = new ThreadLocal<Principal>();
   private static final ThreadLocal<Map<String, String>> flatpackWarnings = new ThreadLocal<Map<String, String>>();
 
   @Context
   Providers providers;
+  private int compressionThreshold = -1;
+  private boolean conditionalRequests;
   private FlatPack flatpack;
   private IoObserver observer = new IoObserver.Null();
+  private boolean streamResponses;
 
   /**
    * Capture the Principal associated with the current thread for use by the post-request filter
@@ -92,7 +134,12 @@ public class FlatPackProvider implements MessageBodyReader<Object>, MessageBodyW
   @Override
   public ContainerResponse filter(ContainerRequest request, ContainerResponse response) {
     try {
-      if (!MediaType.APPLICATION_JSON_TYPE.equals(response.getMediaType())) {
+      WireFormat format;
+      if (MediaType.APPLICATION_JSON_TYPE.equals(response.getMediaType())) {
+        format = WireFormat.JSON;
+      } else if (isBinary(response.getMediaType())) {
+        format = WireFormat.BINARY;
+      } else {
         return response;
       }
       Object t = response.getEntity();
@@ -131,17 +178,61 @@ public class FlatPackProvider implements MessageBodyReader<Object>, MessageBodyW
         }
       }
 
-      // Create the payload
-      StringWriter out = new StringWriter();
+      // Hand the payload of one request in a batch back to the FlatPackBatchResource
+      if (request.getProperties().containsKey(BATCH_PAYLOAD)) {
+        try {
+          request.getProperties().put(BATCH_PAYLOAD, getFlatPack().getPacker().pack(toSend));
+        } catch (IOException e) {
+          throw new WebApplicationException(e);
+        }
+        response.setEntity(null);
+        return response;
+      }
+
+      // Choose an encoding acceptable to the client, unless another filter has already done so
+      ContentEncoding encoding = null;
+      MultivaluedMap<String, Object> headers = response.getHttpHeaders();
+      if (compressionThreshold >= 0 && !headers.containsKey(CONTENT_ENCODING)) {
+        headers.add("Vary", ACCEPT_ENCODING);
+        encoding = ContentEncoding.negotiate(request.getHeaderValue(ACCEPT_ENCODING));
+      }
+
+      // Write tables of entities if the client asked for them
+      headers.add("Vary", FlatPackEntity.LAYOUT_HEADER);
+      if (FlatPackEntity.COLUMNAR_LAYOUT.equals(
+          request.getHeaderValue(FlatPackEntity.LAYOUT_HEADER))) {
+        toSend.withColumnarData(true);
+      }
+
+      if (streamResponses) {
+        // The principal and warnings are already held by the entity, which is packed on demand
+        if (encoding != null) {
+          // The size of the payload isn't known before the headers are sent
+          headers.putSingle(CONTENT_ENCODING, encoding.getToken());
+        }
+        response.setEntity(new FlatPackStreamingOutput(getFlatPack(), toSend, format, encoding,
+            observer), StreamingOutput.class);
+        return response;
+      }
+
+      // Pack into a single buffer, compressing the payload as it is written
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      MessageDigest digest = conditionalRequests && isConditional(request, response)
+        ? newDigest() : null;
+      OutputStream sink = encode(out, encoding, headers);
+      if (digest != null) {
+        sink = new DigestOutputStream(sink, digest);
+      }
       try {
-        getFlatPack().getPacker().pack(toSend, observer.observe(out));
+        pack(toSend, format, sink);
       } catch (IOException e) {
         throw new WebApplicationException(e);
       }
 
-      // Swap out the response's entity
-      response.setEntity(out.toString(), String.class);
-
+      if (digest != null && isNotModified(request, response, digest, encoding)) {
+        return response;
+      }
+      response.setEntity(out.toByteArray(), byte[].class);
       return response;
     } finally {
       requestPrincipal.remove();
@@ -166,6 +257,10 @@ public class FlatPackProvider implements MessageBodyReader<Object>, MessageBodyW
   @Override
   public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations,
       MediaType mediaType) {
+    // Leave streamed payloads to jersey's StreamingOutput provider
+    if (StreamingOutput.class.isAssignableFrom(type)) {
+      return false;
+    }
     return FlatPackEntity.class.isAssignableFrom(type) || JsonElement.class.isAssignableFrom(type)
       || getFlatPack().isRootType(genericType);
   }
@@ -175,10 +270,23 @@ public class FlatPackProvider implements MessageBodyReader<Object>, MessageBodyW
       MediaType mediaType, MultivaluedMap<String, String> httpHeaders, InputStream entityStream)
       throws IOException, WebApplicationException {
 
+    try {
+      ContentEncoding encoding = ContentEncoding.forHeader(httpHeaders.getFirst(CONTENT_ENCODING));
+      if (encoding != null) {
+        entityStream = encoding.decode(entityStream);
+      }
+    } catch (IllegalArgumentException e) {
+      throw new WebApplicationException(e, Status.UNSUPPORTED_MEDIA_TYPE);
+    }
+
     if (InputStream.class.equals(type)) {
       return entityStream;
     }
 
+    if (isBinary(mediaType)) {
+      return readBinary(type, genericType, entityStream);
+    }
+
     Reader in = observer.observe(new InputStreamReader(entityStream, UTF8));
     if (Reader.class.equals(type)) {
       return in;
@@ -212,10 +320,47 @@ public class FlatPackProvider implements MessageBodyReader<Object>, MessageBodyW
     return toReturn;
   }
 
+  /**
+   * Enables the compression of packed responses for clients that send a suitable
+   * {@code Accept-Encoding} header. Responses no larger than {@code threshold} bytes are sent
+   * uncompressed. A negative value, the default, disables compression, which should be left
+   * disabled if the container already compresses responses.
+   */
+  public void setCompressionThreshold(int threshold) {
+    this.compressionThreshold = threshold;
+  }
+
+  /**
+   * Enables conditional {@code GET} requests. Buffered responses will be given a strong
+   * {@code ETag} derived from the packed payload, and a {@code 304 Not Modified} response will be
+   * sent if the request's {@code If-None-Match} header matches it. In the absence of an
+   * {@code If-None-Match} header, {@code If-Modified-Since} is compared to any
+   * {@code Last-Modified} header set by the resource. The payload must still be packed in order to
+   * compute the tag, but it will not be sent. Streamed responses are not affected.
+   */
+  public void setConditionalRequests(boolean conditionalRequests) {
+    this.conditionalRequests = conditionalRequests;
+  }
+
   public void setObserver(IoObserver observer) {
     this.observer = observer;
   }
 
+  /**
+   * By default, responses are packed into an in-memory buffer when
+   * {@link #filter(ContainerRequest, ContainerResponse)} is called. If {@code true}, the filter
+   * only captures the principal and any warnings, and the response is packed directly into the
+   * container's output stream through a fixed-size buffer. This reduces the memory required for
+   * large payloads, but serialization will occur after any subsequent ContainerResponseFilters
+   * have run, so the entities being sent must not depend on state that those filters release.
+   * Streamed responses are compressed whenever the client accepts a coding, regardless of
+   * {@link #setCompressionThreshold(int) the threshold}, and conditional requests are not
+   * supported.
+   */
+  public void setStreamResponses(boolean streamResponses) {
+    this.streamResponses = streamResponses;
+  }
+
   /**
    * This method generally shouldn't be called on the server, since the
    * {@link #filter(ContainerRequest, ContainerResponse)} method above should have already
@@ -226,6 +371,19 @@ public class FlatPackProvider implements MessageBodyReader<Object>, MessageBodyW
       Annotation[] annotations,
       MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
       throws IOException, WebApplicationException {
+    // Honor an encoding requested by the caller, such as a jersey-client request
+    Object contentEncoding = httpHeaders.getFirst(CONTENT_ENCODING);
+    ContentEncoding encoding = contentEncoding == null ? null : ContentEncoding
+        .forHeader(contentEncoding.toString());
+    if (encoding != null) {
+      entityStream = encoding.encode(entityStream);
+    }
+
+    if (isBinary(mediaType)) {
+      writeBinary(t, genericType, entityStream);
+      return;
+    }
+
     Writer writer = observer.observe(new OutputStreamWriter(entityStream, UTF8));
     try {
       if (t instanceof JsonElement) {
@@ -247,6 +405,27 @@ public class FlatPackProvider implements MessageBodyReader<Object>, MessageBodyW
     }
   }
 
+  /**
+   * Returns a stream that compresses the payload written to {@code out} if it is larger than the
+   * compression threshold, recording the choice in the {@code Content-Encoding} header.
+   */
+  private OutputStream encode(final OutputStream out, ContentEncoding encoding,
+      final MultivaluedMap<String, Object> headers) {
+    if (encoding == null) {
+      return out;
+    }
+    return new ThresholdEncodingOutputStream(encoding, compressionThreshold,
+        new ThresholdEncodingOutputStream.Target() {
+          @Override
+          public OutputStream open(ContentEncoding chosen) {
+            if (chosen != null) {
+              headers.putSingle(CONTENT_ENCODING, chosen.getToken());
+            }
+            return out;
+          }
+        });
+  }
+
   private FlatPack getFlatPack() {
     if (flatpack == null) {
       flatpack = providers.getContextResolver(FlatPack.class, MediaType.WILDCARD_TYPE)
@@ -254,4 +433,157 @@ public class FlatPackProvider implements MessageBodyReader<Object>, MessageBodyW
     }
     return flatpack;
   }
+
+  private boolean isBinary(MediaType mediaType) {
+    return mediaType != null && BINARY_TYPE.isCompatible(mediaType)
+      && !mediaType.isWildcardType() && !mediaType.isWildcardSubtype();
+  }
+
+  private MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      // Every JVM must provide MD5
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Packs the entity into {@code out}, which will be closed.
+   */
+  private void pack(FlatPackEntity<?> toSend, WireFormat format, OutputStream out)
+      throws IOException {
+    if (WireFormat.BINARY.equals(format)) {
+      getFlatPack().getPacker().pack(toSend, out, format);
+      return;
+    }
+    Writer writer = observer.observe(new BufferedWriter(new OutputStreamWriter(out, UTF8),
+        BUFFER_SIZE));
+    getFlatPack().getPacker().pack(toSend, writer);
+  }
+
+  private Object readBinary(Class<Object> type, Type genericType, InputStream entityStream)
+      throws IOException {
+    try {
+      if (JsonElement.class.isAssignableFrom(type)) {
+        return new BinaryJsonReader(entityStream).nextElement();
+      }
+
+      FlatPackEntity<?> entity;
+      Object toReturn;
+      if (FlatPackEntity.class.equals(type)) {
+        Type parameterization;
+        if (genericType instanceof ParameterizedType) {
+          parameterization = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+        } else {
+          parameterization = Void.class;
+        }
+        entity = getFlatPack().getUnpacker().unpack(parameterization, entityStream,
+            WireFormat.BINARY, requestPrincipal.get());
+        toReturn = entity;
+      } else {
+        entity = getFlatPack().getUnpacker().unpack(genericType, entityStream, WireFormat.BINARY,
+            requestPrincipal.get());
+        toReturn = entity.getValue();
+      }
+      flatpackWarnings.set(entity.getExtraWarnings());
+      return toReturn;
+    } finally {
+      entityStream.close();
+    }
+  }
+
+  /**
+   * Only successful {@code GET} and {@code HEAD} requests may be answered with a
+   * {@code 304 Not Modified} response.
+   */
+  private boolean isConditional(ContainerRequest request, ContainerResponse response) {
+    String method = request.getMethod();
+    return response.getStatus() == Status.OK.getStatusCode()
+      && ("GET".equals(method) || "HEAD".equals(method));
+  }
+
+  /**
+   * Adds an {@code ETag}, derived from the digest of the uncompressed payload, to a response
+   * accepted by {@link #isConditional} and converts it to a {@code 304 Not Modified} response if
+   * the request's validators are satisfied. The tag includes
+   * the content coding, since the compressed and uncompressed payloads are different
+   * representations.
+   */
+  private boolean isNotModified(ContainerRequest request, ContainerResponse response,
+      MessageDigest digest, ContentEncoding encoding) {
+    MultivaluedMap<String, Object> headers = response.getHttpHeaders();
+    // The encoding is only used if the payload was larger than the threshold
+    Object contentEncoding = encoding == null ? null : headers.getFirst(CONTENT_ENCODING);
+    ByteBuffer hash = ByteBuffer.wrap(digest.digest());
+    String etag = "\"" + FlatPackUuids.toString(hash.getLong(), hash.getLong())
+      + (contentEncoding == null ? "" : "-" + contentEncoding) + "\"";
+    headers.putSingle(ETAG, etag);
+
+    boolean notModified = false;
+    String ifNoneMatch = request.getHeaderValue(IF_NONE_MATCH);
+    if (ifNoneMatch != null) {
+      for (String tag : ifNoneMatch.split(",")) {
+        tag = tag.trim();
+        // If-None-Match uses the weak comparison function
+        if (tag.startsWith("W/")) {
+          tag = tag.substring(2);
+        }
+        if ("*".equals(tag) || etag.equals(tag)) {
+          notModified = true;
+          break;
+        }
+      }
+    } else {
+      Date lastModified = parseDate(headers.getFirst(LAST_MODIFIED));
+      Date ifModifiedSince = parseDate(request.getHeaderValue(IF_MODIFIED_SINCE));
+      // HTTP dates only have a resolution of one second
+      notModified = lastModified != null && ifModifiedSince != null
+        && lastModified.getTime() / 1000 <= ifModifiedSince.getTime() / 1000;
+    }
+
+    if (notModified) {
+      response.setStatus(Status.NOT_MODIFIED.getStatusCode());
+      response.setEntity(null);
+      // There is no payload for the coding to describe
+      headers.remove(CONTENT_ENCODING);
+    }
+    return notModified;
+  }
+
+  /**
+   * Accepts a {@link Date} or an RFC 1123 date string, returning {@code null} for any other value.
+   */
+  private Date parseDate(Object value) {
+    if (value instanceof Date) {
+      return (Date) value;
+    }
+    if (value == null) {
+      return null;
+    }
+    SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+    format.setTimeZone(TimeZone.getTimeZone("GMT"));
+    try {
+      return format.parse(value.toString());
+    } catch (ParseException e) {
+      return null;
+    }
+  }
+
+  private void writeBinary(Object t, Type genericType, OutputStream entityStream)
+      throws IOException {
+    if (t instanceof JsonElement) {
+      BinaryJsonWriter writer = new BinaryJsonWriter(entityStream);
+      Streams.write((JsonElement) t, writer);
+      writer.close();
+    } else if (t instanceof FlatPackEntity) {
+      getFlatPack().getPacker().pack((FlatPackEntity<?>) t, entityStream, WireFormat.BINARY);
+    } else if (getFlatPack().isRootType(genericType)) {
+      FlatPackEntity<?> fpe = FlatPackEntity.create(genericType, t, null);
+      getFlatPack().getPacker().pack(fpe, entityStream, WireFormat.BINARY);
+    } else {
+      // Indicates an error in isWritable()
+      throw new UnsupportedOperationException("Cannot write a " + t.getClass().getName());
+    }
+  }
 }
@@ -0,0 +1,80 @@
+/*
+ * #%L
+ * FlatPack Jersey integration
+ * %%
+ * Copyright (C) 2012 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.jersey;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+import com.getperka.flatpack.FlatPack;
+import com.getperka.flatpack.FlatPackEntity;
+import com.getperka.flatpack.WireFormat;
+import com.getperka.flatpack.util.ContentEncoding;
+import com.getperka.flatpack.util.IoObserver;
+
+/**
+ * Packs a {@link FlatPackEntity} directly into the response stream when the container writes the
+ * response body. The payload is encoded through a fixed-size buffer, so the complete response
+ * never needs to be held in memory, and nothing is packed if the body is never written.
+ */
+class FlatPackStreamingOutput implements StreamingOutput {
+  static final int BUFFER_SIZE = 8192;
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private final ContentEncoding encoding;
+  private final FlatPackEntity<?> entity;
+  private final FlatPack flatpack;
+  private final WireFormat format;
+  private final IoObserver observer;
+
+  /**
+   * @param encoding the coding, which has already been recorded in the response's
+   *          {@code Content-Encoding} header, or {@code null} to send the payload uncompressed
+   */
+  public FlatPackStreamingOutput(FlatPack flatpack, FlatPackEntity<?> entity, WireFormat format,
+      ContentEncoding encoding, IoObserver observer) {
+    this.encoding = encoding;
+    this.entity = entity;
+    this.flatpack = flatpack;
+    this.format = format;
+    this.observer = observer;
+  }
+
+  @Override
+  public void write(OutputStream output) throws IOException, WebApplicationException {
+    if (encoding != null) {
+      output = encoding.encode(output);
+    }
+    // The stream will be flushed and closed by the Packer
+    if (WireFormat.BINARY.equals(format)) {
+      flatpack.getPacker().pack(entity, output, format);
+      return;
+    }
+    Writer writer = observer.observe(new BufferedWriter(new OutputStreamWriter(output, UTF8),
+        BUFFER_SIZE));
+    flatpack.getPacker().pack(entity, writer);
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * #%L
+ * FlatPack Jersey integration
+ * %%
+ * Copyright (C) 2012 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.jersey;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.getperka.flatpack.FlatPackEntity;
+
+/**
+ * Exercises {@link com.getperka.flatpack.client.impl.FlatPackRequestBase#executeAsync()}.
+ */
+public class ExecuteAsyncTest {
+  private WidgetApi api;
+  private TestServer server;
+
+  @After
+  public void after() {
+    api.close();
+    server.stop();
+  }
+
+  @Before
+  public void before() throws Exception {
+    TestApplication application = new TestApplication();
+    server = new TestServer(application);
+    api = new WidgetApi(application.getFlatPack());
+    api.setServerBase(server.getBaseUri());
+  }
+
+  @Test
+  public void testClose() throws Exception {
+    assertEquals("a", api.widget("a").executeAsync().get().getValue().getName());
+    api.close();
+    try {
+      api.widget("a").executeAsync();
+      fail();
+    } catch (IllegalStateException expected) {}
+  }
+
+  /**
+   * An executor supplied by the caller should be used, and left running when the api is closed.
+   */
+  @Test
+  public void testCustomExecutor() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      api.setExecutor(executor);
+      assertEquals("a", api.widget("a").executeAsync().get().getValue().getName());
+      api.close();
+      assertFalse(executor.isShutdown());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testFanOut() throws Exception {
+    List<Future<FlatPackEntity<Widget>>> futures = new ArrayList<Future<FlatPackEntity<Widget>>>();
+    for (int i = 0; i < 20; i++) {
+      futures.add(api.widget("w" + i).executeAsync());
+    }
+    for (int i = 0; i < futures.size(); i++) {
+      assertEquals("w" + i, futures.get(i).get().getValue().getName());
+    }
+  }
+}
@@ -0,0 +1,242 @@
+/*
+ * #%L
+ * FlatPack Jersey integration
+ * %%
+ * Copyright (C) 2012 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.jersey;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.getperka.flatpack.FlatPackEntity;
+import com.getperka.flatpack.client.impl.Batch;
+import com.getperka.flatpack.jersey.FlatPackBatchResource.BufferedResponse;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.ContainerResponseWriter;
+
+public class FlatPackBatchResourceTest {
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private TestApplication application;
+  private JsonObject lastBatch;
+
+  @Before
+  public void before() {
+    application = new TestApplication();
+  }
+
+  /**
+   * Verify that each request is dispatched, and that their payloads are merged into a single data
+   * section.
+   */
+  @Test
+  public void testDispatchAndMerge() throws Exception {
+    JsonArray responses = batch("widgets/a", "widgets/b", "widgets/missing", "/elsewhere");
+    assertEquals(4, responses.size());
+
+    JsonObject a = responses.get(0).getAsJsonObject();
+    JsonObject b = responses.get(1).getAsJsonObject();
+    assertEquals(200, a.get("status").getAsInt());
+    assertEquals(200, b.get("status").getAsInt());
+    assertFalse(a.has("data"));
+    assertFalse(b.has("data"));
+
+    JsonObject missing = responses.get(2).getAsJsonObject();
+    assertEquals(404, missing.get("status").getAsInt());
+    assertEquals("text/plain", missing.get("contentType").getAsString());
+    assertEquals("Not here", missing.get("body").getAsString());
+
+    // Requests outside of the application can't be dispatched
+    assertEquals(404, responses.get(3).getAsJsonObject().get("status").getAsInt());
+
+    // Both widgets and the part they share should be sent once
+    JsonObject data = lastBatch.get("data").getAsJsonObject();
+    JsonArray widgets = data.get("widget").getAsJsonArray();
+    assertEquals(3, widgets.size());
+
+    // Each response can still be unpacked with the shared data
+    Widget widgetA = unpack(a, data);
+    Widget widgetB = unpack(b, data);
+    assertEquals("a", widgetA.getName());
+    assertEquals("b", widgetB.getName());
+    assertEquals(WidgetResource.SHARED_UUID, widgetA.getPart().getUuid());
+    assertEquals("shared", widgetB.getPart().getName());
+  }
+
+  /**
+   * A request that fails should be reported in its own response without failing the batch.
+   */
+  @Test
+  public void testFailedRequest() throws Exception {
+    JsonArray responses = batch("widgets/a", "widgets/fail", "widgets/b");
+    assertEquals(3, responses.size());
+    assertEquals(200, responses.get(0).getAsJsonObject().get("status").getAsInt());
+    assertEquals(500, responses.get(1).getAsJsonObject().get("status").getAsInt());
+    assertEquals(200, responses.get(2).getAsJsonObject().get("status").getAsInt());
+    assertTrue(lastBatch.has("data"));
+  }
+
+  /**
+   * Paths are normalized and compared by segment before being dispatched.
+   */
+  @Test
+  public void testPathsOutsideApplication() throws Exception {
+    JsonArray responses = batch("/api../widgets/a", "widgets/%2e%2e/%2e%2e/elsewhere",
+        "widgets/../widgets/a");
+    assertEquals(404, responses.get(0).getAsJsonObject().get("status").getAsInt());
+    assertEquals(404, responses.get(1).getAsJsonObject().get("status").getAsInt());
+    assertEquals(200, responses.get(2).getAsJsonObject().get("status").getAsInt());
+  }
+
+  /**
+   * A request whose response is never written is reported as a failure.
+   */
+  @Test
+  public void testUnwrittenResponse() throws Exception {
+    application = new TestApplication(new ContainerResponseFilter() {
+      @Override
+      public ContainerResponse filter(ContainerRequest request, ContainerResponse response) {
+        if (request.getPath().startsWith("widgets")) {
+          response.setContainerResponseWriter(new ContainerResponseWriter() {
+            @Override
+            public void finish() {}
+
+            @Override
+            public OutputStream writeStatusAndHeaders(long contentLength,
+                ContainerResponse response) {
+              return new ByteArrayOutputStream();
+            }
+          });
+        }
+        return response;
+      }
+    });
+    JsonArray responses = batch("widgets/a");
+    assertEquals(500, responses.get(0).getAsJsonObject().get("status").getAsInt());
+  }
+
+  /**
+   * A batch response that the client cannot interpret must fail every outstanding Future.
+   */
+  @Test
+  public void testMalformedResponse() throws Exception {
+    application = new TestApplication(new ContainerResponseFilter() {
+      @Override
+      public ContainerResponse filter(ContainerRequest request, ContainerResponse response) {
+        if (request.getPath().startsWith("batch")) {
+          response.setEntity("{\"responses\":[1]}");
+        }
+        return response;
+      }
+    });
+    TestServer server = new TestServer(application);
+    WidgetApi api = new WidgetApi(application.getFlatPack());
+    try {
+      api.setServerBase(server.getBaseUri());
+      Batch batch = api.newBatch();
+      Future<FlatPackEntity<Widget>> a = batch.add(api.widget("a"));
+      Future<FlatPackEntity<Widget>> b = batch.add(api.widget("b"));
+      try {
+        batch.execute();
+        fail();
+      } catch (IOException expected) {}
+      for (Future<FlatPackEntity<Widget>> future : Arrays.asList(a, b)) {
+        try {
+          future.get(1, TimeUnit.SECONDS);
+          fail();
+        } catch (ExecutionException expected) {
+          assertTrue(expected.getCause() instanceof IOException);
+        }
+      }
+    } finally {
+      api.close();
+      server.stop();
+    }
+  }
+
+  @Test
+  public void testMaximumRequests() throws Exception {
+    application.getBatchResource().setMaximumRequests(1);
+    BufferedResponse response = application.handle("POST", "batch",
+        Collections.singletonMap("Content-Type", "application/json"),
+        batchBody("widgets/a", "widgets/b").toString());
+    assertEquals(400, response.getResponse().getStatus());
+  }
+
+  /**
+   * Each request should be executed with the security context of the batch request.
+   */
+  @Test
+  public void testPrincipal() throws Exception {
+    application.setPrincipalName("alice");
+    JsonObject response = batch("widgets/principal").get(0).getAsJsonObject();
+    assertEquals(200, response.get("status").getAsInt());
+    assertEquals("alice", response.get("body").getAsString());
+  }
+
+  private JsonObject batchBody(String... paths) {
+    JsonArray requests = new JsonArray();
+    for (String path : paths) {
+      JsonObject request = new JsonObject();
+      request.addProperty("method", "GET");
+      request.addProperty("path", path);
+      requests.add(request);
+    }
+    JsonObject toReturn = new JsonObject();
+    toReturn.add("requests", requests);
+    return toReturn;
+  }
+
+  private JsonArray batch(String... paths) throws Exception {
+    BufferedResponse response = application.handle("POST", "batch",
+        Collections.singletonMap("Content-Type", "application/json"),
+        batchBody(paths).toString());
+    assertEquals(200, response.getResponse().getStatus());
+    lastBatch = new JsonParser().parse(new String(response.getBody(), UTF8)).getAsJsonObject();
+    return lastBatch.get("responses").getAsJsonArray();
+  }
+
+  private Widget unpack(JsonObject response, JsonElement data) throws Exception {
+    JsonObject payload = new JsonObject();
+    payload.add("data", data);
+    payload.add("value", response.get("value"));
+    FlatPackEntity<Widget> entity = application.getFlatPack().getUnpacker()
+        .unpack(Widget.class, payload, null);
+    return entity.getValue();
+  }
+}
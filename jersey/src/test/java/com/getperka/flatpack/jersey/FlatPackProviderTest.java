@@ -0,0 +1,216 @@
+/*
+ * #%L
+ * FlatPack Jersey integration
+ * %%
+ * Copyright (C) 2012 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.jersey;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.getperka.flatpack.jersey.FlatPackBatchResource.BufferedResponse;
+import com.getperka.flatpack.util.ContentEncoding;
+import com.getperka.flatpack.util.FlatPackUuids;
+
+public class FlatPackProviderTest {
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private TestApplication application;
+
+  @Before
+  public void before() {
+    application = new TestApplication();
+  }
+
+  /**
+   * The tag of a compressed payload should be derived from the uncompressed payload and name the
+   * content coding.
+   */
+  @Test
+  public void testCompressedEtag() throws Exception {
+    application.getProvider().setCompressionThreshold(0);
+    application.getProvider().setConditionalRequests(true);
+
+    BufferedResponse response = get("widgets/a",
+        Collections.singletonMap("Accept-Encoding", "gzip"));
+    assertEquals("gzip", response.getResponse().getHttpHeaders().getFirst("Content-Encoding"));
+    InputStream in = ContentEncoding.GZIP.decode(new ByteArrayInputStream(response.getBody()));
+    String etag = etag(readFully(in), "gzip");
+    assertEquals(etag, response.getResponse().getHttpHeaders().getFirst("ETag"));
+
+    response = application.handle("GET", "widgets/a", headers("Accept-Encoding", "gzip",
+        "If-None-Match", etag), null);
+    assertNotModified(response);
+
+    // The uncompressed representation has a different tag
+    response = get("widgets/a", Collections.singletonMap("If-None-Match", etag));
+    assertEquals(etag(response.getBody(), null),
+        response.getResponse().getHttpHeaders().getFirst("ETag"));
+  }
+
+  @Test
+  public void testCompressed() throws Exception {
+    application.getProvider().setCompressionThreshold(0);
+
+    BufferedResponse response = get("widgets/a",
+        Collections.singletonMap("Accept-Encoding", "gzip"));
+    assertEquals("gzip", response.getResponse().getHttpHeaders().getFirst("Content-Encoding"));
+    InputStream in = ContentEncoding.GZIP.decode(new ByteArrayInputStream(response.getBody()));
+    assertEquals("a", unpack(in).getName());
+  }
+
+  @Test
+  public void testIfModifiedSince() throws Exception {
+    application.getProvider().setConditionalRequests(true);
+    Date lastModified = WidgetResource.LAST_MODIFIED;
+
+    BufferedResponse response = application.handle("GET", "widgets/dated/a",
+        Collections.singletonMap("If-Modified-Since", httpDate(lastModified)), null);
+    assertNotModified(response);
+
+    // HTTP dates have a resolution of one second
+    response = application.handle("GET", "widgets/dated/a", Collections.singletonMap(
+        "If-Modified-Since", httpDate(new Date(lastModified.getTime() + 999))), null);
+    assertNotModified(response);
+
+    get("widgets/dated/a", Collections.singletonMap("If-Modified-Since",
+        httpDate(new Date(lastModified.getTime() - 1000))));
+
+    // Without a Last-Modified header, the date can't be compared
+    get("widgets/a", Collections.singletonMap("If-Modified-Since", httpDate(new Date())));
+  }
+
+  @Test
+  public void testIfNoneMatch() throws Exception {
+    application.getProvider().setConditionalRequests(true);
+
+    BufferedResponse response = get("widgets/a", null);
+    String etag = (String) response.getResponse().getHttpHeaders().getFirst("ETag");
+    assertEquals(etag(response.getBody(), null), etag);
+
+    // The same payload should receive the same tag
+    assertEquals(etag, get("widgets/a", null).getResponse().getHttpHeaders().getFirst("ETag"));
+
+    assertNotModified(application.handle("GET", "widgets/a",
+        Collections.singletonMap("If-None-Match", etag), null));
+    assertNotModified(application.handle("GET", "widgets/a",
+        Collections.singletonMap("If-None-Match", "\"other\", W/" + etag), null));
+    assertNotModified(application.handle("GET", "widgets/a",
+        Collections.singletonMap("If-None-Match", "*"), null));
+    assertNotModified(application.handle("HEAD", "widgets/a",
+        Collections.singletonMap("If-None-Match", etag), null));
+
+    get("widgets/a", Collections.singletonMap("If-None-Match", "\"other\""));
+    response = get("widgets/b", Collections.singletonMap("If-None-Match", etag));
+    assertEquals("b", unpack(new ByteArrayInputStream(response.getBody())).getName());
+  }
+
+  /**
+   * Only {@code GET} and {@code HEAD} requests may be answered with a 304 response.
+   */
+  @Test
+  public void testNotModifiedOnlyForGet() throws Exception {
+    application.getProvider().setConditionalRequests(true);
+
+    BufferedResponse response = application.handle("POST", "widgets/a",
+        Collections.singletonMap("If-None-Match", "*"), null);
+    assertEquals(200, response.getResponse().getStatus());
+    assertNull(response.getResponse().getHttpHeaders().getFirst("ETag"));
+    assertEquals("a", unpack(new ByteArrayInputStream(response.getBody())).getName());
+  }
+
+  /**
+   * Payloads no larger than the threshold should be sent as-is.
+   */
+  @Test
+  public void testUnderThreshold() throws Exception {
+    application.getProvider().setCompressionThreshold(1 << 20);
+
+    BufferedResponse response = get("widgets/a",
+        Collections.singletonMap("Accept-Encoding", "gzip"));
+    assertNull(response.getResponse().getHttpHeaders().getFirst("Content-Encoding"));
+    assertEquals("a", unpack(new ByteArrayInputStream(response.getBody())).getName());
+  }
+
+  private void assertNotModified(BufferedResponse response) {
+    assertEquals(304, response.getResponse().getStatus());
+    assertEquals(0, response.getBody().length);
+    assertNull(response.getResponse().getHttpHeaders().getFirst("Content-Encoding"));
+  }
+
+  /**
+   * Computes the expected tag of an uncompressed payload.
+   */
+  private String etag(byte[] payload, String contentEncoding) throws Exception {
+    ByteBuffer hash = ByteBuffer.wrap(MessageDigest.getInstance("MD5").digest(payload));
+    return "\"" + FlatPackUuids.toString(hash.getLong(), hash.getLong())
+      + (contentEncoding == null ? "" : "-" + contentEncoding) + "\"";
+  }
+
+  private BufferedResponse get(String path, Map<String, String> headers) throws Exception {
+    BufferedResponse response = application.handle("GET", path, headers, null);
+    assertEquals(200, response.getResponse().getStatus());
+    return response;
+  }
+
+  private Map<String, String> headers(String... namesAndValues) {
+    Map<String, String> toReturn = new HashMap<String, String>();
+    for (int i = 0; i < namesAndValues.length; i += 2) {
+      toReturn.put(namesAndValues[i], namesAndValues[i + 1]);
+    }
+    return toReturn;
+  }
+
+  private String httpDate(Date date) {
+    SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+    format.setTimeZone(TimeZone.getTimeZone("GMT"));
+    return format.format(date);
+  }
+
+  private byte[] readFully(InputStream in) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] bytes = new byte[4096];
+    for (int read = in.read(bytes); read != -1; read = in.read(bytes)) {
+      out.write(bytes, 0, read);
+    }
+    return out.toByteArray();
+  }
+
+  private Widget unpack(InputStream in) throws Exception {
+    return application.getFlatPack().getUnpacker()
+        .<Widget> unpack(Widget.class, new InputStreamReader(in, UTF8), null).getValue();
+  }
+}
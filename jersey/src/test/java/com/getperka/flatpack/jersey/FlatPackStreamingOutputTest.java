@@ -0,0 +1,130 @@
+/*
+ * #%L
+ * FlatPack Jersey integration
+ * %%
+ * Copyright (C) 2012 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.jersey;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.junit.Test;
+
+import com.getperka.flatpack.jersey.FlatPackBatchResource.BufferedResponse;
+import com.getperka.flatpack.util.ContentEncoding;
+import com.getperka.flatpack.util.IoObserver;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+
+public class FlatPackStreamingOutputTest {
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  /**
+   * Counts the number of payloads that have been packed.
+   */
+  static class CountingObserver extends IoObserver.Null {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Writer observe(Writer writer) {
+      count.incrementAndGet();
+      return writer;
+    }
+  }
+
+  /**
+   * Replaces the streamed entity, as an error-handling filter might.
+   */
+  static class ReplacingFilter implements ContainerResponseFilter {
+    @Override
+    public ContainerResponse filter(ContainerRequest request, ContainerResponse response) {
+      if (request.getPath().endsWith("replaced")) {
+        assertTrue(response.getEntity() instanceof StreamingOutput);
+        response.setEntity("Replaced", String.class);
+        response.getHttpHeaders().putSingle("Content-Type", MediaType.TEXT_PLAIN_TYPE);
+      }
+      return response;
+    }
+  }
+
+  @Test
+  public void testStreamed() throws Exception {
+    CountingObserver observer = new CountingObserver();
+    TestApplication application = new TestApplication();
+    application.getProvider().setObserver(observer);
+    application.getProvider().setStreamResponses(true);
+
+    BufferedResponse response = application.handle("GET", "widgets/a", null, null);
+    assertEquals(200, response.getResponse().getStatus());
+    assertNull(response.getResponse().getHttpHeaders().getFirst("Content-Encoding"));
+    assertEquals("a", unpack(application, new ByteArrayInputStream(response.getBody())).getName());
+    assertEquals(1, observer.count.get());
+  }
+
+  /**
+   * A payload whose body is never written, such as the response to a {@code HEAD} request or an
+   * entity replaced by a later filter, is never packed.
+   */
+  @Test
+  public void testUnwritten() throws Exception {
+    CountingObserver observer = new CountingObserver();
+    TestApplication application = new TestApplication(new ReplacingFilter());
+    application.getProvider().setObserver(observer);
+    application.getProvider().setStreamResponses(true);
+
+    BufferedResponse response = application.handle("HEAD", "widgets/a", null, null);
+    assertEquals(200, response.getResponse().getStatus());
+    assertEquals(0, response.getBody().length);
+
+    response = application.handle("GET", "widgets/replaced", null, null);
+    assertEquals(200, response.getResponse().getStatus());
+    assertEquals("Replaced", new String(response.getBody(), UTF8));
+    assertEquals(0, observer.count.get());
+  }
+
+  @Test
+  public void testCompressed() throws Exception {
+    TestApplication application = new TestApplication();
+    application.getProvider().setStreamResponses(true);
+    application.getProvider().setCompressionThreshold(0);
+
+    BufferedResponse response = application.handle("GET", "widgets/a",
+        Collections.singletonMap("Accept-Encoding", "gzip"), null);
+    assertEquals(200, response.getResponse().getStatus());
+    assertEquals("gzip", response.getResponse().getHttpHeaders().getFirst("Content-Encoding"));
+    InputStream in = ContentEncoding.GZIP.decode(new ByteArrayInputStream(response.getBody()));
+    assertEquals("a", unpack(application, in).getName());
+  }
+
+  private Widget unpack(TestApplication application, InputStream in) throws Exception {
+    return application.getFlatPack().getUnpacker()
+        .<Widget> unpack(Widget.class, new InputStreamReader(in, UTF8), null).getValue();
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * #%L
+ * FlatPack Jersey integration
+ * %%
+ * Copyright (C) 2012 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.jersey;
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.HttpURLConnection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+
+/**
+ * Exercises the client's response cache against a server that answers conditional requests.
+ */
+public class ResponseCacheTest {
+  private WidgetApi api;
+  private TestApplication application;
+  private volatile String evictWith;
+  private TestServer server;
+  private volatile boolean stripEtag;
+
+  @After
+  public void after() {
+    server.stop();
+  }
+
+  @Before
+  public void before() throws Exception {
+    // Simulates another request that evicts an entry while a conditional request is in flight
+    application = new TestApplication(new ContainerResponseFilter() {
+      @Override
+      public ContainerResponse filter(ContainerRequest request, ContainerResponse response) {
+        if (stripEtag) {
+          response.getHttpHeaders().remove("ETag");
+        }
+        String name = evictWith;
+        if (name != null && request.getHeaderValue("If-None-Match") != null) {
+          evictWith = null;
+          try {
+            api.widget(name).execute();
+          } catch (Exception e) {
+            throw new RuntimeException(e);
+          }
+        }
+        return response;
+      }
+    });
+    application.getProvider().setConditionalRequests(true);
+    server = new TestServer(application);
+
+    api = new WidgetApi(application.getFlatPack());
+    api.setServerBase(server.getBaseUri());
+  }
+
+  /**
+   * Verify that a 304 response is unpacked from the retained payload.
+   */
+  @Test
+  public void testNotModified() throws Exception {
+    api.setResponseCacheSize(2);
+
+    assertEquals("a", api.widget("a").execute().getValue().getName());
+    assertEquals(0, server.getNotModifiedCount());
+    assertEquals("a", api.widget("a").execute().getValue().getName());
+    assertEquals(1, server.getNotModifiedCount());
+    assertEquals("b", api.widget("b").execute().getValue().getName());
+    assertEquals(1, server.getNotModifiedCount());
+  }
+
+  /**
+   * A response evicted from the cache after its validators were sent should still be used.
+   */
+  @Test
+  public void testEvictedWhileInFlight() throws Exception {
+    api.setResponseCacheSize(1);
+
+    assertEquals("a", api.widget("a").execute().getValue().getName());
+    evictWith = "b";
+    assertEquals("a", api.widget("a").execute().getValue().getName());
+    assertEquals(1, server.getNotModifiedCount());
+
+    // The entry for b replaced a, so a is requested unconditionally
+    assertEquals("a", api.widget("a").execute().getValue().getName());
+    assertEquals(1, server.getNotModifiedCount());
+  }
+
+  /**
+   * A response cached for one principal must not be returned to another, even if the server would
+   * accept the first principal's {@code Last-Modified} date. The JDK won't reveal the
+   * {@code Authorization} header to the cache, so the key alone can't separate the principals.
+   */
+  @Test
+  public void testTwoPrincipals() throws Exception {
+    final String[] principal = new String[1];
+    api = new WidgetApi(application.getFlatPack()) {
+      @Override
+      protected HttpURLConnection filter(HttpURLConnection conn) {
+        conn.setRequestProperty("Authorization", "Bearer " + principal[0]);
+        return conn;
+      }
+    };
+    api.setServerBase(server.getBaseUri());
+    api.setResponseCacheSize(2);
+
+    // Only a Last-Modified date is available to validate the response
+    stripEtag = true;
+    for (String name : new String[] { "alice", "bob", "alice" }) {
+      principal[0] = name;
+      application.setPrincipalName(name);
+      assertEquals(name, api.mine().execute().getValue().getName());
+    }
+    assertEquals(0, server.getNotModifiedCount());
+
+    // With an entity tag, a 304 is only sent when the principal's payload is the retained one
+    stripEtag = false;
+    for (String name : new String[] { "alice", "bob", "bob", "alice" }) {
+      principal[0] = name;
+      application.setPrincipalName(name);
+      assertEquals(name, api.mine().execute().getValue().getName());
+    }
+    assertEquals(1, server.getNotModifiedCount());
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    assertEquals("a", api.widget("a").execute().getValue().getName());
+    assertEquals("a", api.widget("a").execute().getValue().getName());
+    assertEquals(0, server.getNotModifiedCount());
+  }
+}
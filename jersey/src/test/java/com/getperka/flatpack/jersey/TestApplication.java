@@ -0,0 +1,141 @@
+/*
+ * #%L
+ * FlatPack Jersey integration
+ * %%
+ * Copyright (C) 2012 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.jersey;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.security.Principal;
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.ws.rs.core.SecurityContext;
+
+import com.getperka.flatpack.Configuration;
+import com.getperka.flatpack.FlatPack;
+import com.getperka.flatpack.jersey.FlatPackBatchResource.BufferedResponse;
+import com.sun.jersey.api.core.DefaultResourceConfig;
+import com.sun.jersey.core.header.InBoundHeaders;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.WebApplication;
+import com.sun.jersey.spi.container.WebApplicationFactory;
+
+/**
+ * Runs {@link WidgetResource} and a {@link FlatPackBatchResource} in an in-memory
+ * {@link WebApplication}, without a servlet container.
+ */
+class TestApplication {
+  static final URI BASE_URI = URI.create("http://localhost/api/");
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private final FlatPackBatchResource batchResource;
+  private String principalName;
+  private final FlatPack flatpack;
+  private final FlatPackProvider provider = new FlatPackProvider();
+  private final WebApplication webApplication;
+
+  /**
+   * Creates an application, adding {@code filters} after the FlatPackProvider.
+   */
+  public TestApplication(ContainerResponseFilter... filters) {
+    flatpack = FlatPack.create(new Configuration());
+    webApplication = WebApplicationFactory.createWebApplication();
+    batchResource = new FlatPackBatchResource(webApplication);
+
+    DefaultResourceConfig config = new DefaultResourceConfig(WidgetResource.class);
+    config.getSingletons().add(batchResource);
+    config.getSingletons().add(new FlatPackResolver(flatpack));
+    config.getSingletons().add(provider);
+    config.getContainerRequestFilters().add(provider);
+    config.getContainerResponseFilters().add(provider);
+    config.getContainerResponseFilters().addAll(Arrays.asList(filters));
+    webApplication.initiate(config);
+  }
+
+  public FlatPackBatchResource getBatchResource() {
+    return batchResource;
+  }
+
+  public FlatPack getFlatPack() {
+    return flatpack;
+  }
+
+  public FlatPackProvider getProvider() {
+    return provider;
+  }
+
+  /**
+   * Sets the name of the principal that will make subsequent requests.
+   */
+  public void setPrincipalName(String principalName) {
+    this.principalName = principalName;
+  }
+
+  /**
+   * Dispatch a request, returning the buffered response.
+   */
+  public BufferedResponse handle(String method, String path, Map<String, String> headers,
+      String body) throws IOException {
+    InBoundHeaders inbound = new InBoundHeaders();
+    if (headers != null) {
+      for (Map.Entry<String, String> entry : headers.entrySet()) {
+        inbound.putSingle(entry.getKey(), entry.getValue());
+      }
+    }
+    byte[] entity = body == null ? new byte[0] : body.getBytes(UTF8);
+    ContainerRequest request = new ContainerRequest(webApplication, method, BASE_URI,
+        BASE_URI.resolve(path), inbound, new ByteArrayInputStream(entity));
+    request.setSecurityContext(new SecurityContext() {
+      @Override
+      public String getAuthenticationScheme() {
+        return null;
+      }
+
+      @Override
+      public Principal getUserPrincipal() {
+        if (principalName == null) {
+          return null;
+        }
+        return new Principal() {
+          @Override
+          public String getName() {
+            return principalName;
+          }
+        };
+      }
+
+      @Override
+      public boolean isSecure() {
+        return false;
+      }
+
+      @Override
+      public boolean isUserInRole(String role) {
+        return false;
+      }
+    });
+
+    BufferedResponse toReturn = new BufferedResponse();
+    webApplication.handleRequest(request, toReturn);
+    return toReturn;
+  }
+}
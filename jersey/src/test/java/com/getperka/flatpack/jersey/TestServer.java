@@ -0,0 +1,119 @@
+/*
+ * #%L
+ * FlatPack Jersey integration
+ * %%
+ * Copyright (C) 2012 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.jersey;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.getperka.flatpack.jersey.FlatPackBatchResource.BufferedResponse;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves a {@link TestApplication} over HTTP so that it may be used by the flatpack client.
+ */
+class TestServer implements HttpHandler {
+  private final TestApplication application;
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final AtomicInteger notModified = new AtomicInteger();
+  private final HttpServer server;
+
+  public TestServer(TestApplication application) throws IOException {
+    this.application = application;
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", this);
+    // Allow a request to be made while another is being handled
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  public URI getBaseUri() {
+    return URI.create("http://localhost:" + server.getAddress().getPort()
+      + TestApplication.BASE_URI.getPath());
+  }
+
+  /**
+   * Returns the number of {@code 304 Not Modified} responses that have been sent.
+   */
+  public int getNotModifiedCount() {
+    return notModified.get();
+  }
+
+  @Override
+  public void handle(HttpExchange exchange) throws IOException {
+    try {
+      Map<String, String> headers = new HashMap<String, String>();
+      for (Map.Entry<String, List<String>> entry : exchange.getRequestHeaders().entrySet()) {
+        headers.put(entry.getKey(), entry.getValue().get(0));
+      }
+      String body = new String(readFully(exchange.getRequestBody()), "UTF-8");
+
+      BufferedResponse response = application.handle(exchange.getRequestMethod(),
+          exchange.getRequestURI().toString(), headers, body);
+      ContainerResponse containerResponse = response.getResponse();
+      for (Map.Entry<String, List<Object>> entry : containerResponse.getHttpHeaders().entrySet()) {
+        for (Object value : entry.getValue()) {
+          exchange.getResponseHeaders().add(entry.getKey(),
+              ContainerResponse.getHeaderValue(value));
+        }
+      }
+
+      int status = containerResponse.getStatus();
+      if (status == 304) {
+        notModified.incrementAndGet();
+      }
+      byte[] bytes = response.getBody();
+      exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+      if (bytes.length > 0) {
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+  public void stop() {
+    server.stop(0);
+    executor.shutdown();
+  }
+
+  private byte[] readFully(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] bytes = new byte[4096];
+    for (int read = in.read(bytes); read != -1; read = in.read(bytes)) {
+      out.write(bytes, 0, read);
+    }
+    return out.toByteArray();
+  }
+}
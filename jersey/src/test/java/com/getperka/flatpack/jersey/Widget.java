@@ -0,0 +1,43 @@
+/*
+ * #%L
+ * FlatPack Jersey integration
+ * %%
+ * Copyright (C) 2012 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.jersey;
+
+import com.getperka.flatpack.BaseHasUuid;
+
+public class Widget extends BaseHasUuid {
+  private String name;
+  private Widget part;
+
+  public String getName() {
+    return name;
+  }
+
+  public Widget getPart() {
+    return part;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public void setPart(Widget part) {
+    this.part = part;
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * #%L
+ * FlatPack Jersey integration
+ * %%
+ * Copyright (C) 2012 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.jersey;
+
+import com.getperka.flatpack.FlatPack;
+import com.getperka.flatpack.client.impl.ApiBase;
+import com.getperka.flatpack.client.impl.FlatPackRequestBase;
+
+/**
+ * A client for {@link WidgetResource}, written in the style of a generated API.
+ */
+public class WidgetApi extends ApiBase {
+  public static class WidgetRequest extends FlatPackRequestBase<WidgetRequest, Widget> {
+    WidgetRequest(ApiBase api, String name) {
+      super(api, Widget.class, "GET", "widgets/{name}", false, name);
+    }
+  }
+
+  public static class MineRequest extends FlatPackRequestBase<MineRequest, Widget> {
+    MineRequest(ApiBase api) {
+      super(api, Widget.class, "GET", "widgets/mine", false);
+    }
+  }
+
+  public WidgetApi(FlatPack flatpack) {
+    super(flatpack);
+  }
+
+  public MineRequest mine() {
+    return new MineRequest(this);
+  }
+
+  public WidgetRequest widget(String name) {
+    return new WidgetRequest(this, name);
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * #%L
+ * FlatPack Jersey integration
+ * %%
+ * Copyright (C) 2012 Perka Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.getperka.flatpack.jersey;
+
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.UUID;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.SecurityContext;
+
+import com.getperka.flatpack.FlatPackEntity;
+import com.sun.jersey.api.core.HttpContext;
+
+/**
+ * Serves {@link Widget} entities to the jersey tests.
+ */
+@Path("widgets")
+public class WidgetResource {
+  /**
+   * The modification date of widgets returned with a {@code Last-Modified} header.
+   */
+  static final Date LAST_MODIFIED = new Date(1356998400000L);
+  /**
+   * The part that is shared by every widget.
+   */
+  static final UUID SHARED_UUID = UUID.fromString("a2ba0c33-c5c5-4fbd-9c03-7a9c7a79c0f5");
+  /**
+   * The request property that holds the widget being returned.
+   */
+  static final String WIDGET_PROPERTY = WidgetResource.class.getName() + ".widget";
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  @Context
+  HttpContext httpContext;
+
+  @GET
+  @Path("dated/{name}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response dated(@PathParam("name") String name) {
+    return Response.ok(widget(name)).lastModified(LAST_MODIFIED).build();
+  }
+
+  @GET
+  @Path("fail")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Widget fail() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Returns a widget named after the caller, with a {@code Last-Modified} date that is the same for
+   * every caller.
+   */
+  @GET
+  @Path("mine")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response mine(@Context SecurityContext security) {
+    return dated(security.getUserPrincipal().getName());
+  }
+
+  @GET
+  @Path("missing")
+  @Produces(MediaType.TEXT_PLAIN)
+  public Response missing() {
+    return Response.status(Status.NOT_FOUND).entity("Not here").build();
+  }
+
+  @GET
+  @Path("principal")
+  @Produces(MediaType.TEXT_PLAIN)
+  public String principal(@Context SecurityContext security) {
+    return security.getUserPrincipal().getName();
+  }
+
+  @POST
+  @Path("{name}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public FlatPackEntity<Widget> update(@PathParam("name") String name) {
+    return widget(name);
+  }
+
+  /**
+   * Returns a widget whose uuid is derived from its name, so that repeated requests produce the
+   * same payload.
+   */
+  @GET
+  @Path("{name}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public FlatPackEntity<Widget> widget(@PathParam("name") String name) {
+    Widget shared = new Widget();
+    shared.setName("shared");
+    shared.setUuid(SHARED_UUID);
+
+    Widget toReturn = new Widget();
+    toReturn.setName(name);
+    toReturn.setUuid(UUID.nameUUIDFromBytes(name.getBytes(UTF8)));
+    toReturn.setPart(shared);
+    httpContext.getProperties().put(WIDGET_PROPERTY, toReturn);
+    return FlatPackEntity.entity(toReturn);
+  }
+}